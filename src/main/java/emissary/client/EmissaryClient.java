@@ -25,6 +25,7 @@ import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
 import org.apache.hc.core5.util.Timeout;
 import org.eclipse.jetty.util.security.Password;
@@ -179,6 +180,24 @@ public class EmissaryClient {
         this.connectionConfig = connectionConfig;
     }
 
+    /**
+     * A copy of this client whose requests give up waiting for a pooled connection, connecting, or waiting for an answer
+     * after the timeout. The copy shares the connection pool.
+     *
+     * @param timeout the longest wait for each step of a request
+     */
+    // the connect timeout on the request is deprecated in favour of the pool's connection config, but it is the only
+    // way to bound one request without changing the shared pool, and the client still honours it
+    @SuppressWarnings("deprecation")
+    public EmissaryClient withTimeout(final Timeout timeout) {
+        final RequestConfig.Builder config = RequestConfig.copy(requestConfig).setConnectTimeout(timeout).setResponseTimeout(timeout);
+        final Timeout poolTimeout = requestConfig.getConnectionRequestTimeout();
+        if (poolTimeout == null || poolTimeout.compareTo(timeout) > 0) {
+            config.setConnectionRequestTimeout(timeout);
+        }
+        return new EmissaryClient(getHttpClient(), config.build(), connectionConfig);
+    }
+
     public EmissaryResponse send(final HttpUriRequestBase method) {
         return send(method, null);
     }
@@ -218,6 +237,21 @@ public class EmissaryClient {
         }
     }
 
+    /**
+     * Sends a request to the web server and hands the response to a handler, for answers that are not text
+     *
+     * @param method the method to be sent
+     * @param handler reads the response
+     * @return what the handler made of the response
+     * @throws IOException if the request could not be sent or the handler failed
+     */
+    public <T> T execute(final HttpUriRequestBase method, final HttpClientResponseHandler<? extends T> handler) throws IOException {
+        HttpClientContext localContext = HttpClientContext.create();
+        localContext.setAttribute(HttpClientContext.AUTH_CACHE, EmissaryClient.AUTH_CACHE);
+        method.setConfig(requestConfig);
+        return getHttpClient().execute(method, localContext, handler);
+    }
+
     protected CloseableHttpClient getHttpClient() {
         return client;
     }
@@ -0,0 +1,233 @@
+package emissary.client;
+
+import emissary.client.response.BaseEntity;
+import emissary.config.ConfigUtil;
+import emissary.config.Configurator;
+
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Send the same request to many peers at once and gather the answers into one response.
+ * <p>
+ * Every peer is called on its own thread, so a cluster call takes about as long as the slowest peer rather than the sum
+ * of all of them. A peer that has not answered by the deadline, or that fails, is reported as an error on the response
+ * and the answers from the other peers are still returned.
+ * <p>
+ * Answers are cached by endpoint for a short time and a call already in flight to an endpoint is shared, so several
+ * dashboards polling the same cluster endpoint do not multiply the load on the peers. A call still running after the
+ * peer timeout is cancelled and the next poll calls the peer again. Use {@link #client()} for the requests so they give
+ * up on a peer after the same timeout instead of holding a thread.
+ * <p>
+ * Configuration file options are:
+ * <ul>
+ * <li>PEER_TIMEOUT_MILLIS: how long to wait for the peers to answer</li>
+ * <li>CACHE_TTL_MILLIS: how long an answer is reused, 0 to only share calls in flight</li>
+ * </ul>
+ */
+public class PeerFanOut {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerFanOut.class);
+
+    public static final long DEFAULT_PEER_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    public static final long DEFAULT_CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    private static final PeerFanOut INSTANCE = configure();
+
+    private final long peerTimeoutNanos;
+    private final long cacheTtlNanos;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final Map<String, Call> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Create a fan out
+     *
+     * @param peerTimeoutMillis how long to wait for the peers to answer
+     * @param cacheTtlMillis how long an answer is reused
+     * @param executor runs the calls to the peers
+     */
+    public PeerFanOut(long peerTimeoutMillis, long cacheTtlMillis, Executor executor) {
+        this(peerTimeoutMillis, cacheTtlMillis, executor, System::nanoTime);
+    }
+
+    PeerFanOut(long peerTimeoutMillis, long cacheTtlMillis, Executor executor, LongSupplier clock) {
+        this.peerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(peerTimeoutMillis);
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(cacheTtlMillis, 0));
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    private static PeerFanOut configure() {
+        long peerTimeout = DEFAULT_PEER_TIMEOUT_MILLIS;
+        long cacheTtl = DEFAULT_CACHE_TTL_MILLIS;
+        try {
+            final Configurator c = ConfigUtil.getConfigInfo(PeerFanOut.class);
+            peerTimeout = c.findLongEntry("PEER_TIMEOUT_MILLIS", peerTimeout);
+            cacheTtl = c.findLongEntry("CACHE_TTL_MILLIS", cacheTtl);
+        } catch (IOException iox) {
+            logger.warn("Cannot read PeerFanOut properties, configuring defaults: {}", iox.getMessage());
+        }
+        // calls in flight are shared, so there is at most one thread per endpoint
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "PeerFanOut-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        return new PeerFanOut(peerTimeout, cacheTtl, executor);
+    }
+
+    /**
+     * The fan out shared by the cluster endpoints and commands
+     */
+    public static PeerFanOut getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A client whose requests give up connecting to or waiting on a peer after the peer timeout
+     */
+    public EmissaryClient client() {
+        return client(new EmissaryClient());
+    }
+
+    /**
+     * A copy of a client whose requests give up connecting to or waiting on a peer after the peer timeout
+     *
+     * @param base the client to copy
+     */
+    public EmissaryClient client(EmissaryClient base) {
+        return base.withTimeout(Timeout.of(Duration.ofNanos(peerTimeoutNanos)));
+    }
+
+    /**
+     * Call every endpoint and append each answer to a response. Endpoints that fail or do not answer in time are added to
+     * the response as errors.
+     *
+     * @param response receives the answers
+     * @param endpoints the peer endpoints to call
+     * @param request makes the call to one endpoint
+     */
+    public void collect(BaseEntity response, Collection<String> endpoints, Function<String, ? extends BaseEntity> request) {
+        final long start = clock.getAsLong();
+        calls.values().removeIf(call -> call.isExpired(start) || call.cancelIfStale(start));
+
+        final Map<String, CompletableFuture<BaseEntity>> pending = new LinkedHashMap<>();
+        for (String endpoint : endpoints) {
+            pending.put(endpoint, call(endpoint, request, start));
+        }
+
+        final long deadline = start + peerTimeoutNanos;
+        boolean interrupted = false;
+        for (Map.Entry<String, CompletableFuture<BaseEntity>> entry : pending.entrySet()) {
+            final String endpoint = entry.getKey();
+            try {
+                final BaseEntity answer = interrupted ? null : entry.getValue().get(Math.max(deadline - clock.getAsLong(), 0), TimeUnit.NANOSECONDS);
+                if (answer == null) {
+                    response.addError(endpoint + ": no response");
+                } else {
+                    response.append(answer);
+                }
+            } catch (TimeoutException e) {
+                logger.debug("No answer from {} in time", endpoint);
+                response.addError(endpoint + ": no response within " + TimeUnit.NANOSECONDS.toMillis(peerTimeoutNanos) + " ms");
+            } catch (CancellationException e) {
+                logger.debug("Call to {} was running too long and was cancelled", endpoint);
+                response.addError(endpoint + ": no response within " + TimeUnit.NANOSECONDS.toMillis(peerTimeoutNanos) + " ms");
+            } catch (ExecutionException e) {
+                logger.debug("Problem calling {}", endpoint, e.getCause());
+                response.addError(endpoint + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                interrupted = true;
+                response.addError(endpoint + ": interrupted");
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reuse a recent or running call to the endpoint, or start one
+     */
+    private CompletableFuture<BaseEntity> call(String endpoint, Function<String, ? extends BaseEntity> request, long now) {
+        return calls.compute(endpoint, (key, existing) -> {
+            if (existing != null) {
+                if (existing.isUsable(now)) {
+                    return existing;
+                }
+                existing.cancelIfStale(now);
+            }
+            final Call call = new Call(CompletableFuture.supplyAsync(() -> request.apply(key), executor), now + peerTimeoutNanos);
+            var unused = call.future.whenComplete((answer, error) -> call.finished(clock.getAsLong() + cacheTtlNanos));
+            return call;
+        }).future;
+    }
+
+    /**
+     * Drop all cached answers
+     */
+    public void clearCache() {
+        calls.clear();
+    }
+
+    private static final class Call {
+        final CompletableFuture<BaseEntity> future;
+        private final long staleAt;
+        private volatile long expiresAt;
+        private volatile boolean finished = false;
+
+        Call(CompletableFuture<BaseEntity> future, long staleAt) {
+            this.future = future;
+            this.staleAt = staleAt;
+        }
+
+        void finished(long expiresAt) {
+            this.expiresAt = expiresAt;
+            this.finished = true;
+        }
+
+        boolean isUsable(long now) {
+            return !future.isCompletedExceptionally() && !isExpired(now) && !isStale(now);
+        }
+
+        boolean isExpired(long now) {
+            return finished && now - expiresAt >= 0;
+        }
+
+        /**
+         * A call that has not finished within the peer timeout will not be waited on again
+         */
+        boolean isStale(long now) {
+            return !finished && now - staleAt >= 0;
+        }
+
+        boolean cancelIfStale(long now) {
+            if (!isStale(now)) {
+                return false;
+            }
+            future.cancel(false);
+            return true;
+        }
+    }
+}
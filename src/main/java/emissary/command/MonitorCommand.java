@@ -1,6 +1,7 @@
 package emissary.command;
 
 import emissary.client.EmissaryClient;
+import emissary.client.PeerFanOut;
 import emissary.client.response.BaseResponseEntity;
 
 import org.slf4j.Logger;
@@ -10,7 +11,9 @@ import picocli.CommandLine.Option;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public abstract class MonitorCommand<T extends BaseResponseEntity> extends HttpCommand {
 
@@ -18,8 +21,6 @@ public abstract class MonitorCommand<T extends BaseResponseEntity> extends HttpC
 
     public static final String COMMAND_NAME = "MonitorCommand";
 
-    private final Object lock = new Object();
-
     @Option(names = {"--mon"},
             description = "runs the agents command in monitor mode, executing every 30 seconds by default\nDefault: ${DEFAULT-VALUE}")
     private boolean monitor = false;
@@ -78,20 +79,10 @@ public abstract class MonitorCommand<T extends BaseResponseEntity> extends HttpC
     }
 
     private void sendClusterRequests(final EmissaryClient client, final T entity) throws IOException {
-        PeersCommand.getPeers(getHostAndPort(), true).parallelStream().forEach(hostAndPort -> {
-            try {
-                String endpoint = buildEndpoint(hostAndPort);
-                T response = sendRequest(client, endpoint);
-                synchronized (lock) {
-                    entity.append(response);
-                }
-            } catch (RuntimeException e) {
-                LOG.error("Problem hitting agents endpoint: {}\n{}", hostAndPort, e.getMessage());
-                synchronized (lock) {
-                    entity.addError(e.getMessage());
-                }
-            }
-        });
+        List<String> endpoints = PeersCommand.getPeers(getHostAndPort(), true).stream().map(this::buildEndpoint).collect(Collectors.toList());
+        final PeerFanOut fanOut = PeerFanOut.getInstance();
+        final EmissaryClient peerClient = fanOut.client(client);
+        fanOut.collect(entity, endpoints, endpoint -> sendRequest(peerClient, endpoint));
     }
 
     // Here as a hook in case commands have summarize/custom display options
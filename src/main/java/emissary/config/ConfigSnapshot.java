@@ -0,0 +1,281 @@
+package emissary.config;
+
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An immutable, indexed view of a list of configuration entries. Values are hashed by key, the sorted key set serves
+ * the startsWith lookups of the findStringMatch family, and numeric and boolean conversions are cached the first time
+ * they are asked for.
+ * <p>
+ * A snapshot never changes once built, so it can be read from any number of threads without locking. A configuration
+ * that changes builds a new snapshot and swaps it in.
+ */
+@SuppressWarnings("ImmutableMemberCollection")
+public final class ConfigSnapshot {
+
+    /** Marker for a cached value that could not be converted */
+    private static final Object INVALID = new Object();
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    /** Guard against callers building prefixes on the fly */
+    private static final int MAX_CACHED_PREFIXES = 1024;
+
+    private final String[] keys;
+    private final String[] values;
+    private final Map<String, List<String>> valuesByKey;
+    private final NavigableMap<String, int[]> positionsByKey;
+
+    // memoized lookups, safe because the snapshot never changes
+    private final Map<String, int[]> prefixPositions = new ConcurrentHashMap<>();
+    private final Map<String, Object> intValues = new ConcurrentHashMap<>();
+    private final Map<String, Object> longValues = new ConcurrentHashMap<>();
+    private final Map<String, Object> doubleValues = new ConcurrentHashMap<>();
+    private final Map<String, Object> booleanValues = new ConcurrentHashMap<>();
+
+    /**
+     * Build a snapshot of the entries in the order given
+     *
+     * @param entries the configuration entries
+     */
+    public ConfigSnapshot(final List<ConfigEntry> entries) {
+        final int size = entries.size();
+        this.keys = new String[size];
+        this.values = new String[size];
+
+        final Map<String, List<String>> byKey = new HashMap<>();
+        final Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            final ConfigEntry entry = entries.get(i);
+            this.keys[i] = entry.getKey();
+            this.values[i] = entry.getValue();
+            if (entry.getKey() == null) {
+                continue;
+            }
+            byKey.computeIfAbsent(entry.getKey(), k -> new ArrayList<>(1)).add(entry.getValue());
+            positions.computeIfAbsent(entry.getKey(), k -> new ArrayList<>(1)).add(i);
+        }
+
+        final Map<String, List<String>> frozen = new HashMap<>(byKey.size() * 2);
+        for (final Map.Entry<String, List<String>> e : byKey.entrySet()) {
+            frozen.put(e.getKey(), Collections.unmodifiableList(e.getValue()));
+        }
+        this.valuesByKey = Collections.unmodifiableMap(frozen);
+
+        final NavigableMap<String, int[]> sorted = new TreeMap<>();
+        for (final Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+            sorted.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        this.positionsByKey = Collections.unmodifiableNavigableMap(sorted);
+    }
+
+    /**
+     * Number of entries in the snapshot
+     */
+    public int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * The distinct keys in the snapshot
+     */
+    public Set<String> keys() {
+        return this.valuesByKey.keySet();
+    }
+
+    /**
+     * All values for a key in configuration order
+     *
+     * @param key the key to match
+     * @return an unmodifiable list of values, empty if none
+     */
+    public List<String> values(final String key) {
+        final List<String> list = this.valuesByKey.get(key);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * The first value for a key, which may be null
+     *
+     * @param key the key to match
+     * @return the first value or null if the key is not present
+     */
+    @Nullable
+    public String first(final String key) {
+        final List<String> list = this.valuesByKey.get(key);
+        return list == null ? null : list.get(0);
+    }
+
+    /**
+     * The first non-null value for a key
+     *
+     * @param key the key to match
+     * @param dflt value to return if there is none
+     * @return the first non-null value or the default
+     */
+    @Nullable
+    public String firstNonNull(final String key, @Nullable final String dflt) {
+        final List<String> list = this.valuesByKey.get(key);
+        if (list != null) {
+            for (final String value : list) {
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return dflt;
+    }
+
+    /**
+     * The last value for a key
+     *
+     * @param key the key to match
+     * @param dflt value to return if the key is not present
+     * @return the last value or the default
+     */
+    @Nullable
+    public String last(final String key, @Nullable final String dflt) {
+        final List<String> list = this.valuesByKey.get(key);
+        return list == null ? dflt : list.get(list.size() - 1);
+    }
+
+    /**
+     * Entries whose key starts with the prefix, in configuration order. The entries are new copies so callers may change
+     * them.
+     *
+     * @param prefix the leading part of the key
+     * @return list of matching entries or empty list if none
+     */
+    public List<ConfigEntry> prefixEntries(final String prefix) {
+        final int[] positions = prefixPositions(prefix);
+        final List<ConfigEntry> list = new ArrayList<>(positions.length);
+        for (final int pos : positions) {
+            list.add(new ConfigEntry(this.keys[pos], this.values[pos]));
+        }
+        return list;
+    }
+
+    /**
+     * Cached int conversion of the first value for a key
+     *
+     * @param key the key to match
+     * @return the value, {@link #INVALID} if it is not a number, or null if the key is not present
+     */
+    @Nullable
+    Object intValue(final String key) {
+        return converted(this.intValues, key, Integer::valueOf);
+    }
+
+    /**
+     * Cached long conversion of the first value for a key
+     *
+     * @see #intValue(String)
+     */
+    @Nullable
+    Object longValue(final String key) {
+        return converted(this.longValues, key, Long::valueOf);
+    }
+
+    /**
+     * Cached double conversion of the first value for a key
+     *
+     * @see #intValue(String)
+     */
+    @Nullable
+    Object doubleValue(final String key) {
+        return converted(this.doubleValues, key, Double::valueOf);
+    }
+
+    /**
+     * Cached boolean conversion of the first value for a key. Values starting with T or F (any case) are true or false,
+     * anything else is {@link #INVALID}.
+     *
+     * @see #intValue(String)
+     */
+    @Nullable
+    Object booleanValue(final String key) {
+        return converted(this.booleanValues, key, ConfigSnapshot::parseBoolean);
+    }
+
+    static boolean isInvalid(@Nullable final Object value) {
+        return value == INVALID;
+    }
+
+    private static Boolean parseBoolean(final String value) {
+        final String s = value.toUpperCase(Locale.getDefault());
+        if (s.startsWith("F")) {
+            return Boolean.FALSE;
+        } else if (s.startsWith("T")) {
+            return Boolean.TRUE;
+        }
+        throw new IllegalArgumentException(value);
+    }
+
+    @Nullable
+    private Object converted(final Map<String, Object> cache, final String key, final Function<String, Object> converter) {
+        if (!this.valuesByKey.containsKey(key)) {
+            return null;
+        }
+        return cache.computeIfAbsent(key, k -> {
+            final String value = first(k);
+            if (value == null) {
+                return INVALID;
+            }
+            try {
+                return converter.apply(value);
+            } catch (IllegalArgumentException e) {
+                // includes NumberFormatException
+                return INVALID;
+            }
+        });
+    }
+
+    private int[] prefixPositions(final String prefix) {
+        final int[] cached = this.prefixPositions.get(prefix);
+        if (cached != null) {
+            return cached;
+        }
+        final int[] positions = computePrefixPositions(prefix);
+        if (this.prefixPositions.size() < MAX_CACHED_PREFIXES) {
+            this.prefixPositions.put(prefix, positions);
+        }
+        return positions;
+    }
+
+    private int[] computePrefixPositions(final String prefix) {
+        final List<int[]> matching = new ArrayList<>();
+        int count = 0;
+        for (final Map.Entry<String, int[]> e : this.positionsByKey.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) {
+                break;
+            }
+            matching.add(e.getValue());
+            count += e.getValue().length;
+        }
+        if (count == 0) {
+            return NO_POSITIONS;
+        }
+        final int[] all = new int[count];
+        int i = 0;
+        for (final int[] positions : matching) {
+            System.arraycopy(positions, 0, all, i, positions.length);
+            i += positions.length;
+        }
+        // back to configuration order
+        Arrays.sort(all);
+        return all;
+    }
+}
@@ -55,8 +55,13 @@ public class ServiceConfigGuide implements Configurator, Serializable {
     protected static final String NULL_VALUE = "<null>";
 
     // Hold all service specific parameters in a list
+    // Anything changing this list directly must call configChanged()
     protected List<ConfigEntry> serviceParameters = new ArrayList<>();
 
+    // Indexed, immutable view of serviceParameters used by the find methods, rebuilt after a change
+    @Nullable
+    private transient volatile ConfigSnapshot snapshot;
+
     // Hold all remove config entries, operator of !=
     protected List<ConfigEntry> removeParameters = new ArrayList<>();
 
@@ -295,6 +300,7 @@ public class ServiceConfigGuide implements Configurator, Serializable {
             } else {
                 this.serviceParameters.add(anEntry);
             }
+            configChanged();
 
             // Save this pair in the map
             this.values.put(parmName, sval);
@@ -529,11 +535,36 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public Set<String> entryKeys() {
-        final Set<String> set = new HashSet<>();
-        for (final ConfigEntry curEntry : this.serviceParameters) {
-            set.add(curEntry.getKey());
+        return new HashSet<>(getSnapshot().keys());
+    }
+
+    /**
+     * Get an immutable, indexed view of the current entries. The view does not follow later changes to this config, ask
+     * again to see them. This method is not part of the Configurator interface.
+     *
+     * @return the snapshot of the current entries
+     */
+    public ConfigSnapshot getSnapshot() {
+        ConfigSnapshot current = this.snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = this.snapshot;
+                if (current == null) {
+                    current = new ConfigSnapshot(this.serviceParameters);
+                    this.snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Drop the current snapshot so the next lookup sees changes made to the list of parameters
+     */
+    protected void configChanged() {
+        synchronized (this) {
+            this.snapshot = null;
         }
-        return set;
     }
 
     /**
@@ -623,6 +654,7 @@ public class ServiceConfigGuide implements Configurator, Serializable {
                 i.remove();
             }
         }
+        configChanged();
     }
 
     /**
@@ -649,14 +681,7 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public List<String> findEntries(final String theParameter) {
-        final List<String> matchingEntries = new ArrayList<>();
-
-        for (final ConfigEntry curEntry : this.serviceParameters) {
-            if (theParameter.equals(curEntry.getKey())) {
-                matchingEntries.add(curEntry.getValue());
-            }
-        }
-        return matchingEntries;
+        return new ArrayList<>(getSnapshot().values(theParameter));
     }
 
     /**
@@ -673,6 +698,7 @@ public class ServiceConfigGuide implements Configurator, Serializable {
                 i.remove();
             }
         }
+        configChanged();
     }
 
     /**
@@ -683,34 +709,19 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public Set<String> findEntriesAsSet(final String theParameter) {
-
-        final Set<String> matchingEntries = new HashSet<>();
-
-        for (final ConfigEntry curEntry : this.serviceParameters) {
-            if (theParameter.equals(curEntry.getKey())) {
-                matchingEntries.add(curEntry.getValue());
-            }
-        }
-        return matchingEntries;
+        return new HashSet<>(getSnapshot().values(theParameter));
     }
 
     /**
-     * Find entries beginning with the specified string
+     * Find entries beginning with the specified string. The entries are copies, changing them does not change the
+     * configuration.
      *
      * @param theParameter key to match with a startsWith
      * @return list of entries matching specified value or empty list if none
      */
     @Override
     public List<ConfigEntry> findStringMatchEntries(final String theParameter) {
-
-        final List<ConfigEntry> matchingEntries = new ArrayList<>();
-
-        for (final ConfigEntry curEntry : this.serviceParameters) {
-            if (curEntry.getKey().startsWith(theParameter)) {
-                matchingEntries.add(curEntry);
-            }
-        }
-        return matchingEntries;
+        return getSnapshot().prefixEntries(theParameter);
     }
 
     /**
@@ -908,13 +919,7 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public String findStringEntry(final String theParameter, @Nullable final String dflt) {
-        final List<String> matchingEntries = findEntries(theParameter);
-        for (final String entry : matchingEntries) {
-            if (entry != null) {
-                return entry;
-            }
-        }
-        return dflt;
+        return getSnapshot().firstNonNull(theParameter, dflt);
     }
 
     /**
@@ -936,13 +941,7 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public String findLastStringEntry(final String theParameter) {
-        String result = "";
-        for (final ConfigEntry curEntry : this.serviceParameters) {
-            if (theParameter.equals(curEntry.getKey())) {
-                result = curEntry.getValue();
-            }
-        }
-        return result;
+        return getSnapshot().last(theParameter, "");
     }
 
     /**
@@ -956,7 +955,7 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public long findSizeEntry(final String theParameter, final long dflt) {
-        final List<String> matchingEntries = findEntries(theParameter);
+        final List<String> matchingEntries = getSnapshot().values(theParameter);
         if (!matchingEntries.isEmpty()) {
             long val = dflt;
             final String s = matchingEntries.get(0);
@@ -1032,14 +1031,11 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public int findIntEntry(final String theParameter, final int dflt) {
-        final List<String> matchingEntries = findEntries(theParameter);
-
-        if (!matchingEntries.isEmpty()) {
-            try {
-                return Integer.parseInt(matchingEntries.get(0));
-            } catch (NumberFormatException e) {
-                logger.warn("{} is non-numeric returning default value: {}", theParameter, dflt);
-            }
+        final Object value = getSnapshot().intValue(theParameter);
+        if (ConfigSnapshot.isInvalid(value)) {
+            logger.warn("{} is non-numeric returning default value: {}", theParameter, dflt);
+        } else if (value != null) {
+            return (Integer) value;
         }
         return dflt;
     }
@@ -1053,14 +1049,11 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public long findLongEntry(final String theParameter, final long dflt) {
-        final List<String> matchingEntries = findEntries(theParameter);
-
-        if (!matchingEntries.isEmpty()) {
-            try {
-                return Long.parseLong(matchingEntries.get(0));
-            } catch (NumberFormatException e) {
-                logger.warn("{} is non-numeric returning default value: {}", theParameter, dflt);
-            }
+        final Object value = getSnapshot().longValue(theParameter);
+        if (ConfigSnapshot.isInvalid(value)) {
+            logger.warn("{} is non-numeric returning default value: {}", theParameter, dflt);
+        } else if (value != null) {
+            return (Long) value;
         }
         return dflt;
     }
@@ -1074,14 +1067,11 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public double findDoubleEntry(final String theParameter, final double dflt) {
-        final List<String> matchingEntries = findEntries(theParameter);
-
-        if (!matchingEntries.isEmpty()) {
-            try {
-                return Double.parseDouble(matchingEntries.get(0));
-            } catch (NumberFormatException e) {
-                logger.warn("{} is non-numeric returning default value: {}", theParameter, dflt);
-            }
+        final Object value = getSnapshot().doubleValue(theParameter);
+        if (ConfigSnapshot.isInvalid(value)) {
+            logger.warn("{} is non-numeric returning default value: {}", theParameter, dflt);
+        } else if (value != null) {
+            return (Double) value;
         }
         return dflt;
     }
@@ -1095,16 +1085,9 @@ public class ServiceConfigGuide implements Configurator, Serializable {
      */
     @Override
     public boolean findBooleanEntry(final String theParameter, final boolean dflt) {
-        final List<String> matchingEntries = findEntries(theParameter);
-
-        if (!matchingEntries.isEmpty()) {
-            String el = matchingEntries.get(0);
-            el = el.toUpperCase(Locale.getDefault());
-            if (el.startsWith("F")) {
-                return false;
-            } else if (el.startsWith("T")) {
-                return true;
-            }
+        final Object value = getSnapshot().booleanValue(theParameter);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
         }
         return dflt;
     }
@@ -1,10 +1,10 @@
 package emissary.core;
 
+import emissary.core.channels.ConcatenateChannelFactory;
 import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.core.channels.SeekableByteChannelHelper;
 import emissary.directory.DirectoryEntry;
 import emissary.pickup.Priority;
-import emissary.util.ByteUtil;
 import emissary.util.PayloadUtil;
 
 import com.google.common.collect.LinkedListMultimap;
@@ -28,6 +28,7 @@ import java.rmi.Remote;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -117,6 +118,12 @@ public class BaseDataObject implements Serializable, Cloneable, Remote, IBaseDat
      */
     protected Map<String, byte[]> multipartAlternative = new TreeMap<>();
 
+    /**
+     * Alternate views held as channels rather than byte arrays, each as the list of segments appended to it. A view is in
+     * either this map or {@link #multipartAlternative}, never both, and moves to the latter when asked for as an array.
+     */
+    protected Map<String, List<SeekableByteChannelFactory>> alternateViewSegments = new TreeMap<>();
+
     /**
      * Any header that goes along with the data
      */
@@ -1186,19 +1193,33 @@ public class BaseDataObject implements Serializable, Cloneable, Remote, IBaseDat
 
     @Override
     public int getNumAlternateViews() {
-        return this.multipartAlternative.size();
+        return this.multipartAlternative.size() + this.alternateViewSegments.size();
     }
 
     /**
      * Return a specified multipart alternative view of the data WARNING: this implementation returns the actual array
-     * directly, no copy is made so the caller must be aware that modifications to the returned array are live.
+     * directly, no copy is made so the caller must be aware that modifications to the returned array are live. A view held
+     * as a channel is read into an array at this point, and kept that way.
      *
      * @param s the name of the view to retrieve
      * @return byte array of alternate view data or null if none
      */
+    @Nullable
     @Override
     public byte[] getAlternateView(final String s) {
-        return this.multipartAlternative.get(s);
+        final byte[] view = this.multipartAlternative.get(s);
+        if (view != null || !this.alternateViewSegments.containsKey(s)) {
+            return view;
+        }
+        try {
+            final byte[] read = SeekableByteChannelHelper.getByteArrayFromChannel(getAlternateViewChannelFactory(s), MAX_BYTE_ARRAY_SIZE);
+            this.alternateViewSegments.remove(s);
+            this.multipartAlternative.put(s, read);
+            return read;
+        } catch (final IOException ioe) {
+            logger.error("Error reading alternate view {} on object {}", s, shortName(), ioe);
+            return null;
+        }
     }
 
     @Override
@@ -1206,14 +1227,100 @@ public class BaseDataObject implements Serializable, Cloneable, Remote, IBaseDat
         appendAlternateView(name, data, 0, data.length);
     }
 
+    /**
+     * Append to a multipart alternative view of the data. Rather than copying the whole view on every append, the view is
+     * kept as a list of segments, which are only joined into one array when it is asked for as an array.
+     *
+     * @param name the name of the view
+     * @param data the byte array containing data for the view
+     * @param offset index of the first byte to use
+     * @param length number of bytes to use
+     */
     @Override
     public void appendAlternateView(final String name, final byte[] data, final int offset, final int length) {
-        final byte[] av = getAlternateView(name);
-        if (av != null) {
-            addAlternateView(name, ByteUtil.glue(av, 0, av.length - 1, data, offset, offset + length - 1));
-        } else {
+        if (!hasAlternateView(name)) {
             addAlternateView(name, data, offset, length);
+        } else if (length > 0) {
+            final byte[] segment = new byte[length];
+            System.arraycopy(data, offset, segment, 0, length);
+            appendAlternateView(name, SeekableByteChannelHelper.memory(segment));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The view becomes held as a channel if it was not already, and the data is not read until the view is asked for as an
+     * array.
+     */
+    @Override
+    public void appendAlternateView(final String name, final SeekableByteChannelFactory sbcf) {
+        Validate.notNull(sbcf, "Required: SeekableByteChannelFactory not null");
+        final byte[] view = this.multipartAlternative.remove(name);
+        final List<SeekableByteChannelFactory> segments = this.alternateViewSegments.computeIfAbsent(name, k -> new ArrayList<>());
+        if (view != null) {
+            segments.add(SeekableByteChannelHelper.memory(view));
         }
+        segments.add(sbcf);
+    }
+
+    private boolean hasAlternateView(final String name) {
+        return this.multipartAlternative.containsKey(name) || this.alternateViewSegments.containsKey(name);
+    }
+
+    /**
+     * Return a specified multipart alternative view of the data as a channel factory. A view held as an array is wrapped
+     * rather than copied.
+     *
+     * @param name the name of the view to retrieve
+     * @return factory for the alternate view data or null if none
+     */
+    @Nullable
+    @Override
+    public SeekableByteChannelFactory getAlternateViewChannelFactory(final String name) {
+        final List<SeekableByteChannelFactory> segments = this.alternateViewSegments.get(name);
+        if (segments != null) {
+            return concatenate(segments, 0, segments.size());
+        }
+        final byte[] view = this.multipartAlternative.get(name);
+        return view == null ? null : SeekableByteChannelHelper.memory(view);
+    }
+
+    /**
+     * Join segments in a balanced tree, so reads do not pass through one level per append
+     */
+    private static SeekableByteChannelFactory concatenate(final List<SeekableByteChannelFactory> segments, final int from, final int to) {
+        if (to - from == 1) {
+            return segments.get(from);
+        }
+        final int middle = (from + to) >>> 1;
+        return ConcatenateChannelFactory.create(concatenate(segments, from, middle), concatenate(segments, middle, to));
+    }
+
+    @Override
+    public void setAlternateViewChannelFactory(final String name, @Nullable final SeekableByteChannelFactory sbcf) {
+        this.multipartAlternative.remove(name);
+        if (sbcf == null) {
+            this.alternateViewSegments.remove(name);
+        } else {
+            final List<SeekableByteChannelFactory> segments = new ArrayList<>();
+            segments.add(sbcf);
+            this.alternateViewSegments.put(name, segments);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return an unmodifiable map of the views held as channels, ordered by name
+     */
+    @Override
+    public Map<String, SeekableByteChannelFactory> getAlternateViewChannelFactories() {
+        final Map<String, SeekableByteChannelFactory> views = new TreeMap<>();
+        for (final String name : this.alternateViewSegments.keySet()) {
+            views.put(name, getAlternateViewChannelFactory(name));
+        }
+        return Collections.unmodifiableMap(views);
     }
 
     /**
@@ -1242,6 +1349,7 @@ public class BaseDataObject implements Serializable, Cloneable, Remote, IBaseDat
      */
     @Override
     public void addAlternateView(final String name, @Nullable final byte[] data) {
+        this.alternateViewSegments.remove(name);
         if (data == null) {
             this.multipartAlternative.remove(name);
         } else {
@@ -1251,6 +1359,7 @@ public class BaseDataObject implements Serializable, Cloneable, Remote, IBaseDat
 
     @Override
     public void addAlternateView(final String name, @Nullable final byte[] data, final int offset, final int length) {
+        this.alternateViewSegments.remove(name);
         if (data == null || length <= 0) {
             this.multipartAlternative.remove(name);
         } else {
@@ -1267,17 +1376,23 @@ public class BaseDataObject implements Serializable, Cloneable, Remote, IBaseDat
      */
     @Override
     public Set<String> getAlternateViewNames() {
-        return new TreeSet<>(this.multipartAlternative.keySet());
+        final Set<String> names = new TreeSet<>(this.multipartAlternative.keySet());
+        names.addAll(this.alternateViewSegments.keySet());
+        return names;
     }
 
     /**
      * Get the alternate view map. WARNING: this implementation returns the actual map directly, no copy is made so the
-     * caller must be aware that modifications to the returned map are live.
+     * caller must be aware that modifications to the returned map are live. Any views held as channels are read into arrays
+     * first, prefer {@link #getAlternateViewChannelFactory(String)} for large views.
      *
      * @return an map of alternate views ordered by name, key = String, value = byte[]
      */
     @Override
     public Map<String, byte[]> getAlternateViews() {
+        for (final String name : new ArrayList<>(this.alternateViewSegments.keySet())) {
+            getAlternateView(name);
+        }
         return this.multipartAlternative;
     }
 
@@ -1348,6 +1463,10 @@ public class BaseDataObject implements Serializable, Cloneable, Remote, IBaseDat
         c.currentForm = new ArrayList<>(this.currentForm);
         c.history = new TransformHistory(this.history);
         c.multipartAlternative = new HashMap<>(this.multipartAlternative);
+        c.alternateViewSegments = new TreeMap<>();
+        for (final Map.Entry<String, List<SeekableByteChannelFactory>> entry : this.alternateViewSegments.entrySet()) {
+            c.alternateViewSegments.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
         c.priority = this.priority;
         c.creationTimestamp = this.creationTimestamp;
 
@@ -3,6 +3,9 @@ package emissary.core;
 import emissary.config.ConfigUtil;
 import emissary.config.Configurator;
 import emissary.pool.AgentPool;
+import emissary.util.ClassLookupCache;
+import emissary.util.Instantiator;
+import emissary.util.InstantiatorCache;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,8 +25,23 @@ public class DataObjectFactory {
     @SuppressWarnings("NonFinalStaticField")
     private static String clazz;
     @SuppressWarnings("NonFinalStaticField")
+    private static volatile Instantiators instantiators;
+    @SuppressWarnings("NonFinalStaticField")
     private static String extractedClazz;
 
+    /*
+     * Constructor signatures of the typed getInstance methods
+     */
+    private static final int NO_ARGS = 0;
+    private static final int FORM_AND_TYPE = 1;
+    private static final int FORM_AND_TLD = 2;
+    private static final int FORM_TYPE_AND_TLD = 3;
+    private static final Class<?>[][] SIGNATURES = {
+            {},
+            {byte[].class, String.class, String.class, String.class},
+            {byte[].class, String.class, String.class, IBaseDataObject.class},
+            {byte[].class, String.class, String.class, String.class, IBaseDataObject.class}};
+
     /*
      * Initialize our implementation details
      */
@@ -37,6 +55,42 @@ public class DataObjectFactory {
             clazz = DEFAULT_CLASS;
             extractedClazz = DEFAULT_EXTRACT_CLASS;
         }
+        instantiators = new Instantiators(clazz);
+    }
+
+    /**
+     * Instantiators for the typed getInstance methods, looked up on first use for one implementing class. The arguments of
+     * those methods have known types, so they skip the lookup by runtime argument types that {@link Factory} does.
+     */
+    private static final class Instantiators {
+        private final String className;
+        private final Instantiator[] bySignature = new Instantiator[SIGNATURES.length];
+
+        private Instantiators(final String className) {
+            this.className = className;
+        }
+
+        private Instantiator get(final int signature) {
+            Instantiator instantiator = bySignature[signature];
+            if (instantiator == null) {
+                try {
+                    instantiator = InstantiatorCache.lookup(ClassLookupCache.lookup(className), SIGNATURES[signature]);
+                } catch (ClassNotFoundException e) {
+                    logger.error("Could not find class", e);
+                    throw new AssertionError(e);
+                }
+                if (instantiator == null) {
+                    throw new AssertionError("failed to find suitable constructor for class " + className);
+                }
+                // Racing threads look up the same instantiator
+                bySignature[signature] = instantiator;
+            }
+            return instantiator;
+        }
+    }
+
+    private static IBaseDataObject create(final int signature, final Object... args) {
+        return (IBaseDataObject) Factory.create(instantiators.get(signature), args);
     }
 
     /**
@@ -53,6 +107,7 @@ public class DataObjectFactory {
      */
     public static void setImplementingClass(final String clazz) {
         DataObjectFactory.clazz = clazz;
+        DataObjectFactory.instantiators = new Instantiators(clazz);
     }
 
     /**
@@ -88,8 +143,7 @@ public class DataObjectFactory {
      * Get an instance of the configured DataObject impl
      */
     public static IBaseDataObject getInstance() {
-        final Object o = Factory.create(clazz);
-        return (IBaseDataObject) o;
+        return create(NO_ARGS);
     }
 
     /**
@@ -124,8 +178,7 @@ public class DataObjectFactory {
      * @return an IBDO with the payload, filename, top level document set with the file type and form set to the same value
      */
     public static IBaseDataObject getInstance(final byte[] payload, final String filename, final String fileTypeAndForm, IBaseDataObject tld) {
-        final Object o = Factory.create(clazz, payload, filename, fileTypeAndForm, tld);
-        return (IBaseDataObject) o;
+        return create(FORM_AND_TLD, payload, filename, fileTypeAndForm, tld);
     }
 
     /**
@@ -138,8 +191,7 @@ public class DataObjectFactory {
      * @return an IBDO with the payload, filename, file type, and form set
      */
     public static IBaseDataObject getInstance(final byte[] payload, final String filename, final String form, final String fileType) {
-        final Object o = Factory.create(clazz, payload, filename, form, fileType);
-        return (IBaseDataObject) o;
+        return create(FORM_AND_TYPE, payload, filename, form, fileType);
     }
 
     /**
@@ -154,8 +206,7 @@ public class DataObjectFactory {
      */
     public static IBaseDataObject getInstance(final byte[] payload, final String filename, final String form, final String fileType,
             IBaseDataObject tld) {
-        final Object o = Factory.create(clazz, payload, filename, form, fileType, tld);
-        return (IBaseDataObject) o;
+        return create(FORM_TYPE_AND_TLD, payload, filename, form, fileType, tld);
     }
 
     /* IExtractedRecord */
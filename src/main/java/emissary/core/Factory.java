@@ -7,21 +7,21 @@
 package emissary.core;
 
 import emissary.util.ClassLookupCache;
-import emissary.util.ConstructorLookupCache;
+import emissary.util.Instantiator;
+import emissary.util.InstantiatorCache;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
  * Factory.create() is one of the main methods that Emissary uses. This method simply constructs objects in the server
  * name space so they may be referred to. Since this implementation is intended to run on a single machine, the create()
- * method simply uses reflection (i.e. Class.forname() and Constructor.newInstance) to create the specified object.
+ * method simply looks up the class and a constructor for the argument types, which {@link InstantiatorCache} finds once
+ * for later objects of the same class.
  *
  * In the cases where a name (or handle) is supplied with the constructor arguments, the Namespace.bind method is called
  * to save a reference to the object with that name.
@@ -47,29 +47,41 @@ public class Factory {
      * @return The newly instantiated object. If it cannot instantiate, this throws some sort of Exception/Error.
      */
     public static Object create(final String className, final Object... args) {
-        logger.debug("Factory.create1({}, {})", className, Arrays.toString(args));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Factory.create1({}, {})", className, Arrays.toString(args));
+        }
+        final Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = args[i] == null ? null : args[i].getClass();
+        }
+        final Instantiator instantiator;
         try {
-            final Class<?> clazz = ClassLookupCache.lookup(className);
-            final List<Class<?>> types = new ArrayList<>();
-            for (Object o : args) {
-                if (o == null) {
-                    types.add(null);
-                } else {
-                    types.add(o.getClass());
-                }
-            }
-            logger.debug("checking:" + types);
-
-            final Constructor<?> constructor = ConstructorLookupCache.lookup(clazz, types.toArray(new Class<?>[0]));
-            if (constructor == null) {
-                logger.info("Failed to find constructor for args({}) types ({}) : {}", args.length, types.size(), types);
-                throw new AssertionError("failed to find suitable constructor for class " + className);
-            } else {
-                return constructor.newInstance(args);
-            }
+            instantiator = InstantiatorCache.lookup(ClassLookupCache.lookup(className), types);
         } catch (ClassNotFoundException e1) {
             logger.error("Could not find class", e1);
             throw new AssertionError(e1);
+        } catch (Throwable t) {
+            logger.error("Problem in factory", t);
+            throw new AssertionError(t);
+        }
+        if (instantiator == null) {
+            logger.info("Failed to find constructor for args({}) types ({}) : {}", args.length, types.length, Arrays.toString(types));
+            throw new AssertionError("failed to find suitable constructor for class " + className);
+        }
+        return create(instantiator, args);
+    }
+
+    /**
+     * Create an object with an instantiator from {@link InstantiatorCache}, failing the same way as the other create
+     * methods
+     *
+     * @param instantiator the constructor
+     * @param args the arguments to the constructor
+     * @return The newly instantiated object. If it cannot instantiate, this throws some sort of Exception/Error.
+     */
+    public static Object create(final Instantiator instantiator, final Object... args) {
+        try {
+            return instantiator.newInstance(args);
         } catch (InstantiationException e3) {
             logger.error("Could not instantiate", e3);
             throw new AssertionError(e3);
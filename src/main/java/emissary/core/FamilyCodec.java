@@ -0,0 +1,495 @@
+package emissary.core;
+
+import emissary.core.channels.SeekableByteChannelFactory;
+
+import jakarta.annotation.Nullable;
+import org.apache.commons.io.IOUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a family of payloads to a compact binary stream and reads them back, so the family can be worked on by a place
+ * in another server.
+ * <p>
+ * The data, header, footer, alternate views, current forms, transform history, metadata and the scalar attributes of
+ * each payload are carried. Metadata values keep their type when they are strings, byte arrays, booleans or boxed
+ * numbers; a family with metadata of any other type cannot be written, rather than having it come back changed.
+ * Extracted records and the internal id are not carried; payloads read into existing objects keep their own.
+ */
+public final class FamilyCodec {
+
+    /** Media type of a family written by {@link #write(List, DataOutputStream)} */
+    public static final String MEDIA_TYPE = "application/vnd.emissary.family";
+
+    /** Most payloads accepted in one family */
+    public static final int MAX_FAMILY_SIZE = 10_000;
+
+    private static final int VERSION = 2;
+
+    // type of each metadata value
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BYTES = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte BYTE = 4;
+    private static final byte SHORT = 5;
+    private static final byte INTEGER = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+
+    private FamilyCodec() {}
+
+    /**
+     * Write a family of payloads
+     *
+     * @param family the payloads
+     * @param out the stream to write to
+     * @throws IOException if the family is too large, has metadata of a type that is not carried, or cannot be written
+     */
+    public static void write(final List<IBaseDataObject> family, final DataOutputStream out) throws IOException {
+        if (family.size() > MAX_FAMILY_SIZE) {
+            throw new IOException("May not write more than " + MAX_FAMILY_SIZE + " payloads (saw: " + family.size() + ")");
+        }
+        out.writeInt(VERSION);
+        out.writeInt(family.size());
+        for (final IBaseDataObject d : family) {
+            writePayload(d, out);
+        }
+    }
+
+    /**
+     * Read a family of payloads into new objects
+     *
+     * @param in the stream to read from
+     * @param frameSize the most bytes the family may take, such as the declared length of the message it came in
+     * @return the payloads
+     * @throws IOException if the stream is not a family, is larger than the frame, or cannot be read
+     */
+    public static List<IBaseDataObject> read(final DataInputStream in, final long frameSize) throws IOException {
+        return read(in, new ArrayList<>(), frameSize);
+    }
+
+    /**
+     * Read a family of payloads, replacing the state of existing objects in order and creating new objects for any extra
+     * payloads in the stream. The whole family is read before any existing object is changed, so a stream that fails part
+     * way through leaves them as they were.
+     *
+     * @param in the stream to read from
+     * @param existing payloads to read into
+     * @param frameSize the most bytes the family may take, such as the declared length of the message it came in
+     * @return the payloads read beyond the existing ones, such as children sprouted by a remote place
+     * @throws IOException if the stream is not a family, has fewer payloads than the existing list, is larger than the
+     *         frame, or cannot be read
+     */
+    public static List<IBaseDataObject> read(final DataInputStream in, final List<IBaseDataObject> existing, final long frameSize)
+            throws IOException {
+        final Frame frame = new Frame(in, frameSize);
+        final int version = frame.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unknown family version " + version);
+        }
+        final int count = frame.readInt();
+        if (count < existing.size() || count > MAX_FAMILY_SIZE) {
+            throw new IOException("Bad family size " + count + " for " + existing.size() + " existing payloads");
+        }
+        final List<IBaseDataObject> read = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            read.add(readPayload(frame));
+        }
+        for (int i = 0; i < existing.size(); i++) {
+            replaceState(existing.get(i), read.get(i));
+        }
+        return new ArrayList<>(read.subList(existing.size(), count));
+    }
+
+    private static void writePayload(final IBaseDataObject d, final DataOutputStream out) throws IOException {
+        writeString(d.getFilename(), out);
+        writeString(d.getFontEncoding(), out);
+        writeString(d.getClassification(), out);
+        writeString(d.getBroken(), out);
+        writeString(d.getHeaderEncoding(), out);
+        writeString(d.getId(), out);
+        writeString(d.getWorkBundleId(), out);
+        writeString(d.getTransactionId(), out);
+        writeString(d.getProcessingError(), out);
+        out.writeBoolean(d.isOutputable());
+        out.writeInt(d.getPriority());
+        final Instant created = d.getCreationTimestamp();
+        out.writeLong(created.getEpochSecond());
+        out.writeInt(created.getNano());
+        out.writeInt(d.getNumChildren());
+        out.writeInt(d.getNumSiblings());
+        out.writeInt(d.getBirthOrder());
+
+        final List<String> forms = d.getAllCurrentForms();
+        out.writeInt(forms.size());
+        for (final String form : forms) {
+            writeString(form, out);
+        }
+
+        final List<TransformHistory.History> history = d.getTransformHistory().getHistory();
+        out.writeInt(history.size());
+        for (final TransformHistory.History h : history) {
+            writeString(h.getKey(), out);
+            out.writeInt(h.getCoordinated().size());
+            for (final String c : h.getCoordinated()) {
+                writeString(c, out);
+            }
+        }
+
+        final Map<String, Collection<Object>> params = d.getParameters();
+        out.writeInt(params.size());
+        for (final Map.Entry<String, Collection<Object>> entry : params.entrySet()) {
+            writeString(entry.getKey(), out);
+            out.writeInt(entry.getValue().size());
+            for (final Object value : entry.getValue()) {
+                writeValue(entry.getKey(), value, out);
+            }
+        }
+
+        writeBytes(d.data(), out);
+        writeBytes(d.header(), out);
+        writeBytes(d.footer(), out);
+        final Set<String> views = d.getAlternateViewNames();
+        out.writeInt(views.size());
+        for (final String view : views) {
+            writeString(view, out);
+            writeChannel(d.getAlternateViewChannelFactory(view), out);
+        }
+    }
+
+    private static IBaseDataObject readPayload(final Frame in) throws IOException {
+        final IBaseDataObject d = DataObjectFactory.getInstance();
+        final String filename = readString(in);
+        if (filename != null) {
+            d.setFilename(filename);
+        }
+        d.setFontEncoding(readString(in));
+        d.setClassification(readString(in));
+        d.setBroken(readString(in));
+        d.setHeaderEncoding(readString(in));
+        d.setId(readString(in));
+        d.setWorkBundleId(readString(in));
+        d.setTransactionId(readString(in));
+        addNewProcessingErrors(d, readString(in));
+        d.setOutputable(in.readBoolean());
+        d.setPriority(in.readInt());
+        d.setCreationTimestamp(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+        d.setNumChildren(in.readInt());
+        d.setNumSiblings(in.readInt());
+        d.setBirthOrder(in.readInt());
+
+        final int forms = readCount(in);
+        for (int i = 0; i < forms; i++) {
+            d.enqueueCurrentForm(readString(in));
+        }
+
+        final TransformHistory history = new TransformHistory();
+        final int steps = readCount(in);
+        for (int i = 0; i < steps; i++) {
+            history.append(readString(in));
+            final int coordinated = readCount(in);
+            for (int j = 0; j < coordinated; j++) {
+                history.append(readString(in), true);
+            }
+        }
+        d.setHistory(history);
+
+        final int params = readCount(in);
+        for (int i = 0; i < params; i++) {
+            final String key = readString(in);
+            final int size = readCount(in, 1);
+            final List<Object> values = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                values.add(readValue(in));
+            }
+            d.putParameter(key, values);
+        }
+
+        final byte[] data = readBytes(in);
+        if (data != null) {
+            d.setData(data);
+        }
+        d.setHeader(readBytes(in));
+        d.setFooter(readBytes(in));
+        final int views = readCount(in);
+        for (int i = 0; i < views; i++) {
+            d.addAlternateView(readString(in), readBytes(in));
+        }
+        return d;
+    }
+
+    /**
+     * Replace the state of an existing payload with the state of one just read
+     */
+    private static void replaceState(final IBaseDataObject d, final IBaseDataObject from) {
+        if (from.getFilename() != null) {
+            d.setFilename(from.getFilename());
+        }
+        d.setFontEncoding(from.getFontEncoding());
+        d.setClassification(from.getClassification());
+        // setting broken adds to what is there
+        d.setBroken(null);
+        d.setBroken(from.getBroken());
+        d.setHeaderEncoding(from.getHeaderEncoding());
+        d.setId(from.getId());
+        d.setWorkBundleId(from.getWorkBundleId());
+        d.setTransactionId(from.getTransactionId());
+        addNewProcessingErrors(d, from.getProcessingError());
+        d.setOutputable(from.isOutputable());
+        d.setPriority(from.getPriority());
+        d.setCreationTimestamp(from.getCreationTimestamp());
+        d.setNumChildren(from.getNumChildren());
+        d.setNumSiblings(from.getNumSiblings());
+        d.setBirthOrder(from.getBirthOrder());
+
+        while (d.currentFormSize() > 0) {
+            d.popCurrentForm();
+        }
+        for (final String form : from.getAllCurrentForms()) {
+            d.enqueueCurrentForm(form);
+        }
+        d.setHistory(from.getTransformHistory());
+
+        d.clearParameters();
+        d.putParameters(from.getParameters());
+
+        final byte[] data = from.data();
+        if (data == null) {
+            d.clearData();
+        } else {
+            d.setData(data);
+        }
+        d.setHeader(from.header());
+        d.setFooter(from.footer());
+        for (final String name : new ArrayList<>(d.getAlternateViewNames())) {
+            d.addAlternateView(name, null);
+        }
+        for (final String name : from.getAlternateViewNames()) {
+            d.addAlternateView(name, from.getAlternateView(name));
+        }
+    }
+
+    /**
+     * Processing errors can only be added to, so add the ones that are not already on the payload
+     */
+    private static void addNewProcessingErrors(final IBaseDataObject d, @Nullable final String errors) {
+        if (errors == null) {
+            return;
+        }
+        final String existing = d.getProcessingError();
+        final String added = existing != null && errors.startsWith(existing) ? errors.substring(existing.length()) : errors;
+        for (final String error : added.split("\n")) {
+            if (!error.isEmpty()) {
+                d.addProcessingError(error);
+            }
+        }
+    }
+
+    /**
+     * Each counted item takes at least a length, so a count that would not fit in the rest of the frame is bad
+     */
+    private static int readCount(final Frame in) throws IOException {
+        return readCount(in, Integer.BYTES);
+    }
+
+    private static int readCount(final Frame in, final int itemBytes) throws IOException {
+        final int count = in.readInt();
+        if (count < 0 || (long) count * itemBytes > in.remaining) {
+            throw new IOException("Bad count " + count);
+        }
+        return count;
+    }
+
+    private static void writeValue(final String key, @Nullable final Object value, final DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes((byte[]) value, out);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else {
+            throw new IOException("Cannot write metadata " + key + " of type " + value.getClass().getName());
+        }
+    }
+
+    @Nullable
+    private static Object readValue(final Frame in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case BYTES:
+                return readBytes(in);
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            default:
+                throw new IOException("Unknown metadata type " + type);
+        }
+    }
+
+    private static void writeString(@Nullable final String s, final DataOutputStream out) throws IOException {
+        writeBytes(s == null ? null : s.getBytes(StandardCharsets.UTF_8), out);
+    }
+
+    @Nullable
+    private static String readString(final Frame in) throws IOException {
+        final byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(@Nullable final byte[] bytes, final DataOutputStream out) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Write the data of a channel the same way as {@link #writeBytes(byte[], DataOutputStream)}, without reading it all
+     * onto the heap first
+     */
+    private static void writeChannel(@Nullable final SeekableByteChannelFactory sbcf, final DataOutputStream out) throws IOException {
+        if (sbcf == null) {
+            out.writeInt(-1);
+            return;
+        }
+        try (SeekableByteChannel sbc = sbcf.create(); InputStream in = Channels.newInputStream(sbc)) {
+            final long size = sbc.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Alternate view of " + size + " bytes is too large to encode");
+            }
+            out.writeInt((int) size);
+            if (IOUtils.copyLarge(in, out, 0, size) != size) {
+                throw new IOException("Alternate view ended before its size of " + size + " bytes");
+            }
+        }
+    }
+
+    @Nullable
+    private static byte[] readBytes(final Frame in) throws IOException {
+        final int length = in.readInt();
+        if (length < -1) {
+            throw new IOException("Bad length " + length);
+        }
+        if (length == -1) {
+            return null;
+        }
+        return in.readFully(length);
+    }
+
+    /**
+     * The stream being read and how many bytes of the frame are left, so no length read from the stream can make us
+     * allocate more than the peer could have sent
+     */
+    private static final class Frame {
+        private final DataInputStream in;
+        private long remaining;
+
+        Frame(final DataInputStream in, final long frameSize) {
+            this.in = in;
+            this.remaining = frameSize;
+        }
+
+        int readInt() throws IOException {
+            take(Integer.BYTES);
+            return this.in.readInt();
+        }
+
+        long readLong() throws IOException {
+            take(Long.BYTES);
+            return this.in.readLong();
+        }
+
+        boolean readBoolean() throws IOException {
+            take(1);
+            return this.in.readBoolean();
+        }
+
+        byte readByte() throws IOException {
+            take(Byte.BYTES);
+            return this.in.readByte();
+        }
+
+        short readShort() throws IOException {
+            take(Short.BYTES);
+            return this.in.readShort();
+        }
+
+        float readFloat() throws IOException {
+            take(Float.BYTES);
+            return this.in.readFloat();
+        }
+
+        double readDouble() throws IOException {
+            take(Double.BYTES);
+            return this.in.readDouble();
+        }
+
+        byte[] readFully(final int length) throws IOException {
+            take(length);
+            final byte[] bytes = new byte[length];
+            this.in.readFully(bytes);
+            return bytes;
+        }
+
+        private void take(final long bytes) throws IOException {
+            if (bytes > this.remaining) {
+                throw new IOException("Need " + bytes + " bytes but only " + this.remaining + " are left in the frame");
+            }
+            this.remaining -= bytes;
+        }
+    }
+}
@@ -188,6 +188,7 @@ public class HDMobileAgent extends MobileAgent {
         int loopCount = 0;
         boolean nextKeyRecorded = true;
         boolean controlError = false;
+        boolean processedRemotely = false;
 
         while (currentPlace != null && newEntry != null && mypayload != null) {
             // One based loop counter
@@ -206,7 +207,7 @@ public class HDMobileAgent extends MobileAgent {
             // First time in, we just have the pickup place where we started
             // our mission. We dont process there, just use it to call through
             // to the directory, so skip the processing if this is true
-            if ((loopCount > 1 || getProcessFirstPlace()) && !controlError) {
+            if ((loopCount > 1 || getProcessFirstPlace()) && !controlError && !processedRemotely) {
                 // If we are at IO phase, add them all since the deferrals
                 // below should make everyone ready to drop off at the same time
                 if ("IO".equals(currentPlace.getDirectoryEntry().getServiceType())) {
@@ -268,6 +269,7 @@ public class HDMobileAgent extends MobileAgent {
 
             // Where to go next...
             controlError = false;
+            processedRemotely = false;
             newEntry = getNextKey(currentPlace, mypayload);
             nextKeyRecorded = false;
 
@@ -362,6 +364,16 @@ public class HDMobileAgent extends MobileAgent {
             recordHistory(newEntry, mypayload);
             nextKeyRecorded = true;
 
+            // Have the peer do the work and choose the next place from here
+            final List<IBaseDataObject> remoteSprouts = atRemotePlace(newEntry, Collections.singletonList(mypayload), true);
+            if (remoteSprouts != null) {
+                if (!remoteSprouts.isEmpty()) {
+                    addPayload(remoteSprouts);
+                }
+                processedRemotely = true;
+                continue;
+            }
+
             controlError = true;
             if (!KeyManipulator.isKeyComplete(mypayload.currentForm())) {
                 mypayload.replaceCurrentForm(ERROR_FORM);
@@ -398,18 +410,23 @@ public class HDMobileAgent extends MobileAgent {
     /**
      * Do work now that we have arrived at the specified place
      * 
-     * @param place the place we are asking to work for us
+     * @param placeArg the place we are asking to work for us, or to find an alternate for when it is full
      * @param payloadListArg list of IBaseDataObject for the place to operate on
      * @return list of &quot;sprouted&quot; payloads
      */
     @SuppressWarnings("MemberName")
-    protected List<IBaseDataObject> atPlaceHD(final IServiceProviderPlace place, final List<IBaseDataObject> payloadListArg) {
+    protected List<IBaseDataObject> atPlaceHD(final IServiceProviderPlace placeArg, final List<IBaseDataObject> payloadListArg) {
+        List<IBaseDataObject> ret = Collections.emptyList();
+
+        final Admitted admitted = admit(placeArg, payloadListArg);
+        if (admitted == null) {
+            return ret;
+        }
+        final IServiceProviderPlace place = admitted.place;
         MDC.put(MDCConstants.SERVICE_LOCATION, place.toString());
         logger.debug("In atPlaceHD {} with {} payload items", place, payloadListArg.size());
 
-        List<IBaseDataObject> ret = Collections.emptyList();
-
-        try (TimedResource tr = resourceWatcherStart(place)) {
+        try (admitted; TimedResource tr = resourceWatcherStart(place)) {
             assert tr != null; // to silence an unused resource warning
 
             // Process and get back a list of sprouted payloads
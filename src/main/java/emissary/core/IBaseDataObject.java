@@ -1,6 +1,7 @@
 package emissary.core;
 
 import emissary.core.channels.SeekableByteChannelFactory;
+import emissary.core.channels.SeekableByteChannelHelper;
 import emissary.directory.DirectoryEntry;
 
 import jakarta.annotation.Nullable;
@@ -8,6 +9,7 @@ import org.apache.commons.collections4.CollectionUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Collection;
@@ -550,7 +552,7 @@ public interface IBaseDataObject {
      * @param name the name of the new view
      * @param data the byte array of data for the view
      */
-    void addAlternateView(String name, byte[] data);
+    void addAlternateView(String name, @Nullable byte[] data);
 
     /**
      * Add a multipart alternative view of the data
@@ -580,6 +582,62 @@ public interface IBaseDataObject {
      */
     void appendAlternateView(String name, byte[] data, int offset, int length);
 
+    /**
+     * Append the data of a channel factory to a multipart alternative view of the data, without reading it onto the heap
+     * 
+     * @param name the name of the view
+     * @param sbcf the factory for the data to append
+     */
+    default void appendAlternateView(final String name, final SeekableByteChannelFactory sbcf) {
+        appendAlternateView(name, readAlternateView(sbcf));
+    }
+
+    /**
+     * Return a specified multipart alternative view of the data as a channel factory
+     * 
+     * @param name the name of the view to retrieve
+     * @return factory for the alternate view data, or null if none
+     */
+    @Nullable
+    default SeekableByteChannelFactory getAlternateViewChannelFactory(final String name) {
+        final byte[] view = getAlternateView(name);
+        return view == null ? null : SeekableByteChannelHelper.memory(view);
+    }
+
+    /**
+     * Add a multipart alternative view of the data held in a channel, such as a file or off-heap memory, rather than a byte
+     * array
+     * 
+     * @param name the name of the new view
+     * @param sbcf the factory for the data of the view, or null to remove the view
+     */
+    default void setAlternateViewChannelFactory(final String name, @Nullable final SeekableByteChannelFactory sbcf) {
+        addAlternateView(name, sbcf == null ? null : readAlternateView(sbcf));
+    }
+
+    /**
+     * Get the alternate views that are held in channels rather than byte arrays
+     * 
+     * @return map of alternate views, key = String, value = SeekableByteChannelFactory
+     */
+    default Map<String, SeekableByteChannelFactory> getAlternateViewChannelFactories() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Read the data of a channel factory into an array, for implementations that only hold views as arrays
+     *
+     * @param sbcf the factory for the data of the view
+     * @return the data of the view
+     */
+    private static byte[] readAlternateView(final SeekableByteChannelFactory sbcf) {
+        try {
+            return SeekableByteChannelHelper.getByteArrayFromChannel(sbcf, BaseDataObject.MAX_BYTE_ARRAY_SIZE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Get the set of alt view names for new foreach loops
      * 
@@ -11,12 +11,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 import java.util.stream.StreamSupport;
 
@@ -74,8 +78,15 @@ public final class IBaseDataObjectHelper {
         }
         bdo.setHistory(iBaseDataObject.getTransformHistory());
         bdo.putParameters(iBaseDataObject.getParameters());
-        for (final Map.Entry<String, byte[]> entry : iBaseDataObject.getAlternateViews().entrySet()) {
-            bdo.addAlternateView(entry.getKey(), entry.getValue());
+        // views held in channels are shared as channels rather than read onto the heap
+        final Map<String, SeekableByteChannelFactory> channelViews = iBaseDataObject.getAlternateViewChannelFactories();
+        for (final String name : iBaseDataObject.getAlternateViewNames()) {
+            final SeekableByteChannelFactory view = channelViews.get(name);
+            if (view != null) {
+                bdo.setAlternateViewChannelFactory(name, view);
+            } else {
+                bdo.addAlternateView(name, iBaseDataObject.getAlternateView(name));
+            }
         }
         bdo.setPriority(iBaseDataObject.getPriority());
         bdo.setCreationTimestamp(iBaseDataObject.getCreationTimestamp());
@@ -149,41 +160,8 @@ public final class IBaseDataObjectHelper {
         Validate.notNull(placeKey, "Required: placeKey not null");
         Validate.notNull(kffDataObjectHandler, "Required: kffDataObjectHandler not null");
 
-        // Copy over the classification
-        if (parentIBaseDataObject.getClassification() != null) {
-            childIBaseDataObject.setClassification(parentIBaseDataObject.getClassification());
-        }
-
-        // And some other things we configure to be always copied
-        for (final String meta : alwaysCopyMetadataKeys) {
-            final List<Object> parentVals = parentIBaseDataObject.getParameter(meta);
-
-            if (parentVals != null) {
-                childIBaseDataObject.putParameter(meta, parentVals);
-            }
-        }
-
-        // Copy over the transform history up to this point
-        childIBaseDataObject.setHistory(parentIBaseDataObject.getTransformHistory());
-        childIBaseDataObject.appendTransformHistory(KeyManipulator.makeSproutKey(placeKey));
-        try {
-            childIBaseDataObject.putParameter(SessionParser.ORIG_DOC_SIZE_KEY,
-                    Long.toString(childIBaseDataObject.getChannelSize()));
-        } catch (IOException ignored) {
-            // Do not add the ORIG_DOC_SIZE_KEY parameter.
-        }
-
-        // start over with no FILETYPE if so directed
-        if (nullifyFileType) {
-            childIBaseDataObject.setFileType(null);
-        }
-
-        // Set up the proper KFF/HASH information for the child
-        // Change parent hit so it doesn't look like hit on the child
-        KffDataObjectHandler.parentToChild(childIBaseDataObject);
-
-        // Hash the new child data, overwrites parent hashes if any
-        kffDataObjectHandler.hash(childIBaseDataObject, useSbcf);
+        new ParentInformation(parentIBaseDataObject, alwaysCopyMetadataKeys, placeKey).addTo(childIBaseDataObject, nullifyFileType,
+                kffDataObjectHandler, useSbcf);
     }
 
     /**
@@ -223,20 +201,163 @@ public final class IBaseDataObjectHelper {
         Validate.notNull(placeKey, "Required: placeKey not null");
         Validate.notNull(kffDataObjectHandler, "Required: kffDataObjectHandler not null");
 
-        if (children != null) {
-            int birthOrder = 1;
+        addParentInformationToChildren(parent, children, nullifyFileType, alwaysCopyMetadataKeys, placeKey, kffDataObjectHandler, useSbcf,
+                null);
+    }
+
+    /**
+     * Used to propagate needed parent information to sprouted children, optionally hashing and annotating the children on a
+     * fork-join pool. Birth order follows the order of the list however the children are processed. The parent is read once
+     * before any child is touched and the values copied down are shared by all of the children. The children are hashed as
+     * one batch, or one batch for each task on the pool, so the KFF filters can look them up together.
+     *
+     * @param parent the source of parameters to be copied
+     * @param children the destination for parameters to be copied
+     * @param nullifyFileType if true the child fileType is nullified after the copy
+     * @param alwaysCopyMetadataKeys set of metadata keys to always copy from parent to child.
+     * @param placeKey the place key to be added to the transform history.
+     * @param kffDataObjectHandler the kffDataObjectHandler to use to create the kff hashes.
+     * @param useSbcf chooses whether to use the SeekableByteChannelFactory or byte[] from the IBDO.
+     * @param pool pool to process the children on, or null to process them one at a time on the calling thread
+     */
+    public static void addParentInformationToChildren(final IBaseDataObject parent, @Nullable final List<IBaseDataObject> children,
+            final boolean nullifyFileType, final Set<String> alwaysCopyMetadataKeys, final String placeKey,
+            final KffDataObjectHandler kffDataObjectHandler, final boolean useSbcf, @Nullable final ForkJoinPool pool) {
+        Validate.notNull(parent, "Required: parent not null");
+        Validate.notNull(alwaysCopyMetadataKeys, "Required: alwaysCopyMetadataKeys not null");
+        Validate.notNull(placeKey, "Required: placeKey not null");
+        Validate.notNull(kffDataObjectHandler, "Required: kffDataObjectHandler not null");
+
+        if (children == null) {
+            return;
+        }
+
+        final int totalNumSiblings = children.size();
+        final List<IBaseDataObject> live = new ArrayList<>(totalNumSiblings);
+        for (final IBaseDataObject child : children) {
+            if (child == null) {
+                LOGGER.warn("addParentInformation with null child");
+                continue;
+            }
+            live.add(child);
+            child.setBirthOrder(live.size());
+            child.setNumSiblings(totalNumSiblings);
+        }
+
+        final ParentInformation info = new ParentInformation(parent, alwaysCopyMetadataKeys, placeKey);
+        if (pool == null || pool.getParallelism() < 2 || live.size() < 2) {
+            for (final IBaseDataObject child : live) {
+                info.annotate(child, nullifyFileType);
+            }
+            // Hash the children together so the filters can look them all up at once
+            kffDataObjectHandler.hash(live, useSbcf);
+        } else {
+            final int leafSize = Math.max(1, live.size() / (pool.getParallelism() * 4));
+            pool.invoke(new ChildrenTask(info, live, 0, live.size(), leafSize, nullifyFileType, kffDataObjectHandler, useSbcf));
+        }
+    }
+
+    /**
+     * What a sprouted child takes from its parent, read from the parent once so that any number of children can be
+     * annotated without going back to it
+     */
+    private static final class ParentInformation {
+        @Nullable
+        private final String classification;
+        private final Map<String, List<Object>> alwaysCopied = new LinkedHashMap<>();
+        private final TransformHistory history;
+        private final String sproutKey;
+
+        ParentInformation(final IBaseDataObject parent, final Set<String> alwaysCopyMetadataKeys, final String placeKey) {
+            this.classification = parent.getClassification();
+            for (final String meta : alwaysCopyMetadataKeys) {
+                final List<Object> parentVals = parent.getParameter(meta);
+                if (parentVals != null) {
+                    this.alwaysCopied.put(meta, Collections.unmodifiableList(new ArrayList<>(parentVals)));
+                }
+            }
+            this.history = new TransformHistory(parent.getTransformHistory());
+            this.sproutKey = KeyManipulator.makeSproutKey(placeKey);
+        }
+
+        void addTo(final IBaseDataObject child, final boolean nullifyFileType, final KffDataObjectHandler kffDataObjectHandler,
+                final boolean useSbcf) {
+            annotate(child, nullifyFileType);
+
+            // Hash the new child data, overwrites parent hashes if any
+            kffDataObjectHandler.hash(child, useSbcf);
+        }
+
+        void annotate(final IBaseDataObject child, final boolean nullifyFileType) {
+            // Copy over the classification
+            if (classification != null) {
+                child.setClassification(classification);
+            }
+
+            // And some other things we configure to be always copied
+            for (final Map.Entry<String, List<Object>> entry : alwaysCopied.entrySet()) {
+                child.putParameter(entry.getKey(), entry.getValue());
+            }
+
+            // Copy over the transform history up to this point
+            child.setHistory(history);
+            child.appendTransformHistory(sproutKey);
+            try {
+                child.putParameter(SessionParser.ORIG_DOC_SIZE_KEY, Long.toString(child.getChannelSize()));
+            } catch (IOException ignored) {
+                // Do not add the ORIG_DOC_SIZE_KEY parameter.
+            }
+
+            // start over with no FILETYPE if so directed
+            if (nullifyFileType) {
+                child.setFileType(null);
+            }
+
+            // Set up the proper KFF/HASH information for the child
+            // Change parent hit so it doesn't look like hit on the child
+            KffDataObjectHandler.parentToChild(child);
+        }
+    }
+
+    /**
+     * Annotate a range of children, splitting it until it is no larger than the leaf size
+     */
+    private static final class ChildrenTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ParentInformation info;
+        private final transient List<IBaseDataObject> children;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final boolean nullifyFileType;
+        private final transient KffDataObjectHandler kffDataObjectHandler;
+        private final boolean useSbcf;
+
+        ChildrenTask(final ParentInformation info, final List<IBaseDataObject> children, final int from, final int to, final int leafSize,
+                final boolean nullifyFileType, final KffDataObjectHandler kffDataObjectHandler, final boolean useSbcf) {
+            this.info = info;
+            this.children = children;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.nullifyFileType = nullifyFileType;
+            this.kffDataObjectHandler = kffDataObjectHandler;
+            this.useSbcf = useSbcf;
+        }
 
-            final int totalNumSiblings = children.size();
-            for (final IBaseDataObject child : children) {
-                if (child == null) {
-                    LOGGER.warn("addParentInformation with null child");
-                    continue;
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                for (int i = from; i < to; i++) {
+                    info.annotate(children.get(i), nullifyFileType);
                 }
-                addParentInformationToChild(parent, child, nullifyFileType, alwaysCopyMetadataKeys, placeKey,
-                        kffDataObjectHandler, useSbcf);
-                child.setBirthOrder(birthOrder++);
-                child.setNumSiblings(totalNumSiblings);
+                kffDataObjectHandler.hash(children.subList(from, to), useSbcf);
+                return;
             }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ChildrenTask(info, children, from, mid, leafSize, nullifyFileType, kffDataObjectHandler, useSbcf),
+                    new ChildrenTask(info, children, mid, to, leafSize, nullifyFileType, kffDataObjectHandler, useSbcf));
         }
     }
 
@@ -2,6 +2,8 @@ package emissary.core;
 
 import emissary.config.ConfigUtil;
 import emissary.config.Configurator;
+import emissary.pool.AgentPool;
+import emissary.pool.MoveSpool;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
@@ -20,6 +22,7 @@ import com.codahale.metrics.jvm.FileDescriptorRatioGauge;
 import com.codahale.metrics.jvm.GarbageCollectorMetricSet;
 import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
 import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +32,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
 /**
  * Manages the interactions with CodaHale's Metrics package, including configuration
@@ -130,6 +134,38 @@ public class MetricsManager {
         } else {
             logger.debug("JVM Metrics are disabled");
         }
+        initPoolMetrics();
+    }
+
+    /**
+     * Publish the agent pool and move spool state. They are looked up on each read since they may be created after this
+     * manager or replaced, and are left out while they are not bound.
+     */
+    protected void initPoolMetrics() {
+        this.metrics.register("agentpool.active", (Gauge<Integer>) () -> withAgentPool(AgentPool::getNumActive));
+        this.metrics.register("agentpool.idle", (Gauge<Integer>) () -> withAgentPool(AgentPool::getNumIdle));
+        this.metrics.register("agentpool.max", (Gauge<Integer>) () -> withAgentPool(AgentPool::getMaxTotal));
+        this.metrics.register("movespool.depth", (Gauge<Integer>) () -> withMoveSpool(MoveSpool::getCurrentSpoolSize));
+        this.metrics.register("movespool.highwatermark", (Gauge<Integer>) () -> withMoveSpool(MoveSpool::getHighWaterMark));
+    }
+
+    @Nullable
+    private static Integer withAgentPool(final ToIntFunction<AgentPool> f) {
+        try {
+            return f.applyAsInt(AgentPool.lookup());
+        } catch (NamespaceException ex) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Integer withMoveSpool(final ToIntFunction<MoveSpool> f) {
+        try {
+            // not MoveSpool.lookup(), which counts its callers
+            return f.applyAsInt((MoveSpool) Namespace.lookup(MoveSpool.NAMESPACE_NAME));
+        } catch (NamespaceException ex) {
+            return null;
+        }
     }
 
     protected void initJmxReporter() {
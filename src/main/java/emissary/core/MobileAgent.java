@@ -4,9 +4,11 @@ import emissary.directory.DirectoryEntry;
 import emissary.directory.DirectoryPlace;
 import emissary.directory.KeyManipulator;
 import emissary.log.MDCConstants;
+import emissary.place.AdmissionControl;
 import emissary.place.CoordinationPlace;
 import emissary.place.EmptyFormPlace;
 import emissary.place.IServiceProviderPlace;
+import emissary.pool.AffinityScheduler;
 import emissary.pool.AgentPool;
 import emissary.pool.AgentThreadGroup;
 import emissary.util.JMXUtil;
@@ -18,6 +20,8 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
@@ -151,6 +155,7 @@ public abstract class MobileAgent implements IMobileAgent, MobileAgentMBean {
                     logger.debug("Starting work for {}", agentId());
                     MDC.put(MDCConstants.SHORT_NAME, getPayload().shortName());
                     try {
+                        AffinityScheduler.releaseIfMoved();
                         agentControl(this.arrivalPlace);
                     } catch (Throwable throwable) {
                         logger.error("Problem with agent", throwable);
@@ -269,6 +274,7 @@ public abstract class MobileAgent implements IMobileAgent, MobileAgentMBean {
         final IBaseDataObject mypayload = getPayload();
         int loopCount = 0;
         boolean controlError = false;
+        boolean processedRemotely = false;
 
         while (currentPlace != null && newEntry != null && mypayload != null && !this.timeToQuit) {
             // One based counter
@@ -278,12 +284,13 @@ public abstract class MobileAgent implements IMobileAgent, MobileAgentMBean {
             // our mission. We dont process there, just use it to call through
             // to the directory, so skip the processing. See the difference
             // between the go() and arrive() methods for details
-            if ((loopCount > 1 || getProcessFirstPlace()) && !controlError) {
+            if ((loopCount > 1 || getProcessFirstPlace()) && !controlError && !processedRemotely) {
                 atPlace(currentPlace, mypayload);
             }
 
             // Choose next place
             controlError = false;
+            processedRemotely = false;
             newEntry = getNextKey(currentPlace, mypayload);
 
             // Nothing to do, bail out,
@@ -308,6 +315,12 @@ public abstract class MobileAgent implements IMobileAgent, MobileAgentMBean {
                 continue;
             }
 
+            // A remote place, have the peer do the work and choose the next place from here
+            if (atRemotePlace(newEntry, Collections.singletonList(mypayload), false) != null) {
+                processedRemotely = true;
+                continue;
+            }
+
             controlError = true;
             if (++this.moveErrorsOccurred > this.maxMoveErrors || this.payload.transformHistory().size() > this.maxItinerarySteps) {
                 logger.error("Too many move errors, giving up");
@@ -344,13 +357,18 @@ public abstract class MobileAgent implements IMobileAgent, MobileAgentMBean {
     /**
      * Do work now that we have arrived at the specified place
      *
-     * @param place the place we are asking to work for us
+     * @param placeArg the place we are asking to work for us, or to find an alternate for when it is full
      * @param payloadArg the data for the place to operate on
      */
-    protected void atPlace(final IServiceProviderPlace place, final IBaseDataObject payloadArg) {
+    protected void atPlace(final IServiceProviderPlace placeArg, final IBaseDataObject payloadArg) {
+        final Admitted admitted = admit(placeArg, Collections.singletonList(payloadArg));
+        if (admitted == null) {
+            return;
+        }
+        final IServiceProviderPlace place = admitted.place;
         logger.debug("In atPlace {} with {}", place, payloadArg.shortName());
 
-        try (TimedResource timer = resourceWatcherStart(place)) {
+        try (admitted; TimedResource timer = resourceWatcherStart(place)) {
             assert timer != null; // to silence an unused resource warning
 
             this.lastPlaceProcessed = place.getDirectoryEntry().getKey();
@@ -378,6 +396,162 @@ public abstract class MobileAgent implements IMobileAgent, MobileAgentMBean {
         }
     }
 
+    /**
+     * The place an agent was let into and the permit to close when the place returns
+     */
+    protected static class Admitted implements AutoCloseable {
+        protected final IServiceProviderPlace place;
+        @Nullable
+        private final AdmissionControl.Permit permit;
+
+        protected Admitted(final IServiceProviderPlace place, @Nullable final AdmissionControl.Permit permit) {
+            this.place = place;
+            this.permit = permit;
+        }
+
+        @Override
+        public void close() {
+            if (this.permit != null) {
+                this.permit.close();
+            }
+        }
+    }
+
+    /**
+     * Get into a place that limits how many agents may be inside it. When the place stays full the payloads go to a local
+     * place providing the same service that has room, wait again, or go to error handling, as the place is configured.
+     *
+     * @param place the place the payloads were routed to
+     * @param payloads the payloads to process there
+     * @return the place to process the payloads at and its permit, or null if the payloads were sent to error handling
+     */
+    @Nullable
+    protected Admitted admit(final IServiceProviderPlace place, final List<IBaseDataObject> payloads) {
+        final AdmissionControl admission = place.getAdmissionControl();
+        if (admission == null) {
+            return new Admitted(place, null);
+        }
+        try {
+            List<IServiceProviderPlace> alternates = null;
+            while (true) {
+                final long asked = System.nanoTime();
+                final AdmissionControl.Permit permit = admission.tryEnter();
+                if (permit != null) {
+                    return new Admitted(place, permit);
+                }
+                if (alternates == null) {
+                    alternates = alternatePlaces(place);
+                }
+                for (final IServiceProviderPlace alternate : alternates) {
+                    final AdmissionControl other = alternate.getAdmissionControl();
+                    final AdmissionControl.Permit otherPermit = other == null ? null : other.tryEnter(0L);
+                    if (other == null || otherPermit != null) {
+                        logger.debug("{} is saturated, using {}", place, alternate);
+                        recordAlternate(place, alternate, payloads);
+                        return new Admitted(alternate, otherPermit);
+                    }
+                }
+                if (admission.getSaturatedAction() == AdmissionControl.SaturatedAction.ERROR || this.timeToQuit) {
+                    break;
+                }
+                logger.debug("{} is saturated, waiting again with {} payloads", place, payloads.size());
+                admission.pause(System.nanoTime() - asked);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn("{} is saturated, sending {} payloads to error handling", place, payloads.size());
+        for (final IBaseDataObject p : payloads) {
+            p.addProcessingError("admission(" + place + "): place saturated");
+            p.replaceCurrentForm(ERROR_FORM);
+        }
+        return null;
+    }
+
+    /**
+     * Change the last place in the history of the payloads to the alternate that will do the work instead of the saturated
+     * place they were routed to
+     *
+     * @param place the saturated place
+     * @param alternate the place the payloads go to instead
+     * @param payloads the payloads
+     */
+    protected void recordAlternate(final IServiceProviderPlace place, final IServiceProviderPlace alternate, final List<IBaseDataObject> payloads) {
+        final String saturated = place.getDirectoryEntry().getServiceLocation();
+        for (final IBaseDataObject p : payloads) {
+            final TransformHistory history = p.getTransformHistory();
+            final TransformHistory.History last = history.lastVisit();
+            if (last == null || !saturated.equals(KeyManipulator.getServiceLocation(last.getKey()))) {
+                continue;
+            }
+            final DirectoryEntry entry = new DirectoryEntry(alternate.getDirectoryEntry());
+            entry.setDataType(KeyManipulator.getDataType(last.getKey()));
+            history.replaceLastVisit(entry.getFullKey());
+            p.setHistory(history);
+        }
+    }
+
+    /**
+     * Other local places providing the same service as a place
+     *
+     * @param place the saturated place
+     * @return local places with the same service name and type, cheapest first
+     */
+    protected List<IServiceProviderPlace> alternatePlaces(final IServiceProviderPlace place) {
+        final DirectoryEntry entry = place.getDirectoryEntry();
+        final List<IServiceProviderPlace> alternates = new ArrayList<>();
+        try {
+            final String pattern = "*." + entry.getServiceName() + "." + entry.getServiceType() + ".*";
+            for (final DirectoryEntry e : DirectoryPlace.lookup().getMatchingEntries(pattern)) {
+                final IServiceProviderPlace local = e.getLocalPlace();
+                if (local != null && local != place && !alternates.contains(local)) {
+                    alternates.add(local);
+                }
+            }
+        } catch (EmissaryException e) {
+            logger.debug("No directory to find alternates for {}", place, e);
+        }
+        return alternates;
+    }
+
+    /**
+     * Have a place on a peer server work on payloads, when remote places are enabled
+     *
+     * @param entry the remote place
+     * @param payloads the payloads, changed in place when the peer does the work
+     * @param heavyDuty true to collect children sprouted by the place
+     * @return the sprouted children, or null if the peer did not do the work
+     */
+    @Nullable
+    protected List<IBaseDataObject> atRemotePlace(final DirectoryEntry entry, final List<IBaseDataObject> payloads, final boolean heavyDuty) {
+        final RemotePlaceTransport remote;
+        try {
+            remote = RemotePlaceTransport.lookup();
+        } catch (NamespaceException e) {
+            logger.debug("No remote place transport to reach {}", entry.getKey());
+            return null;
+        }
+        if (!remote.isEnabled()) {
+            return null;
+        }
+        logger.debug("Sending {} payloads to remote place {}", payloads.size(), entry.getFullKey());
+        if (this.moveErrorsOccurred > 0) {
+            for (final IBaseDataObject p : payloads) {
+                p.setParameter("AGENT_MOVE_ERRORS", Integer.toString(this.moveErrorsOccurred));
+            }
+        }
+        final List<IBaseDataObject> sprouts = remote.outboundProcess(entry, payloads, heavyDuty);
+        if (this.moveErrorsOccurred > 0) {
+            for (final IBaseDataObject p : payloads) {
+                p.deleteParameter("AGENT_MOVE_ERRORS");
+            }
+        }
+        if (sprouts != null) {
+            this.lastPlaceProcessed = entry.getKey();
+        }
+        return sprouts;
+    }
+
     protected final void checkInterrupt(final IServiceProviderPlace place) {
         if (Thread.interrupted()) {
             // this should NEVER happen. if it does, we've done something bad
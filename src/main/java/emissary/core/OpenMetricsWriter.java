@@ -0,0 +1,185 @@
+package emissary.core;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the metrics in a registry in the OpenMetrics text format, as scraped by Prometheus.
+ * <p>
+ * Samples are written to the output as each metric is read, so no copy of the registry is built per scrape. Metric
+ * names are prefixed and any character that is not allowed in an OpenMetrics name is replaced with an underscore.
+ * Counters and meters are written as counters and gauges with a numeric or boolean value as gauges. Histograms and
+ * timers are written as summaries with quantiles taken from their reservoir; timers are in seconds.
+ */
+public class OpenMetricsWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenMetricsWriter.class);
+
+    /** The media type of the output */
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    /** Prefix added to every metric name by default */
+    public static final String DEFAULT_NAME_PREFIX = "emissary";
+
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.75", "0.95", "0.98", "0.99", "0.999"};
+    private static final double SECONDS_PER_NANO = 1.0 / TimeUnit.SECONDS.toNanos(1);
+
+    private final String namePrefix;
+
+    public OpenMetricsWriter() {
+        this(DEFAULT_NAME_PREFIX);
+    }
+
+    /**
+     * Create a writer
+     *
+     * @param namePrefix added to the front of each name with an underscore, may be empty
+     */
+    public OpenMetricsWriter(final String namePrefix) {
+        this.namePrefix = namePrefix.isEmpty() ? "" : sanitize(namePrefix) + "_";
+    }
+
+    /**
+     * Write the metrics in a registry
+     *
+     * @param registry the metrics
+     * @param prefixes only write metrics whose registry name starts with one of these, or everything if empty
+     * @param out the destination, not closed
+     * @throws IOException if the output cannot be written
+     */
+    public void write(final MetricRegistry registry, final Collection<String> prefixes, final Writer out) throws IOException {
+        final Set<String> written = new HashSet<>();
+        final StringBuilder sb = new StringBuilder(256);
+        for (final Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            final String name = entry.getKey();
+            if (!matches(name, prefixes)) {
+                continue;
+            }
+            final Metric metric = entry.getValue();
+            String family = this.namePrefix + sanitize(name);
+            if (metric instanceof Timer) {
+                family += "_seconds";
+            }
+            if (!written.add(family)) {
+                logger.debug("Metric {} has the same OpenMetrics name as another metric, skipping it", name);
+                continue;
+            }
+            sb.setLength(0);
+            if (metric instanceof Gauge) {
+                appendGauge(sb, family, ((Gauge<?>) metric).getValue());
+            } else if (metric instanceof Counter) {
+                appendCounter(sb, family, ((Counter) metric).getCount());
+            } else if (metric instanceof Meter) {
+                appendCounter(sb, family, ((Meter) metric).getCount());
+            } else if (metric instanceof Timer) {
+                final Timer timer = (Timer) metric;
+                appendSummary(sb, family, "seconds", timer.getSnapshot(), SECONDS_PER_NANO, timer.getCount());
+            } else if (metric instanceof Histogram) {
+                final Histogram histogram = (Histogram) metric;
+                appendSummary(sb, family, null, histogram.getSnapshot(), 1.0, histogram.getCount());
+            }
+            out.append(sb);
+        }
+        out.write("# EOF\n");
+    }
+
+    private static boolean matches(final String name, final Collection<String> prefixes) {
+        if (prefixes.isEmpty()) {
+            return true;
+        }
+        for (final String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendGauge(final StringBuilder sb, final String family, @Nullable final Object value) {
+        final double v;
+        if (value instanceof Number) {
+            v = ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            v = ((Boolean) value) ? 1 : 0;
+        } else {
+            // missing or not a number, nothing to report
+            return;
+        }
+        sb.append("# TYPE ").append(family).append(" gauge\n");
+        sb.append(family).append(' ');
+        appendValue(sb, v);
+        sb.append('\n');
+    }
+
+    private static void appendCounter(final StringBuilder sb, final String family, final long count) {
+        sb.append("# TYPE ").append(family).append(" counter\n");
+        sb.append(family).append("_total ").append(count).append('\n');
+    }
+
+    private static void appendSummary(final StringBuilder sb, final String family, @Nullable final String unit, final Snapshot snapshot,
+            final double scale,
+            final long count) {
+        sb.append("# TYPE ").append(family).append(" summary\n");
+        if (unit != null) {
+            sb.append("# UNIT ").append(family).append(' ').append(unit).append('\n');
+        }
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sb.append(family).append("{quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ");
+            appendValue(sb, snapshot.getValue(QUANTILES[i]) * scale);
+            sb.append('\n');
+        }
+        sb.append(family).append("_count ").append(count).append('\n');
+    }
+
+    private static void appendValue(final StringBuilder sb, final double v) {
+        if (Double.isNaN(v)) {
+            sb.append("NaN");
+        } else if (Double.isInfinite(v)) {
+            sb.append(v > 0 ? "+Inf" : "-Inf");
+        } else if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            sb.append((long) v);
+        } else {
+            sb.append(v);
+        }
+    }
+
+    /**
+     * Replace anything not allowed in an OpenMetrics metric name with an underscore
+     *
+     * @param name a registry name
+     * @return a valid metric name
+     */
+    static String sanitize(final String name) {
+        final StringBuilder sb = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':';
+            if (letter || (c >= '0' && c <= '9' && i > 0)) {
+                sb.append(c);
+            } else if (c >= '0' && c <= '9') {
+                sb.append('_').append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package emissary.core;
+
+import emissary.directory.DirectoryEntry;
+
+import jakarta.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Has a place on a peer server work on a family of payloads, for agents routed to a place that is not local. The server
+ * binds its transport in the {@link Namespace} when it starts, without one remote places are not used.
+ */
+public interface RemotePlaceTransport {
+
+    /** Name the transport is bound under in the {@link Namespace} */
+    String DEFAULT_NAMESPACE_NAME = "RemotePlaceTransport";
+
+    /**
+     * Whether families are sent to remote places
+     */
+    boolean isEnabled();
+
+    /**
+     * Have a remote place work on a family
+     *
+     * @param entry the remote place
+     * @param family the payloads, their state is replaced by the state after the place has run
+     * @param heavyDuty true to run the place the way an HDMobileAgent does, collecting sprouted children
+     * @return the children sprouted by the place, or null if the family was not worked on and is unchanged
+     */
+    @Nullable
+    List<IBaseDataObject> outboundProcess(DirectoryEntry entry, List<IBaseDataObject> family, boolean heavyDuty);
+
+    /**
+     * Look up the transport bound for this server
+     *
+     * @return the transport
+     * @throws NamespaceException if no transport is bound
+     */
+    static RemotePlaceTransport lookup() throws NamespaceException {
+        return (RemotePlaceTransport) Namespace.lookup(DEFAULT_NAMESPACE_NAME);
+    }
+}
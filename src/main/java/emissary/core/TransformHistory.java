@@ -146,6 +146,17 @@ public class TransformHistory implements Serializable {
         return history.get(history.size() - 1);
     }
 
+    /**
+     * Replace the last place visited, such as when another place providing the same service did the work
+     *
+     * @param key the place that was visited instead
+     */
+    public void replaceLastVisit(final String key) {
+        if (CollectionUtils.isNotEmpty(history)) {
+            history.set(history.size() - 1, new History(key));
+        }
+    }
+
     /**
      * Get the second-to-last place visited (does not include places visited during coordination)
      *
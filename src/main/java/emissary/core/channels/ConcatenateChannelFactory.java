@@ -104,7 +104,7 @@ public final class ConcatenateChannelFactory {
                 final int firstAmount = (int) (firstSbcSize - start);
                 final int originalLimit = byteBuffer.limit();
 
-                byteBuffer.limit(firstAmount);
+                byteBuffer.limit(byteBuffer.position() + firstAmount);
                 first.position(start);
                 first.read(byteBuffer);
                 byteBuffer.limit(originalLimit);
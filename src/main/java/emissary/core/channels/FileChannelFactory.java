@@ -16,6 +16,9 @@ import java.util.Set;
  */
 public final class FileChannelFactory {
 
+    /** Largest single mapping, files bigger than this are mapped in pieces */
+    static final long MAP_CHUNK_SIZE = 1L << 30;
+
     private FileChannelFactory() {}
 
     /**
@@ -32,6 +35,64 @@ public final class FileChannelFactory {
         return ImmutableChannelFactory.create(new FileChannelFactoryImpl(path));
     }
 
+    /**
+     * Create a new instance of the factory over a file that is already open. Channels read the file with positional reads,
+     * so they do not move the position of the file or affect each other, and keep working after the file is renamed or
+     * removed from its directory. Channels never close the file; it is released when the caller closes it or when it is no
+     * longer referenced.
+     *
+     * @param file the open file, with its current size taken as the size of the data
+     * @return a new instance
+     * @throws IOException if the size of the file cannot be read
+     */
+    public static SeekableByteChannelFactory createOpen(final FileChannel file) throws IOException {
+        Validate.notNull(file, "Required: file not null");
+        return ImmutableChannelFactory.create(new OpenFileChannelFactoryImpl(file, file.size()));
+    }
+
+    /**
+     * Create a new instance of the factory over a read-only mapping of a file. The file is only open while it is mapped, so
+     * no file descriptor is held by the factory, and the channels keep working after the file is renamed or removed from
+     * its directory. The mapping is released when the factory and its channels are no longer referenced.
+     *
+     * @param path containing a reference to the file
+     * @return a new instance
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static SeekableByteChannelFactory createMapped(final Path path) throws IOException {
+        return createMapped(path, MAP_CHUNK_SIZE);
+    }
+
+    static SeekableByteChannelFactory createMapped(final Path path, final long chunkSize) throws IOException {
+        Validate.notNull(path, "Required: path not null");
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            return createMappedOpen(file, chunkSize);
+        }
+    }
+
+    /**
+     * Create a new instance of the factory over a read-only mapping of a file that is already open. The caller can close
+     * the file as soon as this returns, the mapping does not need it.
+     *
+     * @param file the open file, with its current size taken as the size of the data
+     * @return a new instance
+     * @throws IOException if the file cannot be mapped
+     */
+    static SeekableByteChannelFactory createMappedOpen(final FileChannel file) throws IOException {
+        return createMappedOpen(file, MAP_CHUNK_SIZE);
+    }
+
+    static SeekableByteChannelFactory createMappedOpen(final FileChannel file, final long chunkSize) throws IOException {
+        Validate.notNull(file, "Required: file not null");
+        final long size = file.size();
+        final ByteBuffer[] chunks = new ByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+        for (int i = 0; i < chunks.length; i++) {
+            final long start = i * chunkSize;
+            chunks[i] = file.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+        }
+        return ImmutableChannelFactory.create(new MappedFileChannelFactoryImpl(chunks, chunkSize, size));
+    }
+
     /**
      * Private class to hide implementation details from callers
      */
@@ -94,4 +155,101 @@ public final class FileChannelFactory {
         }
 
     }
+
+    /**
+     * Private class to hide implementation details from callers
+     */
+    private static final class OpenFileChannelFactoryImpl implements SeekableByteChannelFactory {
+        private final FileChannel file;
+        private final long size;
+
+        private OpenFileChannelFactoryImpl(final FileChannel file, final long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        public SeekableByteChannel create() {
+            return new OpenFileChannelImpl(file, size);
+        }
+    }
+
+    private static final class OpenFileChannelImpl extends AbstractSeekableByteChannel {
+        private final FileChannel file;
+        private final long size;
+
+        private OpenFileChannelImpl(final FileChannel file, final long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        protected void closeImpl() {
+            // The file is shared by every channel from the factory
+        }
+
+        @Override
+        protected int readImpl(final ByteBuffer byteBuffer) throws IOException {
+            return file.read(byteBuffer, position());
+        }
+
+        @Override
+        protected long sizeImpl() {
+            return size;
+        }
+    }
+
+    /**
+     * Private class to hide implementation details from callers
+     */
+    private static final class MappedFileChannelFactoryImpl implements SeekableByteChannelFactory {
+        private final ByteBuffer[] chunks;
+        private final long chunkSize;
+        private final long size;
+
+        private MappedFileChannelFactoryImpl(final ByteBuffer[] chunks, final long chunkSize, final long size) {
+            this.chunks = chunks;
+            this.chunkSize = chunkSize;
+            this.size = size;
+        }
+
+        @Override
+        public SeekableByteChannel create() {
+            return new MappedFileChannelImpl(chunks, chunkSize, size);
+        }
+    }
+
+    private static final class MappedFileChannelImpl extends AbstractSeekableByteChannel {
+        private final ByteBuffer[] chunks;
+        private final long chunkSize;
+        private final long size;
+
+        private MappedFileChannelImpl(final ByteBuffer[] chunks, final long chunkSize, final long size) {
+            this.chunks = chunks;
+            this.chunkSize = chunkSize;
+            this.size = size;
+        }
+
+        @Override
+        protected void closeImpl() {
+            // The mapping is shared by every channel from the factory
+        }
+
+        @Override
+        protected int readImpl(final ByteBuffer byteBuffer) throws IOException {
+            // Reads stop at the end of a chunk, callers read again for the rest
+            final long position = position();
+            final ByteBuffer chunk = chunks[(int) (position / chunkSize)].duplicate();
+            chunk.position((int) (position % chunkSize));
+            final int count = Math.min(chunk.remaining(), byteBuffer.remaining());
+            chunk.limit(chunk.position() + count);
+            byteBuffer.put(chunk);
+            return count;
+        }
+
+        @Override
+        protected long sizeImpl() {
+            return size;
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package emissary.core.channels;
+
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Provide a factory for data that is produced a piece at a time, such as the output of a decoder.
+ * <p>
+ * Bytes are held in memory until they pass a threshold, after which everything is moved to a temporary file so large
+ * outputs do not need to fit on the heap. The temporary file is removed from the directory as soon as it is opened, and
+ * is mapped and closed once writing is done, so no file descriptor is held by the factory. The mapping is released when
+ * the factory is no longer referenced, so nothing is left behind on disk.
+ */
+public final class SpillChannelFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillChannelFactory.class);
+
+    private SpillChannelFactory() {}
+
+    /**
+     * Create a writer to collect data into
+     *
+     * @param threshold number of bytes held in memory before moving to a file
+     * @param directory where the temporary file is made
+     * @return a new writer
+     */
+    public static Writer writer(final int threshold, final Path directory) {
+        return new Writer(threshold, directory);
+    }
+
+    /**
+     * Collects the data. Call {@link #toFactory()} once all the data has been written.
+     */
+    public static final class Writer implements WritableByteChannel {
+        private final int threshold;
+        private final Path directory;
+        private byte[] memory;
+        private int count = 0;
+        @Nullable
+        private FileChannel file;
+        private boolean open = true;
+
+        private Writer(final int threshold, final Path directory) {
+            Validate.isTrue(threshold >= 0, "Required: threshold >= 0");
+            Validate.notNull(directory, "Required: directory not null");
+            this.threshold = threshold;
+            this.directory = directory;
+            this.memory = new byte[Math.min(threshold, 8192)];
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            if (!this.open) {
+                throw new ClosedChannelException();
+            }
+            final int length = src.remaining();
+            if (this.file == null && (long) this.count + length > this.threshold) {
+                spill();
+            }
+            if (this.file != null) {
+                int written = 0;
+                while (src.hasRemaining()) {
+                    written += this.file.write(src);
+                }
+                return written;
+            }
+            if (this.count + length > this.memory.length) {
+                this.memory =
+                        Arrays.copyOf(this.memory, (int) Math.min(this.threshold, Math.max(this.count + (long) length, this.memory.length * 2L)));
+            }
+            src.get(this.memory, this.count, length);
+            this.count += length;
+            return length;
+        }
+
+        private void spill() throws IOException {
+            final Path path = Files.createTempFile(this.directory, "spill", ".tmp");
+            this.file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                Files.delete(path);
+            } catch (IOException e) {
+                logger.debug("Could not remove open temporary file {}, removing at exit", path, e);
+                path.toFile().deleteOnExit();
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(this.memory, 0, this.count);
+            while (buffer.hasRemaining()) {
+                this.file.write(buffer);
+            }
+            this.memory = new byte[0];
+        }
+
+        /**
+         * Number of bytes written so far
+         */
+        public long size() throws IOException {
+            return this.file == null ? this.count : this.file.size();
+        }
+
+        /**
+         * True once the data has moved to a temporary file
+         */
+        public boolean isSpilled() {
+            return this.file != null;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        /**
+         * Stop writing. If {@link #toFactory()} is not going to be called, this releases any temporary file.
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.open) {
+                this.open = false;
+                if (this.file != null) {
+                    this.file.close();
+                }
+            }
+        }
+
+        /**
+         * Stop writing and provide the data written
+         *
+         * @return an immutable factory over the data
+         * @throws IOException if the writer was already closed
+         */
+        public SeekableByteChannelFactory toFactory() throws IOException {
+            if (!this.open) {
+                throw new ClosedChannelException();
+            }
+            this.open = false;
+            if (this.file == null) {
+                return InMemoryChannelFactory.create(this.count == this.memory.length ? this.memory : Arrays.copyOf(this.memory, this.count));
+            }
+            try (FileChannel spilled = this.file) {
+                return FileChannelFactory.createMappedOpen(spilled);
+            }
+        }
+    }
+}
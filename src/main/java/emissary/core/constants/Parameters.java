@@ -12,6 +12,7 @@ public class Parameters {
     public static final String INPUT_FILEDATE = "INPUT_FILEDATE";
     public static final String INPUT_FILENAME = "INPUT_FILENAME";
     public static final String ORIGINAL_FILENAME = "Original-Filename";
+    public static final String SESSION_NUMBER = "SESSION_NUMBER";
     public static final String SUMMARY = "SUMMARY";
 
     // Common parameter prefixes
@@ -149,6 +149,9 @@ public class DirectoryPlace extends ServiceProviderPlace implements IRemoteDirec
      * <li>HEARTBEAT_INTERVAL_SECONDS, default is 30</li>
      * <li>HEARTBEAT_FAILURE_THRESHOLD, set transient failure count, default owned by HeartbeatManager</li>
      * <li>HEARTBEAT_PERMANENT_FAILURE_THRESHOLD, set permanent failure count, default owned by HeartbeatManager</li>
+     * <li>HEARTBEAT_PHI_THRESHOLD, set the phi at which a directory is unhealthy, 0 to only count failures, default owned
+     * by HeartbeatManager</li>
+     * <li>HEARTBEAT_THREADS, number of heartbeats sent at once, default owned by HeartbeatManager</li>
      * </ul>
      */
     private void setupDirectory() {
@@ -168,6 +171,9 @@ public class DirectoryPlace extends ServiceProviderPlace implements IRemoteDirec
             if (heartbeatPermanentFailure > 0) {
                 this.heartbeat.setPermanentFailThreshold(heartbeatPermanentFailure);
             }
+
+            this.heartbeat.setPhiThreshold(configG.findDoubleEntry("HEARTBEAT_PHI_THRESHOLD", HeartbeatManager.DEFAULT_PHI_THRESHOLD));
+            this.heartbeat.setHeartbeatThreads(configG.findIntEntry("HEARTBEAT_THREADS", HeartbeatManager.DEFAULT_HEARTBEAT_THREADS));
         }
 
         // Set up deferred stuff from ServiceProviderPlace
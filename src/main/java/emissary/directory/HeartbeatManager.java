@@ -2,15 +2,19 @@ package emissary.directory;
 
 import emissary.client.EmissaryClient;
 import emissary.client.EmissaryResponse;
+import emissary.core.MetricsManager;
 import emissary.core.Namespace;
 import emissary.core.NamespaceException;
 import emissary.server.mvc.adapters.HeartbeatAdapter;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import jakarta.annotation.Nullable;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
 import org.apache.hc.core5.http.NameValuePair;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,12 +22,28 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Facility for directory instances to check up on each other by sending a heartbeat message
+ * <p>
+ * Heartbeats to the remote directories are sent at the same time from a small pool of threads over the shared client,
+ * so a slow or unresponsive peer does not delay the others. Each request gives up after one heartbeat interval. A peer
+ * whose last heartbeat is still outstanding is not sent another one, but is judged on how long it has been silent. A
+ * peer whose heartbeat is still waiting for a thread is not judged, since its silence says nothing about it.
+ * <p>
+ * Once a few heartbeats have been received from a peer, its health is judged by a phi accrual failure detector built
+ * from the intervals between them instead of by counting consecutive failures, so detection adapts to how regular each
+ * peer has been. The failure count still decides when a peer has failed permanently.
  */
 public class HeartbeatManager {
     // Our logger
@@ -70,9 +90,38 @@ public class HeartbeatManager {
     /** Status value for callers to use when setting initially not healthy */
     public static final boolean NO_CONTACT = false;
 
+    /** Default phi above which a remote directory is considered unhealthy {@value} */
+    public static final double DEFAULT_PHI_THRESHOLD = 8.0;
+
+    /**
+     * Configured phi above which a remote directory is considered unhealthy, 0 or less to only count failures
+     */
+    protected double phiThreshold = DEFAULT_PHI_THRESHOLD;
+
+    /** Number of heartbeat intervals needed before phi is used instead of the failure count */
+    protected static final int MIN_PHI_SAMPLES = 3;
+
+    /** Number of heartbeat intervals remembered for each remote directory */
+    protected static final int PHI_WINDOW = 100;
+
+    /** Default number of heartbeats sent at once {@value} */
+    public static final int DEFAULT_HEARTBEAT_THREADS = 8;
+
     /** The remote directories we are checking on and their health */
     protected Map<String, Health> directories = new ConcurrentHashMap<>(100, 0.8f, 3);
 
+    /** Sends the heartbeats, threads are released when idle */
+    protected final ThreadPoolExecutor executor = newExecutor(DEFAULT_HEARTBEAT_THREADS);
+
+    /** Remote directories with a heartbeat waiting to be sent or outstanding */
+    protected final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /** Remote directories with a heartbeat sent and not yet answered */
+    protected final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /** Shared client, backed by the pooled connection manager, that gives up after one interval */
+    protected final EmissaryClient client;
+
     /**
      * Setup to manage heartbeats to remote directories
      *
@@ -103,6 +152,7 @@ public class HeartbeatManager {
             @Nullable final List<String> dirList) {
         this.initialDelaySeconds = initialDelaySeconds;
         this.intervalSeconds = intervalSeconds;
+        this.client = new EmissaryClient().withTimeout(Timeout.ofSeconds(Math.max(intervalSeconds, 1)));
 
         logger.debug("Starting with initialDelay={}, interval={}", initialDelaySeconds, intervalSeconds);
 
@@ -124,6 +174,40 @@ public class HeartbeatManager {
         this.timer.schedule(new HeartbeatTask(), this.initialDelaySeconds * 1000L, this.intervalSeconds * 1000L);
     }
 
+    private static ThreadPoolExecutor newExecutor(final int threads) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread t = new Thread(r, "HeartbeatManager-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Set the number of heartbeats sent at once
+     */
+    public void setHeartbeatThreads(final int threads) {
+        final int n = Math.max(threads, 1);
+        if (n > this.executor.getMaximumPoolSize()) {
+            this.executor.setMaximumPoolSize(n);
+            this.executor.setCorePoolSize(n);
+        } else {
+            this.executor.setCorePoolSize(n);
+            this.executor.setMaximumPoolSize(n);
+        }
+        logger.debug("Set heartbeat threads to {}", n);
+    }
+
+    /**
+     * Set the phi above which a remote directory is considered unhealthy, 0 or less to only count failures
+     */
+    public void setPhiThreshold(final double t) {
+        this.phiThreshold = t;
+        logger.debug("Set new phi threshold to {}", t);
+    }
+
     /**
      * Set the failure threshold
      */
@@ -145,6 +229,7 @@ public class HeartbeatManager {
      */
     public void shutDown() {
         this.timer.cancel();
+        this.executor.shutdownNow();
     }
 
     /**
@@ -167,6 +252,7 @@ public class HeartbeatManager {
         if (!KeyManipulator.isLocalTo(this.thisDirectory, key)) {
             final String dkey = KeyManipulator.getDefaultDirectoryKey(key);
             this.directories.put(dkey, new Health(isAlive, "Initial status"));
+            registerMetrics(dkey);
             logger.debug("Added remote {} with initial status {} now monitoring {} remote directories", dkey, isAlive, this.directories.size());
         } else {
             logger.debug("Skipping local directory {}, is not remote", key);
@@ -179,7 +265,50 @@ public class HeartbeatManager {
      * @param key four-tuple for the remote directory
      */
     public void removeRemoteDirectory(final String key) {
-        this.directories.remove(KeyManipulator.getDefaultDirectoryKey(key));
+        final String dkey = KeyManipulator.getDefaultDirectoryKey(key);
+        if (this.directories.remove(dkey) != null) {
+            unregisterMetrics(dkey);
+        }
+    }
+
+    /**
+     * Publish the health of a remote directory as gauges named heartbeat.host:port.phi, .healthy and .failures
+     */
+    private void registerMetrics(final String dkey) {
+        try {
+            final MetricRegistry registry = MetricsManager.lookup().getMetricRegistry();
+            final String prefix = metricsPrefix(dkey);
+            unregisterMetrics(registry, prefix);
+            registry.register(prefix + "phi", (Gauge<Double>) () -> withHealth(dkey, Health::getPhi));
+            registry.register(prefix + "healthy", (Gauge<Integer>) () -> withHealth(dkey, h -> h.isHealthy() ? 1 : 0));
+            registry.register(prefix + "failures", (Gauge<Integer>) () -> withHealth(dkey, Health::getFailCount));
+        } catch (NamespaceException ex) {
+            logger.debug("No MetricsManager, heartbeat health of {} is not published", dkey, ex);
+        }
+    }
+
+    private static void unregisterMetrics(final String dkey) {
+        try {
+            unregisterMetrics(MetricsManager.lookup().getMetricRegistry(), metricsPrefix(dkey));
+        } catch (NamespaceException ex) {
+            logger.debug("No MetricsManager to remove heartbeat health of {} from", dkey, ex);
+        }
+    }
+
+    private static void unregisterMetrics(final MetricRegistry registry, final String prefix) {
+        registry.remove(prefix + "phi");
+        registry.remove(prefix + "healthy");
+        registry.remove(prefix + "failures");
+    }
+
+    private static String metricsPrefix(final String dkey) {
+        return MetricRegistry.name("heartbeat", KeyManipulator.getServiceHost(dkey)) + ".";
+    }
+
+    @Nullable
+    private <T> T withHealth(final String dkey, final Function<Health, T> f) {
+        final Health h = this.directories.get(dkey);
+        return h == null ? null : f.apply(h);
     }
 
     /**
@@ -252,7 +381,30 @@ public class HeartbeatManager {
 
         final boolean isAlive = v.isAlive();
         final boolean isHealthy = v.isHealthy();
+        takeTransitionAction(key, status, wasAlive, wasHealthy, isAlive, isHealthy);
+    }
 
+    /**
+     * Judge a remote directory whose heartbeat has not come back yet on how long it has been silent, and call the trigger
+     * if that makes it unhealthy
+     *
+     * @param key key for directory
+     */
+    protected void overdueReport(final String key) {
+        final Health v = this.directories.get(KeyManipulator.getDefaultDirectoryKey(key));
+        if (v == null) {
+            return;
+        }
+        final boolean wasHealthy = v.isHealthy();
+        v.evaluate();
+        if (wasHealthy && !v.isHealthy()) {
+            logger.debug("Heartbeat to {} is overdue, phi={}", key, v.getPhi());
+            takeFailureAction(key, false);
+        }
+    }
+
+    private void takeTransitionAction(final String key, final boolean status, final boolean wasAlive, final boolean wasHealthy,
+            final boolean isAlive, final boolean isHealthy) {
         if (logger.isDebugEnabled()) {
             logger.debug("Reporting on {} status={}, wasAlive/Healthy={}/{}, isAlive/Healthy={}/{}", key, status, wasAlive, wasHealthy, isAlive,
                     isHealthy);
@@ -308,7 +460,7 @@ public class HeartbeatManager {
 
 
     /**
-     * The Task thread, monitors all remote directories
+     * The Task thread, starts a heartbeat to every remote directory that does not have one outstanding
      */
     class HeartbeatTask extends TimerTask {
         @Override
@@ -316,7 +468,26 @@ public class HeartbeatManager {
             try {
                 logger.debug("Running timer task on {} directories", HeartbeatManager.this.directories.size());
                 for (final String dir : HeartbeatManager.this.directories.keySet()) {
-                    heartbeat(dir);
+                    if (!HeartbeatManager.this.pending.add(dir)) {
+                        if (HeartbeatManager.this.inFlight.contains(dir)) {
+                            overdueReport(dir);
+                        }
+                        continue;
+                    }
+                    try {
+                        HeartbeatManager.this.executor.execute(() -> {
+                            HeartbeatManager.this.inFlight.add(dir);
+                            try {
+                                heartbeat(dir);
+                            } finally {
+                                HeartbeatManager.this.inFlight.remove(dir);
+                                HeartbeatManager.this.pending.remove(dir);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        HeartbeatManager.this.pending.remove(dir);
+                        logger.debug("Heartbeats are shut down, not sending to {}", dir);
+                    }
                 }
                 logger.debug("Ending the HeartbeatTask run method");
             } catch (RuntimeException e) {
@@ -337,7 +508,7 @@ public class HeartbeatManager {
         boolean isup = false;
         try {
             logger.debug("Sending heartbeat msg to {}", key);
-            EmissaryResponse response = getHeartbeat(this.thisDirectory, key);
+            EmissaryResponse response = sendHeartbeat(key);
             if (response.getStatus() == 200) {
                 healthReport(key, true, response.getContentString());
                 isup = true;
@@ -353,6 +524,23 @@ public class HeartbeatManager {
         return isup;
     }
 
+    /**
+     * Send the heartbeat message over the shared client
+     *
+     * @param key key representing the directory to heartbeat
+     * @return the response of the remote directory
+     */
+    protected EmissaryResponse sendHeartbeat(final String key) {
+        return getHeartbeat(this.thisDirectory, key, this.client);
+    }
+
+    /**
+     * Current time in milliseconds for judging heartbeat intervals, not related to wall clock time
+     */
+    protected long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
     public static EmissaryResponse getHeartbeat(String fromPlace, String toPlace) {
         return getHeartbeat(fromPlace, toPlace, new EmissaryClient());
     }
@@ -380,6 +568,15 @@ public class HeartbeatManager {
 
         private String lastMessage;
 
+        // Judges health from the intervals between successful heartbeats, allowing half an interval of lateness so a
+        // steady peer is suspected after about as many missed heartbeats as the default failure threshold
+        private final PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(PHI_WINDOW,
+                TimeUnit.SECONDS.toMillis(HeartbeatManager.this.intervalSeconds) / 4.0,
+                TimeUnit.SECONDS.toMillis(HeartbeatManager.this.intervalSeconds) / 2);
+
+        // Phi at the last report, 0 until there is enough history
+        private double phi = 0;
+
         /**
          * Create a new Health object with the specified status and msg
          *
@@ -398,11 +595,34 @@ public class HeartbeatManager {
          */
         public void addReport(final boolean v, final String msg) {
             this.lastMessage = msg;
+            final long now = now();
             if (v) {
+                if (this.failCounter == 0) {
+                    this.detector.heartbeat(now);
+                } else {
+                    // the outage is not a normal interval
+                    this.detector.restart(now);
+                }
                 this.failCounter = 0;
             } else {
                 this.failCounter++;
             }
+            evaluate(now);
+        }
+
+        /**
+         * Update phi for the time since the last heartbeat
+         */
+        void evaluate() {
+            evaluate(now());
+        }
+
+        private void evaluate(final long now) {
+            this.phi = usePhi() ? this.detector.phi(now) : 0;
+        }
+
+        private boolean usePhi() {
+            return HeartbeatManager.this.phiThreshold > 0 && this.detector.getSampleCount() >= MIN_PHI_SAMPLES;
         }
 
         /**
@@ -418,18 +638,41 @@ public class HeartbeatManager {
             } else {
                 this.failCounter = 0;
                 this.lastMessage = message;
+                this.detector.restart(now());
+                this.phi = 0;
             }
         }
 
         /**
          * Report our health status
          *
-         * @return true if failed less than threshold times
+         * @return true if phi is below the threshold once there is enough history, before that true if failed less than
+         *         threshold times
          */
         public boolean isHealthy() {
+            if (!isAlive()) {
+                return false;
+            }
+            if (usePhi()) {
+                return this.phi < HeartbeatManager.this.phiThreshold;
+            }
             return this.failCounter < HeartbeatManager.this.failThreshold;
         }
 
+        /**
+         * Phi at the last report or evaluation
+         */
+        public double getPhi() {
+            return this.phi;
+        }
+
+        /**
+         * Number of consecutive failures
+         */
+        public int getFailCount() {
+            return this.failCounter;
+        }
+
         /**
          * Report our aliveness status
          *
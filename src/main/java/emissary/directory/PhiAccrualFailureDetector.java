@@ -0,0 +1,100 @@
+package emissary.directory;
+
+/**
+ * Judges whether a peer has failed from the history of its heartbeats rather than from a fixed count of misses.
+ * <p>
+ * The intervals between successful heartbeats are kept in a bounded window and treated as normally distributed. Phi is
+ * the negative base 10 logarithm of the chance that the next heartbeat is still on its way after the time since the
+ * last one, so a phi of 1 means a 10% chance the peer is fine and a phi of 3 a 0.1% chance. A peer with steady
+ * heartbeats is suspected soon after they stop, a peer with erratic ones is given more time.
+ */
+final class PhiAccrualFailureDetector {
+
+    private final long[] intervals;
+    private final double minStdDevMillis;
+    private final long acceptablePauseMillis;
+
+    private int count = 0;
+    private int next = 0;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+    private long lastArrival = -1;
+
+    /**
+     * Create a detector
+     *
+     * @param maxSamples number of recent intervals kept
+     * @param minStdDevMillis least deviation assumed, so very regular heartbeats do not make a small delay look fatal
+     * @param acceptablePauseMillis extra time allowed on top of the mean interval before a heartbeat counts as late
+     */
+    PhiAccrualFailureDetector(final int maxSamples, final double minStdDevMillis, final long acceptablePauseMillis) {
+        this.intervals = new long[Math.max(maxSamples, 1)];
+        this.minStdDevMillis = minStdDevMillis;
+        this.acceptablePauseMillis = acceptablePauseMillis;
+    }
+
+    /**
+     * Record a heartbeat that arrived
+     *
+     * @param now the time in milliseconds
+     */
+    synchronized void heartbeat(final long now) {
+        if (this.lastArrival >= 0) {
+            add(Math.max(now - this.lastArrival, 0));
+        }
+        this.lastArrival = now;
+    }
+
+    /**
+     * Record a heartbeat that ended an outage, without counting the outage as an interval
+     *
+     * @param now the time in milliseconds
+     */
+    synchronized void restart(final long now) {
+        this.lastArrival = now;
+    }
+
+    private void add(final long interval) {
+        if (this.count == this.intervals.length) {
+            final long dropped = this.intervals[this.next];
+            this.sum -= dropped;
+            this.sumOfSquares -= (double) dropped * dropped;
+        } else {
+            this.count++;
+        }
+        this.intervals[this.next] = interval;
+        this.next = (this.next + 1) % this.intervals.length;
+        this.sum += interval;
+        this.sumOfSquares += (double) interval * interval;
+    }
+
+    /**
+     * Number of intervals the judgement is based on
+     */
+    synchronized int getSampleCount() {
+        return this.count;
+    }
+
+    /**
+     * How strongly the peer is suspected of having failed
+     *
+     * @param now the time in milliseconds
+     * @return phi, 0 when there is no history, possibly infinite
+     */
+    synchronized double phi(final long now) {
+        if (this.count == 0) {
+            return 0;
+        }
+        final double mean = this.sum / this.count + this.acceptablePauseMillis;
+        final double variance = Math.max(this.sumOfSquares / this.count - Math.pow(this.sum / this.count, 2), 0);
+        final double stdDev = Math.max(Math.sqrt(variance), this.minStdDevMillis);
+        final long elapsed = now - this.lastArrival;
+        // logistic approximation of the normal distribution
+        final double y = (elapsed - mean) / stdDev;
+        final double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsed > mean) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+}
@@ -9,7 +9,6 @@ import jakarta.annotation.Nullable;
  * 
  * A new ssdeep hash gets calculated and saved at each level of unwrapping.
  */
-@SuppressWarnings("NonFinalStaticField")
 public class EditDistance {
     /*
      * This edit distance code is taken from trn3.6. A few minor modifications have been made by Andrew Tridgell
@@ -86,55 +85,57 @@ public class EditDistance {
         return mx < my ? mx : my;
     }
 
-    static int insertCost = 1;
-    static int deleteCost = 1;
-
-    // dynamic programming counters
-    static int row;
-    static int col;
-    static int index = 0;
-    static int radix; // radix for modular indexing
-    static int low;
-    static int[] buffer; /*
-                          * pointer to storage for one row of the d.p. array
-                          */
-
-    static int[] store = new int[THRESHOLD / (Integer.SIZE / 8)];
-    /*
-     * a small amount of static storage, to be used when the input strings are small enough
-     */
+    private static final int INSERT_COST = 1;
+    private static final int DELETE_COST = 1;
 
     /* Handle trivial cases when one string is empty */
 
-    static int ins = 1;
-    static int del = 1;
-    static int ch = 3;
-    static int swapCost = 5;
-
-    static int fromLen;
-    static int toLen;
+    private static final int INS = 1;
+    private static final int DEL = 1;
+    private static final int CH = 3;
+    private static final int SWAP_COST = 5;
+
+    // dynamic programming counters, kept per call so scores do not depend on earlier calls and threads can score at once
+    private int row;
+    private int col;
+    private int index = 0;
+    private final int radix; // radix for modular indexing
+    private int low;
+    private final int[] buffer; /*
+                                 * storage for one row of the d.p. array
+                                 */
+
+    private final int fromLen;
+    private final int toLen;
+
+    private EditDistance(int fromLen, int toLen) {
+        this.fromLen = fromLen;
+        this.toLen = toLen;
+        this.radix = 2 * fromLen + 3;
+        this.buffer = new int[radix];
+    }
 
-    private static int ar(int x, int y, int index) {
-        return (x == 0) ? y * del : (y == 0) ? x * ins : buffer[mod(index)];
+    private int ar(int x, int y, int index) {
+        return (x == 0) ? y * DEL : (y == 0) ? x * INS : buffer[mod(index)];
     }
 
-    private static int nw(int x, int y) {
+    private int nw(int x, int y) {
         return ar(x, y, index + fromLen + 2);
     }
 
-    private static int n(int x, int y) {
+    private int n(int x, int y) {
         return ar(x, y, index + fromLen + 3);
     }
 
-    private static int w(int x, int y) {
+    private int w(int x, int y) {
         return ar(x, y, index + radix - 1);
     }
 
-    private static int nnww(int x, int y) {
+    private int nnww(int x, int y) {
         return ar(x, y, index + 1);
     }
 
-    private static int mod(int x) {
+    private int mod(int x) {
         return x % radix;
     }
 
@@ -142,30 +143,23 @@ public class EditDistance {
      * returns the edit distance between two strings, or -1 on failure
      */
     public static int calculateEditDistance(@Nullable byte[] from, int fromLen, @Nullable byte[] to, int toLen) {
-        EditDistance.fromLen = fromLen;
-        EditDistance.toLen = toLen;
-
         if (from == null) {
             if (to == null) {
                 return 0;
             } else {
-                return EditDistance.toLen * insertCost;
+                return toLen * INSERT_COST;
             }
         } else if (to == null) {
-            return EditDistance.fromLen * deleteCost;
+            return fromLen * DELETE_COST;
         }
 
-        /* Initialize registers */
-
-        radix = 2 * EditDistance.fromLen + 3;
-
         /* Make from short enough to fit in the static storage, if it's at all possible */
 
-        if (EditDistance.fromLen > EditDistance.toLen && EditDistance.fromLen > STRLENTHRESHOLD) {
+        if (fromLen > toLen && fromLen > STRLENTHRESHOLD) {
             int[] x = new int[1];
             int[] y = new int[1];
-            x[0] = EditDistance.fromLen;
-            y[0] = EditDistance.toLen;
+            x[0] = fromLen;
+            y[0] = toLen;
             swapInt(x, y);
             byte[][] xx = new byte[1][];
             byte[][] yy = new byte[1][];
@@ -174,14 +168,12 @@ public class EditDistance {
             swapChar(xx, yy);
         } // if from_len > to_len
 
-        /* Allocate the array storage (from the heap if necessary) */
+        /* Initialize registers */
 
-        if (EditDistance.fromLen <= STRLENTHRESHOLD) {
-            buffer = store;
-        } else {
-            buffer = new int[radix];
-        }
+        return new EditDistance(fromLen, toLen).distance(from, to);
+    }
 
+    private int distance(byte[] from, byte[] to) {
         /*
          * Here's where the fun begins. We will find the minimum edit distance using dynamic programming. We only need to store
          * two rows of the matrix at a time, since we always progress down the matrix. For example, given the strings "one" and
@@ -211,11 +203,11 @@ public class EditDistance {
         // /#define mod(x) ((x) % radix)
 
 
-        buffer[index++] = min2(ins + del, from[0] == to[0] ? 0 : ch);
+        buffer[index++] = min2(INS + DEL, from[0] == to[0] ? 0 : CH);
 
         low = buffer[mod(index + radix - 1)];
-        for (col = 1; col < EditDistance.fromLen; col++) {
-            buffer[index] = min3(col * del + ((from[col] == to[0]) ? 0 : ch), (col + 1) * del + ins, buffer[index - 1] + del);
+        for (col = 1; col < fromLen; col++) {
+            buffer[index] = min3(col * DEL + ((from[col] == to[0]) ? 0 : CH), (col + 1) * DEL + INS, buffer[index - 1] + DEL);
             if (buffer[index] < low) {
                 low = buffer[index];
             }
@@ -223,12 +215,12 @@ public class EditDistance {
         }
 
         /* Now handle the rest of the matrix */
-        for (row = 1; row < EditDistance.toLen; row++) {
-            for (col = 0; col < EditDistance.fromLen; col++) {
-                buffer[index] = min3(nw(row, col) + ((from[col] == to[row]) ? 0 : ch), n(row, col + 1) + ins, w(row + 1, col) + del);
+        for (row = 1; row < toLen; row++) {
+            for (col = 0; col < fromLen; col++) {
+                buffer[index] = min3(nw(row, col) + ((from[col] == to[row]) ? 0 : CH), n(row, col + 1) + INS, w(row + 1, col) + DEL);
 
                 if (from[col] == to[row - 1] && col > 0 && from[col - 1] == to[row]) {
-                    buffer[index] = min2(buffer[index], nnww(row - 1, col - 1) + swapCost);
+                    buffer[index] = min2(buffer[index], nnww(row - 1, col - 1) + SWAP_COST);
                 }
 
                 if (buffer[index] < low || col == 0) {
@@ -245,7 +237,4 @@ public class EditDistance {
 
         return row;
     } // edit_distn
-
-    /** This class is not meant to be instantiated. */
-    private EditDistance() {}
 }
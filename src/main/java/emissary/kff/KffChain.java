@@ -176,6 +176,72 @@ public class KffChain {
         return answer;
     }
 
+    /**
+     * Check a batch of content on our chain in the order loaded. Each filter is given every item that has not already hit
+     * in one call, so filters backed by a remote store can look the batch up together. Data smaller than minDataSize will
+     * get hashes computed but can never be reported as KNOWN data.
+     *
+     * @param itemNames name of each item
+     * @param contents the data of each item, in the same order
+     * @return result of check for each item
+     * @throws NoSuchAlgorithmException if the checksum can't be calculated
+     * @throws IOException if an error occurred reading the data
+     */
+    public List<KffResult> checkAll(final List<String> itemNames, final List<SeekableByteChannelFactory> contents)
+            throws NoSuchAlgorithmException, IOException {
+        if (itemNames.size() != contents.size()) {
+            throw new IllegalArgumentException("Item names and contents must be the same size");
+        }
+        final List<KffResult> answers = new ArrayList<>(itemNames.size());
+        final List<ChecksumResults> allSums = new ArrayList<>(itemNames.size());
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < itemNames.size(); i++) {
+            final SeekableByteChannelFactory sbcf = contents.get(i);
+            final ChecksumResults itemSums = computeSums(sbcf);
+            allSums.add(itemSums);
+            final KffResult answer = new KffResult(itemSums);
+            answer.setItemName(itemNames.get(i));
+            answers.add(answer);
+            try (SeekableByteChannel sbc = sbcf.create()) {
+                if (sbc.size() >= kffMinDataSize) {
+                    pending.add(i);
+                }
+            }
+        }
+
+        for (final KffFilter k : list) {
+            if (pending.isEmpty()) {
+                break;
+            }
+            final List<String> names = new ArrayList<>(pending.size());
+            final List<ChecksumResults> sums = new ArrayList<>(pending.size());
+            for (final int i : pending) {
+                names.add(itemNames.get(i));
+                sums.add(allSums.get(i));
+            }
+            final boolean[] hits;
+            try {
+                hits = k.checkAll(names, sums);
+            } catch (final Exception e) {
+                // Items that have not hit yet keep only their checksums, as in check()
+                logger.debug("Problem running KffFilter list.  Using only Checksums", e);
+                break;
+            }
+            final List<Integer> stillPending = new ArrayList<>();
+            for (int j = 0; j < hits.length; j++) {
+                final KffResult r = answers.get(pending.get(j));
+                if (hits[j]) {
+                    r.setFilterName(k.getName());
+                    r.setHitAndType(k.getFilterType());
+                } else {
+                    stillPending.add(pending.get(j));
+                }
+            }
+            pending = stillPending;
+        }
+        return answers;
+    }
+
     /**
      * Check content against one of our lists. Stop when we get a hit
      *
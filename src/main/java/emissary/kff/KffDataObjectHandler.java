@@ -2,6 +2,7 @@ package emissary.kff;
 
 import emissary.core.IBaseDataObject;
 import emissary.core.IBaseDataObject.MergePolicy;
+import emissary.core.channels.InMemoryChannelFactory;
 import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.core.channels.SeekableByteChannelHelper;
 
@@ -16,7 +17,9 @@ import java.io.IOException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -154,7 +157,7 @@ public class KffDataObjectHandler {
         return processKffResult(kffCheck, prefix);
     }
 
-    private static Map<String, String> processKffResult(KffResult result, String prefix) {
+    private static Map<String, String> processKffResult(@Nullable KffResult result, String prefix) {
         Map<String, String> results = new HashMap<>();
 
         if (result != null) {
@@ -232,6 +235,69 @@ public class KffDataObjectHandler {
             }
         }
 
+        handleKnown(d, useSbc);
+    }
+
+    /**
+     * Compute the hashes of a batch of data objects, such as the children sprouted by one place, looking them up in the
+     * filters together so a filter backed by a remote store can answer the whole batch in one round trip. Each data object
+     * ends up as {@link #hash(IBaseDataObject, boolean)} would leave it.
+     *
+     * @param payloads the data objects, nulls are skipped
+     * @param useSbc use the {@link SeekableByteChannel} interface
+     */
+    public void hash(final List<IBaseDataObject> payloads, final boolean useSbc) {
+        final List<IBaseDataObject> batch = new ArrayList<>(payloads.size());
+        final List<String> originalMD5s = new ArrayList<>(payloads.size());
+        final List<String> names = new ArrayList<>(payloads.size());
+        final List<SeekableByteChannelFactory> contents = new ArrayList<>(payloads.size());
+        for (final IBaseDataObject d : payloads) {
+            if (d == null) {
+                continue;
+            }
+            final String originalMD5 = captureOriginalMD5BeforeRehashing(d);
+            removeHash(d);
+            try {
+                if (useSbc && d.getChannelSize() > 0) {
+                    contents.add(d.getChannelFactory());
+                } else if (!useSbc && d.dataLength() > 0) {
+                    contents.add(InMemoryChannelFactory.create(d.data()));
+                } else {
+                    continue;
+                }
+            } catch (IOException e) {
+                logger.error("Couldn't hash data {}", d.shortName());
+                continue;
+            }
+            batch.add(d);
+            originalMD5s.add(originalMD5);
+            names.add(d.shortName());
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<KffResult> results = null;
+        try {
+            results = kff.checkAll(names, contents);
+        } catch (NoSuchAlgorithmException | IOException kffex) {
+            logger.warn("Unable to compute kff on {} items", names.size(), kffex);
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            final IBaseDataObject d = batch.get(i);
+            d.putParameters(processKffResult(results == null ? null : results.get(i), ""), MergePolicy.DROP_EXISTING);
+            if (!d.hasParameter(MD5_ORIGINAL) && previouslyComputedMd5HasChanged(d, originalMD5s.get(i))) {
+                d.setParameter(MD5_ORIGINAL, originalMD5s.get(i));
+            }
+            handleKnown(d, useSbc);
+        }
+    }
+
+    /**
+     * Apply the policy on known data when a filter hit the data object
+     */
+    private void handleKnown(final IBaseDataObject d, final boolean useSbc) {
         // Set params if we have a hit
         if (d.hasParameter(KFF_PARAM_KNOWN_FILTER_NAME)) {
             if (setFileTypeOnKnown) {
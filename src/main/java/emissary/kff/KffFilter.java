@@ -1,5 +1,7 @@
 package emissary.kff;
 
+import java.util.List;
+
 /**
  * Interface for a KFF Implementation to follow
  */
@@ -18,4 +20,24 @@ public interface KffFilter {
 
     boolean check(String fname, ChecksumResults sums) throws Exception;
 
+    /**
+     * Check a batch of items. Filters backed by a remote store can override this to look the whole batch up at once. The
+     * answers must be the same as calling {@link #check(String, ChecksumResults)} for each item in order.
+     *
+     * @param fnames the item names
+     * @param sums the checksums of each item, in the same order
+     * @return whether each item is known
+     * @throws Exception if any check fails
+     */
+    default boolean[] checkAll(List<String> fnames, List<ChecksumResults> sums) throws Exception {
+        if (fnames.size() != sums.size()) {
+            throw new IllegalArgumentException("Names and sums must be the same size");
+        }
+        final boolean[] hits = new boolean[fnames.size()];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = check(fnames.get(i), sums.get(i));
+        }
+        return hits;
+    }
+
 }
@@ -0,0 +1,533 @@
+package emissary.kff;
+
+import emissary.config.ConfigUtil;
+import emissary.config.Configurator;
+
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * KffMappedStore finds duplicates without an external server by keeping the hashes it has seen in a memory mapped file.
+ * If a hash is not in the store it is added and the check misses. If it is already there the check hits, the same as
+ * {@link KffMemcached}. Only one type of hash is kept, see the PREF_ALG configuration option.
+ * <p>
+ * The file is an open addressed hash table with linear probing. Each slot holds the time the hash was stored followed
+ * by the hash itself. Slots are claimed and published with compare and set on the mapped memory, so any number of
+ * threads can check and add hashes at the same time without locking. A hash older than the age-off is treated as not
+ * present and is stored again. The table lives in the file, so it is still there after a restart without being rebuilt.
+ * <p>
+ * Every so often, or when the table fills up, it is compacted: the hashes still within the age-off are copied into a
+ * new file of a suitable size, which then replaces the old one. Checks wait while this happens. The file is mapped in
+ * pieces of up to 1GB, so it can grow past 2GB, up to a limit on the number of slots. When more hashes are within the
+ * age-off than fit under the limit, compaction keeps only the newest of them.
+ * <p>
+ * Configuration file options are:
+ * <ul>
+ * <li>PREF_ALG: which hash to store</li>
+ * <li>STORE_AGEOFF: seconds a hash is remembered, 0 to remember forever</li>
+ * <li>STORE_INITIAL_SLOTS: number of slots in a new file</li>
+ * <li>STORE_MAX_SLOTS: most slots the file grows to</li>
+ * <li>STORE_COMPACT_INTERVAL: seconds between compactions</li>
+ * </ul>
+ * The file name comes from the chain configuration, for example
+ * <code>KFF_FILE_DUPE_LOCAL = "@{CONFIG_DIR}/kffdupes.bin"</code> with
+ * <code>KFF_IMPL_LOCAL = "emissary.kff.KffMappedStore"</code>.
+ */
+public class KffMappedStore implements KffFilter, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(KffMappedStore.class);
+
+    static final long MAGIC = 0x454d4b4646444231L; // EMKFFDB1
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    private static final int KEY_LENGTH_OFFSET = 12;
+    private static final int SLOTS_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+
+    /** Slot has never been used */
+    private static final long EMPTY = 0L;
+    /** Slot is claimed and the hash is being written */
+    private static final long WRITING = 1L;
+    /** Slot was being written when the process stopped and holds nothing */
+    private static final long ABANDONED = -1L;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final int MAX_LOAD_PERCENT = 75;
+
+    /** Largest single mapping, bigger tables are mapped in pieces */
+    static final long MAP_CHUNK_SIZE = 1L << 30;
+
+    /** String logical name for this filter */
+    protected String filterName = "UNKNOWN";
+
+    /** Filter type */
+    protected FilterType ftype = FilterType.UNKNOWN;
+
+    /** The hash to store */
+    protected String preferredAlgorithm = "SHA-256";
+
+    /** Seconds a hash is remembered */
+    protected long ageoff = 86400;
+
+    /** Seconds between compactions */
+    protected long compactInterval = 3600;
+
+    private final Path path;
+    private final int keyLength;
+    private final int minimumSlots;
+    private final int maximumSlots;
+    private final long chunkSize;
+    private final LongSupplier clock;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Nullable
+    private volatile Table table;
+    private volatile long nextCompaction;
+
+    /**
+     * Open or create the store
+     *
+     * @param filename the file holding the store
+     * @param filterName name of the filter (typically sent in by KffChainLoader)
+     * @param ftype filter type (again, sent in by KffChainLoader)
+     * @throws IOException if the file cannot be opened or was made for a different hash
+     */
+    public KffMappedStore(String filename, String filterName, FilterType ftype) throws IOException {
+        this(filename, filterName, ftype, ConfigUtil.getConfigInfo(KffMappedStore.class));
+    }
+
+    private KffMappedStore(String filename, String filterName, FilterType ftype, Configurator configG) throws IOException {
+        this(Paths.get(filename), filterName, ftype, configG.findStringEntry("PREF_ALG", "SHA-256"),
+                configG.findIntEntry("STORE_INITIAL_SLOTS", 1 << 20), configG.findIntEntry("STORE_MAX_SLOTS", 1 << 26),
+                configG.findLongEntry("STORE_AGEOFF", 86400), configG.findLongEntry("STORE_COMPACT_INTERVAL", 3600), KffMappedStore::epochSeconds,
+                MAP_CHUNK_SIZE);
+    }
+
+    KffMappedStore(Path path, String filterName, FilterType ftype, String preferredAlgorithm, int initialSlots, int maxSlots, long ageoff,
+            long compactInterval, LongSupplier clock, long chunkSize) throws IOException {
+        this.path = path;
+        this.filterName = filterName;
+        this.ftype = ftype;
+        this.preferredAlgorithm = preferredAlgorithm;
+        this.ageoff = ageoff;
+        this.compactInterval = compactInterval;
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+        this.maximumSlots = slotsFor(maxSlots);
+        this.minimumSlots = Math.min(slotsFor(initialSlots), this.maximumSlots);
+        try {
+            this.keyLength = MessageDigest.getInstance(preferredAlgorithm).getDigestLength();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("KffMappedStore needs a message digest algorithm, not " + preferredAlgorithm, e);
+        }
+
+        Table t = Files.exists(path) ? Table.open(path, this.keyLength, chunkSize) : Table.create(path, this.keyLength, this.minimumSlots, chunkSize);
+        this.table = t;
+        this.nextCompaction = clock.getAsLong() + compactInterval;
+        logger.debug("KFF store {} has {} slots, {} used", path, t.slots, t.count());
+    }
+
+    private static long epochSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    /**
+     * Look up the hash. If it is found, return true. If not, store it and return false.
+     */
+    @Override
+    public boolean check(String fname, ChecksumResults sums) throws Exception {
+        if (sums == null) {
+            throw new Exception("Poorly formed input to check() in sums");
+        }
+        byte[] hash = sums.getHash(preferredAlgorithm);
+        if (hash == null || hash.length != keyLength) {
+            throw new Exception("Poorly formed input to check() in hash");
+        }
+        long[] key = Table.toWords(hash);
+
+        while (true) {
+            // times at or below WRITING would look like slot states
+            long now = Math.max(clock.getAsLong(), WRITING + 1);
+            int outcome;
+            boolean full;
+            lock.readLock().lock();
+            try {
+                Table t = table;
+                if (t == null) {
+                    throw new IllegalStateException("KFF store " + path + " is closed");
+                }
+                outcome = t.checkAndStore(key, now, ageoff);
+                full = outcome == Table.FULL || t.count() * 100 > (long) t.slots * MAX_LOAD_PERCENT;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (full || now >= nextCompaction) {
+                compact(full);
+            }
+            if (outcome != Table.FULL) {
+                return outcome == Table.FOUND;
+            }
+        }
+    }
+
+    /**
+     * Copy the hashes still within the age-off into a new file. Nothing is copied when the table is not full and holds
+     * nothing that has aged off. When there are too many to fit in the largest table at half load, the oldest are dropped
+     * as well.
+     *
+     * @param force true to copy even when nothing has aged off
+     * @throws IOException if the new file cannot be written
+     */
+    void compact(boolean force) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Table t = table;
+            long now = clock.getAsLong();
+            if (t == null || (!force && now < nextCompaction)) {
+                // closed, or another thread has just done it
+                return;
+            }
+            nextCompaction = now + compactInterval;
+            long live = t.countLive(now, ageoff);
+            boolean crowded = live * 100 > (long) t.slots * MAX_LOAD_PERCENT / 2;
+            if (live == t.count() && !crowded) {
+                return;
+            }
+
+            long keep = ageoff;
+            if (live * 2 > maximumSlots) {
+                // halve how long hashes are kept until they fit
+                keep = ageoff > 0 ? ageoff : Math.max(1L, now - t.oldest());
+                while (live * 2 > maximumSlots && keep > 1) {
+                    keep /= 2;
+                    live = t.countLive(now, keep);
+                }
+                logger.warn("KFF store {} is at its limit of {} slots, keeping only the hashes from the last {}s", path, maximumSlots, keep);
+            }
+
+            int slots = Math.max(minimumSlots, slotsFor(Math.min(live * 2 + 1, maximumSlots)));
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            Files.deleteIfExists(compacted);
+            Table replacement = Table.create(compacted, keyLength, slots, chunkSize);
+            try {
+                t.copyLive(replacement, now, keep, (long) slots * MAX_LOAD_PERCENT / 100);
+                replacement.force();
+                Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                replacement.close();
+                Files.deleteIfExists(compacted);
+                throw e;
+            }
+            table = replacement;
+            t.close();
+            logger.debug("Compacted KFF store {} from {} to {} hashes in {} slots", path, t.count(), live, slots);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int slotsFor(long wanted) {
+        long slots = Long.highestOneBit(Math.max(wanted, 16) - 1) << 1;
+        if (slots > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Too many slots requested for a KFF store: " + wanted);
+        }
+        return (int) slots;
+    }
+
+    /**
+     * Number of slots in use, including hashes that have aged off but not been compacted away
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            Table t = table;
+            return t == null ? 0 : t.count();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write everything to disk and release the file
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Table t = table;
+            if (t != null) {
+                t.force();
+                t.close();
+                table = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public String getPreferredAlgorithm() {
+        return preferredAlgorithm;
+    }
+
+    @Override
+    public String getName() {
+        return filterName;
+    }
+
+    @Override
+    public FilterType getFilterType() {
+        return ftype;
+    }
+
+    /**
+     * One file, mapped as a header followed by pieces that each hold a power of two slots
+     */
+    private static final class Table {
+        static final int STORED = 0;
+        static final int FOUND = 1;
+        static final int FULL = 2;
+
+        final FileChannel channel;
+        final MappedByteBuffer header;
+        final MappedByteBuffer[] chunks;
+        final int keyWords;
+        final int slotSize;
+        final int slots;
+        final int mask;
+        final int chunkShift;
+        final int chunkMask;
+
+        private Table(FileChannel channel, int keyLength, int slots, long chunkSize) throws IOException {
+            this.channel = channel;
+            this.keyWords = (keyLength + 7) / 8;
+            this.slotSize = 8 * (1 + keyWords);
+            this.slots = slots;
+            this.mask = slots - 1;
+            int chunkSlots = (int) Math.min(slots, Long.highestOneBit(Math.max(1L, chunkSize / slotSize)));
+            this.chunkShift = Integer.numberOfTrailingZeros(chunkSlots);
+            this.chunkMask = chunkSlots - 1;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            this.chunks = new MappedByteBuffer[slots / chunkSlots];
+            for (int i = 0; i < this.chunks.length; i++) {
+                this.chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long) i * chunkSlots * slotSize,
+                        (long) chunkSlots * slotSize);
+            }
+        }
+
+        static Table create(Path path, int keyLength, int slots, long chunkSize) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                Table t = new Table(channel, keyLength, slots, chunkSize);
+                t.header.putLong(0, MAGIC);
+                t.header.putInt(8, VERSION);
+                t.header.putInt(KEY_LENGTH_OFFSET, keyLength);
+                t.header.putLong(SLOTS_OFFSET, slots);
+                t.header.putLong(COUNT_OFFSET, 0L);
+                return t;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        static Table open(Path path, int keyLength, long chunkSize) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_SIZE));
+                if (header.capacity() < HEADER_SIZE || header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+                    throw new IOException(path + " is not a KFF store");
+                }
+                if (header.getInt(KEY_LENGTH_OFFSET) != keyLength) {
+                    throw new IOException(path + " holds " + header.getInt(KEY_LENGTH_OFFSET) + " byte hashes, not " + keyLength);
+                }
+                long slots = header.getLong(SLOTS_OFFSET);
+                if (slots <= 0 || Long.bitCount(slots) != 1 || slots > Integer.MAX_VALUE) {
+                    throw new IOException(path + " has a bad slot count " + slots);
+                }
+                Table t = new Table(channel, keyLength, (int) slots, chunkSize);
+                t.releaseAbandoned();
+                return t;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Pack a hash into big endian words, zero padded, the same as it is stored
+         */
+        static long[] toWords(byte[] hash) {
+            long[] words = new long[(hash.length + 7) / 8];
+            for (int i = 0; i < hash.length; i++) {
+                words[i >> 3] |= (hash[i] & 0xffL) << (56 - 8 * (i & 7));
+            }
+            return words;
+        }
+
+        /**
+         * Slots left claimed by a process that stopped part way through writing a hash can never be finished
+         */
+        private void releaseAbandoned() {
+            for (int i = 0; i < slots; i++) {
+                MappedByteBuffer chunk = chunk(i);
+                int offset = offset(i);
+                if ((long) LONGS.getVolatile(chunk, offset) == WRITING) {
+                    LONGS.setVolatile(chunk, offset, ABANDONED);
+                }
+            }
+        }
+
+        long count() {
+            return (long) LONGS.getVolatile(header, COUNT_OFFSET);
+        }
+
+        private MappedByteBuffer chunk(int slot) {
+            return chunks[slot >>> chunkShift];
+        }
+
+        private int offset(int slot) {
+            return (slot & chunkMask) * slotSize;
+        }
+
+        private int home(long[] key) {
+            long h = key[0] ^ (key[0] >>> 29);
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        /**
+         * Find the hash, or claim a slot and store it
+         *
+         * @return {@link #FOUND}, {@link #STORED}, or {@link #FULL} when there is no free slot
+         */
+        int checkAndStore(long[] key, long now, long ageoff) {
+            int slot = home(key);
+            for (int probes = 0; probes < slots; probes++, slot = (slot + 1) & mask) {
+                MappedByteBuffer chunk = chunk(slot);
+                int offset = offset(slot);
+                long stamp = (long) LONGS.getAcquire(chunk, offset);
+                if (stamp == EMPTY) {
+                    if (LONGS.compareAndSet(chunk, offset, EMPTY, WRITING)) {
+                        for (int w = 0; w < keyWords; w++) {
+                            LONGS.set(chunk, offset + 8 + 8 * w, key[w]);
+                        }
+                        LONGS.setRelease(chunk, offset, now);
+                        LONGS.getAndAdd(header, COUNT_OFFSET, 1L);
+                        return STORED;
+                    }
+                    // another thread claimed it first, it may be storing this same hash
+                    stamp = awaitPublished(chunk, offset);
+                } else if (stamp == WRITING) {
+                    stamp = awaitPublished(chunk, offset);
+                }
+                if (stamp == ABANDONED || !matches(chunk, offset, key)) {
+                    continue;
+                }
+                if (ageoff > 0 && now - stamp >= ageoff) {
+                    // aged off, so this counts as storing it again unless another thread just did
+                    return LONGS.compareAndSet(chunk, offset, stamp, now) ? STORED : FOUND;
+                }
+                return FOUND;
+            }
+            return FULL;
+        }
+
+        private static long awaitPublished(MappedByteBuffer chunk, int offset) {
+            long stamp;
+            while ((stamp = (long) LONGS.getAcquire(chunk, offset)) == WRITING) {
+                Thread.onSpinWait();
+            }
+            return stamp;
+        }
+
+        private boolean matches(MappedByteBuffer chunk, int offset, long[] key) {
+            for (int w = 0; w < keyWords; w++) {
+                if ((long) LONGS.get(chunk, offset + 8 + 8 * w) != key[w]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isLive(long stamp, long now, long ageoff) {
+            return stamp != EMPTY && stamp != WRITING && stamp != ABANDONED && (ageoff <= 0 || now - stamp < ageoff);
+        }
+
+        long countLive(long now, long ageoff) {
+            long live = 0;
+            for (int i = 0; i < slots; i++) {
+                if (isLive((long) LONGS.getVolatile(chunk(i), offset(i)), now, ageoff)) {
+                    live++;
+                }
+            }
+            return live;
+        }
+
+        /**
+         * Time the oldest hash was stored
+         */
+        long oldest() {
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < slots; i++) {
+                long stamp = (long) LONGS.getVolatile(chunk(i), offset(i));
+                if (isLive(stamp, 0, 0)) {
+                    oldest = Math.min(oldest, stamp);
+                }
+            }
+            return oldest;
+        }
+
+        /**
+         * Store live hashes in another table, keeping the time each was stored
+         *
+         * @param limit stop once the other table holds this many
+         */
+        void copyLive(Table target, long now, long ageoff, long limit) {
+            long[] key = new long[keyWords];
+            for (int i = 0; i < slots && target.count() < limit; i++) {
+                MappedByteBuffer chunk = chunk(i);
+                int offset = offset(i);
+                long stamp = (long) LONGS.getVolatile(chunk, offset);
+                if (!isLive(stamp, now, ageoff)) {
+                    continue;
+                }
+                for (int w = 0; w < keyWords; w++) {
+                    key[w] = (long) LONGS.get(chunk, offset + 8 + 8 * w);
+                }
+                if (target.checkAndStore(key, stamp, 0) == FULL) {
+                    throw new IllegalStateException("Compacted KFF store is too small");
+                }
+            }
+        }
+
+        void force() {
+            header.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
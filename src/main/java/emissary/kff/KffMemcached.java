@@ -2,8 +2,13 @@ package emissary.kff;
 
 import emissary.config.ConfigUtil;
 import emissary.config.Configurator;
+import emissary.core.MetricsManager;
+import emissary.core.NamespaceException;
 import emissary.util.Hexl;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import jakarta.annotation.Nullable;
 import net.spy.memcached.ConnectionFactoryBuilder;
 import net.spy.memcached.ConnectionFactoryBuilder.Protocol;
@@ -15,9 +20,12 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -39,7 +47,16 @@ import java.util.concurrent.TimeUnit;
  * memcached before expiring MEMCACHED_OP_TIMEOUT_MILLIS: how long to wait before timing out a memcached operation
  * MEMCACHED_IGNORE_VALUE_PATTERN: do not store values that contain this pattern (non-regexO MEMCACHED_FAILURE_MODE:
  * what to do in case of server failure MEMCACHED_STORE_ID_DUPE: boolean to store the id if it's hash is already
- * contained in memcached PREF_ALG: Which Emissary hash to use as the key stored in memcached
+ * contained in memcached PREF_ALG: Which Emissary hash to use as the key stored in memcached MEMCACHED_NEAR_CACHE_SIZE:
+ * how many hashes to remember locally, 0 to always ask memcached MEMCACHED_NEAR_CACHE_HIT_SECONDS: how long to remember
+ * a hash found in memcached
+ *
+ * Hashes that were found or stored are remembered in a small local cache so repeated content does not cost a round
+ * trip. A stored hash is remembered for MEMCACHED_AGEOFF seconds, as long as memcached keeps it. Memcached does not say
+ * how old a hash it found is, so a found hash is only remembered for MEMCACHED_NEAR_CACHE_HIT_SECONDS and is never
+ * answered locally for longer than that after memcached drops it. A batch checked with {@link #checkAll(List, List)} is
+ * looked up with a single multi-key get. Stores are sent without waiting for the reply. Near cache hits, memcached
+ * hits, misses and the memcached lookup time are recorded in the MetricsManager registry when there is one.
  */
 public class KffMemcached implements KffFilter {
 
@@ -101,6 +118,26 @@ public class KffMemcached implements KffFilter {
      */
     protected MemcachedClient client;
 
+    /**
+     * How many hashes to hold in the near cache
+     */
+    protected int nearCacheSize = 10000;
+
+    /**
+     * How long to remember a hash found in memcached, whose remaining time there is not known
+     */
+    protected int nearCacheHitSeconds = 60;
+
+    /**
+     * Hashes recently found or stored in memcached
+     */
+    protected KffNearCache nearCache;
+
+    protected Counter nearCacheHits;
+    protected Counter memcachedHits;
+    protected Counter misses;
+    protected Timer memcachedLatency;
+
     /**
      *
      * @param filename Unused
@@ -173,6 +210,23 @@ public class KffMemcached implements KffFilter {
         // Set the operation timeout
         opTimeoutMillis = configG.findLongEntry("MEMCACHED_OP_TIMEOUT_MILLIS", opTimeoutMillis);
 
+        nearCacheSize = configG.findIntEntry("MEMCACHED_NEAR_CACHE_SIZE", nearCacheSize);
+        nearCacheHitSeconds = configG.findIntEntry("MEMCACHED_NEAR_CACHE_HIT_SECONDS", nearCacheHitSeconds);
+        nearCache = new KffNearCache(nearCacheSize, ageoff);
+
+        MetricRegistry registry;
+        try {
+            registry = MetricsManager.lookup().getMetricRegistry();
+        } catch (NamespaceException e) {
+            logger.debug("No MetricsManager available, memcached metrics are only kept locally");
+            registry = new MetricRegistry();
+        }
+        String metricBase = MetricRegistry.name(KffMemcached.class.getSimpleName(), filterName);
+        nearCacheHits = registry.counter(MetricRegistry.name(metricBase, "nearCacheHits"));
+        memcachedHits = registry.counter(MetricRegistry.name(metricBase, "memcachedHits"));
+        misses = registry.counter(MetricRegistry.name(metricBase, "misses"));
+        memcachedLatency = registry.timer(MetricRegistry.name(metricBase, "memcachedLatency"));
+
         String failModeAsString = configG.findStringEntry("MEMCACHED_FAILURE_MODE", "Cancel");
         if (failModeAsString.equalsIgnoreCase("cancel")) {
             failMode = FailureMode.Cancel;
@@ -208,7 +262,84 @@ public class KffMemcached implements KffFilter {
      */
     @Override
     public boolean check(String id, ChecksumResults sums) throws Exception {
+        String key = keyFor(id, sums);
+        if (key == null) {
+            return false;
+        }
+
+        String cached = nearCache.get(key);
+        if (cached != null) {
+            nearCacheHits.inc();
+            return found(id, key, cached);
+        }
+
+        // Send the query and let the TimeoutException propagate up
+        Object result;
+        try (Timer.Context unused = memcachedLatency.time()) {
+            result = client.asyncGet(key).get(opTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return record(id, key, result);
+    }
+
+    /**
+     * Check a batch of ids with one multi-key get for every hash not in the near cache. Each id is answered as
+     * {@link #check(String, ChecksumResults)} would, in order, so a hash repeated within the batch is a miss the first time
+     * and a hit after that.
+     */
+    @Override
+    public boolean[] checkAll(List<String> ids, List<ChecksumResults> sums) throws Exception {
+        if (ids.size() != sums.size()) {
+            throw new IllegalArgumentException("Ids and sums must be the same size");
+        }
+
+        String[] keys = new String[ids.size()];
+        String[] cached = new String[ids.size()];
+        Set<String> lookups = new LinkedHashSet<>();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyFor(ids.get(i), sums.get(i));
+            if (keys[i] != null) {
+                cached[i] = nearCache.get(keys[i]);
+                if (cached[i] == null) {
+                    lookups.add(keys[i]);
+                }
+            }
+        }
+
+        Map<String, Object> results = Collections.emptyMap();
+        if (!lookups.isEmpty()) {
+            // Let the TimeoutException propagate up
+            try (Timer.Context unused = memcachedLatency.time()) {
+                results = new HashMap<>(client.asyncGetBulk(lookups).get(opTimeoutMillis, TimeUnit.MILLISECONDS));
+            }
+        }
 
+        boolean[] hits = new boolean[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                continue;
+            }
+            if (cached[i] != null) {
+                nearCacheHits.inc();
+                hits[i] = found(ids.get(i), keys[i], cached[i]);
+            } else {
+                Object result = results.get(keys[i]);
+                hits[i] = record(ids.get(i), keys[i], result);
+                if (result == null) {
+                    // Stored now, so any later copy in the batch is a hit
+                    results.put(keys[i], ids.get(i));
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Validate the input and build the memcached key
+     *
+     * @return the key, or null if the id matches an ignore pattern
+     */
+    @Nullable
+    private String keyFor(String id, ChecksumResults sums) throws Exception {
         if (sums == null) {
             throw new Exception("Poorly formed input to check() in sums");
         }
@@ -222,7 +353,7 @@ public class KffMemcached implements KffFilter {
             // Loop through all patterns to see if any match
             for (String ignorePattern : ignorePatterns) {
                 if (id.contains(ignorePattern)) {
-                    return false;
+                    return null;
                 }
             }
         }
@@ -233,32 +364,36 @@ public class KffMemcached implements KffFilter {
             throw new Exception("Poorly formed input to check() in hash");
         }
 
-        String key = Hexl.toUnformattedHexString(hash);
-
-        // Send the query
-        Future<Object> future = client.asyncGet(key);
-
-
-        // Let the TimeoutException propagate up
-        Object result = future.get(opTimeoutMillis, TimeUnit.MILLISECONDS);
+        return Hexl.toUnformattedHexString(hash);
+    }
 
+    /**
+     * Handle the answer from memcached, storing the id when the key was not found
+     */
+    private boolean record(String id, String key, @Nullable Object result) {
         if (result != null) {
-            if (storeIdDupe && !result.equals(id)) {
-                // As long as the id is not the same as what was already stored, then
-                // store it on its own
-                var unused = client.set(id, ageoff, key);
-                // logger.debug("Storing duplicate Id: {} with value (hash) {}", id, key);
-            }
-            // logger.debug("Found key: {} with value {}", key, (String) result);
-            // Found the key
-            return true;
+            memcachedHits.inc();
+            boolean hit = found(id, key, result);
+            nearCache.put(key, result.toString(), nearCacheHitSeconds);
+            return hit;
         }
-        // logger.debug("Did not find key: {}", key);
-        // Did not find the key...store it and move on
+        misses.inc();
+        // Did not find the key...store it and move on without waiting for the reply
         var unused = client.set(key, ageoff, id);
+        nearCache.put(key, id);
         return false;
+    }
 
-
+    /**
+     * Handle a key that is already known
+     */
+    private boolean found(String id, String key, Object stored) {
+        if (storeIdDupe && !stored.equals(id)) {
+            // As long as the id is not the same as what was already stored, then
+            // store it on its own
+            var unused = client.set(id, ageoff, key);
+        }
+        return true;
     }
 
     public String getPreferredAlgorithm() {
@@ -279,4 +414,32 @@ public class KffMemcached implements KffFilter {
         return ftype;
     }
 
+    /**
+     * Number of hashes answered from the near cache
+     */
+    public long getNearCacheHits() {
+        return nearCacheHits.getCount();
+    }
+
+    /**
+     * Number of hashes found in memcached
+     */
+    public long getMemcachedHits() {
+        return memcachedHits.getCount();
+    }
+
+    /**
+     * Number of hashes not found anywhere and stored
+     */
+    public long getMisses() {
+        return misses.getCount();
+    }
+
+    /**
+     * Timing of the lookups sent to memcached, one per check or batch
+     */
+    public Timer getMemcachedLatency() {
+        return memcachedLatency;
+    }
+
 }
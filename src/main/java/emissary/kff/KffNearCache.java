@@ -0,0 +1,149 @@
+package emissary.kff;
+
+import jakarta.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A small bounded cache kept in front of a remote KFF store so repeated hashes do not cost a network round trip.
+ * <p>
+ * Entries are kept in a segmented LRU: new entries go into a probation segment and move to a protected segment when
+ * they are used again. A burst of hashes seen only once can only push out other probation entries, so the hashes that
+ * keep repeating stay cached. Entries expire after a fixed time so the cache never holds a value longer than the remote
+ * store would, or sooner when the caller does not know how long the remote store will keep the value.
+ */
+final class KffNearCache {
+
+    /** Share of the capacity given to the protected segment */
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final int capacity;
+    private final int protectedCapacity;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    // access ordered, eldest first
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Create a cache
+     *
+     * @param capacity most entries held, 0 to hold nothing
+     * @param ttlSeconds how long an entry is kept, 0 or less to keep entries until they are evicted
+     */
+    KffNearCache(final int capacity, final long ttlSeconds) {
+        this(capacity, ttlSeconds, System::nanoTime);
+    }
+
+    KffNearCache(final int capacity, final long ttlSeconds, final LongSupplier clock) {
+        this.capacity = Math.max(capacity, 0);
+        this.protectedCapacity = (int) ((long) this.capacity * PROTECTED_PERCENT / 100);
+        this.ttlNanos = ttlSeconds > 0 ? TimeUnit.SECONDS.toNanos(ttlSeconds) : Long.MAX_VALUE;
+        this.clock = clock;
+    }
+
+    /**
+     * Look up a key
+     *
+     * @param key the key
+     * @return the value, or null if it is not cached or has expired
+     */
+    @Nullable
+    synchronized String get(final String key) {
+        if (this.capacity == 0) {
+            return null;
+        }
+        final long now = this.clock.getAsLong();
+        Entry e = this.protectedSegment.get(key);
+        if (e != null) {
+            if (e.isExpired(now)) {
+                this.protectedSegment.remove(key);
+                return null;
+            }
+            return e.value;
+        }
+        e = this.probation.remove(key);
+        if (e == null) {
+            return null;
+        }
+        if (e.isExpired(now)) {
+            return null;
+        }
+        // used twice, promote and demote the least recently used protected entry if there is no room
+        this.protectedSegment.put(key, e);
+        if (this.protectedSegment.size() > this.protectedCapacity) {
+            final Iterator<Map.Entry<String, Entry>> it = this.protectedSegment.entrySet().iterator();
+            final Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            this.probation.put(eldest.getKey(), eldest.getValue());
+        }
+        return e.value;
+    }
+
+    /**
+     * Add or replace a key
+     *
+     * @param key the key
+     * @param value the value
+     */
+    void put(final String key, final String value) {
+        put(key, value, -1L);
+    }
+
+    /**
+     * Add or replace a key that is kept for less than the usual time, such as a value read from the remote store whose age
+     * is not known
+     *
+     * @param key the key
+     * @param value the value
+     * @param ttlSeconds how long the entry is kept, 0 or less for the usual time, never longer than the usual time
+     */
+    synchronized void put(final String key, final String value, final long ttlSeconds) {
+        if (this.capacity == 0) {
+            return;
+        }
+        final long ttl = ttlSeconds > 0 ? Math.min(TimeUnit.SECONDS.toNanos(ttlSeconds), this.ttlNanos) : this.ttlNanos;
+        final Entry e = new Entry(value, expiry(this.clock.getAsLong(), ttl));
+        if (this.protectedSegment.containsKey(key)) {
+            this.protectedSegment.put(key, e);
+            return;
+        }
+        this.probation.put(key, e);
+        while (this.probation.size() + this.protectedSegment.size() > this.capacity) {
+            final Iterator<Map.Entry<String, Entry>> it =
+                    (this.probation.isEmpty() ? this.protectedSegment : this.probation).entrySet().iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static long expiry(final long now, final long ttl) {
+        return ttl == Long.MAX_VALUE ? Long.MAX_VALUE : now + ttl;
+    }
+
+    /**
+     * Number of entries held, including any that have expired but not been looked up since
+     */
+    synchronized int size() {
+        return this.probation.size() + this.protectedSegment.size();
+    }
+
+    private static final class Entry {
+        final String value;
+        final long expiresAt;
+
+        Entry(final String value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(final long now) {
+            return now - this.expiresAt >= 0 && this.expiresAt != Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package emissary.kff;
+
+import emissary.config.ConfigUtil;
+import emissary.config.Configurator;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * KffSsdeepFilter marks near-duplicates: an item hits when its ssdeep fuzzy hash scores at least MIN_SCORE against any
+ * known hash. The known hashes are kept in a {@link SsdeepIndex} so a check only scores the few known hashes that could
+ * match.
+ * <p>
+ * Known hashes are read from a file with one hash per line as written by the ssdeep program, the signature optionally
+ * followed by a comma and the quoted file name. Blank lines and the <code>ssdeep,</code> header line are skipped. If
+ * the file does not exist the filter starts empty.
+ * <p>
+ * Configuration file options are:
+ * <ul>
+ * <li>MIN_SCORE: lowest ssdeep score, 1 to 100, that counts as a hit</li>
+ * <li>ADD_UNKNOWN: true to add the hash of every item that misses, so later near-duplicates of it hit</li>
+ * <li>MAX_UNKNOWN: most hashes ADD_UNKNOWN adds, after which misses are no longer added</li>
+ * </ul>
+ * The file name comes from the chain configuration, for example
+ * <code>KFF_FILE_DUPE_FUZZY = "@{CONFIG_DIR}/known.ssdeep"</code> with
+ * <code>KFF_IMPL_FUZZY = "emissary.kff.KffSsdeepFilter"</code>. The chain must compute SSDEEP, see KFF_ALG.
+ */
+public class KffSsdeepFilter implements KffFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(KffSsdeepFilter.class);
+
+    /** String logical name for this filter */
+    protected String filterName = "UNKNOWN";
+
+    /** Filter type */
+    protected FilterType ftype = FilterType.UNKNOWN;
+
+    /** Lowest score that counts as a hit */
+    protected int minScore = 80;
+
+    /** Whether hashes that miss are added */
+    protected boolean addUnknown = false;
+
+    /** Most hashes that miss are added */
+    protected int maxUnknown = 1_000_000;
+
+    private final AtomicInteger unknownAdded = new AtomicInteger();
+
+    private final SsdeepIndex index = new SsdeepIndex();
+
+    /**
+     * Load the known hashes
+     *
+     * @param filename the file of known ssdeep hashes
+     * @param filterName name of the filter (typically sent in by KffChainLoader)
+     * @param ftype filter type (again, sent in by KffChainLoader)
+     * @throws IOException if the file cannot be read
+     */
+    public KffSsdeepFilter(String filename, String filterName, FilterType ftype) throws IOException {
+        this(Paths.get(filename), filterName, ftype, ConfigUtil.getConfigInfo(KffSsdeepFilter.class));
+    }
+
+    private KffSsdeepFilter(Path path, String filterName, FilterType ftype, Configurator configG) throws IOException {
+        this(path, filterName, ftype, configG.findIntEntry("MIN_SCORE", 80), configG.findBooleanEntry("ADD_UNKNOWN", false),
+                configG.findIntEntry("MAX_UNKNOWN", 1_000_000));
+    }
+
+    KffSsdeepFilter(Path path, String filterName, FilterType ftype, int minScore, boolean addUnknown, int maxUnknown) throws IOException {
+        this.filterName = filterName;
+        this.ftype = ftype;
+        this.minScore = Math.max(minScore, 1);
+        this.addUnknown = addUnknown;
+        this.maxUnknown = Math.max(maxUnknown, 0);
+        if (Files.exists(path)) {
+            load(path);
+        } else {
+            logger.debug("No ssdeep hashes at {}, starting empty", path);
+        }
+    }
+
+    private void load(Path path) throws IOException {
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String hash = StringUtils.substringBefore(line, ",").trim();
+                if (hash.isEmpty() || "ssdeep".equals(hash)) {
+                    continue;
+                }
+                final SpamSumSignature signature;
+                try {
+                    signature = new SpamSumSignature(hash);
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    continue;
+                }
+                if (index.add(signature) < 0) {
+                    logger.warn("Ssdeep index is full at {} hashes, ignoring the rest of {}", index.size(), path);
+                    break;
+                }
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} lines of {} that were not ssdeep hashes", skipped, path);
+        }
+        logger.debug("Loaded {} ssdeep hashes from {}", index.size(), path);
+    }
+
+    /**
+     * Look for a known hash similar to the ssdeep hash of the item
+     *
+     * @return true if a known hash scores at least MIN_SCORE, false if not or the item has no ssdeep hash
+     */
+    @Override
+    public boolean check(String fname, ChecksumResults sums) throws Exception {
+        if (sums == null) {
+            throw new Exception("Poorly formed input to check() in sums");
+        }
+        String hash = sums.getSsdeep();
+        if (StringUtils.isBlank(hash)) {
+            return false;
+        }
+        SpamSumSignature signature = new SpamSumSignature(hash);
+        List<SsdeepIndex.Match> matches = index.query(signature, minScore);
+        if (!matches.isEmpty()) {
+            logger.debug("{} is similar to known hash {} with score {}", fname, matches.get(0).getId(), matches.get(0).getScore());
+            return true;
+        }
+        // checked first so the count stops growing once the limit is reached
+        if (addUnknown && unknownAdded.get() < maxUnknown) {
+            final int added = unknownAdded.incrementAndGet();
+            if (added <= maxUnknown && index.add(signature) >= 0 && added == maxUnknown) {
+                logger.info("Added {} unknown ssdeep hashes, no more will be added", maxUnknown);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of hashes known
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public String getName() {
+        return filterName;
+    }
+
+    @Override
+    public FilterType getFilterType() {
+        return ftype;
+    }
+}
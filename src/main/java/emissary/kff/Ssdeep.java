@@ -10,11 +10,14 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 /**
@@ -28,17 +31,17 @@ public final class Ssdeep {
 
     private static final Logger logger = LoggerFactory.getLogger(Ssdeep.class);
 
-    private static final int SPAMSUM_LENGTH = 64;
+    static final int SPAMSUM_LENGTH = 64;
     private static final int MIN_BLOCKSIZE = 3;
 
     @SuppressWarnings("PMD.UselessParentheses")
     public static final int FUZZY_MAX_RESULT = SPAMSUM_LENGTH + (SPAMSUM_LENGTH / 2 + 20);
 
     /** The window size for the rolling hash. */
-    private static final int ROLLING_WINDOW_SIZE = 7;
+    static final int ROLLING_WINDOW_SIZE = 7;
 
     /** The buffer size to use when reading data from a file. */
-    private static final int BUFFER_SIZE = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     /** FNV hash initial value, 32-bit unsigned. */
     private static final long HASH_INIT = 0x28021967;
@@ -65,23 +68,50 @@ public final class Ssdeep {
         return b64Table[((int) v) & 0x3f];
     }
 
+    /**
+     * The hashing state for every block size a hash might end up using.
+     * <p>
+     * The block size is first estimated from the input length, and when the signature comes out shorter than half its
+     * length the hash has to be done again at half the block size. Rather than reading the input again for each smaller
+     * block size, every block size from the estimate down to the minimum is hashed in the same pass. A block size is
+     * dropped as soon as a larger one has enough signature characters, because the larger one will be used, so only the top
+     * few block sizes are usually kept up to date.
+     * <p>
+     * Each thread reuses its own context and read buffer, so hashing allocates nothing but the result.
+     */
     private static final class SsContext {
 
-        /** A buffer for the main hash output. */
-        private final byte[] fuzzHash1 = new byte[SPAMSUM_LENGTH + 1];
+        /** Enough block sizes for any input length. */
+        private static final int MAX_LEVELS = 58;
+
+        /** The running hash for the main signature, for each block size {@code MIN_BLOCKSIZE << level}. */
+        private final long[] sumHash1 = new long[MAX_LEVELS];
+
+        /** The running hash for the secondary signature, at twice each block size. */
+        private final long[] sumHash2 = new long[MAX_LEVELS];
+
+        /** The count of output bytes stored in each {@link #fuzzHash1}. */
+        private final int[] fuzzLen1 = new int[MAX_LEVELS];
+
+        /** The count of output bytes stored in each {@link #fuzzHash2}. */
+        private final int[] fuzzLen2 = new int[MAX_LEVELS];
 
-        /** A buffer for the secondary hash output. */
-        private final byte[] fuzzHash2 = new byte[SPAMSUM_LENGTH / 2 + 1];
+        /** Buffers for the main hash output. */
+        private final byte[][] fuzzHash1 = new byte[MAX_LEVELS][SPAMSUM_LENGTH + 1];
 
-        /** The count of output bytes currently stored in {@link #fuzzHash1}, initially zero. */
-        private int fuzzLen1;
+        /** Buffers for the secondary hash output. */
+        private final byte[][] fuzzHash2 = new byte[MAX_LEVELS][SPAMSUM_LENGTH / 2 + 1];
 
-        /** The count of output bytes currently stored in {@link #fuzzHash2}, initially zero. */
-        private int fuzzLen2;
+        /** The smallest block size still being hashed. */
+        private int low;
 
-        private long sumHash1; // Initially zero.
-        private long sumHash2; // Initially zero.
-        private long blockSize; // Initialized by constructor.
+        /** The estimated block size, the largest that can be used. */
+        private int top;
+
+        private final RollingState rollState = new RollingState();
+
+        /** A buffer for reading channels. */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 
         /**
          * Estimate the block size to use.
@@ -99,43 +129,22 @@ public final class Ssdeep {
         }
 
         /**
-         * Construct a spam sum context to process a file.
+         * Discard any existing hash state and prepare to compute a new hash. This should be followed by calls to the
+         * {@code update} methods to provide the data, and then {@link #finishHashing()} to complete the computations.
          *
-         * @param f The file that will be processed, if known. If non-{@code null}, the length of the file is used to guess the
-         *        hash block size to use.
+         * @param expectedInputLength The expected amount of data to be processed, in bytes, or 0 if unknown. Used to estimate
+         *        the largest block size to use.
          */
-        public SsContext(@Nullable final File f) {
-            final long expectedInputLength = (f != null) ? f.length() : 0;
-            this.blockSize = estimateBlockSize(expectedInputLength);
-        }
-
-        /**
-         * Construct a spam sum context to process a byte array.
-         *
-         * @param data The bytes that will be processed, if known. If non-{@code null}, the length of the array is used to guess
-         *        the hash block size to use.
-         */
-        public SsContext(@Nullable final byte[] data) {
-            final long expectedInputLength = (data != null) ? data.length : 0;
-            this.blockSize = estimateBlockSize(expectedInputLength);
-        }
-
-        /**
-         * Construct a spam sum context to process a {@link SeekableByteChannel}
-         *
-         * @param sbcf The channel that will be processed, if known. If non-{@code null}, the length of the channel is used to
-         *        guess the hash block size to use.
-         */
-        public SsContext(final SeekableByteChannelFactory sbcf) {
-            long expectedInputLength = 0;
-
-            try (SeekableByteChannel sbc = sbcf.create()) {
-                expectedInputLength = sbc.size();
-            } catch (final IOException ignored) {
-                // Ignore
+        private void beginHashing(final long expectedInputLength) {
+            this.low = 0;
+            this.top = 63 - Long.numberOfLeadingZeros(estimateBlockSize(expectedInputLength) / MIN_BLOCKSIZE);
+            for (int level = 0; level <= this.top; level++) {
+                this.sumHash1[level] = HASH_INIT;
+                this.sumHash2[level] = HASH_INIT;
+                this.fuzzLen1[level] = 0;
+                this.fuzzLen2[level] = 0;
             }
-
-            this.blockSize = estimateBlockSize(expectedInputLength);
+            this.rollState.reset();
         }
 
         /**
@@ -150,182 +159,124 @@ public final class Ssdeep {
         }
 
         /**
-         * Apply some bytes to a SpamSum context.
+         * Apply one byte to the hashes of every block size still in use.
          *
-         * @param rollState The rolling hash state to use.
-         * @param buffer A buffer containing the input bytes.
-         * @param start The starting offset in {@code buffer}, inclusive.
-         * @param end The ending offset in {@code buffer}, exclusive.
+         * @param b The byte value, assumed to be in the range 0..255.
          */
-        @SuppressWarnings("PMD.CollapsibleIfStatements")
-        private void applyBytes(final RollingState rollState, final byte[] buffer, final int start, final int end) {
-            // At each byte we update the rolling hash and the normal
-            // hash. When the rolling hash hits the reset value, we
-            // emit the normal hash as an element of the signature and
-            // reset both hashes.
-            for (int i = start; i < end; i++) {
-                // Get the next input byte and normalize to 0..255.
-                final int nextByte = ((int) buffer[i]) & 0xff;
-
-                // Apply the next byte to the hashes.
-                this.sumHash1 = updateSumHash(nextByte, this.sumHash1);
-                this.sumHash2 = updateSumHash(nextByte, this.sumHash2);
-                final long rollingHash = rollState.roll(nextByte);
-
-                if ((rollingHash % this.blockSize) == (this.blockSize - 1)) {
-                    // We have hit a reset point. We now emit a hash
-                    // which is based on all bytes in the input
-                    // between the last reset point and this one.
-                    if (this.fuzzLen1 < (SPAMSUM_LENGTH - 1)) {
-                        // We can have a problem with the tail
-                        // overflowing. The easiest way to cope with
-                        // this is to only reset the second hash if we
-                        // have room for more characters in our
-                        // signature. This has the effect of combining
-                        // the last few pieces of the message into a
-                        // single piece
-                        this.fuzzHash1[this.fuzzLen1++] = b64EncodeLowBits(this.sumHash1);
-                        this.sumHash1 = HASH_INIT;
-                    }
-
-                    // This produces a second signature with a block size
-                    // of blockSize*2. By producing dual signatures in
-                    // this way the effect of small changes in the message
-                    // size near a block size boundary is greatly reduced.
-                    //
-                    // NOTE: we only have to check this when the main
-                    // signature has hit a reset point, because
-                    // mathematically:
-                    //
-                    // [ h === -1 (mod 2*bs) ] --implies--> [ h === -1 (mod bs) ]
-                    //
-                    // In other words, if this condition is true then the
-                    // main signature condition must always also be true.
-                    // Therefore this secondary signature condition can
-                    // only potentially be true if the main signature
-                    // condition (which we've already checked) is true.
-                    if ((rollingHash % (this.blockSize * 2)) == ((this.blockSize * 2) - 1)) {
-                        if (this.fuzzLen2 < (SPAMSUM_LENGTH / 2 - 1)) {
-                            this.fuzzHash2[this.fuzzLen2++] = b64EncodeLowBits(this.sumHash2);
-                            this.sumHash2 = HASH_INIT;
-                        }
-                    }
-                }
+        private void update(final int b) {
+            for (int level = this.low; level <= this.top; level++) {
+                this.sumHash1[level] = updateSumHash(b, this.sumHash1[level]);
+                this.sumHash2[level] = updateSumHash(b, this.sumHash2[level]);
+            }
+            final long rollingHash = this.rollState.roll(b);
+
+            // A reset point for any block size is also one for every
+            // smaller block size, so only check the others when the
+            // smallest one in use has been hit.
+            final long blockSize = (long) MIN_BLOCKSIZE << this.low;
+            if ((rollingHash % blockSize) == (blockSize - 1)) {
+                reset(rollingHash);
             }
         }
 
         /**
-         * Discard any existing hash state and prepare to compute a new hash. This should be followed by calls to
-         * {@link #applyBytes(RollingState, byte[], int, int)} to provide the data, and then
-         * {@link #finishHashing(RollingState)} to complete the computations.
-         */
-        private void beginHashing() {
-            this.fuzzLen1 = 0;
-            this.fuzzLen2 = 0;
-            this.sumHash1 = HASH_INIT;
-            this.sumHash2 = HASH_INIT;
-        }
-
-        /**
-         * Truncate an array if larger than the given length.
+         * Apply some bytes to a SpamSum context.
          *
-         * @param input The input array.
-         * @param maxLength The desired maximum array length.
-         * @return If {@code input} is no larger than {@code maxLength}, this just returns {@code input}. Otherwise this returns
-         *         a new array with the same content as {@code input} but with the length truncated to {@code maxLength}.
+         * @param data A buffer containing the input bytes.
+         * @param start The starting offset in {@code data}, inclusive.
+         * @param end The ending offset in {@code data}, exclusive.
          */
-        private static byte[] truncateArray(final byte[] input, final int maxLength) {
-            if (input.length == maxLength) {
-                return input;
-            } else {
-                return Arrays.copyOf(input, maxLength);
+        private void update(final byte[] data, final int start, final int end) {
+            for (int i = start; i < end; i++) {
+                update(data[i] & 0xff);
             }
         }
 
         /**
-         * Finish hashing and generate the final signature. This should be done after all bytes have been applied with
-         * {@link #applyBytes(RollingState, byte[], int, int)}.
+         * Apply the rest of a channel to a SpamSum context.
          *
-         * @param rollState The rolling hash state used during hashing.
-         * @return The final signature.
+         * @param channel The channel to read to the end.
+         * @throws IOException If there is some I/O problem while reading the channel.
          */
-        private SpamSumSignature finishHashing(final RollingState rollState) {
-            if (rollState.getHash() != 0) {
-                this.fuzzHash1[this.fuzzLen1++] = b64EncodeLowBits(this.sumHash1);
-                this.fuzzHash2[this.fuzzLen2++] = b64EncodeLowBits(this.sumHash2);
+        private void update(final ReadableByteChannel channel) throws IOException {
+            this.buffer.clear();
+            while (channel.read(this.buffer) >= 0) {
+                for (int i = 0; i < this.buffer.position(); i++) {
+                    update(this.buffer.get(i) & 0xff);
+                }
+                this.buffer.clear();
             }
-
-            final byte[] finalHash1 = truncateArray(this.fuzzHash1, this.fuzzLen1);
-            final byte[] finalHash2 = truncateArray(this.fuzzHash2, this.fuzzLen2);
-            return new SpamSumSignature(this.blockSize, finalHash1, finalHash2);
         }
 
         /**
-         * Generate the hash for some input.
-         *
-         * <p>
-         * The computations will use the current block size from the context, but any other existing hash state will be
-         * discarded.
+         * We have hit a reset point for the smallest block size in use. Emit a hash of all bytes since the last reset point for
+         * every block size that resets here, and reset those hashes.
          *
-         * @param data The bytes to hash.
-         * @return The signature for the given data.
+         * @param rollingHash The rolling hash at this point.
          */
-        public SpamSumSignature generateHash(@Nullable final byte[] data) {
-            beginHashing();
-            final RollingState rollState = new RollingState();
-
-            if (data != null) {
-                applyBytes(rollState, data, 0, data.length);
-            }
-
-            return finishHashing(rollState);
-        }
-
-        public SpamSumSignature generateHash(final SeekableByteChannelFactory sbcf) {
-            beginHashing();
-            final RollingState rollState = new RollingState();
-
-            try (InputStream is = Channels.newInputStream(sbcf.create())) {
-                final byte[] b = new byte[1024];
+        @SuppressWarnings("PMD.CollapsibleIfStatements")
+        private void reset(final long rollingHash) {
+            int enough = this.low;
+            for (int level = this.low; level <= this.top; level++) {
+                final long blockSize = (long) MIN_BLOCKSIZE << level;
+
+                // [ h === -1 (mod 2*bs) ] --implies--> [ h === -1 (mod bs) ]
+                //
+                // so when this block size does not reset here, no larger
+                // one does either.
+                if ((rollingHash % blockSize) != (blockSize - 1)) {
+                    break;
+                }
+                if (this.fuzzLen1[level] < (SPAMSUM_LENGTH - 1)) {
+                    // We can have a problem with the tail
+                    // overflowing. The easiest way to cope with
+                    // this is to only reset the second hash if we
+                    // have room for more characters in our
+                    // signature. This has the effect of combining
+                    // the last few pieces of the message into a
+                    // single piece
+                    this.fuzzHash1[level][this.fuzzLen1[level]++] = b64EncodeLowBits(this.sumHash1[level]);
+                    this.sumHash1[level] = HASH_INIT;
+                    if (this.fuzzLen1[level] == SPAMSUM_LENGTH / 2) {
+                        // Long enough to be used, so no smaller
+                        // block size will be
+                        enough = level;
+                    }
+                }
 
-                int bytesRead;
-                while ((bytesRead = is.read(b)) != -1) {
-                    applyBytes(rollState, b, 0, bytesRead);
+                // This produces a second signature with a block size
+                // of blockSize*2. By producing dual signatures in
+                // this way the effect of small changes in the message
+                // size near a block size boundary is greatly reduced.
+                if ((rollingHash % (blockSize * 2)) == ((blockSize * 2) - 1)) {
+                    if (this.fuzzLen2[level] < (SPAMSUM_LENGTH / 2 - 1)) {
+                        this.fuzzHash2[level][this.fuzzLen2[level]++] = b64EncodeLowBits(this.sumHash2[level]);
+                        this.sumHash2[level] = HASH_INIT;
+                    }
                 }
-            } catch (final IOException ignored) {
-                // Ignore
             }
-
-            return finishHashing(rollState);
+            this.low = enough;
         }
 
         /**
-         * Generate the hash for some input.
+         * Finish hashing and generate the final signature. This should be done after all bytes have been applied. The largest
+         * block size is used unless its signature is shorter than half the maximum, in which case the next smaller one is
+         * tried, down to the minimum block size.
          *
-         * <p>
-         * The computations will use the current block size from the context, but any other existing hash state will be
-         * discarded.
-         *
-         * @param stream A file containing the bytes to hash. Assumed non-{@code null}. The processing will start reading at the
-         *        current file position and hash all of the data from there to the end of the file. The file position when this
-         *        returns is unspecified. The file is not closed by this operation.
-         * @return The signature for the given stream content.
-         * @throws IOException If there is some I/O problem while reading the stream.
+         * @return The final signature.
          */
-        public SpamSumSignature generateHash(final RandomAccessFile stream) throws IOException {
-            beginHashing();
-            final RollingState rollState = new RollingState();
-
-            final byte[] buffer = new byte[BUFFER_SIZE];
-            while (true) {
-                final int bytesRead = stream.read(buffer, 0, buffer.length);
-                if (bytesRead <= 0) {
-                    break; // No more input.
-                }
-                applyBytes(rollState, buffer, 0, bytesRead);
+        private String finishHashing() {
+            final boolean tail = this.rollState.getHash() != 0;
+            int level = this.top;
+            while (level > this.low && (this.fuzzLen1[level] + (tail ? 1 : 0)) < (SPAMSUM_LENGTH / 2)) {
+                level--;
             }
-
-            return finishHashing(rollState);
+            if (tail) {
+                this.fuzzHash1[level][this.fuzzLen1[level]++] = b64EncodeLowBits(this.sumHash1[level]);
+                this.fuzzHash2[level][this.fuzzLen2[level]++] = b64EncodeLowBits(this.sumHash2[level]);
+            }
+            return ((long) MIN_BLOCKSIZE << level) + ":" + new String(this.fuzzHash1[level], 0, this.fuzzLen1[level], StandardCharsets.US_ASCII)
+                    + ":" + new String(this.fuzzHash2[level], 0, this.fuzzLen2[level], StandardCharsets.US_ASCII);
         }
     }
 
@@ -361,6 +312,17 @@ public final class Ssdeep {
          */
         public RollingState() {}
 
+        /**
+         * Return to the initial state.
+         */
+        public void reset() {
+            Arrays.fill(this.window, 0);
+            this.windowPosition = 0;
+            this.h1 = 0;
+            this.h2 = 0;
+            this.h3 = 0;
+        }
+
         /**
          * Get the current hash value.
          *
@@ -394,6 +356,9 @@ public final class Ssdeep {
         }
     }
 
+    /** Each thread reuses one context, which holds the state for every block size and a direct read buffer. */
+    private static final ThreadLocal<SsContext> CONTEXT = ThreadLocal.withInitial(SsContext::new);
+
     public Ssdeep() {}
 
     /**
@@ -402,33 +367,39 @@ public final class Ssdeep {
      * @param data The bytes to be hashed.
      * @return The SpamSum signature for the bytes.
      */
-    public String fuzzyHash(final byte[] data) {
-        final SsContext ctx = new SsContext(data);
-        while (true) {
-            final SpamSumSignature signature = ctx.generateHash(data);
-
-            // Our blocksize guess may have been way off, repeat with
-            // a smaller block size if necessary.
-            if ((ctx.blockSize > MIN_BLOCKSIZE) && (ctx.fuzzLen1 < (SPAMSUM_LENGTH / 2))) {
-                ctx.blockSize = ctx.blockSize / 2;
-            } else {
-                return signature.toString();
-            }
+    public String fuzzyHash(@Nullable final byte[] data) {
+        final SsContext ctx = CONTEXT.get();
+        ctx.beginHashing((data != null) ? data.length : 0);
+        if (data != null) {
+            ctx.update(data, 0, data.length);
         }
+        return ctx.finishHashing();
     }
 
+    /**
+     * Calculate the SpamSum hash for the content of a channel, reading it once.
+     *
+     * @param sbcf The channel to be hashed.
+     * @return The SpamSum signature for the bytes that could be read.
+     */
     public String fuzzyHash(final SeekableByteChannelFactory sbcf) {
-        final SsContext ctx = new SsContext(sbcf);
-        while (true) {
-            final SpamSumSignature signature = ctx.generateHash(sbcf);
+        final SsContext ctx = CONTEXT.get();
+        // In case the channel cannot be opened
+        ctx.beginHashing(0);
+        try (SeekableByteChannel sbc = sbcf.create()) {
+            ctx.beginHashing(sizeOf(sbc));
+            ctx.update(sbc);
+        } catch (final IOException ignored) {
+            // Ignore
+        }
+        return ctx.finishHashing();
+    }
 
-            // Our blocksize guess may have been way off, repeat with
-            // a smaller block size if necessary.
-            if ((ctx.blockSize > MIN_BLOCKSIZE) && (ctx.fuzzLen1 < (SPAMSUM_LENGTH / 2))) {
-                ctx.blockSize = ctx.blockSize / 2;
-            } else {
-                return signature.toString();
-            }
+    private static long sizeOf(final SeekableByteChannel sbc) {
+        try {
+            return sbc.size();
+        } catch (final IOException ignored) {
+            return 0;
         }
     }
 
@@ -440,20 +411,11 @@ public final class Ssdeep {
      * @throws IOException If there is some I/O problem accessing the file.
      */
     public String fuzzyHashFile(final File file) throws IOException {
-        try (RandomAccessFile stream = new RandomAccessFile(file, "r")) {
-            final SsContext ctx = new SsContext(file);
-            while (true) {
-                stream.seek(0);
-                final SpamSumSignature signature = ctx.generateHash(stream);
-
-                // Our blocksize guess may have been way off, repeat with
-                // a smaller block size if necessary.
-                if ((ctx.blockSize > MIN_BLOCKSIZE) && (ctx.fuzzLen1 < (SPAMSUM_LENGTH / 2))) {
-                    ctx.blockSize = ctx.blockSize / 2;
-                } else {
-                    return signature.toString();
-                }
-            }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final SsContext ctx = CONTEXT.get();
+            ctx.beginHashing(channel.size());
+            ctx.update(channel);
+            return ctx.finishHashing();
         }
     }
 
@@ -536,7 +498,7 @@ public final class Ssdeep {
      * @return An array containing the same content as {@code in}, except that any sequences of more than 3 identical bytes
      *         are truncated to 3 bytes. For example "aaabbbbcddddd" becomes "aaabbbcddd".
      */
-    private static byte[] eliminateLongSequences(final byte[] in) {
+    static byte[] eliminateLongSequences(final byte[] in) {
         if (in.length < 4) {
             return in; // There is not enough input to require any change.
         }
@@ -684,6 +646,21 @@ public final class Ssdeep {
         final byte[] s2First = eliminateLongSequences(signature2.getHashPart1());
         final byte[] s2Second = eliminateLongSequences(signature2.getHashPart2());
 
+        return compareEliminated(blockSize1, s1First, s1Second, blockSize2, s2First, s2Second);
+    }
+
+    /**
+     * Score two signatures whose hash parts have already been through {@link #eliminateLongSequences(byte[])}, for callers
+     * that compare one signature against many
+     *
+     * @return the score in the range 0..100, 0 if the block sizes cannot be compared
+     */
+    static int compareEliminated(final long blockSize1, final byte[] s1First, final byte[] s1Second, final long blockSize2, final byte[] s2First,
+            final byte[] s2Second) {
+        if ((blockSize1 != blockSize2) && (blockSize1 != (blockSize2 * 2)) && (blockSize2 != (blockSize1 * 2))) {
+            return 0;
+        }
+
         // Each signature has a string for two block sizes. We now
         // choose how to combine the two block sizes. We checked above
         // that they have at least one block size in common.
@@ -0,0 +1,481 @@
+package emissary.kff;
+
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index of ssdeep signatures that finds the known signatures similar to a new one without comparing it to
+ * every entry.
+ * <p>
+ * Two signatures only get a score above zero from {@link Ssdeep#compare(SpamSumSignature, SpamSumSignature)} when they
+ * have a hash part at the same effective block size (the first part is at the block size, the second at twice the block
+ * size) and those parts share a run of {@link Ssdeep#ROLLING_WINDOW_SIZE} characters once long repeats are removed. So
+ * each part of every entry is indexed by the 7-grams it contains, keyed together with its effective block size. A query
+ * looks up the 7-grams of its own two parts, which can only turn up entries that could score, and then scores just
+ * those candidates with the same edit distance scoring that compare uses. The answers are the same as comparing against
+ * every entry.
+ * <p>
+ * The posting lists are packed into sorted arrays of longs, the hash of the gram and block size in the high bits and
+ * the entry number in the low bits. Hash collisions only add candidates. New postings collect in a small buffer that is
+ * sorted into a new run when full, and runs are merged whenever one is no more than twice the size of the run before
+ * it, so there are only a few runs to search and adding an entry costs a logarithmic number of copies. Large runs keep
+ * a directory of where each range of keys starts so a lookup touches only a few cache lines. Queries can run
+ * concurrently with each other, adds take a write lock only to record the entry. Runs are never changed once made, so
+ * the thread whose add fills the buffer merges them without holding the lock, and only takes it again to swap the
+ * merged run in. Queries and other adds go on during the merge.
+ * <p>
+ * The index holds at most the number of entries it was made with. Adds beyond that are refused rather than failing.
+ */
+public class SsdeepIndex {
+
+    private static final int ID_BITS = 24;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    /** Most entries an index can hold */
+    public static final int MAX_ENTRIES = 1 << ID_BITS;
+
+    private static final int PENDING_POSTINGS = 8192;
+
+    /** Runs at least this long get a directory of where each range of keys starts */
+    private static final int DIRECTORY_MIN = 1 << 14;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final int maxEntries;
+
+    private long[] blockSizes = new long[1024];
+    private byte[][] firstParts = new byte[1024][];
+    private byte[][] secondParts = new byte[1024][];
+    private int size = 0;
+
+    /** Sorted runs of postings, each less than half the size of the one before */
+    private final List<Run> runs = new ArrayList<>();
+    private final long[] pending = new long[PENDING_POSTINGS];
+    private int pendingSize = 0;
+    /** Whether some thread is merging runs, so only one does */
+    private boolean merging = false;
+
+    /**
+     * Make an index that can hold {@link #MAX_ENTRIES} entries
+     */
+    public SsdeepIndex() {
+        this(MAX_ENTRIES);
+    }
+
+    /**
+     * Make an index holding a limited number of entries
+     *
+     * @param maxEntries most entries held, at most {@link #MAX_ENTRIES}
+     */
+    public SsdeepIndex(final int maxEntries) {
+        if (maxEntries < 1 || maxEntries > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Ssdeep index size must be 1 to " + MAX_ENTRIES + " (saw: " + maxEntries + ")");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * A sorted run of postings. Large runs also keep the position where each of 2^bits equal ranges of posting values
+     * starts, so a search only has to look within one small range instead of missing the cache all the way down a binary
+     * search of the whole run.
+     */
+    private static final class Run {
+        final long[] postings;
+        final int bits;
+        @Nullable
+        final int[] starts;
+
+        Run(final long[] postings) {
+            this.postings = postings;
+            if (postings.length < DIRECTORY_MIN) {
+                this.bits = 0;
+                this.starts = null;
+                return;
+            }
+            // about eight postings per range
+            this.bits = 63 - Long.numberOfLeadingZeros(postings.length / 8);
+            this.starts = new int[(1 << this.bits) + 1];
+            int at = 0;
+            for (int range = 0; range < this.starts.length; range++) {
+                while (at < postings.length && range(postings[at]) < range) {
+                    at++;
+                }
+                this.starts[range] = at;
+            }
+        }
+
+        /**
+         * The range a value falls in, in the same order as the signed values
+         */
+        private int range(final long value) {
+            return (int) ((value >> (64 - this.bits)) + (1L << (this.bits - 1)));
+        }
+
+        /**
+         * First position holding a value at least as large as the one given
+         */
+        int lowerBound(final long value) {
+            int lo = 0;
+            int hi = this.postings.length;
+            if (this.starts != null) {
+                final int range = range(value);
+                lo = this.starts[range];
+                hi = this.starts[range + 1];
+            }
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (this.postings[mid] < value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * A similar entry found by {@link #query(SpamSumSignature, int)}
+     */
+    public static final class Match implements Comparable<Match> {
+        private final int id;
+        private final int score;
+
+        Match(final int id, final int score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        /**
+         * The entry number returned by {@link #add(SpamSumSignature)}
+         */
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * The ssdeep score, 1 to 100
+         */
+        public int getScore() {
+            return this.score;
+        }
+
+        /**
+         * Best score first, then oldest entry first
+         */
+        @Override
+        public int compareTo(final Match o) {
+            return this.score != o.score ? Integer.compare(o.score, this.score) : Integer.compare(this.id, o.id);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Match && ((Match) o).id == this.id && ((Match) o).score == this.score;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id * 31 + this.score;
+        }
+
+        @Override
+        public String toString() {
+            return this.id + ":" + this.score;
+        }
+    }
+
+    /**
+     * Add a signature to the index, unless it is full
+     *
+     * @param signature the signature
+     * @return the entry number, counting from zero in the order added, or -1 if the index is full
+     */
+    public int add(final SpamSumSignature signature) {
+        final byte[] first = Ssdeep.eliminateLongSequences(signature.getHashPart1());
+        final byte[] second = Ssdeep.eliminateLongSequences(signature.getHashPart2());
+        final long blockSize = signature.getBlockSize();
+        final long[] keys = keys(blockSize, first, second);
+
+        final int id;
+        boolean merge = false;
+        this.lock.writeLock().lock();
+        try {
+            if (this.size == this.maxEntries) {
+                return -1;
+            }
+            id = this.size;
+            if (id == this.blockSizes.length) {
+                final int grown = (int) Math.min((long) id * 2, this.maxEntries);
+                this.blockSizes = Arrays.copyOf(this.blockSizes, grown);
+                this.firstParts = Arrays.copyOf(this.firstParts, grown);
+                this.secondParts = Arrays.copyOf(this.secondParts, grown);
+            }
+            this.blockSizes[id] = blockSize;
+            this.firstParts[id] = first;
+            this.secondParts[id] = second;
+            this.size++;
+
+            for (final long key : keys) {
+                if (this.pendingSize == this.pending.length) {
+                    flush();
+                    merge = true;
+                }
+                this.pending[this.pendingSize++] = (key << ID_BITS) | id;
+            }
+            if (merge) {
+                merge = !this.merging;
+                this.merging = true;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if (merge) {
+            mergeRuns();
+        }
+        return id;
+    }
+
+    /**
+     * Sort the pending postings into a new run, the caller holds the write lock
+     */
+    private void flush() {
+        final long[] run = Arrays.copyOf(this.pending, this.pendingSize);
+        Arrays.sort(run);
+        this.pendingSize = 0;
+        this.runs.add(new Run(run));
+    }
+
+    /**
+     * Merge runs until each is more than twice the size of the runs after it. The runs to merge are picked and the merged
+     * run swapped in under the write lock, the merging itself is done without it. Only one thread merges at a time, and
+     * runs added meanwhile only go after the ones being merged, so the picked runs are still in place for the swap.
+     */
+    private void mergeRuns() {
+        while (true) {
+            final List<Run> picked;
+            final int from;
+            this.lock.writeLock().lock();
+            try {
+                from = mergeFrom();
+                if (from < 0) {
+                    this.merging = false;
+                    return;
+                }
+                picked = new ArrayList<>(this.runs.subList(from, this.runs.size()));
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+
+            long[] merged = picked.get(picked.size() - 1).postings;
+            for (int i = picked.size() - 2; i >= 0; i--) {
+                merged = merge(picked.get(i).postings, merged);
+            }
+            final Run run = new Run(merged);
+
+            this.lock.writeLock().lock();
+            try {
+                final List<Run> replaced = this.runs.subList(from, from + picked.size());
+                replaced.clear();
+                this.runs.add(from, run);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Find the oldest run that is no more than twice the size of all the runs after it together, the caller holds the write
+     * lock
+     *
+     * @return the position of that run, or -1 if there is nothing to merge
+     */
+    private int mergeFrom() {
+        int from = this.runs.size() - 1;
+        if (from < 1) {
+            return -1;
+        }
+        long after = this.runs.get(from).postings.length;
+        while (from > 0 && this.runs.get(from - 1).postings.length <= after * 2) {
+            from--;
+            after += this.runs.get(from).postings.length;
+        }
+        return from == this.runs.size() - 1 ? -1 : from;
+    }
+
+    private static long[] merge(final long[] a, final long[] b) {
+        final long[] merged = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            merged[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        System.arraycopy(a, i, merged, k, a.length - i);
+        System.arraycopy(b, j, merged, k + a.length - i, b.length - j);
+        return merged;
+    }
+
+    /**
+     * Find the entries similar to a signature
+     *
+     * @param signature the signature to look up
+     * @param minScore lowest score to return, scores of zero are never returned
+     * @return the matches, best first
+     */
+    public List<Match> query(final SpamSumSignature signature, final int minScore) {
+        final byte[] first = Ssdeep.eliminateLongSequences(signature.getHashPart1());
+        final byte[] second = Ssdeep.eliminateLongSequences(signature.getHashPart2());
+        final long blockSize = signature.getBlockSize();
+        final long[] keys = keys(blockSize, first, second);
+        final List<Match> matches = new ArrayList<>();
+        if (keys.length == 0) {
+            return matches;
+        }
+        Arrays.sort(keys);
+
+        this.lock.readLock().lock();
+        try {
+            final int[] candidates = candidates(keys);
+            for (final int id : candidates) {
+                final int score = Ssdeep.compareEliminated(blockSize, first, second, this.blockSizes[id], this.firstParts[id], this.secondParts[id]);
+                if (score > 0 && score >= minScore) {
+                    matches.add(new Match(id, score));
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    /**
+     * Collect the distinct entries sharing at least one key
+     *
+     * @param keys sorted keys of the query
+     * @return entry numbers in increasing order
+     */
+    private int[] candidates(final long[] keys) {
+        int[] ids = new int[64];
+        int count = 0;
+        for (final Run run : this.runs) {
+            final long[] postings = run.postings;
+            long previous = -1L;
+            for (final long key : keys) {
+                if (key == previous) {
+                    continue;
+                }
+                previous = key;
+                final long low = key << ID_BITS;
+                for (int i = run.lowerBound(low); i < postings.length && (postings[i] >>> ID_BITS) == key; i++) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = (int) (postings[i] & ID_MASK);
+                }
+            }
+        }
+        for (int i = 0; i < this.pendingSize; i++) {
+            final long posting = this.pending[i];
+            if (Arrays.binarySearch(keys, posting >>> ID_BITS) >= 0) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = (int) (posting & ID_MASK);
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    /**
+     * Work out the keys of both parts of a signature, the second part keyed at twice the block size
+     */
+    private static long[] keys(final long blockSize, final byte[] first, final byte[] second) {
+        final long[] keys = new long[grams(first) + grams(second)];
+        int n = gramKeys(blockSize, first, keys, 0);
+        gramKeys(blockSize * 2, second, keys, n);
+        return keys;
+    }
+
+    private static int grams(final byte[] part) {
+        // Longer parts always score zero, see Ssdeep.scoreStrings
+        if (part.length > Ssdeep.SPAMSUM_LENGTH) {
+            return 0;
+        }
+        return Math.max(part.length - Ssdeep.ROLLING_WINDOW_SIZE + 1, 0);
+    }
+
+    private static int gramKeys(final long blockSize, final byte[] part, final long[] keys, final int offset) {
+        final int count = grams(part);
+        if (count == 0) {
+            return offset;
+        }
+        long gram = 0L;
+        for (int i = 0; i < count + Ssdeep.ROLLING_WINDOW_SIZE - 1; i++) {
+            // seven bytes of the gram fill the low 56 bits
+            gram = (gram << 8) | (part[i] & 0xff);
+            if (i >= Ssdeep.ROLLING_WINDOW_SIZE - 1) {
+                keys[offset + i - Ssdeep.ROLLING_WINDOW_SIZE + 1] = mix((gram & 0xffffffffffffffL) ^ (blockSize * 0x9e3779b97f4a7c15L)) >>> ID_BITS;
+            }
+        }
+        return offset + count;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads every input bit over the whole result
+     */
+    private static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Most entries the index can hold
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * Number of entries in the index
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        this.lock.readLock().lock();
+        try {
+            long postings = this.pendingSize;
+            for (final Run run : this.runs) {
+                postings += run.postings.length;
+            }
+            return "SsdeepIndex[entries=" + this.size + ", postings=" + postings + ", runs=" + this.runs.size() + "]";
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+}
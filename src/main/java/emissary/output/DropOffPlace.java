@@ -5,6 +5,9 @@ import emissary.config.Configurator;
 import emissary.core.DataObjectFactory;
 import emissary.core.Form;
 import emissary.core.IBaseDataObject;
+import emissary.core.IBaseDataObjectHelper;
+import emissary.core.MetricsManager;
+import emissary.core.NamespaceException;
 import emissary.directory.DirectoryEntry;
 import emissary.output.filter.IDropOffFilter;
 import emissary.place.EmptyFormPlace;
@@ -13,6 +16,8 @@ import emissary.util.DataUtil;
 import emissary.util.DisposeHelper;
 import emissary.util.ShortNameComparator;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import jakarta.annotation.Nullable;
 
 import java.io.IOException;
@@ -22,9 +27,21 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 
 /**
  * DropOffPlace manages the output from the system It has evolved into a controller of sorts with way too many options,
@@ -40,6 +57,15 @@ public class DropOffPlace extends ServiceProviderPlace implements EmptyFormPlace
     protected DropOffUtil dropOffUtil;
     private boolean outputCompletionPayloadSize = false;
 
+    // Optional concurrent execution of the output filters
+    protected boolean parallelFilters = false;
+    protected long filterTimeoutMillis = 60000L;
+    @Nullable
+    protected ThreadPoolExecutor filterExecutor;
+    @Nullable
+    private volatile MetricRegistry metricRegistry;
+    private volatile boolean metricLookupDone = false;
+
     /**
      * Primary place constructor
      * 
@@ -88,10 +114,39 @@ public class DropOffPlace extends ServiceProviderPlace implements EmptyFormPlace
         this.doSynchronized = configG.findBooleanEntry("SYNCHRONIZED_PROCESS", false);
         this.failurePolicyTerminate = configG.findBooleanEntry("FAILURE_TERMINATES_CHAIN", true);
         this.outputCompletionPayloadSize = configG.findBooleanEntry("OUTPUT_COMPLETION_PAYLOAD_SIZE", false);
+        this.parallelFilters = configG.findBooleanEntry("PARALLEL_FILTERS", false);
+        this.filterTimeoutMillis = configG.findLongEntry("PARALLEL_FILTER_TIMEOUT_MILLIS", this.filterTimeoutMillis);
         // Build and store all the filter that are desired IN THE ORDER SPECIFIED
         final List<String> filterClasses = configG.findEntries("OUTPUT_FILTER");
         initializeFilters(filterClasses);
 
+        if (this.parallelFilters && this.outputFilters.size() > 1) {
+            final int threads = configG.findIntEntry("PARALLEL_FILTER_THREADS", this.outputFilters.size());
+            final int queueSize = configG.findIntEntry("PARALLEL_FILTER_QUEUE_SIZE", threads * 4);
+            this.filterExecutor = createFilterExecutor(threads, queueSize);
+            logger.info("Output filters will run concurrently on {} threads with a {}ms timeout", threads, this.filterTimeoutMillis);
+        }
+    }
+
+    /**
+     * Build the bounded executor used to run output filters concurrently. When the queue is full the submitting agent runs
+     * the filter itself, which throttles the agents instead of queueing without limit.
+     *
+     * @param threads the number of filter threads
+     * @param queueSize the number of pending filter tasks allowed
+     * @return the executor
+     */
+    protected ThreadPoolExecutor createFilterExecutor(final int threads, final int queueSize) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final String prefix = "DropOffFilter-" + getPlaceName() + "-";
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                    final Thread t = new Thread(runnable, prefix + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /**
@@ -171,6 +226,17 @@ public class DropOffPlace extends ServiceProviderPlace implements EmptyFormPlace
     @Override
     public void shutDown() {
         super.shutDown();
+        if (this.filterExecutor != null) {
+            this.filterExecutor.shutdown();
+            try {
+                if (!this.filterExecutor.awaitTermination(this.filterTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    this.filterExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                this.filterExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
         for (final IDropOffFilter filter : this.outputFilters) {
             logger.debug("Shutdown filter {}", filter.getFilterName());
             filter.close();
@@ -419,32 +485,242 @@ public class DropOffPlace extends ServiceProviderPlace implements EmptyFormPlace
             return;
         }
 
+        if (this.filterExecutor != null) {
+            runOutputFiltersConcurrently(doTarget, listTarget, filterParams);
+            return;
+        }
+
         // Write output onto each of the filter that have been
         // configured, as long as they work
         for (final IDropOffFilter filter : this.outputFilters) {
-            final long start = System.currentTimeMillis();
+            final int filterStatus = runOutputFilter(filter, doTarget, listTarget, filterParams);
+            if ((filterStatus != IDropOffFilter.STATUS_SUCCESS) && this.failurePolicyTerminate) {
+                logger.error("DropOff Filter chain terminated at {} due to error return status", filter.getFilterName());
+                break;
+            }
+        }
+    }
 
-            // call the filter to output its data
+    /**
+     * Run all the output filters at the same time on the filter executor and wait for each of them to finish or time out.
+     * Payload objects are not thread safe. Filters that only read them share the payloads, filters that may change them get
+     * their own copies of the payloads and parameters, and changes made to copies are not kept. When every filter may
+     * change them, nothing else reads the payloads, so the first filter is given them rather than a copy. A filter that
+     * times out is interrupted, and this method does not return until it has stopped, so the hooks and cleanup that follow
+     * never run alongside it. When FAILURE_TERMINATES_CHAIN is set, the first failure in configured order stops the filters
+     * after it that have not finished yet; output from those that did finish is kept.
+     *
+     * @param doTarget the single payload or null
+     * @param listTarget the payload family or null
+     * @param filterParams other parameters that filter need
+     */
+    protected void runOutputFiltersConcurrently(@Nullable final IBaseDataObject doTarget, @Nullable final List<IBaseDataObject> listTarget,
+            final Map<String, Object> filterParams) {
+        // copy everything before the first filter starts reading
+        final List<IDropOffFilter> filters = getFilters();
+        final boolean shared = filters.stream().anyMatch(f -> !f.modifiesPayloads());
+        final List<FilterTask> tasks = new ArrayList<>(filters.size());
+        for (final IDropOffFilter filter : filters) {
+            final UnaryOperator<IBaseDataObject> copy;
+            if (!filter.modifiesPayloads()) {
+                copy = DropOffPlace::readOnlyCopy;
+            } else if (!shared && tasks.isEmpty()) {
+                copy = UnaryOperator.identity();
+            } else {
+                copy = IBaseDataObjectHelper::clone;
+            }
+            tasks.add(new FilterTask(filter, doTarget, listTarget, filterParams, copy));
+        }
+        for (final FilterTask task : tasks) {
+            task.future = this.filterExecutor.submit(task);
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.filterTimeoutMillis);
+        for (int i = 0; i < tasks.size(); i++) {
+            final FilterTask task = tasks.get(i);
+            final String name = task.filter.getFilterName();
             int filterStatus = IDropOffFilter.STATUS_FAILURE;
             try {
-                if (listTarget != null && filter.isOutputtable(listTarget)) {
-                    filterStatus = filter.filter(listTarget, filterParams);
-                } else if (doTarget != null && filter.isOutputtable(doTarget)) {
-                    filterStatus = filter.filter(doTarget, filterParams);
-                } else {
-                    logger.debug("Filter {} not Outputtable for {}", filter.getFilterName(), listTarget != null ? "list" : "single payload");
-                    filterStatus = IDropOffFilter.STATUS_SUCCESS;
+                filterStatus = task.future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (filterStatus != IDropOffFilter.STATUS_SUCCESS) {
+                    logger.error("DropOff Filter {} returned error status {}", name, filterStatus);
                 }
-                logger.debug("Filter {} took {}s - {}", filter.getFilterName(), (System.currentTimeMillis() - start) / 1000.0, filterStatus);
-            } catch (RuntimeException e) {
-                logger.error("Filter {} failed", filter.getFilterName(), e);
+            } catch (TimeoutException e) {
+                logger.error("DropOff Filter {} did not finish within {}ms and was cancelled", name, this.filterTimeoutMillis);
+                stopFilters(tasks.subList(i, i + 1));
+            } catch (ExecutionException e) {
+                logger.error("DropOff Filter {} failed", name, e.getCause());
+            } catch (InterruptedException e) {
+                logger.error("Interrupted waiting for DropOff Filter {}", name);
+                Thread.currentThread().interrupt();
+                stopFilters(tasks.subList(i, tasks.size()));
+                return;
             }
-
             if ((filterStatus != IDropOffFilter.STATUS_SUCCESS) && this.failurePolicyTerminate) {
-                logger.error("DropOff Filter chain terminated at {} due to error return status", filter.getFilterName());
-                break;
+                logger.error("DropOff Filter chain terminated at {} due to error return status", name);
+                stopFilters(tasks.subList(i + 1, tasks.size()));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reading an alternate view held as a channel changes the payload, so payloads with such views are copied even for
+     * filters that only read
+     *
+     * @param d the payload
+     * @return the payload, or a copy of it
+     */
+    private static IBaseDataObject readOnlyCopy(final IBaseDataObject d) {
+        return d.getAlternateViewChannelFactories().isEmpty() ? d : IBaseDataObjectHelper.clone(d);
+    }
+
+    /**
+     * Interrupt the filters and wait until none of them is running. Waiting goes on past an interrupt, which is restored
+     * afterwards, because a filter that is still running may be using the payload resources that are disposed next.
+     *
+     * @param tasks the filters to stop
+     */
+    @SuppressWarnings("Interruption")
+    private static void stopFilters(final List<FilterTask> tasks) {
+        boolean interrupted = Thread.interrupted();
+        for (final FilterTask task : tasks) {
+            task.future.cancel(true);
+        }
+        for (final FilterTask task : tasks) {
+            while (true) {
+                try {
+                    task.awaitStopped();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One output filter run on the filter executor, with its own copy of the parameters and the payloads it was given
+     */
+    private final class FilterTask implements Callable<Integer> {
+        private final IDropOffFilter filter;
+        @Nullable
+        private final IBaseDataObject doTarget;
+        @Nullable
+        private final List<IBaseDataObject> listTarget;
+        private final Map<String, Object> filterParams;
+        // taken by whichever comes first, the filter thread starting it or stopFilters skipping it
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        @Nullable
+        private Future<Integer> future;
+
+        FilterTask(final IDropOffFilter filter, @Nullable final IBaseDataObject doTarget, @Nullable final List<IBaseDataObject> listTarget,
+                final Map<String, Object> filterParams, final UnaryOperator<IBaseDataObject> copy) {
+            this.filter = filter;
+            final IdentityHashMap<IBaseDataObject, IBaseDataObject> copies = new IdentityHashMap<>();
+            this.doTarget = doTarget == null ? null : copies.computeIfAbsent(doTarget, copy);
+            if (listTarget != null) {
+                this.listTarget = new ArrayList<>(listTarget.size());
+                for (final IBaseDataObject d : listTarget) {
+                    this.listTarget.add(copies.computeIfAbsent(d, copy));
+                }
+            } else {
+                this.listTarget = null;
+            }
+            // parameters such as the TLD refer to the payloads, point them at the copies
+            this.filterParams = new HashMap<>();
+            for (final Map.Entry<String, Object> entry : filterParams.entrySet()) {
+                final IBaseDataObject payload = copies.get(entry.getValue());
+                this.filterParams.put(entry.getKey(), payload != null ? payload : entry.getValue());
+            }
+        }
+
+        @Override
+        public Integer call() {
+            if (!this.claimed.compareAndSet(false, true)) {
+                // stopped before it started
+                return IDropOffFilter.STATUS_FAILURE;
+            }
+            try {
+                return runOutputFilter(this.filter, this.doTarget, this.listTarget, this.filterParams);
+            } finally {
+                this.stopped.countDown();
+            }
+        }
+
+        /**
+         * Wait for a cancelled filter to stop, unless it never started
+         */
+        void awaitStopped() throws InterruptedException {
+            if (this.claimed.compareAndSet(false, true)) {
+                return;
             }
+            while (!this.stopped.await(DropOffPlace.this.filterTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("Still waiting for cancelled DropOff Filter {} to stop", this.filter.getFilterName());
+            }
+        }
+    }
+
+    /**
+     * Run a single output filter and record how long it took
+     *
+     * @param filter the filter to run
+     * @param doTarget the single payload or null
+     * @param listTarget the payload family or null
+     * @param filterParams other parameters that filter need
+     * @return the filter status
+     */
+    protected int runOutputFilter(final IDropOffFilter filter, @Nullable final IBaseDataObject doTarget,
+            @Nullable final List<IBaseDataObject> listTarget, final Map<String, Object> filterParams) {
+        final long start = System.nanoTime();
+
+        // call the filter to output its data
+        int filterStatus = IDropOffFilter.STATUS_FAILURE;
+        try {
+            if (listTarget != null && filter.isOutputtable(listTarget)) {
+                filterStatus = filter.filter(listTarget, filterParams);
+            } else if (doTarget != null && filter.isOutputtable(doTarget)) {
+                filterStatus = filter.filter(doTarget, filterParams);
+            } else {
+                logger.debug("Filter {} not Outputtable for {}", filter.getFilterName(), listTarget != null ? "list" : "single payload");
+                filterStatus = IDropOffFilter.STATUS_SUCCESS;
+            }
+            logger.debug("Filter {} took {}s - {}", filter.getFilterName(), (System.nanoTime() - start) / 1.0e9, filterStatus);
+        } catch (RuntimeException e) {
+            logger.error("Filter {} failed", filter.getFilterName(), e);
+        }
+
+        final Histogram histogram = getFilterHistogram(filter);
+        if (histogram != null) {
+            histogram.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return filterStatus;
+    }
+
+    /**
+     * Get the latency histogram for a filter from the MetricsManager, if there is one
+     *
+     * @param filter the filter being timed
+     * @return the histogram or null if metrics are not available
+     */
+    @Nullable
+    protected Histogram getFilterHistogram(final IDropOffFilter filter) {
+        if (!this.metricLookupDone) {
+            try {
+                this.metricRegistry = MetricsManager.lookup().getMetricRegistry();
+            } catch (NamespaceException e) {
+                logger.debug("No MetricsManager available, filter latency will not be recorded");
+            }
+            this.metricLookupDone = true;
+        }
+        if (this.metricRegistry == null) {
+            return null;
         }
+        return this.metricRegistry.histogram(MetricRegistry.name(getPlaceName(), "filter", filter.getFilterName(), "latencyMillis"));
     }
 
     /**
@@ -36,6 +36,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static emissary.core.Form.PREFIXES_LANG;
 import static emissary.core.Form.TEXT;
@@ -91,6 +92,12 @@ public class DropOffUtil {
     private static final String DEFAULT_EVENT_DATE_TO_NOW = "DEFAULT_EVENT_DATE_TO_NOW";
     protected boolean defaultEventDateToNow = true;
 
+    private static final String DEFAULT_SPEC = "%R%/@TLD{'TARGETBIN'}/%S%";
+    private static final int MAX_COMPILED_SPECS = 256;
+    private static final int MAX_RETAINED_BUFFER = 8192;
+    private static final ThreadLocal<StringBuilder> PATH_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private final Map<String, PathSpec> compiledSpecs = new ConcurrentHashMap<>();
+
     /**
      * Create with the default configuration
      */
@@ -313,153 +320,40 @@ public class DropOffUtil {
      * @param tld the top level document in the d family, possibly null
      * @return string path name with correct separators for this OS
      */
-    public String getPathFromSpec(final String specArg, @Nullable final IBaseDataObject d, @Nullable final IBaseDataObject tld) {
-        final StringBuilder sb = new StringBuilder(128);
+    public String getPathFromSpec(@Nullable final String specArg, @Nullable final IBaseDataObject d, @Nullable final IBaseDataObject tld) {
+        final StringBuilder sb = PATH_BUFFER.get();
+        sb.setLength(0);
+        getCompiledSpec(specArg).render(this, sb, d, tld);
+        final String answer = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            PATH_BUFFER.remove();
+        }
+        return answer;
+    }
 
+    /**
+     * Get the compiled form of a spec, compiling and caching it on first use
+     *
+     * @param specArg the spec string or null for the default spec
+     * @return the compiled spec
+     */
+    public PathSpec getCompiledSpec(@Nullable final String specArg) {
         // Provide a default spec, just like the old days...
-        String spec = specArg;
-        if (spec == null) {
-            spec = "%R%/@TLD{'TARGETBIN'}/%S%";
+        final String spec = specArg == null ? DEFAULT_SPEC : specArg;
+        final PathSpec compiled = this.compiledSpecs.get(spec);
+        if (compiled != null) {
+            return compiled;
         }
-
-        for (int i = 0; i < spec.length(); i++) {
-            final char c = spec.charAt(i);
-
-            if (c == '%' && i < spec.length() - 2) {
-                final char t = spec.charAt(i + 1);
-                final char x = spec.charAt(i + 2);
-
-                if (x == c) {
-                    switch (t) {
-                        case 'U':
-                            if (tld != null) {
-                                sb.append(nvl(tld.getParameter("UserName"), "no-userid"));
-                            } else if (d != null) {
-                                sb.append(nvl(d.getParameter("UserName"), "no-userid"));
-                            }
-                            break;
-                        case 'S':
-                            if (d != null) {
-                                sb.append(d.shortName());
-                            }
-                            break;
-                        case 'I':
-                            if (d != null) {
-                                sb.append(d.getFilename());
-                            }
-                            break;
-                        case 'i':
-                            if (d != null) {
-                                sb.append(d.getFilename().replaceAll("[/\\\\]", "_"));
-                            }
-                            break;
-                        case 'P':
-                            if (d != null) {
-                                sb.append(d.getFilename(), 0, d.getFilename().length() - d.shortName().length());
-                            }
-                            break;
-                        case 'p':
-                            if (d != null) {
-                                sb.append(d.getFilename().substring(0, d.getFilename().length() - d.shortName().length()).replaceAll("[/\\\\]", "_"));
-                            }
-                            break;
-                        case 'F':
-                            if (d != null) {
-                                sb.append(nvl(cleanSpecPath(d.getFileType()), "NONE"));
-                            }
-                            break;
-                        case 'L':
-                            if (d != null) {
-                                sb.append(nvl(d.getParameter("LANGUAGE"), "NONE"));
-                            }
-                            break;
-                        case 'G':
-                            if (tld != null) {
-                                sb.append(datePath(cleanSpecPath(tld.getStringParameter("DTG"))));
-                            } else if (d != null) {
-                                sb.append(datePath(cleanSpecPath(d.getStringParameter("DTG"))));
-                            }
-                            break;
-                        case 'R':
-                            sb.append(getRootPath());
-                            break;
-                        case 'B':
-                            if (tld != null) {
-                                sb.append(cleanSpecPath(getBestIdFrom(tld)));
-                            } else if (d != null) {
-                                sb.append(cleanSpecPath(getBestIdFrom(d)));
-                            }
-                            break;
-                        case 'b':
-                            sb.append(cleanSpecPath((tld != null) ? getBestIdFrom(tld) : getBestIdFrom(d)));
-                            final String sn = d.shortName();
-                            final int pos = sn.indexOf(Family.SEP);
-                            if (pos > 0) {
-                                sb.append(sn.substring(pos));
-                            }
-                            break;
-                        case 'Y':
-                            sb.append(TimeUtil.getDate("yyyy", "GMT"));
-                            break;
-                        case 'M':
-                            sb.append(TimeUtil.getDate("MM", "GMT"));
-                            break;
-                        case 'D':
-                            sb.append(TimeUtil.getDate("dd", "GMT"));
-                            break;
-                        case 'J':
-                            sb.append(TimeUtil.getDate("DDD", "GMT"));
-                            break;
-                        default:
-                            sb.append(c).append(t).append(x);
-                    }
-                    i += 2; // SUPPRESS CHECKSTYLE ModifiedControlVariable
-                } else {
-                    // No trailing % after character
-                    sb.append(c);
-                }
-
-            } else if (c == '@' && i < spec.length() - 8 && spec.charAt(i + 1) == 'M' && spec.charAt(i + 2) == 'E' && spec.charAt(i + 3) == 'T'
-                    && spec.charAt(i + 4) == 'A' && spec.charAt(i + 5) == '{' && spec.charAt(i + 6) == '\'') {
-
-                final int endpos = spec.indexOf("'", i + 7);
-                if (endpos > i + 7) {
-                    final String token = spec.substring(i + 7, endpos);
-                    final String value = cleanSpecPath(d.getStringParameter(token));
-                    sb.append(nvl(value, "NO-" + token));
-                    i += 8 + token.length(); // META{'token'} SUPPRESS CHECKSTYLE ModifiedControlVariable
-                } else {
-                    sb.append(c);
-                }
-            } else if (c == '@' && i < spec.length() - 7 && spec.charAt(i + 1) == 'T' && spec.charAt(i + 2) == 'L' && spec.charAt(i + 3) == 'D'
-                    && spec.charAt(i + 4) == '{' && spec.charAt(i + 5) == '\'' && tld != null) {
-                final int endpos = spec.indexOf("'", i + 6);
-                if (endpos > i + 6) {
-                    final String token = spec.substring(i + 6, endpos);
-                    final String value = cleanSpecPath(tld.getStringParameter(token));
-                    sb.append(nvl(value, "NO-" + token));
-                    i += 7 + token.length(); // TLD{'token'} SUPPRESS CHECKSTYLE ModifiedControlVariable
-                } else {
-                    sb.append(c);
-                }
-            } else {
-                sb.append(c);
-            }
-
+        if (this.compiledSpecs.size() >= MAX_COMPILED_SPECS) {
+            // specs come from configuration, so this is only a guard against callers building specs on the fly
+            return PathSpec.compile(spec);
         }
-
-        String answer = sb.toString();
-
-        // Set the proper path separator
-        answer = answer.replace('\\', '/');
-        answer = answer.replaceAll("\\.([/\\\\])", "_$1");
-
-        return answer;
+        return this.compiledSpecs.computeIfAbsent(spec, PathSpec::compile);
     }
 
     @Nullable
     protected String cleanSpecPath(@Nullable String token) {
-        return token == null ? null : token.replaceAll("[.]+", ".");
+        return PathSpec.collapseDots(token);
     }
 
     /**
@@ -471,8 +365,9 @@ public class DropOffUtil {
      */
     public String getBestIdFrom(final IBaseDataObject d) {
         for (final String s : this.idTokens) {
-            if (!StringUtils.isBlank(d.getStringParameter(s))) {
-                return d.getStringParameter(s);
+            final String value = d.getStringParameter(s);
+            if (!StringUtils.isBlank(value)) {
+                return value;
             }
             if (SHORTNAME.equals(s)) {
                 final String shortName = d.shortName();
@@ -585,26 +480,9 @@ public class DropOffUtil {
      * Replace any file separators that are not for this platform with the correct one
      */
     public String fixFileNameSeparators(final String s) {
-        // other platform;
-        String badfs;
-
-        if ("/".equals(SEPARATOR)) {
-            badfs = "\\";
-        } else {
-            badfs = "/";
-        }
-
-        final StringBuilder ret = new StringBuilder(s.length());
-
-        for (int i = 0; i < s.length(); i++) {
-            if (s.charAt(i) == badfs.charAt(0)) {
-                ret.append(SEPARATOR);
-            } else {
-                ret.append(s.charAt(i));
-            }
-        }
-
-        return ret.toString();
+        // other platform; String.replace returns the same instance when there is nothing to replace
+        final char badfs = "/".equals(SEPARATOR) ? '\\' : '/';
+        return s.replace(badfs, SEPARATOR.charAt(0));
     }
 
     protected Object nvl(@Nullable final Object a, final Object b) {
@@ -758,12 +636,7 @@ public class DropOffUtil {
                         tld.setParameter(PARENT_AUTO_GENERATED_ID, uuid);
                     }
                     if (!StringUtils.isBlank(uuid)) {
-                        final String component = d.shortName();
-                        final int pos = component.indexOf(Family.SEP);
-                        if (pos > -1) {
-                            uuid += component.substring(pos);
-                        }
-                        return uuid;
+                        return appendFamilySuffix(uuid, d);
                     }
                 }
                 String uuid = null;
@@ -772,13 +645,8 @@ public class DropOffUtil {
                     uuid = tld.getStringParameter(PARENT_AUTO_GENERATED_ID);
                 }
                 if (!StringUtils.isBlank(uuid)) {
-                    final String component = d.shortName();
-                    final int pos = component.indexOf(Family.SEP);
-                    if (pos > -1) {
-                        uuid += component.substring(pos);
-                    }
                     d.setParameter(AUTO_GENERATED_ID, "yes");
-                    return uuid;
+                    return appendFamilySuffix(uuid, d);
                 }
 
             }
@@ -797,30 +665,19 @@ public class DropOffUtil {
                     path = tld.getStringParameter(s);
                 }
                 if (!StringUtils.isBlank(path)) {
-                    final String component = d.shortName();
-                    final int pos = component.indexOf(Family.SEP);
-                    if (pos > -1) {
-                        path += component.substring(pos);
-                    }
-                    return path;
+                    return appendFamilySuffix(path, d);
                 }
 
             }
             // the param from the tld has priority over any child
-            if ((tld != null) && !StringUtils.isBlank(tld.getStringParameter(s))) {
-                String path = tld.getStringParameter(s);
-                if (!StringUtils.isBlank(path)) {
-                    final String component = d.shortName();
-                    final int pos = component.indexOf(Family.SEP);
-                    if (pos > -1) {
-                        path += component.substring(pos);
-                    }
-                    return path;
-                }
+            final String tldValue = tld != null ? tld.getStringParameter(s) : null;
+            if (!StringUtils.isBlank(tldValue)) {
+                return appendFamilySuffix(tldValue, d);
             }
             // if the param is not in the tld
-            if (!StringUtils.isBlank(d.getStringParameter(s))) {
-                return d.getStringParameter(s);
+            final String value = d.getStringParameter(s);
+            if (!StringUtils.isBlank(value)) {
+                return value;
             }
 
         }
@@ -833,6 +690,15 @@ public class DropOffUtil {
         return uuid;
     }
 
+    /**
+     * Add the family part of the payload short name (e.g. -att-1-2) to an id
+     */
+    private static String appendFamilySuffix(final String id, final IBaseDataObject d) {
+        final String component = d.shortName();
+        final int pos = component.indexOf(Family.SEP);
+        return pos > -1 ? id.concat(component.substring(pos)) : id;
+    }
+
     /**
      * Creates a UUID. Includes a prefix if specified.
      *
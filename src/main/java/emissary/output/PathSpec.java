@@ -0,0 +1,296 @@
+package emissary.output;
+
+import emissary.core.Family;
+import emissary.core.IBaseDataObject;
+import emissary.util.TimeUtil;
+
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled form of an output path specification as understood by
+ * {@link DropOffUtil#getPathFromSpec(String, IBaseDataObject, IBaseDataObject)}. The spec string is parsed once into a
+ * list of segments so that rendering a path for a payload is a walk over the segments appending into a buffer, with no
+ * parsing or regular expressions per payload.
+ * <p>
+ * How an {@code @TLD{'KEY'}} token is parsed depends on whether there is a top level document, so the spec is compiled
+ * for both cases.
+ */
+public final class PathSpec {
+
+    /**
+     * One piece of a compiled spec
+     */
+    interface Segment {
+        void render(DropOffUtil util, StringBuilder sb, @Nullable IBaseDataObject d, @Nullable IBaseDataObject tld);
+    }
+
+    private final String spec;
+    private final List<Segment> withTld;
+    private final List<Segment> withoutTld;
+
+    private PathSpec(final String spec) {
+        this.spec = spec;
+        this.withTld = parse(spec, true);
+        this.withoutTld = parse(spec, false);
+    }
+
+    /**
+     * Compile a spec string
+     *
+     * @param spec the output spec
+     * @return the compiled spec
+     */
+    public static PathSpec compile(final String spec) {
+        return new PathSpec(spec);
+    }
+
+    /**
+     * Get the spec string this was compiled from
+     */
+    public String getSpec() {
+        return this.spec;
+    }
+
+    /**
+     * Render the spec for a payload into the buffer, including the final separator fix ups
+     *
+     * @param util the drop off util supplying root path, ids and dates
+     * @param sb the buffer to append to
+     * @param d the payload we are making a path for
+     * @param tld the top level document in the d family, possibly null
+     */
+    public void render(final DropOffUtil util, final StringBuilder sb, @Nullable final IBaseDataObject d, @Nullable final IBaseDataObject tld) {
+        final int start = sb.length();
+        for (final Segment segment : tld != null ? this.withTld : this.withoutTld) {
+            segment.render(util, sb, d, tld);
+        }
+        fixSeparators(sb, start);
+    }
+
+    /**
+     * Use forward slashes everywhere and turn a dot that ends a path component into an underscore
+     */
+    static void fixSeparators(final StringBuilder sb, final int start) {
+        for (int i = start; i < sb.length(); i++) {
+            if (sb.charAt(i) == '\\') {
+                sb.setCharAt(i, '/');
+            }
+        }
+        for (int i = start; i < sb.length() - 1; i++) {
+            if (sb.charAt(i) == '.' && sb.charAt(i + 1) == '/') {
+                sb.setCharAt(i, '_');
+            }
+        }
+    }
+
+    /**
+     * Collapse runs of dots down to a single dot
+     *
+     * @param token the value to clean, possibly null
+     * @return the cleaned value or null
+     */
+    @Nullable
+    static String collapseDots(@Nullable final String token) {
+        if (token == null || !token.contains("..")) {
+            return token;
+        }
+        final StringBuilder sb = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            final char c = token.charAt(i);
+            if (c != '.' || i == 0 || token.charAt(i - 1) != '.') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replace forward and back slashes with underscores
+     */
+    static void appendUnderscored(final StringBuilder sb, final String s, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            sb.append(c == '/' || c == '\\' ? '_' : c);
+        }
+    }
+
+    private static List<Segment> parse(final String spec, final boolean haveTld) {
+        final List<Segment> segments = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+
+        for (int i = 0; i < spec.length(); i++) {
+            final char c = spec.charAt(i);
+
+            if (c == '%' && i < spec.length() - 2) {
+                final char t = spec.charAt(i + 1);
+                final char x = spec.charAt(i + 2);
+
+                if (x == c) {
+                    final Segment directive = directive(t);
+                    if (directive == null) {
+                        literal.append(c).append(t).append(x);
+                    } else {
+                        flushLiteral(literal, segments);
+                        segments.add(directive);
+                    }
+                    i += 2; // SUPPRESS CHECKSTYLE ModifiedControlVariable
+                } else {
+                    // No trailing % after character
+                    literal.append(c);
+                }
+            } else if (c == '@' && i < spec.length() - 8 && spec.startsWith("META{'", i + 1)) {
+                final int endpos = spec.indexOf('\'', i + 7);
+                if (endpos > i + 7) {
+                    final String token = spec.substring(i + 7, endpos);
+                    flushLiteral(literal, segments);
+                    segments.add(new MetaSegment(token, false));
+                    i += 8 + token.length(); // META{'token'} SUPPRESS CHECKSTYLE ModifiedControlVariable
+                } else {
+                    literal.append(c);
+                }
+            } else if (c == '@' && i < spec.length() - 7 && spec.startsWith("TLD{'", i + 1) && haveTld) {
+                final int endpos = spec.indexOf('\'', i + 6);
+                if (endpos > i + 6) {
+                    final String token = spec.substring(i + 6, endpos);
+                    flushLiteral(literal, segments);
+                    segments.add(new MetaSegment(token, true));
+                    i += 7 + token.length(); // TLD{'token'} SUPPRESS CHECKSTYLE ModifiedControlVariable
+                } else {
+                    literal.append(c);
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        flushLiteral(literal, segments);
+        return Collections.unmodifiableList(segments);
+    }
+
+    private static void flushLiteral(final StringBuilder literal, final List<Segment> segments) {
+        if (literal.length() > 0) {
+            final String text = literal.toString();
+            segments.add((util, sb, d, tld) -> sb.append(text));
+            literal.setLength(0);
+        }
+    }
+
+    @Nullable
+    private static Segment directive(final char t) {
+        switch (t) {
+            case 'U':
+                return (util, sb, d, tld) -> {
+                    if (tld != null) {
+                        sb.append(util.nvl(tld.getParameter("UserName"), "no-userid"));
+                    } else if (d != null) {
+                        sb.append(util.nvl(d.getParameter("UserName"), "no-userid"));
+                    }
+                };
+            case 'S':
+                return (util, sb, d, tld) -> {
+                    if (d != null) {
+                        sb.append(d.shortName());
+                    }
+                };
+            case 'I':
+                return (util, sb, d, tld) -> {
+                    if (d != null) {
+                        sb.append(d.getFilename());
+                    }
+                };
+            case 'i':
+                return (util, sb, d, tld) -> {
+                    if (d != null) {
+                        final String filename = d.getFilename();
+                        appendUnderscored(sb, filename, 0, filename.length());
+                    }
+                };
+            case 'P':
+                return (util, sb, d, tld) -> {
+                    if (d != null) {
+                        sb.append(d.getFilename(), 0, d.getFilename().length() - d.shortName().length());
+                    }
+                };
+            case 'p':
+                return (util, sb, d, tld) -> {
+                    if (d != null) {
+                        final String filename = d.getFilename();
+                        appendUnderscored(sb, filename, 0, filename.length() - d.shortName().length());
+                    }
+                };
+            case 'F':
+                return (util, sb, d, tld) -> {
+                    if (d != null) {
+                        sb.append(util.nvl(util.cleanSpecPath(d.getFileType()), "NONE"));
+                    }
+                };
+            case 'L':
+                return (util, sb, d, tld) -> {
+                    if (d != null) {
+                        sb.append(util.nvl(d.getParameter("LANGUAGE"), "NONE"));
+                    }
+                };
+            case 'G':
+                return (util, sb, d, tld) -> {
+                    if (tld != null) {
+                        sb.append(util.datePath(util.cleanSpecPath(tld.getStringParameter("DTG"))));
+                    } else if (d != null) {
+                        sb.append(util.datePath(util.cleanSpecPath(d.getStringParameter("DTG"))));
+                    }
+                };
+            case 'R':
+                return (util, sb, d, tld) -> sb.append(util.getRootPath());
+            case 'B':
+                return (util, sb, d, tld) -> {
+                    if (tld != null) {
+                        sb.append(util.cleanSpecPath(util.getBestIdFrom(tld)));
+                    } else if (d != null) {
+                        sb.append(util.cleanSpecPath(util.getBestIdFrom(d)));
+                    }
+                };
+            case 'b':
+                return (util, sb, d, tld) -> {
+                    sb.append(util.cleanSpecPath((tld != null) ? util.getBestIdFrom(tld) : util.getBestIdFrom(d)));
+                    final String sn = d.shortName();
+                    final int pos = sn.indexOf(Family.SEP);
+                    if (pos > 0) {
+                        sb.append(sn, pos, sn.length());
+                    }
+                };
+            case 'Y':
+                return (util, sb, d, tld) -> sb.append(TimeUtil.getDate("yyyy", "GMT"));
+            case 'M':
+                return (util, sb, d, tld) -> sb.append(TimeUtil.getDate("MM", "GMT"));
+            case 'D':
+                return (util, sb, d, tld) -> sb.append(TimeUtil.getDate("dd", "GMT"));
+            case 'J':
+                return (util, sb, d, tld) -> sb.append(TimeUtil.getDate("DDD", "GMT"));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Pull a named value from the payload or the top level document
+     */
+    private static final class MetaSegment implements Segment {
+        private final String token;
+        private final String missing;
+        private final boolean fromTld;
+
+        MetaSegment(final String token, final boolean fromTld) {
+            this.token = token;
+            this.missing = "NO-" + token;
+            this.fromTld = fromTld;
+        }
+
+        @Override
+        public void render(final DropOffUtil util, final StringBuilder sb, @Nullable final IBaseDataObject d, @Nullable final IBaseDataObject tld) {
+            final IBaseDataObject source = this.fromTld ? tld : d;
+            sb.append(util.nvl(util.cleanSpecPath(source.getStringParameter(this.token)), this.missing));
+        }
+    }
+}
@@ -150,4 +150,14 @@ public interface IDropOffFilter {
      * Get the set of configured output types
      */
     Collection<String> getOutputTypes();
+
+    /**
+     * Whether the filter may change the payloads or parameters it is given. When filters run concurrently, those that only
+     * read them share the payloads instead of getting their own copies.
+     *
+     * @return true unless the filter never changes the payloads or parameters
+     */
+    default boolean modifiesPayloads() {
+        return true;
+    }
 }
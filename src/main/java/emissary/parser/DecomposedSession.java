@@ -34,6 +34,8 @@ public class DecomposedSession {
     @Nullable
     protected byte[] data = null;
     @Nullable
+    protected List<PositionRecord> dataRecords = null;
+    @Nullable
     protected String classification = null;
     protected List<String> initialForms = new ArrayList<>();
     protected ArrayListMultimap<String, Object> metadata = ArrayListMultimap.create(100, 1);
@@ -119,6 +121,54 @@ public class DecomposedSession {
         return data;
     }
 
+    /**
+     * Describe the data as ranges of the source the session was parsed from instead of as bytes, so the data does not need
+     * to be copied. Previously existing data records are lost
+     *
+     * @param records absolute positions and lengths in the source, in order
+     */
+    public void setDataRecords(@Nullable List<PositionRecord> records) {
+        dataRecords = records == null ? null : new ArrayList<>(records);
+    }
+
+    /**
+     * Get the data ranges
+     *
+     * @return the positions and lengths in the source or null if none
+     */
+    @Nullable
+    public List<PositionRecord> getDataRecords() {
+        return dataRecords;
+    }
+
+    /**
+     * Test for data ranges presence
+     *
+     * @return true if the data is described as ranges of the source
+     */
+    public boolean hasDataRecords() {
+        return dataRecords != null;
+    }
+
+    /**
+     * Get the length of the data, whether held as bytes or described as ranges
+     *
+     * @return the number of bytes of data or -1 if there is none
+     */
+    public long getDataLength() {
+        if (data != null) {
+            return data.length;
+        }
+        if (dataRecords != null) {
+            long length = 0;
+            for (PositionRecord r : dataRecords) {
+                length += r.getLength();
+            }
+            return length;
+        }
+        return -1L;
+    }
+
     /**
      * Set the classification
      *
@@ -310,6 +360,6 @@ public class DecomposedSession {
      * Check validity of session
      */
     public boolean isValid() {
-        return hasData() || hasHeader() || hasFooter();
+        return hasData() || hasDataRecords() || hasHeader() || hasFooter();
     }
 }
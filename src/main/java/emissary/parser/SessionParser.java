@@ -10,6 +10,8 @@ public abstract class SessionParser {
 
     protected boolean fullyParsed = false;
 
+    protected boolean copyData = true;
+
     /**
      * Indicates if the data has been fully parsed or not.
      * 
@@ -28,6 +30,26 @@ public abstract class SessionParser {
         this.fullyParsed = fullyParsed;
     }
 
+    /**
+     * Indicates if session data is copied out of the source
+     *
+     * @return true if sessions hold their data as bytes
+     */
+    public boolean isCopyData() {
+        return copyData;
+    }
+
+    /**
+     * Choose whether session data is copied out of the source. When false, parsers that support it describe the data of
+     * each session with {@link DecomposedSession#setDataRecords(java.util.List)} as ranges of the source, and parsers that
+     * do not keep copying. Header, footer and metadata are always copied.
+     *
+     * @param copyData false to describe data as ranges where supported
+     */
+    public void setCopyData(boolean copyData) {
+        this.copyData = copyData;
+    }
+
     /**
      * Get session name or null if none can be provided
      * 
@@ -2,6 +2,10 @@ package emissary.parser;
 
 import emissary.core.DataObjectFactory;
 import emissary.core.IBaseDataObject;
+import emissary.core.channels.ConcatenateChannelFactory;
+import emissary.core.channels.InMemoryChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
+import emissary.core.channels.SegmentChannelFactory;
 
 import jakarta.annotation.Nullable;
 
@@ -27,6 +31,10 @@ public class SessionProducer {
 
     protected boolean firstSession = true;
 
+    /** The data the parser reads, used to make payloads that are views of it */
+    @Nullable
+    protected SeekableByteChannelFactory source;
+
     /**
      * Creates a SessionProducer
      *
@@ -63,6 +71,21 @@ public class SessionProducer {
         this.initialForms = initialForms;
     }
 
+    /**
+     * Creates a SessionProducer that makes payloads which are views of the source instead of copies of it. The parser is
+     * asked not to copy session data, and parsers that support this describe each session as ranges of the source.
+     *
+     * @param sp The SessionParser, reading from a channel created by source.
+     * @param initialForms Forms to be preloaded onto the form stack, may be null.
+     * @param source the data being parsed, which must stay readable while the payloads are in use.
+     */
+    public SessionProducer(SessionParser sp, @Nullable List<String> initialForms, SeekableByteChannelFactory source) {
+        this.sp = sp;
+        this.initialForms = initialForms;
+        this.source = source;
+        sp.setCopyData(false);
+    }
+
     /**
      * Creates a SessionProducer with one initial form
      *
@@ -90,7 +113,17 @@ public class SessionProducer {
             sName = defaultSessionName;
         }
 
-        IBaseDataObject dataObject = DataObjectFactory.getInstance(new Object[] {theData, sName});
+        IBaseDataObject dataObject;
+        if (session.hasDataRecords()) {
+            if (source == null) {
+                throw new IllegalStateException("Session data is described as ranges but the producer has no source");
+            }
+            dataObject = DataObjectFactory.getInstance();
+            dataObject.setFilename(sName);
+            dataObject.setChannelFactory(makeView(source, session.getDataRecords()));
+        } else {
+            dataObject = DataObjectFactory.getInstance(new Object[] {theData, sName});
+        }
 
         // Pop default form if we have something to say
         if (initialForms != null && !initialForms.isEmpty()) {
@@ -151,6 +184,22 @@ public class SessionProducer {
         return dataObject;
     }
 
+    /**
+     * Make a view of the source covering the ranges in order, without copying any data
+     *
+     * @param source the data being parsed
+     * @param records absolute positions and lengths in the source
+     * @return a factory over the ranges
+     */
+    protected static SeekableByteChannelFactory makeView(SeekableByteChannelFactory source, List<PositionRecord> records) {
+        SeekableByteChannelFactory view = null;
+        for (PositionRecord r : records) {
+            SeekableByteChannelFactory segment = SegmentChannelFactory.create(source, r.getPosition(), r.getLength());
+            view = view == null ? segment : ConcatenateChannelFactory.create(view, segment);
+        }
+        return view == null ? InMemoryChannelFactory.create(new byte[0]) : view;
+    }
+
     /**
      * Produce the next session or throw ParserEOFException when out of data
      *
@@ -46,8 +46,12 @@ public class SimpleNioParser extends NIOSessionParser {
 
                 d.setFooter(makeDataSlice(session.getFooter()));
 
-                d.setData(makeDataSlice(session.getData()));
-                long length = d.getData() == null ? -1L : d.getData().length;
+                if (copyData || session.getData() == null || session.getData().isEmpty()) {
+                    d.setData(makeDataSlice(session.getData()));
+                } else {
+                    d.setDataRecords(session.getData());
+                }
+                long length = d.getDataLength();
 
                 // Cook the raw metadata and transfer to DecomposedSession
                 Map<String, Object> md = session.getMetaData();
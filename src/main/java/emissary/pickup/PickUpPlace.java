@@ -7,7 +7,9 @@ import emissary.core.Form;
 import emissary.core.IBaseDataObject;
 import emissary.core.IMobileAgent;
 import emissary.core.NamespaceException;
+import emissary.core.channels.FileChannelFactory;
 import emissary.core.channels.InMemoryChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.log.MDCConstants;
 import emissary.parser.ParserEOFException;
 import emissary.parser.ParserException;
@@ -35,9 +37,16 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static emissary.core.constants.Parameters.FILE_DATE;
 import static emissary.core.constants.Parameters.FILE_NAME;
+import static emissary.core.constants.Parameters.SESSION_NUMBER;
 
 /**
  * This class is the base class of those places that inject data into the system. This place knows a lot about
@@ -82,6 +91,19 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
 
     protected boolean useObjectTraceLogger = false;
 
+    // True makes session payloads views of the input file instead of copies
+    protected boolean zeroCopySessions = false;
+
+    // Threads handing sessions to agents, 1 hands them off on the parsing thread
+    protected int sessionDispatchThreads = 1;
+
+    // Sessions of one file parsed but not yet handed to an agent
+    protected int sessionQueueSize = 100;
+
+    // Shared by every file this place parses, created on first use
+    @Nullable
+    private ExecutorService sessionDispatchers;
+
     public PickUpPlace() throws IOException {
         super();
         configurePickUpPlace();
@@ -165,6 +187,11 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
      * <li>DONE_DATA: where it goes when done</li>
      * <li>SIMPLE_MODE: boolean when true turns off DataIdentification engine</li>
      * <li>INITIAL_FORM: one or more forms for new payloads</li>
+     * <li>ZERO_COPY_SESSIONS: boolean when true session payloads read from the input file rather than holding a copy, each
+     * file stays mapped, but not open, until its payloads are no longer referenced</li>
+     * <li>SESSION_DISPATCH_THREADS: number of threads handing the sessions of a file to agents while it is parsed, 1 to
+     * hand them off one at a time on the parsing thread</li>
+     * <li>SESSION_QUEUE_SIZE: most sessions of one file parsed ahead of being handed to an agent</li>
      * </ul>
      */
     protected void configurePickUpPlace() {
@@ -200,6 +227,24 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
 
         // Whether or not to use the objectTrace logger
         useObjectTraceLogger = configG.findBooleanEntry("USE_OBJECT_TRACE_LOGGER", useObjectTraceLogger);
+
+        zeroCopySessions = configG.findBooleanEntry("ZERO_COPY_SESSIONS", zeroCopySessions);
+        sessionDispatchThreads = Math.max(configG.findIntEntry("SESSION_DISPATCH_THREADS", sessionDispatchThreads), 1);
+        sessionQueueSize = Math.max(configG.findIntEntry("SESSION_QUEUE_SIZE", sessionQueueSize), 1);
+    }
+
+    /**
+     * Stop the session dispatch threads and shut down the place
+     */
+    @Override
+    public void shutDown() {
+        synchronized (this) {
+            if (sessionDispatchers != null) {
+                sessionDispatchers.shutdown();
+                sessionDispatchers = null;
+            }
+        }
+        super.shutDown();
     }
 
     /**
@@ -579,7 +624,9 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
     }
 
     /**
-     * Parse out sessions and process data from a file
+     * Parse out sessions and process data from a file. With more than one SESSION_DISPATCH_THREADS the sessions are handed
+     * to agents on those threads while parsing carries on, each payload records its place in the file in the SESSION_NUMBER
+     * parameter, and this returns once every session has been handed off.
      * 
      * @param theFile file to process
      * @param fixedName the good short name of the file
@@ -591,14 +638,22 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
         // is available so start by getting the file opened
         logger.debug("PickUpPlace: Starting on {}", theFile.getName());
         int sessionNum = 0;
+        final SessionDispatch dispatch = sessionDispatchThreads > 1 ? new SessionDispatch(getSessionDispatchers(), sessionQueueSize) : null;
         try (RandomAccessFile raf = new RandomAccessFile(theFile, "r")) {
 
             // Get the right type of session parser
             SessionParser sp = parserFactory.makeSessionParser(raf.getChannel());
             logger.debug("Using session parser from raf ident {}", sp.getClass().getName());
 
-            // ... and a session producer to crank out the data objects...
-            SessionProducer dof = new SessionProducer(sp);
+            // ... and a session producer to crank out the data objects. Views read through a mapping of the file, which
+            // holds no file descriptor, stays usable after the file is moved out of the holding area and is released with
+            // the views
+            SessionProducer dof;
+            if (zeroCopySessions) {
+                dof = new SessionProducer(sp, null, FileChannelFactory.createMapped(theFile.toPath()));
+            } else {
+                dof = new SessionProducer(sp);
+            }
 
             long fileStart = System.currentTimeMillis();
             long totalSize = 0;
@@ -615,10 +670,16 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
                     logger.debug("Pulled session {} from {} shortName={}", sessionName, theFile.getName(), dataObject.shortName());
                     sessionNum++;
                     long sessionEnd = System.currentTimeMillis();
-                    totalSize += dataObject.data().length;
+                    long sessionSize = dataObject.getChannelSize();
+                    totalSize += sessionSize;
                     logger.info("sessionParseMetric:{},{},{},{},{},{}", sessionEnd - sessionStart, sp.getClass().getName(), theFile, sessionName,
-                            sessionNum, dataObject.data().length);
-                    processDataObject(dataObject, sessionName, theFile, false);
+                            sessionNum, sessionSize);
+                    if (dispatch == null) {
+                        processDataObject(dataObject, sessionName, theFile, false);
+                    } else {
+                        dataObject.setParameter(SESSION_NUMBER, Integer.toString(sessionNum));
+                        dispatch.submit(() -> processDataObject(dataObject, sessionName, theFile, false));
+                    }
                 } catch (ParserEOFException eof) {
                     // expected at end of file
                     isParserComplete = true;
@@ -629,6 +690,15 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
                     throw new ParserException("Could not process" + theFile.getName(), ex);
                 }
             }
+        } finally {
+            if (dispatch != null) {
+                dispatch.await();
+            }
+        }
+
+        if (dispatch != null && dispatch.getError() != null) {
+            logger.error("Could not dispatch {}", theFile.getName(), dispatch.getError());
+            throw new ParserException("Could not process" + theFile.getName(), dispatch.getError());
         }
 
         logger.debug("Done processing {} sessions from {}", sessionNum, theFile.getName());
@@ -650,10 +720,11 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
         int sessionNum = 0;
 
         // Get the right type of session parser
-        SessionParser sp = parserFactory.makeSessionParser(InMemoryChannelFactory.create(data).create());
+        SeekableByteChannelFactory source = InMemoryChannelFactory.create(data);
+        SessionParser sp = parserFactory.makeSessionParser(source.create());
 
-        // .. and a session producer to crank out the data objects...
-        SessionProducer dof = new SessionProducer(sp);
+        // .. and a session producer to crank out the data objects as views of the array...
+        SessionProducer dof = new SessionProducer(sp, null, source);
 
         // For each session get a data object from the producer
         boolean isParserComplete = false;
@@ -677,6 +748,85 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
         return sessionNum;
     }
 
+    private synchronized ExecutorService getSessionDispatchers() {
+        if (sessionDispatchers == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            final String name = getPlaceName();
+            sessionDispatchers = Executors.newFixedThreadPool(sessionDispatchThreads, r -> {
+                Thread t = new Thread(r, name + "-SessionDispatch-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return sessionDispatchers;
+    }
+
+    /**
+     * Something that hands one session to an agent
+     */
+    @FunctionalInterface
+    private interface SessionTask {
+        void run() throws EmissaryException;
+    }
+
+    /**
+     * Hands the sessions of one file to agents on the shared dispatch threads. The parser blocks once the queue of sessions
+     * waiting for an agent is full, and stops at the first session that could not be handed off.
+     */
+    private static final class SessionDispatch {
+        private final ExecutorService executor;
+        private final int queueSize;
+        private final Semaphore queued;
+        private final AtomicReference<EmissaryException> error = new AtomicReference<>();
+
+        SessionDispatch(ExecutorService executor, int queueSize) {
+            this.executor = executor;
+            this.queueSize = queueSize;
+            this.queued = new Semaphore(queueSize);
+        }
+
+        void submit(SessionTask task) throws EmissaryException {
+            try {
+                queued.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EmissaryException("Interrupted waiting to dispatch a session", e);
+            }
+            final EmissaryException failed = error.get();
+            if (failed != null) {
+                queued.release();
+                throw failed;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (EmissaryException | RuntimeException e) {
+                        error.compareAndSet(null, e instanceof EmissaryException ? (EmissaryException) e : new EmissaryException(e));
+                    } finally {
+                        queued.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queued.release();
+                throw new EmissaryException("Session dispatch is shut down", e);
+            }
+        }
+
+        /**
+         * Wait until every submitted session has been handed off
+         */
+        void await() {
+            queued.acquireUninterruptibly(queueSize);
+            queued.release(queueSize);
+        }
+
+        @Nullable
+        EmissaryException getError() {
+            return error.get();
+        }
+    }
+
     /**
      * Produce a legal tracking filename from the disk filename
      * 
@@ -744,7 +894,7 @@ public abstract class PickUpPlace extends ServiceProviderPlace implements IPickU
             do {
                 loopCount++;
                 try {
-                    agent = agentPool.borrowAgent();
+                    agent = agentPool.borrowAgent(payload);
                 } catch (Exception e) {
                     if (!warningGiven) {
                         slogger.debug("Cannot get agent from pool, trying again ", e);
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +31,15 @@ public abstract class PickUpSpace extends PickUpPlace implements IPickUpSpace {
     // Map of pending bundles to workspace name to facilitate replying
     protected Map<String, String> pendingBundles = new HashMap<>();
 
+    // Most bundles asked for in one take from a space, 1 to use the single bundle take
+    protected int takeMaxBundles = 1;
+
+    // Number of bundle completions sent to a space in one message, 1 to send each as it happens
+    protected int completionBatchSize = 1;
+
+    // Completions not yet sent, by workspace name then bundle id
+    protected final Map<String, Map<String, Boolean>> pendingCompletions = new HashMap<>();
+
     // Number of consecutive take errors that cause space to close
     protected static final int TAKE_ERROR_MAX = 10;
 
@@ -99,6 +109,7 @@ public abstract class PickUpSpace extends PickUpPlace implements IPickUpSpace {
     @Override
     public void closeSpace(String spaceName) {
         logger.info("Closing down connection to " + spaceName);
+        flushCompletions(spaceName);
         openSpaceNames.remove(spaceName);
         lastBundleSize.remove(spaceName);
         numConsecutiveTakeErrors.remove(spaceName);
@@ -142,6 +153,8 @@ public abstract class PickUpSpace extends PickUpPlace implements IPickUpSpace {
      */
     @Override
     public boolean take() {
+        // let the spaces know what is done before asking for more
+        flushCompletions();
         if (openSpaceNames.isEmpty()) {
             logger.debug("Cannot perform 'take' when no spaces are available");
             return false;
@@ -150,9 +163,13 @@ public abstract class PickUpSpace extends PickUpPlace implements IPickUpSpace {
         // Keep track of space we may have to close
         List<String> closers = new ArrayList<>();
 
-        // We will take up to one bundle per workspace
+        // We will take up to one bundle per workspace unless configured for more
         int countTaken = 0;
         for (String openSpaceName : openSpaceNames) {
+            if (takeMaxBundles > 1) {
+                countTaken += takeBundles(openSpaceName, closers);
+                continue;
+            }
             WorkBundle path = null;
             try {
                 path = tpa.outboundWorkSpaceTake(openSpaceName, myKey);
@@ -182,6 +199,44 @@ public abstract class PickUpSpace extends PickUpPlace implements IPickUpSpace {
         return countTaken > 0;
     }
 
+    /**
+     * Take several bundles from one space in a single request
+     *
+     * @param openSpaceName the space to take from
+     * @param closers receives the space name if it has no more work
+     * @return number of bundles taken
+     */
+    protected int takeBundles(String openSpaceName, List<String> closers) {
+        List<WorkBundle> paths = null;
+        try {
+            paths = tpa.outboundWorkSpaceTake(openSpaceName, myKey, takeMaxBundles);
+        } catch (RuntimeException ex) {
+            logger.error("Failed to take work from " + openSpaceName, ex);
+        }
+
+        if (paths == null) {
+            // Error, record it, but might be transient
+            logger.error("Got a null WorkBundle list from " + openSpaceName);
+            numConsecutiveTakeErrors.put(openSpaceName, numConsecutiveTakeErrors.get(openSpaceName) + 1);
+            return 0;
+        }
+        if (paths.isEmpty()) {
+            // Close out message
+            closers.add(openSpaceName);
+            return 0;
+        }
+        logger.debug("Received " + paths.size() + " bundles from " + openSpaceName);
+        numConsecutiveTakeErrors.put(openSpaceName, 0);
+        for (WorkBundle path : paths) {
+            lastBundleSize.put(openSpaceName, path.size());
+            pendingBundles.put(path.getBundleId(), openSpaceName);
+            if (!enque(path)) {
+                logger.error("Unable to enqueue bundle " + path.getBundleId() + " from " + openSpaceName + ", losing it.");
+            }
+        }
+        return paths.size();
+    }
+
     /**
      * Clean up any spaces that have crosse the consecutive error message threshold and any that are specified in the
      * argument
@@ -219,7 +274,54 @@ public abstract class PickUpSpace extends PickUpPlace implements IPickUpSpace {
             logger.debug("Space is gone before we could notify " + " bundle completion for " + bundleId);
         } else {
             pendingBundles.remove(bundleId);
-            tpa.outboundBundleCompletion(openSpaceName, myKey, bundleId, itWorked);
+            if (completionBatchSize <= 1) {
+                tpa.outboundBundleCompletion(openSpaceName, myKey, bundleId, itWorked);
+                return;
+            }
+            Map<String, Boolean> batch;
+            synchronized (pendingCompletions) {
+                batch = pendingCompletions.computeIfAbsent(openSpaceName, k -> new LinkedHashMap<>());
+                batch.put(bundleId, itWorked);
+                if (batch.size() < completionBatchSize) {
+                    return;
+                }
+                pendingCompletions.remove(openSpaceName);
+            }
+            sendCompletions(openSpaceName, batch);
+        }
+    }
+
+    /**
+     * Send any batched completions to every space
+     */
+    protected void flushCompletions() {
+        List<String> spaceNames;
+        synchronized (pendingCompletions) {
+            spaceNames = new ArrayList<>(pendingCompletions.keySet());
+        }
+        for (String spaceName : spaceNames) {
+            flushCompletions(spaceName);
+        }
+    }
+
+    /**
+     * Send any batched completions to one space
+     *
+     * @param spaceName the space
+     */
+    protected void flushCompletions(String spaceName) {
+        Map<String, Boolean> batch;
+        synchronized (pendingCompletions) {
+            batch = pendingCompletions.remove(spaceName);
+        }
+        if (batch != null && !batch.isEmpty()) {
+            sendCompletions(spaceName, batch);
+        }
+    }
+
+    private void sendCompletions(String spaceName, Map<String, Boolean> batch) {
+        if (!tpa.outboundBundleCompletions(spaceName, myKey, batch)) {
+            logger.warn("Unable to notify " + spaceName + " of " + batch.size() + " completed bundles");
         }
     }
 
@@ -31,6 +31,9 @@ public final class WorkBundle implements Comparable<WorkBundle> {
 
     static final int MAX_UNITS = 1024;
 
+    /** Media type of bundles written by {@link #writeBundlesToStream(List, DataOutputStream)} */
+    public static final String MEDIA_TYPE = "application/vnd.emissary.workbundles";
+
     // Unique ID for this work bundle
     String bundleId;
 
@@ -174,6 +177,42 @@ public final class WorkBundle implements Comparable<WorkBundle> {
         }
     }
 
+    /**
+     * Serialize several WorkBundles to a DataOutputStream, the compact alternative to {@link #toXml(List)}
+     *
+     * @param bundles the bundles, may be empty
+     * @param out the stream to write to
+     * @throws IOException if there is a problem writing to the stream or there are more than <code>MAX_UNITS</code> bundles
+     */
+    public static void writeBundlesToStream(List<WorkBundle> bundles, DataOutputStream out) throws IOException {
+        if (bundles.size() > MAX_UNITS) {
+            throw new IOException("Exception when writing: may not write more then " + MAX_UNITS + " WorkBundles (saw: " + bundles.size() + ").");
+        }
+        out.writeInt(bundles.size());
+        for (WorkBundle wb : bundles) {
+            wb.writeToStream(out);
+        }
+    }
+
+    /**
+     * Deserialize WorkBundles written by {@link #writeBundlesToStream(List, DataOutputStream)}
+     *
+     * @param in the stream to read from
+     * @return the bundles, empty if there were none
+     * @throws IOException if there is a problem reading the stream or it holds too many bundles or work units
+     */
+    public static List<WorkBundle> readBundlesFromStream(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_UNITS) {
+            throw new IOException("Exception when reading: may not read more then " + MAX_UNITS + " WorkBundles (saw: " + count + ").");
+        }
+        List<WorkBundle> bundles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bundles.add(readFromStream(in));
+        }
+        return bundles;
+    }
+
     @Nullable
     static String readUtfOrNull(DataInputStream in) throws IOException {
         if (in.readBoolean()) {
@@ -567,6 +606,26 @@ public final class WorkBundle implements Comparable<WorkBundle> {
     }
 
     public String toXml() {
+        Document jdom = new Document(toElement());
+        return SaferJDOMUtil.toString(jdom);
+    }
+
+    /**
+     * Represent several bundles in one xml document, such as the answer to a take of more than one bundle
+     *
+     * @param bundles the bundles, may be empty
+     * @return the xml string
+     */
+    public static String toXml(List<WorkBundle> bundles) {
+        Element root = new Element("workBundles");
+        for (WorkBundle wb : bundles) {
+            root.addContent(wb.toElement());
+        }
+        Document jdom = new Document(root);
+        return SaferJDOMUtil.toString(jdom);
+    }
+
+    private Element toElement() {
         Element root = new Element("workBundle");
         root.addContent(SaferJDOMUtil.simpleElement("bundleId", getBundleId()));
         root.addContent(SaferJDOMUtil.simpleElement("outputRoot", getOutputRoot()));
@@ -591,9 +650,7 @@ public final class WorkBundle implements Comparable<WorkBundle> {
 
             root.addContent(workunit);
         }
-
-        Document jdom = new Document(root);
-        return SaferJDOMUtil.toString(jdom);
+        return root;
     }
 
     /**
@@ -627,7 +684,13 @@ public final class WorkBundle implements Comparable<WorkBundle> {
             logger.error("Document does not have a root element!");
             return null;
         }
+        return buildWorkBundle(root);
+    }
 
+    /**
+     * Build a WorkBundle object from its xml element
+     */
+    private static WorkBundle buildWorkBundle(Element root) {
         WorkBundle wb = new WorkBundle();
         wb.setBundleId(root.getChildTextTrim("bundleId"));
         String s = root.getChildTextTrim("outputRoot");
@@ -678,4 +741,29 @@ public final class WorkBundle implements Comparable<WorkBundle> {
 
         return wb;
     }
+
+    /**
+     * Build a list of WorkBundle objects from xml made by {@link #toXml(List)}
+     *
+     * @param xml the xml string representing the bundles
+     * @return the constructed bundles, empty if there were none, or null on error
+     */
+    @Nullable
+    public static List<WorkBundle> buildWorkBundles(String xml) {
+        try {
+            Element root = SaferJDOMUtil.createDocument(xml).getRootElement();
+            if (root == null || !"workBundles".equals(root.getName())) {
+                logger.error("Document is not a list of work bundles: {}", xml);
+                return null;
+            }
+            List<WorkBundle> bundles = new ArrayList<>();
+            for (Element e : root.getChildren("workBundle")) {
+                bundles.add(buildWorkBundle(e));
+            }
+            return bundles;
+        } catch (Exception ex) {
+            logger.error("Cannot make WorkBundles from " + xml, ex);
+            return null;
+        }
+    }
 }
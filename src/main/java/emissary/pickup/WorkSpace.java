@@ -5,6 +5,7 @@ import emissary.command.BaseCommand;
 import emissary.command.FeedCommand;
 import emissary.command.ServerCommand;
 import emissary.core.EmissaryException;
+import emissary.core.MetricsManager;
 import emissary.core.Namespace;
 import emissary.core.NamespaceException;
 import emissary.directory.DirectoryAdapter;
@@ -19,6 +20,8 @@ import emissary.server.mvc.adapters.WorkSpaceAdapter;
 import emissary.util.Version;
 import emissary.util.io.FileFind;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import jakarta.annotation.Nullable;
 import org.apache.hc.core5.http.HttpStatus;
 import org.eclipse.jetty.server.Server;
@@ -43,6 +46,7 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Recursively process input and distribute files to one or more remote PickUp client instances when they ask for a
@@ -115,6 +119,17 @@ public class WorkSpace implements Runnable {
 
     protected long maxBundleSize = Long.getLong(CLZ + ".maxSizePerBundle", -1);
 
+    /**
+     * Most bundles handed to a client in one {@link #take(String, int)}, however fast it works
+     */
+    protected int maxBundlesPerTake = Integer.getInteger(CLZ + ".maxBundlesPerTake", 16);
+
+    /**
+     * How much work, in milliseconds at the rate the client has been completing files, one {@link #take(String, int)} aims
+     * to hand out
+     */
+    protected long takeTargetMillis = Long.getLong(CLZ + ".takeTargetMillis", 5000L);
+
     // Metrics collection
     protected long filesProcessed = 0;
     protected long bundlesProcessed = 0;
@@ -137,6 +152,9 @@ public class WorkSpace implements Runnable {
     protected Map<String, Long> filesSeen = new HashMap<>();
     protected Map<String, Long> filesDone = new HashMap<>();
 
+    // Rate each remote pickup completes files, keyed by the name work is sent to
+    protected Map<String, ClientThroughput> throughput = new HashMap<>();
+
     // Used to synchronize access to the pending and outbound queues
     // One lock to rule them all
     @SuppressWarnings("ConstantField")
@@ -295,6 +313,7 @@ public class WorkSpace implements Runnable {
     @SuppressWarnings("CatchingUnchecked")
     public void shutDown() {
         stop();
+        unregisterMetrics();
         if (this.jettyStartedHere) {
             final EmissaryNode node = EmissaryServer.getInstance().getNode();
             if (node.isValid()) {
@@ -538,6 +557,37 @@ public class WorkSpace implements Runnable {
         // Need to bind so WorkSpaceTakeWorker can find us on the callback
         // The url we use to bind is in the advertisement to clients
         Namespace.bind(this.workSpaceUrl, this);
+        registerMetrics();
+    }
+
+    /**
+     * Publish the queue sizes as gauges when metrics are being collected
+     */
+    protected void registerMetrics() {
+        try {
+            final MetricRegistry registry = MetricsManager.lookup().getMetricRegistry();
+            final String prefix = metricsPrefix();
+            registry.remove(prefix + "outbound");
+            registry.remove(prefix + "pending");
+            registry.register(prefix + "outbound", (Gauge<Integer>) this::getOutboundQueueSize);
+            registry.register(prefix + "pending", (Gauge<Integer>) this::getPendingQueueSize);
+        } catch (NamespaceException ex) {
+            logger.debug("No MetricsManager, WorkSpace queue sizes are not published", ex);
+        }
+    }
+
+    private void unregisterMetrics() {
+        try {
+            final MetricRegistry registry = MetricsManager.lookup().getMetricRegistry();
+            registry.remove(metricsPrefix() + "outbound");
+            registry.remove(metricsPrefix() + "pending");
+        } catch (NamespaceException ex) {
+            logger.debug("No MetricsManager to remove WorkSpace queue sizes from", ex);
+        }
+    }
+
+    private String metricsPrefix() {
+        return "workspace." + this.workSpaceName + ".";
     }
 
 
@@ -752,6 +802,68 @@ public class WorkSpace implements Runnable {
         return item;
     }
 
+    /**
+     * Method called by remote PickUp client instances that can hold more than one bundle. The number of bundles given
+     * follows the rate at which the client has been completing files, so a fast client gets enough work to stay busy
+     * between requests and a slow one does not hold bundles another client could be working on. A client with no history
+     * gets one bundle.
+     *
+     * @param remoteKey key of the requesting PickUp place
+     * @param maxBundles most bundles the client can take
+     * @return bundles from the head of the list, at least one unless there is no work left
+     */
+    public List<WorkBundle> take(final String remoteKey, final int maxBundles) {
+        final String remoteName = KeyManipulator.getServiceHost(remoteKey);
+        final List<WorkBundle> items = new ArrayList<>();
+        synchronized (this.QLOCK) {
+            if (getOutboundQueueSize() == 0) {
+                // Empty list will let them know to stop asking us
+                logger.info("Sent shutdown msg to {}", remoteName);
+                this.stats.shutDownSent(remoteName);
+                return items;
+            }
+            final int limit = Math.max(1, Math.min(maxBundles, this.maxBundlesPerTake));
+            final long targetFiles = getTakeTarget(remoteName);
+            long files = 0;
+            WorkBundle item;
+            while (items.size() < limit && (item = this.outbound.peek()) != null && (items.isEmpty() || files + item.size() <= targetFiles)) {
+                this.outbound.poll();
+                this.stats.bump(remoteName);
+                item.setSentTo(remoteName);
+                this.pending.put(item.getBundleId(), item);
+                files += item.size();
+                items.add(item);
+            }
+        }
+        logger.info("Gave {} bundles to {}", items.size(), remoteName);
+        return items;
+    }
+
+    /**
+     * Number of files to hand a client in one take, zero when its rate is not known yet
+     *
+     * @param remoteName the name work is sent to
+     */
+    protected long getTakeTarget(final String remoteName) {
+        synchronized (this.QLOCK) {
+            final ClientThroughput t = this.throughput.get(remoteName);
+            return t == null ? 0 : (long) (t.getFilesPerSecond() * this.takeTargetMillis / 1000.0);
+        }
+    }
+
+    /**
+     * Smoothed rate a client has been completing files
+     *
+     * @param remoteName the name work is sent to
+     * @return files per second, zero when not known yet
+     */
+    public double getClientThroughput(final String remoteName) {
+        synchronized (this.QLOCK) {
+            final ClientThroughput t = this.throughput.get(remoteName);
+            return t == null ? 0 : t.getFilesPerSecond();
+        }
+    }
+
     /**
      * Add a new bundle of work to the pending queue
      *
@@ -834,6 +946,9 @@ public class WorkSpace implements Runnable {
                 addFilesDone(item.getFileNameList());
                 removeFilesSeen(item.getFileNameList());
                 logger.debug("Removed {} from filesSeen leaving {}", item.size(), this.filesSeen.size());
+                if (itWorked && item.getSentTo() != null) {
+                    this.throughput.computeIfAbsent(item.getSentTo(), k -> new ClientThroughput()).completed(item.size(), System.nanoTime());
+                }
             }
         }
         if (item == null) {
@@ -853,6 +968,23 @@ public class WorkSpace implements Runnable {
         return item != null;
     }
 
+    /**
+     * Receive notice that several bundles were completed, as sent by clients that batch their completion messages
+     *
+     * @param remoteName the name of the place that did the processing
+     * @param results whether each bundle, by id, was processed normally
+     * @return number of bundles removed from the pending list
+     */
+    public int workCompleted(final String remoteName, final Map<String, Boolean> results) {
+        int count = 0;
+        for (final Map.Entry<String, Boolean> entry : results.entrySet()) {
+            if (workCompleted(remoteName, entry.getKey(), entry.getValue())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * begin the case processing, does nothing in this implementation
      */
@@ -1425,6 +1557,46 @@ public class WorkSpace implements Runnable {
         }
     }
 
+    /**
+     * Rate at which one remote pickup completes files. Completions are counted over windows of at least a second and each
+     * window's rate is folded into an exponentially weighted average.
+     */
+    protected static class ClientThroughput {
+        static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+        static final double WEIGHT = 0.3;
+
+        private long windowStart = -1;
+        private long windowFiles = 0;
+        private double filesPerSecond = 0;
+
+        /**
+         * Count files completed
+         *
+         * @param files number of files in the completed bundle
+         * @param now the current {@link System#nanoTime()}
+         */
+        void completed(final int files, final long now) {
+            if (this.windowStart < 0) {
+                this.windowStart = now;
+            }
+            this.windowFiles += files;
+            final long elapsed = now - this.windowStart;
+            if (elapsed >= WINDOW_NANOS) {
+                final double rate = this.windowFiles * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+                this.filesPerSecond = this.filesPerSecond == 0 ? rate : (WEIGHT * rate) + ((1 - WEIGHT) * this.filesPerSecond);
+                this.windowStart = now;
+                this.windowFiles = 0;
+            }
+        }
+
+        /**
+         * The smoothed rate, zero until a full window has been seen
+         */
+        double getFilesPerSecond() {
+            return this.filesPerSecond;
+        }
+    }
+
     /**
      * Watch the directory for changes to pickup up client places
      */
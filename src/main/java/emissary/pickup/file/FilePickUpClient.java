@@ -96,6 +96,9 @@ public class FilePickUpClient extends PickUpSpace implements IPickUp {
     protected void configurePlace() {
         pollingInterval = configG.findIntEntry("POLLING_INTERVAL", pollingInterval);
         maxQueSize = configG.findIntEntry("MAX_QUE_SIZE", maxQueSize);
+        // never ask for more bundles than the queue holds
+        takeMaxBundles = Math.max(1, Math.min(configG.findIntEntry("TAKE_MAX_BUNDLES", takeMaxBundles), maxQueSize));
+        completionBatchSize = Math.max(1, configG.findIntEntry("COMPLETION_BATCH_SIZE", completionBatchSize));
         unixInRoot = configG.findStringEntry("UNIX_IN_ROOT", null);
         unixOutRoot = configG.findStringEntry("UNIX_OUT_ROOT", null);
         digestHashType = configG.findStringEntry("DIGEST_HASH_TYPE", "SHA-256");
@@ -122,6 +125,7 @@ public class FilePickUpClient extends PickUpSpace implements IPickUp {
             logger.info("*** Stopping queue monitor ");
             queServer.shutdown();
         }
+        flushCompletions();
         super.shutDown();
     }
 
@@ -0,0 +1,346 @@
+package emissary.place;
+
+import emissary.core.MetricsManager;
+import emissary.core.NamespaceException;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds how many agents may be inside one place at a time, so a place that backs up holds a fixed share of the agents
+ * instead of all of them.
+ * <p>
+ * An agent asks for a {@link Permit} before calling the place and closes it when the place returns. When the place is
+ * full the agent waits up to the wait time, and is turned away at once if too many agents are already waiting. What the
+ * agent then does with the payload is up to the agent, see {@link SaturatedAction}.
+ * <p>
+ * With adaptive limits the limit moves between the minimum and maximum by additive increase and multiplicative decrease
+ * driven by observed latency. The fastest recent call is the baseline. A call slower than the baseline by more than the
+ * tolerance cuts the limit, at most once for every limit's worth of calls. When calls are near the baseline and the
+ * place is using its whole limit, the limit grows by one for every limit's worth of calls. The baseline drifts up
+ * slowly so a place that becomes slower for good is not held at its minimum forever.
+ */
+public class AdmissionControl {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+
+    /** What an agent does with a payload when the place stays saturated and there is no alternate place */
+    public enum SaturatedAction {
+        /** Keep the payload and wait again for the place to have room */
+        WAIT,
+        /** Give up on the payload and route it to error handling */
+        ERROR
+    }
+
+    public static final double DEFAULT_TOLERANCE = 2.0;
+    public static final double DEFAULT_BACKOFF = 0.9;
+    public static final long MIN_PAUSE_MILLIS = 10L;
+    private static final double BASELINE_DRIFT = 1.01;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final boolean adaptive;
+    private final long waitMillis;
+    private final int maxWaiting;
+    private final SaturatedAction saturatedAction;
+    private final double tolerance;
+    private final LongSupplier nanoClock;
+    private final Set<Gauge<?>> gauges = ConcurrentHashMap.newKeySet();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition room = lock.newCondition();
+
+    // guarded by lock
+    private int limit;
+    private int inFlight;
+    private int waiting;
+    private long admitted;
+    private long rejected;
+    private long timedOut;
+    private long baselineNanos = Long.MAX_VALUE;
+    private double smoothedNanos;
+    private int sinceChange;
+    private boolean usedLimit;
+
+    /**
+     * Create admission control for a place
+     *
+     * @param name name of the place, used in stats and logging
+     * @param minLimit the least the limit can adapt down to
+     * @param maxLimit the most agents inside at once, and the starting limit
+     * @param adaptive whether the limit adapts to latency
+     * @param waitMillis how long an agent waits for room
+     * @param maxWaiting the most agents waiting at once, less than zero for no bound
+     * @param saturatedAction what an agent does when it cannot get in
+     */
+    public AdmissionControl(final String name, final int minLimit, final int maxLimit, final boolean adaptive, final long waitMillis,
+            final int maxWaiting, final SaturatedAction saturatedAction) {
+        this(name, minLimit, maxLimit, adaptive, waitMillis, maxWaiting, saturatedAction, DEFAULT_TOLERANCE, System::nanoTime);
+    }
+
+    AdmissionControl(final String name, final int minLimit, final int maxLimit, final boolean adaptive, final long waitMillis,
+            final int maxWaiting, final SaturatedAction saturatedAction, final double tolerance, final LongSupplier nanoClock) {
+        this.name = name;
+        this.maxLimit = Math.max(maxLimit, 1);
+        this.minLimit = Math.min(Math.max(minLimit, 1), this.maxLimit);
+        this.adaptive = adaptive;
+        this.waitMillis = Math.max(waitMillis, 0);
+        this.maxWaiting = maxWaiting;
+        this.saturatedAction = saturatedAction;
+        this.tolerance = tolerance;
+        this.nanoClock = nanoClock;
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Permission for one agent to be inside the place, closed when the place returns
+     */
+    public final class Permit implements AutoCloseable {
+        private final long start;
+        private boolean closed;
+
+        private Permit(final long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(nanoClock.getAsLong() - start);
+            }
+        }
+    }
+
+    /**
+     * Enter the place, waiting up to the configured wait time for room
+     *
+     * @return a permit to close when done, or null if the place stayed full or too many agents are waiting
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Nullable
+    public Permit tryEnter() throws InterruptedException {
+        return tryEnter(this.waitMillis);
+    }
+
+    /**
+     * Enter the place, waiting up to a given time for room
+     *
+     * @param waitMillis how long to wait
+     * @return a permit to close when done, or null if the place stayed full or too many agents are waiting
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Nullable
+    public Permit tryEnter(final long waitMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight >= limit) {
+                if (maxWaiting >= 0 && waiting >= maxWaiting) {
+                    rejected++;
+                    return null;
+                }
+                long remaining = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+                waiting++;
+                try {
+                    while (inFlight >= limit) {
+                        if (remaining <= 0L) {
+                            timedOut++;
+                            return null;
+                        }
+                        remaining = room.awaitNanos(remaining);
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+            inFlight++;
+            admitted++;
+            return new Permit(nanoClock.getAsLong());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sit out the rest of the wait time after being turned away, so an agent that keeps trying does not spin when it is
+     * turned away at once or the wait time is zero
+     *
+     * @param waitedNanos how long the refused {@link #tryEnter()} took
+     * @throws InterruptedException if interrupted while pausing
+     */
+    public void pause(final long waitedNanos) throws InterruptedException {
+        final long pauseNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(waitMillis, MIN_PAUSE_MILLIS)) - waitedNanos;
+        if (pauseNanos > 0L) {
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        }
+    }
+
+    private void release(final long latencyNanos) {
+        lock.lock();
+        try {
+            final boolean wasFull = inFlight >= limit;
+            inFlight--;
+            if (adaptive) {
+                adapt(latencyNanos, wasFull);
+            }
+            if (inFlight < limit) {
+                room.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called holding lock
+    private void adapt(final long latencyNanos, final boolean wasFull) {
+        final long sample = Math.max(latencyNanos, 1L);
+        baselineNanos = Math.min(sample, baselineNanos == Long.MAX_VALUE ? sample : (long) (baselineNanos * BASELINE_DRIFT) + 1);
+        smoothedNanos = smoothedNanos == 0.0 ? sample : 0.8 * smoothedNanos + 0.2 * sample;
+        sinceChange++;
+        usedLimit |= wasFull;
+        if (sinceChange < limit) {
+            return;
+        }
+        if (smoothedNanos > baselineNanos * tolerance) {
+            final int cut = Math.max(minLimit, (int) (limit * DEFAULT_BACKOFF));
+            if (cut < limit) {
+                logger.debug("{} latency {}ns against baseline {}ns, limit {} -> {}", name, (long) smoothedNanos, baselineNanos, limit, cut);
+                limit = cut;
+            }
+            sinceChange = 0;
+            usedLimit = false;
+        } else if (usedLimit && limit < maxLimit) {
+            limit++;
+            sinceChange = 0;
+            usedLimit = false;
+            room.signal();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SaturatedAction getSaturatedAction() {
+        return saturatedAction;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Agents waiting for room, the queue depth of the place
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Agents turned away without waiting or after waiting
+     */
+    public long getRefused() {
+        lock.lock();
+        try {
+            return rejected + timedOut;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fraction of the limit in use
+     */
+    public double getSaturation() {
+        lock.lock();
+        try {
+            return (double) inFlight / limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "admission[limit=" + limit + "/" + maxLimit + ", inFlight=" + inFlight + ", waiting=" + waiting + ", admitted=" + admitted
+                    + ", rejected=" + rejected + ", timedOut=" + timedOut + "]";
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publish the limit, agents inside, queue depth and refusals as gauges named for a place location. Instances of the
+     * same place class at different locations each keep their own gauges.
+     *
+     * @param location where the place is, the service location of its key
+     */
+    public void registerMetrics(final String location) {
+        try {
+            final MetricRegistry registry = MetricsManager.lookup().getMetricRegistry();
+            final String prefix = MetricRegistry.name("admission", location) + ".";
+            registry.removeMatching((n, m) -> n.startsWith(prefix));
+            gauges.clear();
+            register(registry, prefix + "limit", (Gauge<Integer>) this::getLimit);
+            register(registry, prefix + "inFlight", (Gauge<Integer>) this::getInFlight);
+            register(registry, prefix + "waiting", (Gauge<Integer>) this::getWaiting);
+            register(registry, prefix + "refused", (Gauge<Long>) this::getRefused);
+            register(registry, prefix + "saturation", (Gauge<Double>) this::getSaturation);
+        } catch (NamespaceException ex) {
+            logger.debug("No MetricsManager, admission of {} is not published", name, ex);
+        }
+    }
+
+    private void register(final MetricRegistry registry, final String metricName, final Gauge<?> gauge) {
+        registry.register(metricName, gauge);
+        gauges.add(gauge);
+    }
+
+    /**
+     * Remove the gauges published by {@link #registerMetrics(String)}, leaving any that another instance has published
+     * since
+     */
+    public void unregisterMetrics() {
+        if (gauges.isEmpty()) {
+            return;
+        }
+        try {
+            MetricsManager.lookup().getMetricRegistry().removeMatching((n, m) -> gauges.contains(m));
+        } catch (NamespaceException ex) {
+            logger.debug("No MetricsManager to remove admission of {} from", name, ex);
+        }
+        gauges.clear();
+    }
+}
@@ -86,6 +86,16 @@ public interface IServiceProviderPlace {
      */
     DirectoryEntry getDirectoryEntry();
 
+    /**
+     * Return the admission control limiting how many agents may be inside this place at once
+     *
+     * @return the admission control, or null if agents may always enter
+     */
+    @Nullable
+    default AdmissionControl getAdmissionControl() {
+        return null;
+    }
+
     /**
      * Method called by the HD Agents to process a payload
      * 
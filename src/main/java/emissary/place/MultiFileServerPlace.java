@@ -13,6 +13,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A hybrid of the MultiFileServerPlace and the FilePickupPlace. Knows how to sprout agents using the MoveSpool
@@ -20,6 +23,9 @@ import java.util.Set;
 public abstract class MultiFileServerPlace extends PickUpPlace implements IMultiFileServerPlace {
     protected TypeEngine typeEngine;
     protected Set<?> nonPropagatingMetadataValues;
+    protected int childProcessingThreads = 1;
+    @Nullable
+    private ForkJoinPool childProcessors;
 
     public MultiFileServerPlace() throws IOException {
         super();
@@ -61,11 +67,46 @@ public abstract class MultiFileServerPlace extends PickUpPlace implements IMulti
      * Setup base configuration items related to attachment processing
      * <ul>
      * <li>NON_PROPAGATING_METADATA: items to skip when copying</li>
+     * <li>CHILD_PROCESSING_THREADS: number of threads hashing and annotating the children of one parent, 1 to do them one
+     * at a time on the agent thread</li>
      * </ul>
      */
     private void configureAbstractPlace() {
         typeEngine = new TypeEngine(configG);
         nonPropagatingMetadataValues = configG.findEntriesAsSet("NON_PROPAGATING_METADATA");
+        childProcessingThreads = Math.max(configG.findIntEntry("CHILD_PROCESSING_THREADS", childProcessingThreads), 1);
+    }
+
+    /**
+     * Stop the child processing threads and shut down the place
+     */
+    @Override
+    public void shutDown() {
+        synchronized (this) {
+            if (childProcessors != null) {
+                childProcessors.shutdown();
+                childProcessors = null;
+            }
+        }
+        super.shutDown();
+    }
+
+    @Nullable
+    private synchronized ForkJoinPool getChildProcessors() {
+        if (childProcessingThreads < 2) {
+            return null;
+        }
+        if (childProcessors == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            final String name = getPlaceName();
+            childProcessors = new ForkJoinPool(childProcessingThreads, pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName(name + "-ChildProcessing-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+        }
+        return childProcessors;
     }
 
     /**
@@ -95,18 +136,20 @@ public abstract class MultiFileServerPlace extends PickUpPlace implements IMulti
      * @param children the destination for parameters to be copied
      */
     protected void addParentInformation(IBaseDataObject parent, List<IBaseDataObject> children) {
-        IBaseDataObjectHelper.addParentInformationToChildren(parent, children, false, alwaysCopyMetadataVals, myKey, kff);
+        addParentInformation(parent, children, false);
     }
 
     /**
-     * Used to propagate needed parent information to all children in the list
+     * Used to propagate needed parent information to all children in the list, on the child processing threads when there
+     * are more than one
      * 
      * @param parent the source of parameters to be copied
      * @param children the destination for parameters to be copied
      * @param nullifyFileType if true the child fileType is nullified after the copy
      */
     protected void addParentInformation(IBaseDataObject parent, @Nullable List<IBaseDataObject> children, boolean nullifyFileType) {
-        IBaseDataObjectHelper.addParentInformationToChildren(parent, children, nullifyFileType, alwaysCopyMetadataVals, myKey, kff);
+        IBaseDataObjectHelper.addParentInformationToChildren(parent, children, nullifyFileType, alwaysCopyMetadataVals, myKey, kff, true,
+                getChildProcessors());
     }
 
     /**
@@ -13,9 +13,11 @@ import emissary.core.NamespaceException;
 import emissary.core.ResourceException;
 import emissary.core.ResourceWatcher;
 import emissary.directory.DirectoryProviderPlace;
+import emissary.directory.KeyManipulator;
 import emissary.kff.KffDataObjectHandler;
 import emissary.log.MDCConstants;
 import emissary.parser.SessionParser;
+import emissary.pool.AffinityScheduler;
 import emissary.util.JMXUtil;
 
 import com.codahale.metrics.Timer;
@@ -31,6 +33,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import static emissary.core.constants.Configurations.PLACE_RESOURCE_LIMIT_MILLIS;
 
@@ -71,6 +74,12 @@ public abstract class ServiceProviderPlace extends DirectoryProviderPlace implem
     protected boolean processMethodImplemented = false;
     protected boolean heavyDutyMethodImplemented = false;
 
+    /**
+     * Limits how many agents may be inside this place at once, null when unlimited
+     */
+    @Nullable
+    protected AdmissionControl admission = null;
+
     /**
      * Create a place and register it in the local directory. The default config must contain at least one SERVICE_KEY
      * element used to know where that is and how to name it. If the old style config with SERVICE_PROXY etc is used then
@@ -218,6 +227,12 @@ public abstract class ServiceProviderPlace extends DirectoryProviderPlace implem
             initKff();
         }
 
+        initAdmission();
+
+        if (this instanceof ThreadAffine) {
+            AffinityScheduler.register((ThreadAffine) this);
+        }
+
         setupPlacePostHook(register);
 
         // register MBean with JMX
@@ -236,6 +251,57 @@ public abstract class ServiceProviderPlace extends DirectoryProviderPlace implem
                         KffDataObjectHandler.SET_FILE_TYPE);
     }
 
+    /**
+     * Set up admission control when the place limits how many agents may be inside it. Configuration values read:
+     * <ul>
+     * <li>MAX_CONCURRENCY: most agents inside at once, default 0 for no limit</li>
+     * <li>MIN_CONCURRENCY: least the limit adapts down to, default 1</li>
+     * <li>ADAPTIVE_CONCURRENCY: adapt the limit to the latency of the place, default false</li>
+     * <li>ADMISSION_WAIT_MILLIS: how long an agent waits for room, default 1000</li>
+     * <li>MAX_WAITING_AGENTS: most agents waiting for room, default -1 for no bound</li>
+     * <li>SATURATED_ACTION: WAIT to keep the payload and wait again, or ERROR to route it to error handling, default
+     * WAIT</li>
+     * </ul>
+     */
+    protected void initAdmission() {
+        if (configG == null) {
+            return;
+        }
+        final int maxConcurrency = configG.findIntEntry("MAX_CONCURRENCY", 0);
+        if (maxConcurrency <= 0) {
+            return;
+        }
+        AdmissionControl.SaturatedAction action;
+        try {
+            action = AdmissionControl.SaturatedAction.valueOf(configG.findStringEntry("SATURATED_ACTION", "WAIT").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown SATURATED_ACTION for {}, using WAIT", getPlaceName());
+            action = AdmissionControl.SaturatedAction.WAIT;
+        }
+        admission = new AdmissionControl(getPlaceName(), configG.findIntEntry("MIN_CONCURRENCY", 1), maxConcurrency,
+                configG.findBooleanEntry("ADAPTIVE_CONCURRENCY", false), configG.findLongEntry("ADMISSION_WAIT_MILLIS", 1000L),
+                configG.findIntEntry("MAX_WAITING_AGENTS", -1), action);
+        admission.registerMetrics(KeyManipulator.getServiceLocation(getKey()));
+        logger.debug("Admission control for {}: {}", getPlaceName(), admission);
+    }
+
+    @Override
+    @Nullable
+    public AdmissionControl getAdmissionControl() {
+        return admission;
+    }
+
+    @Override
+    public void shutDown() {
+        if (admission != null) {
+            admission.unregisterMetrics();
+        }
+        if (this instanceof ThreadAffine) {
+            AffinityScheduler.unregister((ThreadAffine) this);
+        }
+        super.shutDown();
+    }
+
     /**
      * The ServiceProviderPlace facade for visiting agents
      *
@@ -450,6 +516,9 @@ public abstract class ServiceProviderPlace extends DirectoryProviderPlace implem
         } catch (NamespaceException ne) {
             logger.error("Exception occurred while trying to lookup resource", ne);
         }
+        if (admission != null) {
+            placeStatStr += " " + admission;
+        }
         return placeStatStr;
     }
 
@@ -0,0 +1,16 @@
+package emissary.place;
+
+/**
+ * Interface for places that keep expensive per-thread state, such as models or buffers held in a ThreadLocal. When the
+ * agent pool schedules by affinity, agent threads mostly see payloads of one kind and this state stays warm. When an
+ * agent thread is stolen for a different kind of payload the place is asked to release what it holds for that thread.
+ *
+ * @see emissary.pool.AffinityScheduler
+ */
+public interface ThreadAffine extends IServiceProviderPlace {
+
+    /**
+     * Release the state held for the calling agent thread. Called on the agent thread before it starts its next payload.
+     */
+    void releaseThreadResources();
+}
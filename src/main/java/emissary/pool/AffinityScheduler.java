@@ -0,0 +1,301 @@
+package emissary.pool;
+
+import emissary.core.IBaseDataObject;
+import emissary.place.ThreadAffine;
+
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Keeps idle agents in shards keyed by the kind of payload they last worked on, so consecutive payloads of the same
+ * kind land on the same few agent threads and find their per-thread state (loaded models, thread local buffers, warmed
+ * code paths) still warm.
+ * <p>
+ * A payload is keyed by its initial form, or by the value of a configured parameter such as the name of the feed it
+ * came from. An agent that finishes work is parked in the shard of its last payload. A borrower takes the most recently
+ * parked agent of its own shard, and when that shard has none it steals the least recently parked agent of the fullest
+ * other shard so idle agents in other shards are never left unused.
+ * <p>
+ * Places holding per-thread state can implement {@link ThreadAffine} to be told when an agent thread was stolen into a
+ * different shard and the state it warmed is unlikely to be used again.
+ *
+ * @param <T> the agents being scheduled
+ */
+public class AffinityScheduler<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AffinityScheduler.class);
+
+    /** Places with per-thread state to release when an agent thread changes shard */
+    private static final List<ThreadAffine> affinePlaces = new CopyOnWriteArrayList<>();
+
+    /** Names of agent threads stolen into another shard that have not yet released their state */
+    private static final Set<String> movedThreads = ConcurrentHashMap.newKeySet();
+
+    private final List<ConcurrentLinkedDeque<T>> shards = new ArrayList<>();
+    private final Map<T, Integer> homes = new ConcurrentHashMap<>();
+    private final AtomicInteger parked = new AtomicInteger();
+    @Nullable
+    private final String keyParameter;
+    private final Function<? super T, String> threadName;
+
+    private final LongAdder local = new LongAdder();
+    private final LongAdder stolen = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+
+    /**
+     * Create a scheduler
+     *
+     * @param shardCount number of shards, at least one
+     * @param keyParameter payload parameter to key on, or null or blank to key on the initial form
+     * @param threadName name of the thread an agent runs on
+     */
+    public AffinityScheduler(final int shardCount, @Nullable final String keyParameter, final Function<? super T, String> threadName) {
+        for (int i = 0; i < Math.max(shardCount, 1); i++) {
+            this.shards.add(new ConcurrentLinkedDeque<>());
+        }
+        this.keyParameter = StringUtils.isBlank(keyParameter) ? null : keyParameter;
+        this.threadName = threadName;
+    }
+
+    /**
+     * Work out the affinity key of a payload as handed to an agent
+     *
+     * @param payload an {@link IBaseDataObject} or a list of them
+     * @return the key, or null if the payload has none
+     */
+    @Nullable
+    public String keyFor(@Nullable final Object payload) {
+        Object p = payload;
+        if (p instanceof List && !((List<?>) p).isEmpty()) {
+            p = ((List<?>) p).get(0);
+        }
+        if (!(p instanceof IBaseDataObject)) {
+            return null;
+        }
+        final IBaseDataObject d = (IBaseDataObject) p;
+        if (this.keyParameter != null) {
+            final String value = d.getParameterAsString(this.keyParameter);
+            if (StringUtils.isNotBlank(value)) {
+                return value;
+            }
+        }
+        return d.currentForm();
+    }
+
+    /**
+     * Get the shard a key belongs to
+     *
+     * @param key the affinity key
+     * @return the shard, or -1 for no key
+     */
+    public int shardFor(@Nullable final String key) {
+        return key == null ? -1 : Math.floorMod(key.hashCode(), this.shards.size());
+    }
+
+    /**
+     * Take an idle agent for a shard, stealing from another shard if this one has none
+     *
+     * @param shard the shard wanted, or -1 for any
+     * @return a parked agent now homed in the shard, or null if none are parked
+     */
+    @Nullable
+    public T take(final int shard) {
+        T agent = shard < 0 ? null : this.shards.get(shard).pollFirst();
+        if (agent != null) {
+            this.local.increment();
+        } else {
+            agent = steal(shard);
+        }
+        if (agent == null) {
+            return null;
+        }
+        this.parked.decrementAndGet();
+        if (shard >= 0) {
+            this.homes.put(agent, shard);
+        }
+        return agent;
+    }
+
+    @Nullable
+    private T steal(final int shard) {
+        while (this.parked.get() > 0) {
+            ConcurrentLinkedDeque<T> fullest = null;
+            int most = 0;
+            for (final ConcurrentLinkedDeque<T> d : this.shards) {
+                final int size = d.size();
+                if (size > most) {
+                    most = size;
+                    fullest = d;
+                }
+            }
+            if (fullest == null) {
+                return null;
+            }
+            final T agent = fullest.pollLast();
+            if (agent != null) {
+                this.stolen.increment();
+                final Integer home = this.homes.get(agent);
+                if (shard >= 0 && home != null && home != shard) {
+                    markMoved(this.threadName.apply(agent));
+                }
+                return agent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record that an agent was not found parked and came from elsewhere
+     *
+     * @param agent the agent
+     * @param shard the shard it will work for, or -1
+     */
+    public void homeless(final T agent, final int shard) {
+        this.missed.increment();
+        if (shard >= 0) {
+            this.homes.put(agent, shard);
+        } else {
+            this.homes.remove(agent);
+        }
+    }
+
+    /**
+     * Park an idle agent in the shard of its last payload
+     *
+     * @param agent the agent
+     * @return true if parked, false if it has no shard and should go back to the shared pool
+     */
+    public boolean park(final T agent) {
+        final Integer home = this.homes.get(agent);
+        if (home == null) {
+            return false;
+        }
+        this.shards.get(home).offerFirst(agent);
+        this.parked.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Remove every parked agent
+     *
+     * @return the agents that were parked
+     */
+    public List<T> drain() {
+        final List<T> all = new ArrayList<>();
+        for (final ConcurrentLinkedDeque<T> d : this.shards) {
+            T agent;
+            while ((agent = d.pollFirst()) != null) {
+                this.parked.decrementAndGet();
+                this.homes.remove(agent);
+                all.add(agent);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Forget an agent that is leaving the pool
+     *
+     * @param agent the agent
+     */
+    public void forget(final T agent) {
+        this.homes.remove(agent);
+    }
+
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    /**
+     * Number of idle agents parked in shards
+     */
+    public int getParked() {
+        return Math.max(this.parked.get(), 0);
+    }
+
+    /**
+     * Borrows served from the shard's own parked agents
+     */
+    public long getLocal() {
+        return this.local.sum();
+    }
+
+    /**
+     * Borrows served by taking a parked agent from another shard
+     */
+    public long getStolen() {
+        return this.stolen.sum();
+    }
+
+    /**
+     * Borrows for which no agent was parked
+     */
+    public long getMissed() {
+        return this.missed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "affinity[shards=" + this.shards.size() + ", parked=" + getParked() + ", local=" + getLocal() + ", stolen=" + getStolen()
+                + ", missed=" + getMissed() + "]";
+    }
+
+    /**
+     * Register a place whose per-thread state should be released when an agent thread changes shard
+     *
+     * @param place the place
+     */
+    public static void register(final ThreadAffine place) {
+        affinePlaces.add(place);
+    }
+
+    /**
+     * Remove a place registered with {@link #register(ThreadAffine)}
+     *
+     * @param place the place
+     */
+    public static void unregister(final ThreadAffine place) {
+        affinePlaces.remove(place);
+    }
+
+    /**
+     * Note that an agent thread was stolen into a different shard
+     *
+     * @param threadName name of the agent's thread
+     */
+    static void markMoved(final String threadName) {
+        if (!affinePlaces.isEmpty()) {
+            movedThreads.add(threadName);
+        }
+    }
+
+    /**
+     * Called on an agent thread before it starts work, lets the registered places release state the thread warmed for its
+     * previous shard
+     */
+    public static void releaseIfMoved() {
+        if (movedThreads.isEmpty() || !movedThreads.remove(Thread.currentThread().getName())) {
+            return;
+        }
+        for (final ThreadAffine place : affinePlaces) {
+            try {
+                place.releaseThreadResources();
+            } catch (RuntimeException e) {
+                logger.warn("{} could not release thread resources", place, e);
+            }
+        }
+    }
+}
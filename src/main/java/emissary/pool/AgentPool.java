@@ -1,5 +1,7 @@
 package emissary.pool;
 
+import emissary.config.ConfigUtil;
+import emissary.config.Configurator;
 import emissary.core.IMobileAgent;
 import emissary.core.Namespace;
 import emissary.core.NamespaceException;
@@ -9,10 +11,16 @@ import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.util.NoSuchElementException;
 
 /**
  * Extends the GenericObjectPool to hold MobileAgents, each on it's own thread.
+ * <p>
+ * When agent.affinity.shards is set in AgentPool.cfg idle agents are kept by the kind of payload they last worked on,
+ * see {@link AffinityScheduler}, and {@link #borrowAgent(Object)} prefers an agent that last worked on the same kind of
+ * payload.
  */
 public class AgentPool extends GenericObjectPool<IMobileAgent> {
 
@@ -41,6 +49,22 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
 
     private final int initialPoolSize;
 
+    /**
+     * How long a borrower waits on the shared pool before looking in the affinity shards again
+     */
+    private static final Duration AFFINITY_POLL = Duration.ofMillis(50);
+
+    /**
+     * Keeps idle agents by the kind of payload they last worked on, null when agents are handed out in any order
+     */
+    @Nullable
+    private volatile AffinityScheduler<IMobileAgent> affinity;
+
+    /**
+     * False while the pool is being emptied, so returned agents are not kept in the affinity shards
+     */
+    private volatile boolean parking = true;
+
     /**
      * Compute the default size for the pool
      * 
@@ -133,6 +157,51 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
 
         bindPool();
         fillPool();
+        configureAffinity();
+    }
+
+    /**
+     * Set up affinity scheduling from AgentPool.cfg. Configuration values read:
+     * <ul>
+     * <li>agent.affinity.shards: number of shards to keep idle agents in, default 0 to hand out any idle agent</li>
+     * <li>agent.affinity.key: payload parameter to shard on, such as the name of a feed, default blank to shard on the
+     * initial form</li>
+     * </ul>
+     */
+    protected void configureAffinity() {
+        try {
+            Configurator conf = ConfigUtil.getConfigInfo(AgentPool.class);
+            setAffinity(conf.findIntEntry("agent.affinity.shards", 0), conf.findStringEntry("agent.affinity.key", ""));
+        } catch (IOException e) {
+            logger.debug("Cannot read AgentPool.cfg, no agent affinity");
+        }
+    }
+
+    /**
+     * Turn affinity scheduling on or off. Agents kept in the shards go back to the shared pool.
+     *
+     * @param shards number of shards, zero or less to turn affinity off
+     * @param keyParameter payload parameter to shard on, or null or blank to shard on the initial form
+     */
+    public void setAffinity(int shards, @Nullable String keyParameter) {
+        AffinityScheduler<IMobileAgent> old = affinity;
+        affinity = shards > 0 ? new AffinityScheduler<>(shards, keyParameter, IMobileAgent::getName) : null;
+        if (old != null) {
+            old.drain().forEach(this::returnObject);
+        }
+        if (affinity != null) {
+            logger.info("AgentPool keeping idle agents in {} shards", shards);
+        }
+    }
+
+    /**
+     * Get the affinity scheduler
+     *
+     * @return the scheduler, or null if affinity is off
+     */
+    @Nullable
+    public AffinityScheduler<IMobileAgent> getAffinity() {
+        return affinity;
     }
 
     /**
@@ -163,6 +232,7 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
         // making this call
         this.factory = factory;
         emptyPool();
+        parking = true;
         fillPool();
     }
 
@@ -185,6 +255,9 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
      * Get an agent from the pool
      */
     public IMobileAgent borrowAgent() throws Exception {
+        if (affinity != null) {
+            return borrowAgent(null);
+        }
         try {
             IMobileAgent a = borrowObject();
             logger.trace("POOL borrow active={}", getNumActive());
@@ -195,6 +268,40 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
         }
     }
 
+    /**
+     * Get an agent from the pool for a payload, preferring one that last worked on the same kind of payload when affinity
+     * is on. An agent from another shard is taken rather than waiting.
+     *
+     * @param payload the payload the agent will be given, an IBaseDataObject or a list of them
+     */
+    public IMobileAgent borrowAgent(@Nullable Object payload) throws Exception {
+        AffinityScheduler<IMobileAgent> scheduler = affinity;
+        if (scheduler == null) {
+            return borrowAgent();
+        }
+        int shard = scheduler.shardFor(scheduler.keyFor(payload));
+        long deadline = System.nanoTime() + getMaxWaitDuration().toNanos();
+        while (true) {
+            IMobileAgent a = scheduler.take(shard);
+            if (a != null) {
+                logger.trace("POOL borrow from shard {} active={}", shard, getNumActive());
+                return a;
+            }
+            try {
+                // Wait briefly so agents parked meanwhile are seen
+                a = borrowObject(AFFINITY_POLL);
+                scheduler.homeless(a, shard);
+                logger.trace("POOL borrow active={}", getNumActive());
+                return a;
+            } catch (NoSuchElementException e) {
+                if (System.nanoTime() - deadline > 0) {
+                    logger.info("AgentPool.borrowAgent did not work, stats={}", this);
+                    throw e;
+                }
+            }
+        }
+    }
+
     /*
      * Get the total current agents in the pool
      */
@@ -203,6 +310,11 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
     }
 
     protected void emptyPool() {
+        parking = false;
+        AffinityScheduler<IMobileAgent> scheduler = affinity;
+        if (scheduler != null) {
+            scheduler.drain().forEach(this::returnObject);
+        }
         int numberKilled = 0;
         int numberToKill = getCurrentPoolSize();
         long waitTil = System.currentTimeMillis() + (30 * 60 * 1000); // 30 min
@@ -279,6 +391,15 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
      */
     public void returnAgent(IMobileAgent agent) {
         logger.trace("Returning {}", agent.getName());
+        AffinityScheduler<IMobileAgent> scheduler = affinity;
+        if (scheduler != null) {
+            // Keep it in its shard unless someone is already waiting on the shared pool
+            if (parking && getNumWaiters() == 0 && scheduler.park(agent)) {
+                logger.trace("POOL parked {}", agent.getName());
+                return;
+            }
+            scheduler.forget(agent);
+        }
         returnObject(agent);
         logger.trace("POOL return active={}", getNumActive());
     }
@@ -297,12 +418,28 @@ public class AgentPool extends GenericObjectPool<IMobileAgent> {
         return (AgentPool) Namespace.lookup(name);
     }
 
+    /**
+     * Agents parked in affinity shards are idle even though the shared pool counts them as borrowed
+     */
+    @Override
+    public int getNumIdle() {
+        AffinityScheduler<IMobileAgent> scheduler = affinity;
+        return super.getNumIdle() + (scheduler == null ? 0 : scheduler.getParked());
+    }
+
+    @Override
+    public int getNumActive() {
+        AffinityScheduler<IMobileAgent> scheduler = affinity;
+        return Math.max(super.getNumActive() - (scheduler == null ? 0 : scheduler.getParked()), 0);
+    }
+
     /**
      * To string for lightweight reporting
      */
     @Override
     public synchronized String toString() {
-        return "Poolsize active/idle = " + getNumActive() + "/" + getNumIdle() + " - " + getPoolName();
+        AffinityScheduler<IMobileAgent> scheduler = affinity;
+        return "Poolsize active/idle = " + getNumActive() + "/" + getNumIdle() + " - " + getPoolName() + (scheduler == null ? "" : " " + scheduler);
     }
 
     /**
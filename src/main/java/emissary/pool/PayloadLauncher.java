@@ -53,7 +53,7 @@ public class PayloadLauncher {
 
             IMobileAgent agent = null;
             try {
-                agent = pool.borrowAgent();
+                agent = pool.borrowAgent(payload);
             } catch (Exception e) {
                 logger.error("Cannot get agent from pool for " + payloadName, e);
                 throw new EmissaryException("Cannot get agent from pool for " + payloadName, e);
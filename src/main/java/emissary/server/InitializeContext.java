@@ -1,7 +1,10 @@
 package emissary.server;
 
 import emissary.core.EmissaryException;
+import emissary.core.Namespace;
+import emissary.core.RemotePlaceTransport;
 import emissary.directory.EmissaryNode;
+import emissary.server.mvc.adapters.RemotePlaceAdapter;
 
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
@@ -13,6 +16,7 @@ import org.slf4j.LoggerFactory;
  * <ol>
  * <li>Create and fill the emissary.pool.AgentPool</li>
  * <li>Create the emissary.pool.MoveSpool</li>
+ * <li>Bind the emissary.server.mvc.adapters.RemotePlaceAdapter agents use to reach places on peers</li>
  * <li>Initialize the Charset conversion subsystem</li>
  * <li>Initialize the Metadata Dictionary subsystem</li>
  * <li>Deploy any places configure to run on this instance This is determined by looking for an appropriate config file
@@ -45,6 +49,7 @@ public class InitializeContext implements ServletContextListener {
         // ServletContext sc = sce.getServletContext();
 
         logger.info("Emissary Node services starting for " + node);
+        Namespace.bind(RemotePlaceTransport.DEFAULT_NAMESPACE_NAME, RemotePlaceAdapter.getInstance());
         try {
             node.configureEmissaryServer();
         } catch (EmissaryException ex) {
@@ -1,6 +1,6 @@
 package emissary.server.api;
 
-import emissary.client.EmissaryClient;
+import emissary.client.PeerFanOut;
 import emissary.client.response.Agent;
 import emissary.client.response.AgentList;
 import emissary.client.response.AgentsFormatter;
@@ -23,8 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.StringJoiner;
 
-import static emissary.server.api.ApiUtils.lookupPeers;
-import static emissary.server.api.ApiUtils.stripPeerString;
+import static emissary.server.api.ApiUtils.peerEndpoints;
 
 /**
  * The agents Emissary API endpoint. Currently, contains the local (/api/agents) call and cluster (/api/clusterAgents)
@@ -77,12 +76,8 @@ public class Agents {
             entity.setLocal(lookupAgents().getLocal());
 
             // Get all of our peers
-            EmissaryClient client = new EmissaryClient();
-            for (String peer : lookupPeers()) {
-                String remoteEndPoint = stripPeerString(peer) + AGENTS_ENDPOINT;
-                AgentsResponseEntity remoteEntity = client.send(new HttpGet(remoteEndPoint)).getContent(AgentsResponseEntity.class);
-                entity.append(remoteEntity);
-            }
+            PeerFanOut.getInstance().collect(entity, peerEndpoints(AGENTS_ENDPOINT),
+                    url -> PeerFanOut.getInstance().client().send(new HttpGet(url)).getContent(AgentsResponseEntity.class));
             return Response.ok().entity(entity).build();
         } catch (EmissaryException e) {
             // This should never happen since we already saw if it exists
@@ -10,7 +10,9 @@ import emissary.server.EmissaryServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class ApiUtils {
     private static final Logger logger = LoggerFactory.getLogger(ApiUtils.class);
@@ -19,6 +21,17 @@ public class ApiUtils {
         return DirectoryPlace.lookup().getPeerDirectories();
     }
 
+    /**
+     * Build the URL of an endpoint on every peer
+     *
+     * @param endpoint the endpoint path, for example api/version
+     * @return one URL per peer
+     * @throws EmissaryException if the directory cannot be found
+     */
+    public static List<String> peerEndpoints(String endpoint) throws EmissaryException {
+        return lookupPeers().stream().map(peer -> stripPeerString(peer) + endpoint).collect(Collectors.toList());
+    }
+
     public static String stripPeerString(String peer) {
         // convert *.*.*.http://remote-host:port/DirectoryPlace to
         // http://remote-host:port/api/version so we can then make the calls
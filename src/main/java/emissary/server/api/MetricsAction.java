@@ -2,20 +2,33 @@ package emissary.server.api;
 
 import emissary.core.MetricsManager;
 import emissary.core.NamespaceException;
+import emissary.core.OpenMetricsWriter;
 
+import com.codahale.metrics.MetricRegistry;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
 @Path("")
 // context is /api, set in EmissaryServer
 public class MetricsAction {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private static final OpenMetricsWriter OPEN_METRICS_WRITER = new OpenMetricsWriter();
+
     @GET
     @Path("/metrics")
     @Produces(MediaType.APPLICATION_JSON)
@@ -28,4 +41,30 @@ public class MetricsAction {
             return Response.serverError().entity("Could not lookup MetricsManager").build();
         }
     }
+
+    /**
+     * The metrics in the OpenMetrics text format for Prometheus to scrape. The output is written straight to the response.
+     *
+     * @param prefixes only include metrics whose names start with one of these, all metrics if none are given
+     * @return the streaming response
+     */
+    @GET
+    @Path("/metrics/openmetrics")
+    @Produces(OpenMetricsWriter.CONTENT_TYPE)
+    public Response openMetrics(@QueryParam("prefix") List<String> prefixes) {
+        final MetricRegistry registry;
+        try {
+            registry = MetricsManager.lookup().getMetricRegistry();
+        } catch (NamespaceException ex) {
+            logger.warn("Could not lookup MetricsManager", ex);
+            return Response.serverError().entity("Could not lookup MetricsManager").type(MediaType.TEXT_PLAIN).build();
+        }
+        final List<String> filter = prefixes == null ? Collections.emptyList() : prefixes;
+        final StreamingOutput output = os -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+            OPEN_METRICS_WRITER.write(registry, filter, writer);
+            writer.flush();
+        };
+        return Response.ok(output, OpenMetricsWriter.CONTENT_TYPE).build();
+    }
 }
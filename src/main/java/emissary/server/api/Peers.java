@@ -1,6 +1,6 @@
 package emissary.server.api;
 
-import emissary.client.EmissaryClient;
+import emissary.client.PeerFanOut;
 import emissary.client.response.PeerList;
 import emissary.client.response.PeersResponseEntity;
 import emissary.core.EmissaryException;
@@ -14,7 +14,9 @@ import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static emissary.server.api.ApiUtils.getHostAndPort;
 import static emissary.server.api.ApiUtils.lookupPeers;
@@ -53,12 +55,9 @@ public class Peers {
             // Get our local mobile agents
             entity.setLocal(new PeerList(getHostAndPort(), peers));
             // Get all of our peers
-            EmissaryClient client = new EmissaryClient();
-            for (String peer : peers) {
-                String remoteEndPoint = stripPeerString(peer) + "api/peers";
-                PeersResponseEntity remoteEntity = client.send(new HttpGet(remoteEndPoint)).getContent(PeersResponseEntity.class);
-                entity.append(remoteEntity);
-            }
+            List<String> endpoints = peers.stream().map(peer -> stripPeerString(peer) + "api/peers").collect(Collectors.toList());
+            PeerFanOut.getInstance().collect(entity, endpoints,
+                    url -> PeerFanOut.getInstance().client().send(new HttpGet(url)).getContent(PeersResponseEntity.class));
         } catch (EmissaryException e) {
             logger.error("Error in clusterPeers", e);
             entity.addError(e.getMessage());
@@ -1,6 +1,6 @@
 package emissary.server.api;
 
-import emissary.client.EmissaryClient;
+import emissary.client.PeerFanOut;
 import emissary.client.response.PlaceList;
 import emissary.client.response.PlacesResponseEntity;
 import emissary.core.EmissaryException;
@@ -17,10 +17,7 @@ import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
-
-import static emissary.server.api.ApiUtils.lookupPeers;
-import static emissary.server.api.ApiUtils.stripPeerString;
+import static emissary.server.api.ApiUtils.peerEndpoints;
 
 /**
  * The agents Emissary API endpoint. Currently contains the local (/api/places) call and cluster (/api/clusterPlaces)
@@ -51,13 +48,8 @@ public class Places {
             entity.setLocal(lookupPlaces().getLocal());
 
             // Get all of our peers
-            Set<String> peers = lookupPeers();
-            EmissaryClient client = new EmissaryClient();
-            for (String peer : peers) {
-                String remoteEndPoint = stripPeerString(peer) + PLACES_ENDPOINT;
-                PlacesResponseEntity remoteEntity = client.send(new HttpGet(remoteEndPoint)).getContent(PlacesResponseEntity.class);
-                entity.append(remoteEntity);
-            }
+            PeerFanOut.getInstance().collect(entity, peerEndpoints(PLACES_ENDPOINT),
+                    url -> PeerFanOut.getInstance().client().send(new HttpGet(url)).getContent(PlacesResponseEntity.class));
             return Response.ok().entity(entity).build();
         } catch (EmissaryException e) {
             // This should never happen since we already saw if it exists
@@ -1,6 +1,6 @@
 package emissary.server.api;
 
-import emissary.client.EmissaryClient;
+import emissary.client.PeerFanOut;
 import emissary.client.response.MapResponseEntity;
 import emissary.core.EmissaryException;
 import emissary.core.Namespace;
@@ -19,8 +19,7 @@ import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static emissary.server.api.ApiUtils.lookupPeers;
-import static emissary.server.api.ApiUtils.stripPeerString;
+import static emissary.server.api.ApiUtils.peerEndpoints;
 
 /**
  * The agents Emissary API endpoint. Currently contains the local (/api/pool) call and cluster (/api/clusterPool) calls.
@@ -49,12 +48,8 @@ public class Pool {
             // Get our local mobile agents
             entity.append(this.lookupPool());
             // Get all of our peers agents
-            EmissaryClient client = new EmissaryClient();
-            for (String peer : lookupPeers()) {
-                String remoteEndPoint = stripPeerString(peer) + "api/pool";
-                MapResponseEntity remoteEntity = client.send(new HttpGet(remoteEndPoint)).getContent(MapResponseEntity.class);
-                entity.append(remoteEntity);
-            }
+            PeerFanOut.getInstance().collect(entity, peerEndpoints(POOL_ENDPOINT),
+                    url -> PeerFanOut.getInstance().client().send(new HttpGet(url)).getContent(MapResponseEntity.class));
             return Response.ok().entity(entity).build();
         } catch (EmissaryException e) {
             // This should never happen since we already saw if it exists
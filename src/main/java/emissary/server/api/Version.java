@@ -1,6 +1,6 @@
 package emissary.server.api;
 
-import emissary.client.EmissaryClient;
+import emissary.client.PeerFanOut;
 import emissary.client.response.MapResponseEntity;
 import emissary.core.EmissaryException;
 import emissary.core.Namespace;
@@ -18,10 +18,7 @@ import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
-
-import static emissary.server.api.ApiUtils.lookupPeers;
-import static emissary.server.api.ApiUtils.stripPeerString;
+import static emissary.server.api.ApiUtils.peerEndpoints;
 
 /**
  * The version Emissary API endpoint. Currently, contains the local (/api/version) call and cluster
@@ -52,13 +49,8 @@ public class Version {
             entity.append(lookupVersion());
 
             // Get all of our peers
-            Set<String> peers = lookupPeers();
-            EmissaryClient client = new EmissaryClient();
-            for (String peer : peers) {
-                String remoteEndPoint = stripPeerString(peer) + "api/version";
-                MapResponseEntity remoteEntity = client.send(new HttpGet(remoteEndPoint)).getContent(MapResponseEntity.class);
-                entity.append(remoteEntity);
-            }
+            PeerFanOut.getInstance().collect(entity, peerEndpoints("api/version"),
+                    url -> PeerFanOut.getInstance().client().send(new HttpGet(url)).getContent(MapResponseEntity.class));
             return Response.ok().entity(entity).build();
         } catch (EmissaryException e) {
             // This should never happen since we already saw if it exists
@@ -0,0 +1,287 @@
+package emissary.server.mvc.adapters;
+
+import emissary.client.EmissaryClient;
+import emissary.config.ConfigUtil;
+import emissary.config.Configurator;
+import emissary.core.FamilyCodec;
+import emissary.core.Form;
+import emissary.core.IBaseDataObject;
+import emissary.core.Namespace;
+import emissary.core.NamespaceException;
+import emissary.core.RemotePlaceTransport;
+import emissary.directory.DirectoryEntry;
+import emissary.directory.KeyManipulator;
+import emissary.place.EmptyFormPlace;
+import emissary.place.IServiceProviderPlace;
+
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nullable;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Have a place on a peer server work on a family of payloads, for agents that are routed to a place that is not local.
+ * <p>
+ * The family is sent in its binary form, the peer runs the place and answers with the changed family and any children
+ * the place sprouted. The state of the payloads sent is replaced with the state that comes back.
+ * <p>
+ * Each peer has a bounded number of families in flight. When a peer is at its limit for longer than the acquire
+ * timeout, or answers that it is busy, the family is not sent and the caller goes on as if the place could not be
+ * reached.
+ * <p>
+ * Running places for peers is switched on separately from sending work to them. A server that does not accept work
+ * refuses every family sent to it without reading it.
+ * <p>
+ * Configuration file options are:
+ * <ul>
+ * <li>OFFLOAD_ENABLED: whether agents send work to remote places, default false</li>
+ * <li>ACCEPT_ENABLED: whether this server runs its places on families sent by peers, default false</li>
+ * <li>MAX_IN_FLIGHT_PER_PEER: families being worked on by one peer at once, default 4</li>
+ * <li>ACQUIRE_TIMEOUT_MILLIS: how long to wait for a peer to have room, default 100</li>
+ * <li>MAX_INBOUND: families this server works on for its peers at once, more are answered as busy, default 16</li>
+ * </ul>
+ */
+public class RemotePlaceAdapter extends EmissaryClient implements RemotePlaceTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemotePlaceAdapter.class);
+
+    public static final String PLACE_KEY = "placeKey";
+    public static final String HEAVY_DUTY = "heavyDuty";
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_PEER = 4;
+    public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 100L;
+    public static final int DEFAULT_MAX_INBOUND = 16;
+
+    // replaced only when the configuration is read again
+    @SuppressWarnings("NonFinalStaticField")
+    private static volatile RemotePlaceAdapter instance = fromConfig();
+
+    private final boolean enabled;
+    private final boolean accepting;
+    private final int maxInFlightPerPeer;
+    private final long acquireTimeoutMillis;
+    private final Map<String, Semaphore> peers = new ConcurrentHashMap<>();
+    private final Semaphore inbound;
+
+    /**
+     * Create an adapter
+     *
+     * @param enabled whether families are sent at all
+     * @param accepting whether families sent by peers are worked on
+     * @param maxInFlightPerPeer families being worked on by one peer at once
+     * @param acquireTimeoutMillis how long to wait for a peer to have room
+     * @param maxInbound families worked on for peers at once
+     */
+    public RemotePlaceAdapter(final boolean enabled, final boolean accepting, final int maxInFlightPerPeer, final long acquireTimeoutMillis,
+            final int maxInbound) {
+        this.enabled = enabled;
+        this.accepting = accepting;
+        this.maxInFlightPerPeer = Math.max(maxInFlightPerPeer, 1);
+        this.acquireTimeoutMillis = Math.max(acquireTimeoutMillis, 0);
+        this.inbound = new Semaphore(Math.max(maxInbound, 1));
+    }
+
+    private static RemotePlaceAdapter fromConfig() {
+        boolean enabled = false;
+        boolean accepting = false;
+        int maxInFlight = DEFAULT_MAX_IN_FLIGHT_PER_PEER;
+        long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+        int maxInbound = DEFAULT_MAX_INBOUND;
+        try {
+            final Configurator c = ConfigUtil.getConfigInfo(RemotePlaceAdapter.class);
+            enabled = c.findBooleanEntry("OFFLOAD_ENABLED", enabled);
+            accepting = c.findBooleanEntry("ACCEPT_ENABLED", accepting);
+            maxInFlight = c.findIntEntry("MAX_IN_FLIGHT_PER_PEER", maxInFlight);
+            acquireTimeout = c.findLongEntry("ACQUIRE_TIMEOUT_MILLIS", acquireTimeout);
+            maxInbound = c.findIntEntry("MAX_INBOUND", maxInbound);
+        } catch (IOException iox) {
+            logger.debug("Cannot read RemotePlaceAdapter properties, remote places are not used: {}", iox.getMessage());
+        }
+        return new RemotePlaceAdapter(enabled, accepting, maxInFlight, acquireTimeout, maxInbound);
+    }
+
+    /**
+     * Read the configuration again and replace the shared adapter
+     */
+    @VisibleForTesting
+    public static void configure() {
+        instance = fromConfig();
+    }
+
+    /**
+     * The adapter shared by the agents
+     */
+    public static RemotePlaceAdapter getInstance() {
+        return instance;
+    }
+
+    /**
+     * Whether families are sent to remote places
+     */
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Whether this server runs its places on families sent by peers
+     */
+    public boolean isAccepting() {
+        return this.accepting;
+    }
+
+    /**
+     * Have a remote place work on a family
+     *
+     * @param entry the remote place
+     * @param family the payloads, their state is replaced by the state after the place has run
+     * @param heavyDuty true to run the place the way an HDMobileAgent does, collecting sprouted children
+     * @return the children sprouted by the place, or null if the family was not worked on and is unchanged
+     */
+    @Nullable
+    @Override
+    public List<IBaseDataObject> outboundProcess(final DirectoryEntry entry, final List<IBaseDataObject> family, final boolean heavyDuty) {
+        if (!this.enabled) {
+            return null;
+        }
+        final String peer = KeyManipulator.getServiceHost(entry.getKey());
+        final Semaphore room = this.peers.computeIfAbsent(peer, p -> new Semaphore(this.maxInFlightPerPeer));
+        try {
+            if (!room.tryAcquire(this.acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.debug("Peer {} has {} families in flight, not sending to {}", peer, this.maxInFlightPerPeer, entry.getKey());
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                FamilyCodec.write(family, out);
+            }
+            final String endpoint = "/RemotePlace.action?" + PLACE_KEY + "=" + URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8)
+                    + "&" + HEAVY_DUTY + "=" + heavyDuty;
+            final HttpPost method = createHttpPost(KeyManipulator.getServiceHostUrl(entry.getKey()), EmissaryClient.context, endpoint);
+            method.setHeader(HttpHeaders.ACCEPT, FamilyCodec.MEDIA_TYPE);
+            method.setEntity(new ByteArrayEntity(bytes.toByteArray(), ContentType.create(FamilyCodec.MEDIA_TYPE)));
+            final byte[] answer = execute(method, response -> readAnswer(entry, response));
+            if (answer == null) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(answer))) {
+                return FamilyCodec.read(in, family, answer.length);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not have {} work on {} payloads", entry.getKey(), family.size(), e);
+            return null;
+        } finally {
+            room.release();
+        }
+    }
+
+    /**
+     * Buffer the whole answer so a failure part way through leaves the family unchanged
+     */
+    @Nullable
+    private static byte[] readAnswer(final DirectoryEntry entry, final ClassicHttpResponse response) throws IOException {
+        final HttpEntity entity = response.getEntity();
+        if (response.getCode() != HttpStatus.SC_OK || entity == null || entity.getContentType() == null
+                || !entity.getContentType().startsWith(FamilyCodec.MEDIA_TYPE)) {
+            logger.debug("Remote place {} did not do the work: {}", entry.getKey(), response.getCode());
+            EntityUtils.consume(entity);
+            return null;
+        }
+        return EntityUtils.toByteArray(entity);
+    }
+
+    /**
+     * Run a local place on a family sent by a peer. Callers check {@link #isAccepting()} before reading the family.
+     *
+     * @param placeKey key of the place
+     * @param family the payloads
+     * @param heavyDuty true to run the place the way an HDMobileAgent does, collecting sprouted children
+     * @return the family followed by any sprouted children, or null if this server is already working on as many families
+     *         as it allows
+     * @throws NamespaceException if the place is not here
+     */
+    @Nullable
+    public List<IBaseDataObject> inboundProcess(final String placeKey, final List<IBaseDataObject> family, final boolean heavyDuty)
+            throws NamespaceException {
+        final IServiceProviderPlace place = (IServiceProviderPlace) Namespace.lookup(KeyManipulator.getServiceLocation(placeKey));
+        if (!this.inbound.tryAcquire()) {
+            logger.debug("Too busy to run {} for a peer", placeKey);
+            return null;
+        }
+        try {
+            final List<IBaseDataObject> answer = new ArrayList<>(family);
+            if (heavyDuty) {
+                answer.addAll(processHeavyDuty(place, family));
+            } else {
+                for (final IBaseDataObject payload : family) {
+                    process(place, payload);
+                }
+            }
+            if (!(place instanceof EmptyFormPlace)) {
+                for (final IBaseDataObject p : family) {
+                    if (p.currentFormSize() == 0) {
+                        logger.error("Place {} left an empty form stack, changing it to ERROR", place);
+                        p.addProcessingError(place + " left an empty form stack");
+                        p.pushCurrentForm(Form.ERROR);
+                    }
+                }
+            }
+            return answer;
+        } finally {
+            this.inbound.release();
+        }
+    }
+
+    private static List<IBaseDataObject> processHeavyDuty(final IServiceProviderPlace place, final List<IBaseDataObject> family) {
+        try {
+            final List<IBaseDataObject> sprouts = new ArrayList<>(place.agentProcessHeavyDuty(family));
+            sprouts.removeIf(Objects::isNull);
+            return sprouts;
+        } catch (Exception problem) {
+            logger.warn("{} caught {} with {} payloads from a peer", place, problem, family.size(), problem);
+            for (final IBaseDataObject p : family) {
+                p.addProcessingError("agentProcessHeavyDuty(" + place + "): " + problem);
+                p.replaceCurrentForm(Form.ERROR);
+            }
+            return new ArrayList<>();
+        }
+    }
+
+    private static void process(final IServiceProviderPlace place, final IBaseDataObject payload) {
+        try {
+            place.agentProcessCall(payload);
+        } catch (Exception problem) {
+            logger.warn("{} caught problem with a payload from a peer:", place, problem);
+            payload.addProcessingError("atPlace(" + place + "): " + problem);
+            payload.replaceCurrentForm(Form.ERROR);
+        }
+    }
+}
@@ -5,17 +5,29 @@ import emissary.client.EmissaryResponse;
 import emissary.directory.KeyManipulator;
 import emissary.pickup.WorkBundle;
 
+import jakarta.annotation.Nullable;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Stuff for adapting the WorkSpace remote call to HTTP
@@ -28,6 +40,13 @@ public class WorkSpaceAdapter extends EmissaryClient {
     public static final String SPACE_NAME = "workSpaceName";
     public static final String WORK_BUNDLE_ID = "tpId";
     public static final String WORK_BUNDLE_STATUS = "tpStatus";
+    public static final String MAX_BUNDLES = "maxBundles";
+
+    // Prefer the binary form of bundles, spaces that do not know it answer with xml
+    private static final String ACCEPT_BUNDLES = WorkBundle.MEDIA_TYPE + ", " + MediaType.APPLICATION_XML + ";q=0.5";
+
+    // Decoding gzip costs more than the bytes it saves on most networks
+    private boolean compressBundles;
 
     /**
      * Outbound open tells a remote WorkSpace to start pulling data
@@ -56,6 +75,7 @@ public class WorkSpaceAdapter extends EmissaryClient {
      * @param space the remote space to contact
      * @param place the name of the requesting place
      */
+    @Nullable
     public WorkBundle outboundWorkSpaceTake(final String space, final String place) {
 
         final String placeUrl = KeyManipulator.getServiceHostUrl(space);
@@ -66,16 +86,86 @@ public class WorkSpaceAdapter extends EmissaryClient {
         nvps.add(new BasicNameValuePair(SPACE_NAME, space));
 
         method.setEntity(new UrlEncodedFormEntity(nvps, StandardCharsets.UTF_8));
-        final EmissaryResponse status = send(method);
+        final List<WorkBundle> paths = take(space, method, false);
+        return paths == null || paths.isEmpty() ? null : paths.get(0);
+    }
 
-        WorkBundle path = null;
-        // TODO Look at putting this method in the EmissaryResponse
-        if (status.getStatus() != HttpStatus.SC_OK) {
-            logger.debug("Take from space {} was an error: {}", space, status.getContentString());
-        } else {
-            path = WorkBundle.buildWorkBundle(status.getContentString());
+    /**
+     * Outbound take grabs one or more WorkBundles from remote WorkSpace
+     *
+     * @param space the remote space to contact
+     * @param place the name of the requesting place
+     * @param maxBundles most bundles the place can take
+     * @return the bundles, empty when the space has no more work, or null on error
+     */
+    @Nullable
+    public List<WorkBundle> outboundWorkSpaceTake(final String space, final String place, final int maxBundles) {
+
+        final String placeUrl = KeyManipulator.getServiceHostUrl(space);
+        final HttpPost method = createHttpPost(placeUrl, context, "/WorkSpaceClientSpaceTakeBundles.action");
+
+        final List<NameValuePair> nvps = new ArrayList<>();
+        nvps.add(new BasicNameValuePair(CLIENT_NAME, place));
+        nvps.add(new BasicNameValuePair(SPACE_NAME, space));
+        nvps.add(new BasicNameValuePair(MAX_BUNDLES, Integer.toString(maxBundles)));
+
+        method.setEntity(new UrlEncodedFormEntity(nvps, StandardCharsets.UTF_8));
+        return take(space, method, true);
+    }
+
+    /**
+     * Send a take and read the answer in the form the space chose. Spaces that know the binary form of bundles answer with
+     * it, older spaces answer with xml.
+     *
+     * @param space the remote space
+     * @param method the take request
+     * @param list true if an xml answer is a list of bundles rather than one bundle
+     * @return the bundles or null on error
+     */
+    @Nullable
+    private List<WorkBundle> take(final String space, final HttpPost method, final boolean list) {
+        method.setHeader(HttpHeaders.ACCEPT, ACCEPT_BUNDLES);
+        if (!compressBundles) {
+            method.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+        }
+        try {
+            return execute(method, response -> readTake(space, response, list));
+        } catch (IOException e) {
+            logger.debug("Take from space {} was an error", space, e);
+            return null;
         }
-        return path;
+    }
+
+    @Nullable
+    private static List<WorkBundle> readTake(final String space, final ClassicHttpResponse response, final boolean list)
+            throws IOException, ParseException {
+        final HttpEntity entity = response.getEntity();
+        if (response.getCode() != HttpStatus.SC_OK || entity == null) {
+            logger.debug("Take from space {} was an error: {} {}", space, response.getCode(), entity == null ? "" : EntityUtils.toString(entity));
+            return null;
+        }
+        final String type = entity.getContentType();
+        if (type != null && type.startsWith(WorkBundle.MEDIA_TYPE)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(entity.getContent()))) {
+                return WorkBundle.readBundlesFromStream(in);
+            }
+        }
+        final String xml = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+        if (list) {
+            return WorkBundle.buildWorkBundles(xml);
+        }
+        final WorkBundle path = WorkBundle.buildWorkBundle(xml);
+        return path == null ? null : Collections.singletonList(path);
+    }
+
+    /**
+     * Whether takes accept compressed answers. Off by default, as compressing and decompressing bundles takes longer than
+     * sending them on all but slow networks.
+     *
+     * @param compressBundles true to let spaces gzip larger answers, for slow networks where the bytes matter more
+     */
+    public void setCompressBundles(final boolean compressBundles) {
+        this.compressBundles = compressBundles;
     }
 
     /**
@@ -102,4 +192,29 @@ public class WorkSpaceAdapter extends EmissaryClient {
         return status.getStatus() == HttpStatus.SC_OK;
     }
 
+    /**
+     * Outbound notice that several bundles were completed, sent as one message
+     *
+     * @param space the remote space to contact
+     * @param place the name of the notifying place
+     * @param results status of the processing of each bundle, by id
+     * @return true if the message was sent
+     */
+    public boolean outboundBundleCompletions(final String space, final String place, final Map<String, Boolean> results) {
+        final String placeUrl = KeyManipulator.getServiceHostUrl(space);
+        final HttpPost method = createHttpPost(placeUrl, context, "/WorkBundlesCompleted.action");
+
+        final List<NameValuePair> nvps = new ArrayList<>();
+        nvps.add(new BasicNameValuePair(CLIENT_NAME, place));
+        nvps.add(new BasicNameValuePair(SPACE_NAME, space));
+        // ids and statuses are paired by position
+        for (final Map.Entry<String, Boolean> entry : results.entrySet()) {
+            nvps.add(new BasicNameValuePair(WORK_BUNDLE_ID, entry.getKey()));
+            nvps.add(new BasicNameValuePair(WORK_BUNDLE_STATUS, Boolean.toString(entry.getValue())));
+        }
+        method.setEntity(new UrlEncodedFormEntity(nvps, StandardCharsets.UTF_8));
+        final EmissaryResponse status = send(method);
+        return status.getStatus() == HttpStatus.SC_OK;
+    }
+
 }
@@ -0,0 +1,84 @@
+package emissary.server.mvc.internal;
+
+import emissary.core.FamilyCodec;
+import emissary.core.IBaseDataObject;
+import emissary.core.NamespaceException;
+import emissary.server.mvc.adapters.RemotePlaceAdapter;
+import emissary.server.mvc.adapters.RequestUtil;
+
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+@Path("")
+// context is /emissary, set in EmissaryServer
+public class RemotePlaceAction {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemotePlaceAction.class);
+
+    /**
+     * Run a place here on a family sent by a peer and answer with the changed family followed by any sprouted children. The
+     * sender must declare the length of the family, which bounds how much is read. A server that does not accept work from
+     * its peers refuses the request without reading the family.
+     */
+    @POST
+    @Path("/RemotePlace.action")
+    @Consumes(FamilyCodec.MEDIA_TYPE)
+    @Produces({FamilyCodec.MEDIA_TYPE, MediaType.TEXT_PLAIN})
+    public Response remotePlace(@QueryParam(RemotePlaceAdapter.PLACE_KEY) String placeKey,
+            @QueryParam(RemotePlaceAdapter.HEAVY_DUTY) @DefaultValue("false") boolean heavyDuty,
+            @HeaderParam(HttpHeaders.CONTENT_LENGTH) @DefaultValue("-1") long contentLength, InputStream body) {
+        final RemotePlaceAdapter adapter = RemotePlaceAdapter.getInstance();
+        if (!adapter.isAccepting()) {
+            return Response.status(Response.Status.FORBIDDEN).type(MediaType.TEXT_PLAIN).entity("Not accepting work from peers").build();
+        }
+        final String cleanPlaceKey = RequestUtil.sanitizeParameter(placeKey);
+        if (StringUtils.isBlank(cleanPlaceKey)) {
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+                    .entity("Bad params: " + RemotePlaceAdapter.PLACE_KEY).build();
+        }
+        if (contentLength < 0) {
+            return Response.status(Response.Status.LENGTH_REQUIRED).type(MediaType.TEXT_PLAIN).entity("Length required").build();
+        }
+
+        final List<IBaseDataObject> answer;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(body))) {
+            answer = adapter.inboundProcess(cleanPlaceKey, FamilyCodec.read(in, contentLength), heavyDuty);
+        } catch (IOException e) {
+            logger.warn("Could not read the family sent for {}", cleanPlaceKey, e);
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Could not read the family").build();
+        } catch (NamespaceException e) {
+            logger.warn("No place {} to run for a peer", cleanPlaceKey);
+            return Response.status(Response.Status.NOT_FOUND).type(MediaType.TEXT_PLAIN).entity("No place " + cleanPlaceKey).build();
+        }
+        if (answer == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).type(MediaType.TEXT_PLAIN).entity("Busy").build();
+        }
+
+        final StreamingOutput stream = os -> {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+            FamilyCodec.write(answer, out);
+            out.flush();
+        };
+        return Response.ok(stream, FamilyCodec.MEDIA_TYPE).build();
+    }
+}
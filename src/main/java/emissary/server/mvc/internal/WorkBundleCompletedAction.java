@@ -4,6 +4,7 @@ import emissary.core.Namespace;
 import emissary.core.NamespaceException;
 import emissary.pickup.WorkSpace;
 import emissary.server.mvc.adapters.RequestUtil;
+import emissary.server.mvc.adapters.WorkSpaceAdapter;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.FormParam;
@@ -16,6 +17,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
 import static emissary.server.mvc.adapters.WorkSpaceAdapter.CLIENT_NAME;
 import static emissary.server.mvc.adapters.WorkSpaceAdapter.SPACE_NAME;
 import static emissary.server.mvc.adapters.WorkSpaceAdapter.WORK_BUNDLE_ID;
@@ -29,6 +35,9 @@ import static emissary.server.mvc.adapters.WorkSpaceAdapter.WORK_BUNDLE_STATUS;
 public class WorkBundleCompletedAction {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private static final String SPACE_PREFIX = "WORKSPACE.WORK_SPACE.INPUT.";
+    private static final String CLIENT_PREFIX = "INITIAL.FILE_PICK_UP_CLIENT.INPUT.";
+
     /*
      * <!-- Notify a WorkSpace that work was completed --> <Use-Case source="*" action="/WorkBundleCompleted.action"> <Work
      * type="Bean" target="emissary.comms.http.worker.LogWorker"/> <Work type="Bean"
@@ -46,7 +55,7 @@ public class WorkBundleCompletedAction {
         String cleanSpaceName = RequestUtil.sanitizeParameter(spaceName);
         String cleanBundleId = RequestUtil.sanitizeParameter(bundleId);
         if (StringUtils.isBlank(cleanPlaceName) || StringUtils.isBlank(cleanSpaceName) || StringUtils.isBlank(cleanBundleId)
-                || !cleanSpaceName.startsWith("WORKSPACE.WORK_SPACE.INPUT.") || !cleanPlaceName.startsWith("INITIAL.FILE_PICK_UP_CLIENT.INPUT.")) {
+                || !cleanSpaceName.startsWith(SPACE_PREFIX) || !cleanPlaceName.startsWith(CLIENT_PREFIX)) {
             return Response
                     .serverError()
                     .entity("Bad params: " + CLIENT_NAME + " - " + cleanPlaceName + ", " + SPACE_NAME + " - " + cleanSpaceName + ", " + WORK_BUNDLE_ID
@@ -62,15 +71,56 @@ public class WorkBundleCompletedAction {
         }
     }
 
-    private static Response workBundleCompleted(String spaceName, String placeName, String bundleId, boolean itWorked) throws NamespaceException {
-        // Look up the place reference
-        // TODO Figure out why we have to remove the key prefix now
-        final String workspaceNamespaceKey = spaceName.substring("WORKSPACE.WORK_SPACE.INPUT.".length());
-        final WorkSpace space = (WorkSpace) Namespace.lookup(workspaceNamespaceKey);
+    /**
+     * Completion of several bundles in one message. Each {@value WorkSpaceAdapter#WORK_BUNDLE_ID} is paired with the
+     * {@value WorkSpaceAdapter#WORK_BUNDLE_STATUS} in the same position.
+     */
+    @POST
+    @Path("/WorkBundlesCompleted.action")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response postWorkBundlesCompleted(@FormParam(CLIENT_NAME) String placeName, @FormParam(SPACE_NAME) String spaceName,
+            @FormParam(WORK_BUNDLE_ID) List<String> bundleIds, @FormParam(WORK_BUNDLE_STATUS) List<String> statuses) {
+        String cleanPlaceName = RequestUtil.sanitizeParameter(placeName);
+        String cleanSpaceName = RequestUtil.sanitizeParameter(spaceName);
+        if (StringUtils.isBlank(cleanPlaceName) || StringUtils.isBlank(cleanSpaceName) || bundleIds == null || statuses == null
+                || bundleIds.size() != statuses.size()
+                || !cleanSpaceName.startsWith(SPACE_PREFIX) || !cleanPlaceName.startsWith(CLIENT_PREFIX)) {
+            return Response
+                    .serverError()
+                    .entity("Bad params: " + CLIENT_NAME + " - " + cleanPlaceName + ", " + SPACE_NAME + " - " + cleanSpaceName + ", " + WORK_BUNDLE_ID
+                            + " and " + WORK_BUNDLE_STATUS + " must be paired")
+                    .build();
+        }
+
+        final Map<String, Boolean> results = new LinkedHashMap<>();
+        for (int i = 0; i < bundleIds.size(); i++) {
+            String cleanBundleId = RequestUtil.sanitizeParameter(bundleIds.get(i));
+            if (StringUtils.isNotBlank(cleanBundleId)) {
+                results.put(cleanBundleId, Boolean.parseBoolean(statuses.get(i)));
+            }
+        }
 
+        try {
+            final int count = complete(cleanSpaceName, cleanPlaceName, (space, clientKey) -> space.workCompleted(clientKey, results));
+            return Response.ok().entity(count + " of " + results.size() + " Work Bundles Completed").build();
+        } catch (NamespaceException e) {
+            logger.error("There was a problem while processing the WorkBundles", e);
+            return Response.serverError().entity("There was a problem while processing the WorkBundles: " + e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Hand the space and the key it knows the client by to a completion
+     */
+    private static <T> T complete(String spaceName, String placeName, BiFunction<WorkSpace, String, T> completion) throws NamespaceException {
         // TODO Figure out why we have to remove the key prefix now
-        String pickupClientNamespaceKey = placeName.substring("INITIAL.FILE_PICK_UP_CLIENT.INPUT.".length());
-        if (space.workCompleted(pickupClientNamespaceKey, bundleId, itWorked)) {
+        final WorkSpace space = (WorkSpace) Namespace.lookup(spaceName.substring(SPACE_PREFIX.length()));
+        return completion.apply(space, placeName.substring(CLIENT_PREFIX.length()));
+    }
+
+    private static Response workBundleCompleted(String spaceName, String placeName, String bundleId, boolean itWorked) throws NamespaceException {
+        if (complete(spaceName, placeName, (space, clientKey) -> space.workCompleted(clientKey, bundleId, itWorked))) {
             // old success from BundleCompletedWorker
             // return WORKER_SUCCESS;
             return Response.ok().entity("Work Bundle Completed").build();
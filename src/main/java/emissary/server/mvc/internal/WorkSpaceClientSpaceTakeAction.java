@@ -5,19 +5,32 @@ import emissary.core.Namespace;
 import emissary.pickup.WorkBundle;
 import emissary.pickup.WorkSpace;
 import emissary.server.mvc.adapters.RequestUtil;
+import emissary.server.mvc.adapters.WorkSpaceAdapter;
 import emissary.util.web.HtmlEscaper;
 
+import jakarta.annotation.Nullable;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.FormParam;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
 @Path("")
 // context is /emissary, set in EmissaryServer
 public class WorkSpaceClientSpaceTakeAction {
@@ -30,6 +43,10 @@ public class WorkSpaceClientSpaceTakeAction {
     public static final String WORK_BUNDLE_STATUS = "tpStatus";
     public static final String DATA_IDENTIFIER = "tdataId";
 
+    // Binary answers smaller than this are not worth compressing
+    static final int COMPRESS_THRESHOLD = 1024;
+    private static final String GZIP = "gzip";
+
     /*
      * <!-- Take data from a WorkSpace --> <Use-Case source="*" action="/WorkSpaceClientSpaceTake.action"> <Work type="Bean"
      * target="emissary.comms.http.worker.LogWorker"/> <Work type="Bean"
@@ -40,8 +57,9 @@ public class WorkSpaceClientSpaceTakeAction {
     @POST
     @Path("/WorkSpaceClientSpaceTake.action")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    @Produces(MediaType.APPLICATION_XML)
-    public Response clientSpaceTake(@FormParam(CLIENT_NAME) String placeName, @FormParam(SPACE_NAME) String spaceName) {
+    @Produces({MediaType.APPLICATION_XML, WorkBundle.MEDIA_TYPE})
+    public Response clientSpaceTake(@FormParam(CLIENT_NAME) String placeName, @FormParam(SPACE_NAME) String spaceName,
+            @HeaderParam(HttpHeaders.ACCEPT) String accept, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
         String cleanPlaceName = RequestUtil.sanitizeParameter(placeName);
         String cleanSpaceName = RequestUtil.sanitizeParameter(spaceName);
         if (StringUtils.isBlank(cleanPlaceName) || StringUtils.isBlank(cleanSpaceName)) {
@@ -50,21 +68,52 @@ public class WorkSpaceClientSpaceTakeAction {
         }
 
         try {
-            return doClientSpaceTake(cleanPlaceName, cleanSpaceName);
+            return doClientSpaceTake(cleanPlaceName, cleanSpaceName, accept, acceptEncoding);
         } catch (EmissaryException | IllegalArgumentException e) {
             logger.warn("There was an exception in the WorkSpaceClientSpaceTake", e);
             return Response.serverError().entity("There was an exception in the WorkSpaceClientSpaceTake").build();
         }
     }
 
-    private static Response doClientSpaceTake(String placeName, String spaceName) throws EmissaryException {
+    /**
+     * Take as many bundles as the WorkSpace judges the client can work through, up to the number it can hold
+     */
+    @POST
+    @Path("/WorkSpaceClientSpaceTakeBundles.action")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces({MediaType.APPLICATION_XML, WorkBundle.MEDIA_TYPE})
+    public Response clientSpaceTakeBundles(@FormParam(CLIENT_NAME) String placeName, @FormParam(SPACE_NAME) String spaceName,
+            @FormParam(WorkSpaceAdapter.MAX_BUNDLES) @DefaultValue("1") int maxBundles, @HeaderParam(HttpHeaders.ACCEPT) String accept,
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        String cleanPlaceName = RequestUtil.sanitizeParameter(placeName);
+        String cleanSpaceName = RequestUtil.sanitizeParameter(spaceName);
+        if (StringUtils.isBlank(cleanPlaceName) || StringUtils.isBlank(cleanSpaceName)) {
+            return Response.serverError().entity(HtmlEscaper.escapeHtml(
+                    "Bad params: " + CLIENT_NAME + " - " + cleanPlaceName + ", or " + SPACE_NAME + " - " + cleanSpaceName)).build();
+        }
+
+        try {
+            final List<WorkBundle> bundles = lookupSpace(cleanSpaceName).take(cleanPlaceName, maxBundles);
+            return bundleResponse(bundles, accept, acceptEncoding, () -> WorkBundle.toXml(bundles));
+        } catch (EmissaryException | IllegalArgumentException e) {
+            logger.warn("There was an exception in the WorkSpaceClientSpaceTakeBundles", e);
+            return Response.serverError().entity("There was an exception in the WorkSpaceClientSpaceTakeBundles").build();
+        }
+    }
+
+    private static WorkSpace lookupSpace(String spaceName) throws EmissaryException {
         // TODO Figure out why we have to remove the key prefix now
         String workspaceKey = spaceName.substring("WORKSPACE.WORK_SPACE.INPUT.".length());
         final WorkSpace space = (WorkSpace) Namespace.lookup(workspaceKey);
         if (space == null) {
             throw new IllegalArgumentException("No WorkSpace found using name " + spaceName);
         }
+        return space;
+    }
 
+    private Response doClientSpaceTake(String placeName, String spaceName, @Nullable String accept, @Nullable String acceptEncoding)
+            throws EmissaryException {
+        final WorkSpace space = lookupSpace(spaceName);
         final WorkBundle path = space.take(placeName);
         if (path == null) {
             throw new EmissaryException("WorkSpaceClientSpaceTakeWorker failed, no bundle to retrieve");
@@ -72,6 +121,38 @@ public class WorkSpaceClientSpaceTakeAction {
 
         // old return from WorkSpaceClientSpaceTakeWorker
         // return WORKER_SUCCESS;
-        return Response.ok().entity(path.toXml()).build();
+        return bundleResponse(Collections.singletonList(path), accept, acceptEncoding, path::toXml);
+    }
+
+    /**
+     * Answer with the binary form of the bundles when the client accepts it, compressed if the client accepts gzip and the
+     * answer is large enough to gain from it. Older clients get xml.
+     *
+     * @param bundles the bundles taken
+     * @param accept the Accept header of the request
+     * @param acceptEncoding the Accept-Encoding header of the request
+     * @param xml makes the xml answer
+     */
+    Response bundleResponse(List<WorkBundle> bundles, @Nullable String accept, @Nullable String acceptEncoding, Supplier<String> xml) {
+        if (accept == null || !accept.contains(WorkBundle.MEDIA_TYPE)) {
+            return Response.ok().type(MediaType.APPLICATION_XML).entity(xml.get()).build();
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                WorkBundle.writeBundlesToStream(bundles, out);
+            }
+            if (acceptEncoding == null || !acceptEncoding.contains(GZIP) || bytes.size() < COMPRESS_THRESHOLD) {
+                return Response.ok(bytes.toByteArray(), WorkBundle.MEDIA_TYPE).build();
+            }
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.size() / 4);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                bytes.writeTo(out);
+            }
+            return Response.ok(compressed.toByteArray(), WorkBundle.MEDIA_TYPE).header(HttpHeaders.CONTENT_ENCODING, GZIP).build();
+        } catch (IOException e) {
+            logger.warn("Could not write bundles in binary form, sending xml", e);
+            return Response.ok().type(MediaType.APPLICATION_XML).entity(xml.get()).build();
+        }
     }
 }
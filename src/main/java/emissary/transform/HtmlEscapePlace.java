@@ -7,8 +7,9 @@ package emissary.transform;
 
 import emissary.core.Form;
 import emissary.core.IBaseDataObject;
+import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.place.ServiceProviderPlace;
-import emissary.transform.decode.HtmlEscape;
+import emissary.transform.decode.HtmlEscapeDecoder;
 import emissary.util.CharacterCounterSet;
 import emissary.util.DataUtil;
 
@@ -18,7 +19,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
 
 import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import static emissary.core.Form.HTML;
 import static emissary.core.Form.PREFIXES_LANG;
@@ -38,6 +42,21 @@ public class HtmlEscapePlace extends ServiceProviderPlace {
     @Nullable
     private String outputForm = null;
 
+    /**
+     * Decodes numeric escapes and entities in one pass
+     */
+    protected HtmlEscapeDecoder decoder;
+
+    /**
+     * Decoded data larger than this many bytes is kept in a temporary file
+     */
+    protected int spillThreshold = 16 * 1024 * 1024;
+
+    /**
+     * Where decoded data over the threshold is kept
+     */
+    protected Path tempDir;
+
     /**
      * The remote constructor
      */
@@ -67,9 +86,9 @@ public class HtmlEscapePlace extends ServiceProviderPlace {
      */
     protected void configurePlace() {
         outputForm = configG.findStringEntry(OUTPUT_FORM, null);
-
-        // Force statics to load
-        HtmlEscape.unescapeHtml(new byte[0]);
+        spillThreshold = (int) Math.min(Integer.MAX_VALUE, configG.findSizeEntry("SPILL_THRESHOLD", spillThreshold));
+        tempDir = Paths.get(configG.findStringEntry("TEMP_DIR", System.getProperty("java.io.tmpdir", "/tmp")));
+        decoder = new HtmlEscapeDecoder();
     }
 
     /**
@@ -86,20 +105,26 @@ public class HtmlEscapePlace extends ServiceProviderPlace {
 
         logger.debug("Just got a payload with form {}", incomingForm);
 
-        byte[] newData = HtmlEscape.unescapeHtml(d.data(), counters);
+        SeekableByteChannelFactory newData = null;
+        long oldSize = 0;
+        long newSize = 0;
+        try {
+            oldSize = d.getChannelSize();
+            newData = decoder.decode(d.getChannelFactory(), spillThreshold, tempDir, counters);
+            try (SeekableByteChannel channel = newData.create()) {
+                newSize = channel.size();
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot decode HTML escapes", e);
+        }
 
-        if (newData != null && newData.length > 0) {
-            newData = HtmlEscape.unescapeEntities(newData, counters);
+        if (newData != null && newSize > 0) {
             if (outputForm != null) {
                 d.setCurrentForm(outputForm);
             }
             // Track how much change in size there was
-            int variance = d.dataLength() - newData.length;
-            if (variance < 0) {
-                variance *= -1;
-            }
-            d.setParameter("HTML_Entity_Decode_Variance", Integer.toString(variance));
-            d.setData(newData);
+            d.setParameter("HTML_Entity_Decode_Variance", Long.toString(Math.abs(oldSize - newSize)));
+            d.setChannelFactory(newData);
             d.setFileTypeIfEmpty(HTML);
 
             for (String key : counters.getKeys()) {
@@ -124,12 +149,9 @@ public class HtmlEscapePlace extends ServiceProviderPlace {
         d.getAlternateViewNames().stream().filter(v -> v.startsWith(TEXT)).forEach(viewName -> {
             byte[] textView = d.getAlternateView(viewName);
             if (ArrayUtils.isNotEmpty(textView)) {
-                byte[] s = HtmlEscape.unescapeHtml(textView);
+                byte[] s = decoder.decode(textView);
                 if (ArrayUtils.isNotEmpty(s)) {
-                    s = HtmlEscape.unescapeEntities(s);
-                    if (ArrayUtils.isNotEmpty(s)) {
-                        d.addAlternateView(viewName, s);
-                    }
+                    d.addAlternateView(viewName, s);
                 }
             }
         });
@@ -140,9 +162,8 @@ public class HtmlEscapePlace extends ServiceProviderPlace {
         String summary = d.getStringParameter(SUMMARY);
         if (Strings.CS.contains(summary, "&#")) {
             logger.debug("Working on summary "/* + summary */);
-            String s = makeString(HtmlEscape.unescapeHtml(summary.getBytes()));
+            String s = makeString(decoder.decode(summary.getBytes()));
             if (StringUtils.isNotBlank(s)) {
-                s = HtmlEscape.unescapeEntities(s);
                 d.deleteParameter(SUMMARY);
                 d.putParameter(SUMMARY, s);
             }
@@ -154,10 +175,9 @@ public class HtmlEscapePlace extends ServiceProviderPlace {
         String title = d.getStringParameter(DOCUMENT_TITLE);
         if (Strings.CS.contains(title, "&#")) {
             logger.debug("Working on title "/* + title */);
-            String s = makeString(HtmlEscape.unescapeHtml(title.getBytes()));
+            String s = makeString(decoder.decode(title.getBytes()));
             if (StringUtils.isNotBlank(s)) {
                 d.deleteParameter(DOCUMENT_TITLE);
-                s = HtmlEscape.unescapeEntities(s);
                 d.putParameter(DOCUMENT_TITLE, s);
             }
         }
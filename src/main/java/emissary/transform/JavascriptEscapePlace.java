@@ -7,13 +7,15 @@ package emissary.transform;
 
 import emissary.core.Form;
 import emissary.core.IBaseDataObject;
+import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.place.ServiceProviderPlace;
-import emissary.transform.decode.JavascriptEscape;
+import emissary.transform.decode.JavascriptEscapeDecoder;
 import emissary.util.DataUtil;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import static emissary.core.constants.Configurations.OUTPUT_FORM;
 
@@ -25,6 +27,21 @@ public class JavascriptEscapePlace extends ServiceProviderPlace {
      */
     private String outputForm = Form.UNKNOWN;
 
+    /**
+     * Decodes the escapes in one pass
+     */
+    protected JavascriptEscapeDecoder decoder = new JavascriptEscapeDecoder();
+
+    /**
+     * Decoded data larger than this many bytes is kept in a temporary file
+     */
+    protected int spillThreshold = 16 * 1024 * 1024;
+
+    /**
+     * Where decoded data over the threshold is kept
+     */
+    protected Path tempDir;
+
     /**
      * Configure one with specified location
      * 
@@ -60,6 +77,8 @@ public class JavascriptEscapePlace extends ServiceProviderPlace {
      */
     protected void configurePlace() {
         outputForm = configG.findStringEntry(OUTPUT_FORM, outputForm);
+        spillThreshold = (int) Math.min(Integer.MAX_VALUE, configG.findSizeEntry("SPILL_THRESHOLD", spillThreshold));
+        tempDir = Paths.get(configG.findStringEntry("TEMP_DIR", System.getProperty("java.io.tmpdir", "/tmp")));
     }
 
     /**
@@ -75,10 +94,19 @@ public class JavascriptEscapePlace extends ServiceProviderPlace {
 
         logger.debug("JavascriptEscapePlace just got a {}", incomingForm);
 
-        byte[] newData = JavascriptEscape.unescape(d.data());
+        SeekableByteChannelFactory newData = null;
+        long newSize = 0;
+        try {
+            newData = decoder.decode(d.getChannelFactory(), spillThreshold, tempDir, null);
+            try (SeekableByteChannel channel = newData.create()) {
+                newSize = channel.size();
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot decode escapes", e);
+        }
 
-        if (ArrayUtils.isNotEmpty(newData)) {
-            d.setData(newData);
+        if (newData != null && newSize > 0) {
+            d.setChannelFactory(newData);
 
             if (outputForm != null) {
                 d.setCurrentForm(outputForm);
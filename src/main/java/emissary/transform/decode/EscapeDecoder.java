@@ -0,0 +1,396 @@
+package emissary.transform.decode;
+
+import emissary.core.channels.SeekableByteChannelFactory;
+import emissary.core.channels.SpillChannelFactory;
+import emissary.util.CharacterCounterSet;
+
+import jakarta.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Decodes escape sequences in a single pass over a stream of bytes.
+ * <p>
+ * Input is read into a buffer and bytes that are not part of an escape are copied through in runs. When the trigger
+ * byte of an escape is found the subclass is given at least {@link #maxEscapeLength()} bytes to look at, unless the
+ * input ends first, so escapes that straddle two reads are decoded the same as any other. Decoded characters are
+ * encoded as UTF-8 straight into an output buffer. Both buffers are sized to the input when its size is known, so small
+ * fields do not pay for large buffers, and never grow past {@link #BUFFER_SIZE}, so memory use is bounded for any
+ * input.
+ * <p>
+ * Decoders hold no state between calls and may be shared by any number of threads.
+ */
+public abstract class EscapeDecoder {
+
+    /** Largest size of the input and output buffers */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The byte that starts every escape sequence
+     */
+    protected abstract byte trigger();
+
+    /**
+     * The most bytes an escape sequence, including the trigger, can span
+     */
+    protected abstract int maxEscapeLength();
+
+    /**
+     * Decode the escape sequence starting at a trigger byte
+     *
+     * @param data the input buffer, data[pos] is the trigger byte
+     * @param pos position of the trigger byte
+     * @param end end of the input available. At least {@link #maxEscapeLength()} bytes are available unless this is the end
+     *        of the input.
+     * @param out receives the decoded characters
+     * @return the number of bytes consumed, or 0 when this is not an escape and the trigger byte is copied as it is
+     * @throws IOException if the output cannot be written
+     */
+    protected abstract int decodeEscape(byte[] data, int pos, int end, Output out) throws IOException;
+
+    /**
+     * Decode a backslash-u escape of four hex digits. A high surrogate followed by an escaped low surrogate is written as
+     * the one character they encode.
+     *
+     * @param data the input buffer, data[pos] is the backslash
+     * @param pos position of the backslash
+     * @param end end of the input available
+     * @param anyCase true to accept an upper case U as well
+     * @param out receives the decoded character
+     * @return the number of bytes consumed, or 0 when this is not a valid escape
+     * @throws IOException if the output cannot be written
+     */
+    protected static int decodeUnicodeEscape(final byte[] data, final int pos, final int end, final boolean anyCase, final Output out)
+            throws IOException {
+        if (pos + 5 >= end || !isU(data[pos + 1], anyCase)) {
+            return 0;
+        }
+        final int unit = hexValue(data, pos + 2, 4);
+        if (unit < 0) {
+            return 0;
+        }
+        if (Character.isHighSurrogate((char) unit) && pos + 11 < end && data[pos + 6] == '\\' && isU(data[pos + 7], anyCase)) {
+            final int low = hexValue(data, pos + 8, 4);
+            if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                out.writeCodePoint(Character.toCodePoint((char) unit, (char) low));
+                return 12;
+            }
+        }
+        out.writeCodePoint(unit);
+        return 6;
+    }
+
+    private static boolean isU(final byte b, final boolean anyCase) {
+        return b == 'u' || (anyCase && b == 'U');
+    }
+
+    /**
+     * Parse hex digits
+     *
+     * @param data the bytes
+     * @param from where the digits start
+     * @param length number of digits
+     * @return the value, or -1 if any byte is not a hex digit
+     */
+    protected static int hexValue(final byte[] data, final int from, final int length) {
+        int value = 0;
+        for (int i = from; i < from + length; i++) {
+            final int digit = Character.digit(data[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Decode everything readable from one channel into another. The buffers are sized to what is left of a seekable
+     * channel.
+     *
+     * @param in the escaped input, read to the end but not closed
+     * @param out receives the decoded output, not closed
+     * @param counters to measure what is changed, may be null
+     * @return the number of bytes written
+     * @throws IOException if either channel fails
+     */
+    public long decode(final ReadableByteChannel in, final WritableByteChannel out, @Nullable final CharacterCounterSet counters) throws IOException {
+        long inputSize = BUFFER_SIZE;
+        if (in instanceof SeekableByteChannel) {
+            final SeekableByteChannel channel = (SeekableByteChannel) in;
+            inputSize = channel.size() - channel.position();
+        }
+        return decode(in, out, counters, inputSize);
+    }
+
+    /**
+     * Decode with buffers sized for an input of about the given size. A wrong size only costs extra reads or writes.
+     */
+    private long decode(final ReadableByteChannel in, final WritableByteChannel out, @Nullable final CharacterCounterSet counters,
+            final long inputSize) throws IOException {
+        final byte trigger = trigger();
+        final int lookahead = maxEscapeLength();
+        final ByteBuffer input = ByteBuffer.allocate(bufferSize(inputSize, lookahead));
+        final byte[] data = input.array();
+        // decoding does not usually grow the bytes, and the output is flushed whenever it fills
+        final Output output = new Output(out, counters, bufferSize(inputSize, Output.MIN_SIZE));
+
+        boolean eof = false;
+        while (!eof || input.position() > 0) {
+            // fill the buffer so escapes near the end of it can be seen whole
+            while (!eof && input.hasRemaining()) {
+                if (in.read(input) < 0) {
+                    eof = true;
+                }
+            }
+            final int end = input.position();
+            final int safe = eof ? end : end - lookahead;
+            int pos = 0;
+            int run = 0;
+            while (pos < safe) {
+                if (data[pos] != trigger) {
+                    pos++;
+                    continue;
+                }
+                // write the plain bytes before the escape so output stays in order
+                if (run < pos) {
+                    output.write(data, run, pos - run);
+                }
+                final int consumed = decodeEscape(data, pos, end, output);
+                if (consumed == 0) {
+                    output.write(data[pos]);
+                    pos++;
+                } else {
+                    pos += consumed;
+                }
+                run = pos;
+            }
+            // copy the plain run and keep anything not yet decided for the next pass
+            if (run < pos) {
+                output.write(data, run, pos - run);
+            }
+            input.position(pos).limit(end);
+            input.compact();
+            if (eof && input.position() == 0) {
+                break;
+            }
+        }
+        output.flush();
+        return output.written;
+    }
+
+    /**
+     * Decode a payload into a new one, holding the output in memory up to a threshold and in a temporary file beyond it
+     *
+     * @param input the escaped payload
+     * @param spillThreshold bytes of output held in memory
+     * @param tempDir where a temporary file is made for larger output
+     * @param counters to measure what is changed, may be null
+     * @return the decoded payload
+     * @throws IOException if the payload cannot be read or the output cannot be written
+     * @see SpillChannelFactory
+     */
+    public SeekableByteChannelFactory decode(final SeekableByteChannelFactory input, final int spillThreshold, final Path tempDir,
+            @Nullable final CharacterCounterSet counters) throws IOException {
+        try (SeekableByteChannel in = input.create();
+                SpillChannelFactory.Writer out = SpillChannelFactory.writer(spillThreshold, tempDir)) {
+            decode(in, out, counters);
+            return out.toFactory();
+        }
+    }
+
+    /**
+     * Decode a whole array
+     *
+     * @param data the escaped bytes
+     * @param counters to measure what is changed, may be null
+     * @return the decoded bytes, empty for null input
+     */
+    public byte[] decode(@Nullable final byte[] data, @Nullable final CharacterCounterSet counters) {
+        if (data == null || data.length == 0) {
+            return new byte[0];
+        }
+        final ByteArrayOutput out = new ByteArrayOutput(data.length);
+        try {
+            decode(Channels.newChannel(new ByteArrayInputStream(data)), out, counters, data.length);
+        } catch (IOException e) {
+            // in memory channels do not fail
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a whole array without counting what was changed
+     *
+     * @param data the escaped bytes
+     * @return the decoded bytes, empty for null input
+     */
+    public byte[] decode(@Nullable final byte[] data) {
+        return decode(data, null);
+    }
+
+    /**
+     * Size of a buffer for an input of about the given size. One byte more than the input lets a single read reach the end
+     * of it, and twice the lookahead lets every pass make progress.
+     *
+     * @param inputSize bytes expected
+     * @param minimum half the smallest buffer allowed
+     * @return the buffer size, at most {@link #BUFFER_SIZE}
+     */
+    static int bufferSize(final long inputSize, final int minimum) {
+        return (int) Math.min(BUFFER_SIZE, Math.max(inputSize + 1, 2L * minimum));
+    }
+
+    /**
+     * Buffered UTF-8 output for decoded characters
+     */
+    protected static final class Output {
+        // room for the longest character
+        static final int MIN_SIZE = 4;
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] bytes;
+        @Nullable
+        private final CharacterCounterSet counters;
+        private long written = 0;
+
+        Output(final WritableByteChannel channel, @Nullable final CharacterCounterSet counters, final int size) {
+            this.channel = channel;
+            this.counters = counters;
+            this.buffer = ByteBuffer.allocate(size);
+            this.bytes = this.buffer.array();
+        }
+
+        /**
+         * Write one raw byte
+         */
+        public void write(final byte b) throws IOException {
+            if (!this.buffer.hasRemaining()) {
+                flush();
+            }
+            this.buffer.put(b);
+        }
+
+        /**
+         * Write raw bytes
+         */
+        public void write(final byte[] data, final int off, final int len) throws IOException {
+            int o = off;
+            int remaining = len;
+            while (remaining > 0) {
+                if (!this.buffer.hasRemaining()) {
+                    flush();
+                }
+                final int n = Math.min(remaining, this.buffer.remaining());
+                this.buffer.put(data, o, n);
+                o += n;
+                remaining -= n;
+            }
+        }
+
+        /**
+         * Write a decoded character as UTF-8 and count it. Unpaired surrogates are written as '?', as {@link String#getBytes()}
+         * does.
+         *
+         * @param codePoint the character
+         */
+        public void writeCodePoint(final int codePoint) throws IOException {
+            if (this.buffer.remaining() < 4) {
+                flush();
+            }
+            final int p = this.buffer.position();
+            final byte[] b = this.bytes;
+            if (codePoint < 0x80) {
+                b[p] = (byte) codePoint;
+                this.buffer.position(p + 1);
+            } else if (codePoint < 0x800) {
+                b[p] = (byte) (0xC0 | (codePoint >> 6));
+                b[p + 1] = (byte) (0x80 | (codePoint & 0x3F));
+                this.buffer.position(p + 2);
+            } else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+                b[p] = '?';
+                this.buffer.position(p + 1);
+            } else if (codePoint < 0x10000) {
+                b[p] = (byte) (0xE0 | (codePoint >> 12));
+                b[p + 1] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                b[p + 2] = (byte) (0x80 | (codePoint & 0x3F));
+                this.buffer.position(p + 3);
+            } else {
+                b[p] = (byte) (0xF0 | (codePoint >> 18));
+                b[p + 1] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                b[p + 2] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                b[p + 3] = (byte) (0x80 | (codePoint & 0x3F));
+                this.buffer.position(p + 4);
+            }
+            if (this.counters != null) {
+                this.counters.count(new String(Character.toChars(codePoint)));
+            }
+        }
+
+        /**
+         * Write a decoded value already encoded as UTF-8 and count it
+         *
+         * @param utf8 the encoded value
+         * @param value the value, for counting
+         */
+        public void writeDecoded(final byte[] utf8, final String value) throws IOException {
+            write(utf8, 0, utf8.length);
+            if (this.counters != null) {
+                this.counters.count(value);
+            }
+        }
+
+        void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.written += this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+    }
+
+    /**
+     * Growable in memory destination for whole array decoding
+     */
+    private static final class ByteArrayOutput implements WritableByteChannel {
+        private byte[] data;
+        private int count = 0;
+
+        ByteArrayOutput(final int size) {
+            this.data = new byte[size];
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            final int length = src.remaining();
+            if (this.count + length > this.data.length) {
+                this.data = Arrays.copyOf(this.data, Math.max(this.count + length, this.data.length * 2));
+            }
+            src.get(this.data, this.count, length);
+            this.count += length;
+            return length;
+        }
+
+        byte[] toByteArray() {
+            return this.count == this.data.length ? this.data : Arrays.copyOf(this.data, this.count);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
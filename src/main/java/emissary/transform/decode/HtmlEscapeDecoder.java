@@ -0,0 +1,192 @@
+package emissary.transform.decode;
+
+import emissary.util.ByteUtil;
+import emissary.util.HtmlEntityMap;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Decode numeric character references like <code>&amp;#xxxx;</code> and named entities like <code>&amp;nbsp;</code> in
+ * one pass.
+ * <p>
+ * This follows the rules of {@link HtmlEscape#unescapeHtml(byte[])} followed by
+ * {@link HtmlEscape#unescapeEntities(byte[])}, including the broken entity forms with an extra semicolon, a space
+ * instead of a semicolon, or no semicolon at the end of the data. The one difference is that the output of a numeric
+ * reference is not decoded again, so <code>&amp;#38;amp;</code> becomes <code>&amp;amp;</code> rather than
+ * <code>&amp;</code>.
+ */
+public class HtmlEscapeDecoder extends EscapeDecoder {
+
+    private static final int LONGEST_ENTITY_NAME = 33; // &CounterClockwiseContourIntegral;
+
+    private static final int LONGEST_NUMBER = 5;
+
+    private final EntityTable entities;
+
+    /**
+     * Create a decoder for the configured entities
+     */
+    public HtmlEscapeDecoder() {
+        this(new HtmlEntityMap());
+    }
+
+    /**
+     * Create a decoder for the entities in a map
+     *
+     * @param entityMap the entities to decode
+     */
+    public HtmlEscapeDecoder(final HtmlEntityMap entityMap) {
+        this.entities = new EntityTable(entityMap.getEntities());
+    }
+
+    @Override
+    protected byte trigger() {
+        return '&';
+    }
+
+    @Override
+    protected int maxEscapeLength() {
+        // an extra semicolon, the name and the terminator
+        return LONGEST_ENTITY_NAME + 3;
+    }
+
+    @Override
+    protected int decodeEscape(final byte[] data, final int pos, final int end, final Output out) throws IOException {
+        final int consumed = decodeNumber(data, pos, end, out);
+        return consumed > 0 ? consumed : decodeEntity(data, pos, end, out);
+    }
+
+    /**
+     * Decode <code>&amp;#nnnnn;</code> or <code>&amp;#xhhhhh;</code>
+     */
+    private static int decodeNumber(final byte[] data, final int pos, final int end, final Output out) throws IOException {
+        if (pos + 3 >= end || data[pos + 1] != '#') {
+            return 0;
+        }
+        int j = pos + 2;
+        final boolean isHex = data[j] == 'x' || data[j] == 'X';
+        if (isHex) {
+            j++;
+        }
+        final int start = j;
+        while (j < end && ByteUtil.isHexadecimal(data[j]) && j < start + LONGEST_NUMBER) {
+            j++;
+        }
+        if (j == start || j >= end || data[j] != ';') {
+            return 0;
+        }
+        int codePoint = 0;
+        for (int k = start; k < j; k++) {
+            final int digit = Character.digit(data[k], isHex ? 16 : 10);
+            if (digit < 0) {
+                return 0;
+            }
+            codePoint = codePoint * (isHex ? 16 : 10) + digit;
+        }
+        if (!Character.isValidCodePoint(codePoint)) {
+            return 0;
+        }
+        out.writeCodePoint(codePoint);
+        return j + 1 - pos;
+    }
+
+    /**
+     * Decode a named entity
+     */
+    private int decodeEntity(final byte[] data, final int pos, final int end, final Output out) throws IOException {
+        if (pos + 4 >= end) {
+            return 0;
+        }
+        int spos = pos;
+        int epos = nameEnd(data, spos, end);
+        if (epos == spos + 1) {
+            // broken case with extra semi-colon
+            spos++;
+            epos = nameEnd(data, spos, end);
+        }
+        final int slot = this.entities.find(data, spos + 1, epos);
+        if (slot < 0) {
+            return 0;
+        }
+        out.writeDecoded(this.entities.utf8[slot], this.entities.values[slot]);
+        if (epos >= end) {
+            return end - pos;
+        }
+        // a space used as the terminator stays in the output
+        return (data[epos] == ' ' ? epos : epos + 1) - pos;
+    }
+
+    private static int nameEnd(final byte[] data, final int spos, final int end) {
+        int epos = spos + 1;
+        while (epos < end && epos < spos + LONGEST_ENTITY_NAME && data[epos] != ';' && data[epos] != ' ') {
+            epos++;
+        }
+        return epos;
+    }
+
+    /**
+     * Open addressed lookup from entity name bytes to the encoded value, so no strings are made while scanning
+     */
+    private static final class EntityTable {
+        private final byte[][] names;
+        private final byte[][] utf8;
+        private final String[] values;
+        private final int mask;
+
+        EntityTable(final Map<String, String> entityMap) {
+            final int size = Integer.highestOneBit(Math.max(entityMap.size(), 1) * 2) << 1;
+            this.names = new byte[size][];
+            this.utf8 = new byte[size][];
+            this.values = new String[size];
+            this.mask = size - 1;
+            for (final Map.Entry<String, String> e : entityMap.entrySet()) {
+                final byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                int slot = hash(name, 0, name.length) & this.mask;
+                while (this.names[slot] != null) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.names[slot] = name;
+                this.utf8[slot] = e.getValue().getBytes(StandardCharsets.UTF_8);
+                this.values[slot] = e.getValue();
+            }
+        }
+
+        /**
+         * Find the slot of the name in data[from, to), or -1. A leading ampersand is ignored as
+         * {@link HtmlEntityMap#getValueForHtmlEntity(String)} does.
+         */
+        int find(final byte[] data, final int from, final int to) {
+            final int start = from < to && data[from] == '&' ? from + 1 : from;
+            int slot = hash(data, start, to) & this.mask;
+            while (this.names[slot] != null) {
+                if (matches(this.names[slot], data, start, to)) {
+                    return slot;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            return -1;
+        }
+
+        private static boolean matches(final byte[] name, final byte[] data, final int from, final int to) {
+            if (name.length != to - from) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != data[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(final byte[] data, final int from, final int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + data[i];
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
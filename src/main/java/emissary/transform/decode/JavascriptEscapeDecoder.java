@@ -0,0 +1,40 @@
+package emissary.transform.decode;
+
+import java.io.IOException;
+
+/**
+ * Decode javascript escapes in one pass: four digit unicode escapes with a lower case u, as browsers only accept, and
+ * the newline and carriage return escapes. An escaped surrogate pair is decoded as the one character it encodes.
+ */
+public class JavascriptEscapeDecoder extends EscapeDecoder {
+
+    @Override
+    protected byte trigger() {
+        return '\\';
+    }
+
+    @Override
+    protected int maxEscapeLength() {
+        // an escaped surrogate pair
+        return 12;
+    }
+
+    @Override
+    protected int decodeEscape(final byte[] data, final int pos, final int end, final Output out) throws IOException {
+        if (pos + 1 >= end) {
+            return 0;
+        }
+        switch (data[pos + 1]) {
+            case 'u':
+                return decodeUnicodeEscape(data, pos, end, false, out);
+            case 'n':
+                out.write((byte) '\n');
+                return 2;
+            case 'r':
+                out.write((byte) '\r');
+                return 2;
+            default:
+                return 0;
+        }
+    }
+}
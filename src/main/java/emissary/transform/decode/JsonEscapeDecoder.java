@@ -0,0 +1,66 @@
+package emissary.transform.decode;
+
+import java.io.IOException;
+
+/**
+ * Decode JSON backslash escapes in one pass: four digit unicode escapes with either case of u, up to three octal
+ * digits, and the single character escapes handled by {@link JsonEscape#unescape(byte[])}. An escaped surrogate pair is
+ * decoded as the one character it encodes.
+ */
+public class JsonEscapeDecoder extends EscapeDecoder {
+
+    @Override
+    protected byte trigger() {
+        return '\\';
+    }
+
+    @Override
+    protected int maxEscapeLength() {
+        // an escaped surrogate pair
+        return 12;
+    }
+
+    @Override
+    protected int decodeEscape(final byte[] data, final int pos, final int end, final Output out) throws IOException {
+        if (pos + 1 >= end) {
+            return 0;
+        }
+        final byte b = data[pos + 1];
+        if (b == 'u' || b == 'U') {
+            return decodeUnicodeEscape(data, pos, end, true, out);
+        }
+        if (isOctalDigit(b)) {
+            int j = pos + 1;
+            int value = 0;
+            while (j < end && j < pos + 4 && isOctalDigit(data[j])) {
+                value = value * 8 + (data[j] - '0');
+                j++;
+            }
+            out.writeCodePoint(value);
+            return j - pos;
+        }
+        switch (b) {
+            case 'n':
+                out.write((byte) '\n');
+                return 2;
+            case 't':
+                out.write((byte) '\t');
+                return 2;
+            case 'r':
+                out.write((byte) '\r');
+                return 2;
+            case '"':
+            case '\'':
+            case '/':
+            case '\\':
+                out.write(b);
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean isOctalDigit(final byte b) {
+        return b >= '0' && b <= '7';
+    }
+}
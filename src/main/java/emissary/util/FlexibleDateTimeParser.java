@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.text.ParsePosition;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -21,9 +22,12 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,6 +52,7 @@ public final class FlexibleDateTimeParser {
     private static final String CFG_TIMEZONE = "TIMEZONE";
     private static final String CFG_REMOVE_REGEX = "REMOVE_REGEX";
     private static final String CFG_EXTRA_TEXT_REMOVE_REGEX = "EXTRA_TEXT_REMOVE_REGEX";
+    private static final String CFG_SHAPE_CACHE_SIZE = "SHAPE_CACHE_SIZE";
     private static final String DEFAULT_TIMEZONE = "GMT";
     private static final String SPACE = " ";
     private static final String EMPTY = "";
@@ -76,6 +81,10 @@ public final class FlexibleDateTimeParser {
     /* Extra date time formats - list to try if our main list has failed - vars: FORMAT_DATETIME_EXTRA */
     private static final List<DateTimeFormatter> dateFormatsExtra;
 
+    /* Formats that can match each input shape, learned as we go - config var: SHAPE_CACHE_SIZE */
+    private static final ShapeIndex shapesMain;
+    private static final ShapeIndex shapesExtra;
+
     /* init */
     static {
         try {
@@ -95,6 +104,10 @@ public final class FlexibleDateTimeParser {
             // last ditch parsing effort if we failed to parse the string - remove all extra text after the numeric timezone offset
             String extraTextRemoveRegex = configurator.findStringEntry(CFG_EXTRA_TEXT_REMOVE_REGEX, "((\\+|-)\\d{4}).*$");
             extraTextRemove = Pattern.compile(extraTextRemoveRegex);
+
+            int shapeCacheSize = configurator.findIntEntry(CFG_SHAPE_CACHE_SIZE, 1024);
+            shapesMain = new ShapeIndex(dateFormatsMain, shapeCacheSize);
+            shapesExtra = new ShapeIndex(dateFormatsExtra, shapeCacheSize);
         } catch (IOException e) {
             throw new IllegalArgumentException("Could not configure parser!!", e);
         }
@@ -165,33 +178,83 @@ public final class FlexibleDateTimeParser {
         }
 
         for (DateTimeFormatter formatter : formats) {
-            if (formatter == null) {
+            if (formatter == null || !matchesSyntax(formatter, cleanedDateString)) {
                 continue;
             }
+            ZonedDateTime zdt = parseWith(formatter, cleanedDateString);
+            if (zdt != null) {
+                return zdt;
+            }
+        }
+        return null;
+    }
 
-            try {
-                // try for a zoned date (has timezone), local date time (no time zone), or just a local date (no time)
-                TemporalAccessor accessor =
-                        formatter.parseBest(cleanedDateString, ZonedDateTime::from, OffsetDateTime::from, LocalDateTime::from, LocalDate::from);
-                if (accessor instanceof ZonedDateTime) {
-                    return (ZonedDateTime) accessor; // return the date time w/ timezone
-                } else if (accessor instanceof OffsetDateTime) {
-                    return ((OffsetDateTime) accessor).atZoneSameInstant(timezone);
-                } else if (accessor instanceof LocalDateTime) {
-                    return ((LocalDateTime) accessor).atZone(timezone); // set the timezone
-                } else if (accessor instanceof LocalDate) {
-                    return ((LocalDate) accessor).atStartOfDay(timezone); // add zeroed out time
-                }
+    /* Private Methods */
 
-            } catch (NullPointerException | IllegalArgumentException | DateTimeParseException e) {
-                // Ignore b/c failures are expected -> set to trace otherwise will be noisy
-                logger.trace("Error parsing date {} with format {}", dateString, formatter);
+    /**
+     * Parse a cleaned date string with one format
+     *
+     * @param formatter the format to use
+     * @param cleanedDateString the scrubbed date string
+     * @return the parsed zoned-date, or null if it failed to parse
+     */
+    @Nullable
+    private static ZonedDateTime parseWith(final DateTimeFormatter formatter, final String cleanedDateString) {
+        try {
+            // try for a zoned date (has timezone), local date time (no time zone), or just a local date (no time)
+            TemporalAccessor accessor =
+                    formatter.parseBest(cleanedDateString, ZonedDateTime::from, OffsetDateTime::from, LocalDateTime::from, LocalDate::from);
+            if (accessor instanceof ZonedDateTime) {
+                return (ZonedDateTime) accessor; // return the date time w/ timezone
+            } else if (accessor instanceof OffsetDateTime) {
+                return ((OffsetDateTime) accessor).atZoneSameInstant(timezone);
+            } else if (accessor instanceof LocalDateTime) {
+                return ((LocalDateTime) accessor).atZone(timezone); // set the timezone
+            } else if (accessor instanceof LocalDate) {
+                return ((LocalDate) accessor).atStartOfDay(timezone); // add zeroed out time
             }
+
+        } catch (NullPointerException | IllegalArgumentException | DateTimeParseException e) {
+            // Ignore b/c failures are expected -> set to trace otherwise will be noisy
+            logger.trace("Error parsing date {} with format {}", cleanedDateString, formatter);
         }
         return null;
     }
 
-    /* Private Methods */
+    /**
+     * Check that the format can read the whole string without resolving any fields. This fails without building an
+     * exception, so most formats can be skipped cheaply before calling parseBest.
+     *
+     * @param formatter the format to check
+     * @param cleanedDateString the scrubbed date string
+     * @return true if the format consumes the whole string or may do so
+     */
+    private static boolean matchesSyntax(final DateTimeFormatter formatter, final String cleanedDateString) {
+        ParsePosition position = new ParsePosition(0);
+        try {
+            return formatter.parseUnresolved(cleanedDateString, position) != null && position.getErrorIndex() < 0
+                    && position.getIndex() == cleanedDateString.length();
+        } catch (DateTimeException e) {
+            // a few parsers range check digits, such as offset hours, so leave the decision to parseBest
+            return true;
+        }
+    }
+
+    /**
+     * Reduce a cleaned date string to its shape: ASCII digits become 9 and everything else is upper cased. The configured
+     * formats are all case-insensitive, so strings with the same shape only differ in their digit values.
+     *
+     * @param cleanedDateString the scrubbed date string
+     * @return the shape of the string
+     */
+    static String shapeOf(final String cleanedDateString) {
+        char[] shape = new char[cleanedDateString.length()];
+        for (int i = 0; i < shape.length; i++) {
+            char c = cleanedDateString.charAt(i);
+            shape[i] = (c >= '0' && c <= '9') ? '9' : Character.toUpperCase(c);
+        }
+        return new String(shape);
+    }
 
     /**
      * If all our formats failed to parse a date string, give it one last try to parse it. Look for a numeric offset (e.g.
@@ -225,14 +288,21 @@ public final class FlexibleDateTimeParser {
      * @param tryExtensiveParsing Whether to use the extensive set of date formats
      * @return The ZonedDateTime object if our parsing was successful, or null if not
      */
+    @Nullable
     private static ZonedDateTime parseToZonedDateTime(final String dateString, boolean tryExtensiveParsing) {
-        ZonedDateTime zdt = parse(dateString, dateFormatsMain);
+        String cleanedDateString = cleanDateString(dateString);
+        if (StringUtils.isBlank(cleanedDateString)) {
+            return null;
+        }
+
+        String shape = shapeOf(cleanedDateString);
+        ZonedDateTime zdt = shapesMain.parse(cleanedDateString, shape);
 
         // if we got a successful parse or we don't want to attempt "extensive parsing", return here
         if (!tryExtensiveParsing || zdt != null) {
             return zdt;
         }
-        zdt = parse(dateString, dateFormatsExtra);
+        zdt = shapesExtra.parse(cleanedDateString, shape);
         return zdt;
     }
 
@@ -329,4 +399,68 @@ public final class FlexibleDateTimeParser {
      */
     private FlexibleDateTimeParser() {}
 
+    /**
+     * A list of formats and, for each input shape seen so far, the positions of the formats whose syntax may match it. The
+     * first string of a shape is checked against every format, later strings of that shape only try the remembered formats,
+     * in configured order, so the first successful parse is the same one a full scan would find. Once the cache is full,
+     * new shapes are checked against every format but no longer remembered.
+     * <p>
+     * Reading the syntax does range check a few digit fields, such as offset hours, so a format that rejects "+9900" would
+     * still read "+0100". Only a failure the shape decides may drop a format, so a format is remembered if it matches the
+     * first string or the same string with every digit set to 0, which is within range for every field.
+     */
+    private static final class ShapeIndex {
+        private static final int[] NONE = new int[0];
+
+        private final DateTimeFormatter[] formats;
+        private final int maxShapes;
+        private final Map<String, int[]> candidatesByShape = new ConcurrentHashMap<>();
+
+        ShapeIndex(final List<DateTimeFormatter> formats, final int maxShapes) {
+            this.formats = formats.toArray(new DateTimeFormatter[0]);
+            this.maxShapes = maxShapes;
+        }
+
+        @Nullable
+        ZonedDateTime parse(final String cleanedDateString, final String shape) {
+            int[] candidates = candidatesByShape.get(shape);
+            if (candidates == null) {
+                candidates = findCandidates(cleanedDateString);
+                if (candidatesByShape.size() < maxShapes) {
+                    candidatesByShape.put(shape, candidates);
+                }
+            }
+
+            for (int candidate : candidates) {
+                ZonedDateTime zdt = parseWith(formats[candidate], cleanedDateString);
+                if (zdt != null) {
+                    return zdt;
+                }
+            }
+            return null;
+        }
+
+        private int[] findCandidates(final String cleanedDateString) {
+            String zeroed = zeroDigits(cleanedDateString);
+            int[] matched = new int[formats.length];
+            int count = 0;
+            for (int i = 0; i < formats.length; i++) {
+                if (matchesSyntax(formats[i], cleanedDateString) || matchesSyntax(formats[i], zeroed)) {
+                    matched[count++] = i;
+                }
+            }
+            return count == 0 ? NONE : Arrays.copyOf(matched, count);
+        }
+
+        private static String zeroDigits(final String cleanedDateString) {
+            char[] zeroed = cleanedDateString.toCharArray();
+            for (int i = 0; i < zeroed.length; i++) {
+                if (zeroed[i] >= '0' && zeroed[i] <= '9') {
+                    zeroed[i] = '0';
+                }
+            }
+            return new String(zeroed);
+        }
+    }
+
 }
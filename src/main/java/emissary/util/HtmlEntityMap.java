@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -51,6 +52,15 @@ public class HtmlEntityMap {
         return entityMap.get(entity);
     }
 
+    /**
+     * All configured entities, without ampersand and semicolon
+     * 
+     * @return an unmodifiable view of entity names to values
+     */
+    public Map<String, String> getEntities() {
+        return Collections.unmodifiableMap(entityMap);
+    }
+
     public void dumpTestPage(PrintStream out) {
         out.println("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" \"http://www.w3.org/TR/xhtml1/DTD/xhtml11-strict.dtd\">");
         out.println("<html lang='en'>");
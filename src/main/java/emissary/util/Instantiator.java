@@ -0,0 +1,18 @@
+package emissary.util;
+
+/**
+ * Creates instances of one class through one of its constructors, see {@link InstantiatorCache}
+ */
+@FunctionalInterface
+public interface Instantiator {
+
+    /**
+     * Create a new instance
+     *
+     * @param args the constructor arguments, in the types the instantiator was made for
+     * @return the new instance
+     * @throws Throwable anything the constructor throws, unwrapped
+     */
+    @SuppressWarnings("AvoidObjectArrays")
+    Object newInstance(Object... args) throws Throwable;
+}
@@ -0,0 +1,103 @@
+package emissary.util;
+
+import jakarta.annotation.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches an {@link Instantiator} for each class and set of constructor argument types, so the constructor of objects
+ * that are created over and over is only looked up once.
+ *
+ * <p>
+ * The constructor is found once with {@link ConstructorLookupCache}, so only public constructors are used, and is
+ * called by reflection. Unlike the other lookup caches this one is shared by all threads.
+ */
+@SuppressWarnings("AvoidObjectArrays")
+public final class InstantiatorCache {
+
+    private static final Map<Signature, Instantiator> cache = new ConcurrentHashMap<>();
+
+    /**
+     * A class and the argument types it will be constructed with
+     */
+    private static final class Signature {
+        private final Class<?> clazz;
+        private final Class<?>[] argTypes;
+        private final int hash;
+
+        private Signature(final Class<?> clazz, final Class<?>[] argTypes) {
+            this.clazz = clazz;
+            this.argTypes = argTypes;
+            this.hash = 31 * clazz.hashCode() + Arrays.hashCode(argTypes);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            final Signature other = (Signature) o;
+            return this.clazz.equals(other.clazz) && Arrays.equals(this.argTypes, other.argTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    private InstantiatorCache() {}
+
+    /**
+     * Get the instantiator for a class and the argument types that will be passed to it, making it on first use
+     *
+     * @param clazz the class to create instances of
+     * @param argTypes the argument types, a null entry matches any reference type as with {@link ConstructorLookupCache}
+     * @return the instantiator, or null if the class has no matching public constructor
+     */
+    @Nullable
+    public static Instantiator lookup(final Class<?> clazz, final Class<?>... argTypes) {
+        final Signature signature = new Signature(clazz, argTypes);
+        final Instantiator cached = cache.get(signature);
+        if (cached != null) {
+            return cached;
+        }
+        final Constructor<?> constructor = ConstructorLookupCache.lookup(clazz, argTypes);
+        if (constructor == null) {
+            return null;
+        }
+        final Instantiator made = reflect(constructor);
+        final Instantiator raced = cache.putIfAbsent(new Signature(clazz, argTypes.clone()), made);
+        return raced == null ? made : raced;
+    }
+
+    /**
+     * Drop all cached instantiators
+     */
+    public static void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Make an instantiator that calls a constructor by reflection. Exceptions from the constructor are thrown as they are.
+     *
+     * @param constructor the constructor
+     * @return an instantiator calling the constructor
+     */
+    public static Instantiator reflect(final Constructor<?> constructor) {
+        return args -> {
+            try {
+                return constructor.newInstance(args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+    }
+}
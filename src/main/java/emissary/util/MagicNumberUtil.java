@@ -2,6 +2,7 @@ package emissary.util;
 
 import emissary.util.magic.MagicNumber;
 import emissary.util.magic.MagicNumberFactory;
+import emissary.util.magic.MagicNumberIndex;
 import emissary.util.shell.Executrix;
 
 import org.slf4j.Logger;
@@ -82,6 +83,9 @@ public final class MagicNumberUtil {
     /** The magic number instances */
     private final List<MagicNumber> magicNumbers = new ArrayList<>();
 
+    /** Lookup over the magic numbers, rebuilt on each load */
+    private MagicNumberIndex index = MagicNumberFactory.buildMagicNumberIndex(this.magicNumbers);
+
     /**
      * Log flag for storing parse errors - they will just be discarded. Switching this on will allow erroneous entries to be
      * logged and can be retrieved using the method getErrorLog to find out which entries had parsing errors. Using the
@@ -162,15 +166,7 @@ public final class MagicNumberUtil {
      */
     public String describe(final byte[] data) {
         log.debug("Checking against {} magic items", this.magicNumbers.size());
-        String description = null;
-        for (final MagicNumber item : this.magicNumbers) {
-            log.debug("Checking magic item {}", item);
-            description = item.describe(data);
-            if (description != null && !description.isEmpty()) {
-                break;
-            }
-        }
-        return description;
+        return this.index.describe(data);
     }
 
     /**
@@ -285,6 +281,7 @@ public final class MagicNumberUtil {
         }
         this.magicNumbers.addAll(MagicNumberFactory.buildMagicNumberList(Executrix.readDataFromFile(config.getAbsolutePath()), mErrorList,
                 mExtErrorMap, swallowParseException));
+        this.index = MagicNumberFactory.buildMagicNumberIndex(this.magicNumbers);
     }
 
     /**
@@ -300,6 +297,7 @@ public final class MagicNumberUtil {
             mExtErrorMap = this.extErrorMap;
         }
         this.magicNumbers.addAll(MagicNumberFactory.buildMagicNumberList(configData, mErrorList, mExtErrorMap));
+        this.index = MagicNumberFactory.buildMagicNumberIndex(this.magicNumbers);
     }
 
     public int size() {
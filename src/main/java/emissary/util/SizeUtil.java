@@ -1,9 +1,12 @@
 package emissary.util;
 
 import emissary.core.IBaseDataObject;
+import emissary.core.channels.SeekableByteChannelFactory;
 
 import jakarta.annotation.Nullable;
 
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -206,16 +209,32 @@ public class SizeUtil {
             totalSize += ibdo.header().length;
         }
 
-        // Size up the alternative views
-        for (Map.Entry<String, byte[]> altView : ibdo.getAlternateViews().entrySet()) {
-            if (altView.getValue() != null) {
-                totalSize += altView.getValue().length;
+        // Size up the alternative views, taking the size of those held in channels
+        // the same way as the primary view rather than reading them in
+        final Map<String, SeekableByteChannelFactory> channelViews = ibdo.getAlternateViewChannelFactories();
+        for (final String name : ibdo.getAlternateViewNames()) {
+            final SeekableByteChannelFactory sbcf = channelViews.get(name);
+            if (sbcf != null) {
+                totalSize += getChannelSize(sbcf);
+            } else {
+                final byte[] altView = ibdo.getAlternateView(name);
+                if (altView != null) {
+                    totalSize += altView.length;
+                }
             }
         }
 
         return totalSize;
     }
 
+    private static long getChannelSize(final SeekableByteChannelFactory sbcf) {
+        try (SeekableByteChannel sbc = sbcf.create()) {
+            return sbc.size();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
     /** This class is not meant to be instantiated. */
     private SizeUtil() {}
 }
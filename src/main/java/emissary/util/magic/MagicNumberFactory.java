@@ -163,6 +163,17 @@ public class MagicNumberFactory {
         return magicNumberList;
     }
 
+    /**
+     * Build a lookup structure over a list of top level magic numbers, as made by buildMagicNumberList, so that a sample is
+     * only tested against the entries that can match it.
+     *
+     * @param magicNumbers the magic numbers in the order they should be tried
+     * @return the index
+     */
+    public static MagicNumberIndex buildMagicNumberIndex(List<MagicNumber> magicNumbers) {
+        return new MagicNumberIndex(magicNumbers);
+    }
+
     /**
      * Private method for parsing entries and storing them into the target storage data structure which is a list.
      *
@@ -0,0 +1,158 @@
+package emissary.util.magic;
+
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lookup structure over a list of top level magic numbers that only tests the entries that can match a sample.
+ * <p>
+ * Entries that compare for equality against a literal at a fixed offset can only match when the sample holds the first
+ * byte of that literal at that offset. Those entries are bucketed in a jump table per offset keyed by that byte. All
+ * other entries (ranges, negations, substitutions) are tested for every sample. Candidates are tested in the original
+ * list order, so the description returned is the same as walking the whole list.
+ */
+public final class MagicNumberIndex {
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    /** All entries in load order */
+    private final MagicNumber[] entries;
+
+    /** Offsets that have a jump table, ascending */
+    private final int[] offsets;
+
+    /** For each offset, positions of the entries keyed by the first byte of their value */
+    private final int[][][] jumpTables;
+
+    /** Positions of entries that cannot be bucketed */
+    private final int[] unindexed;
+
+    MagicNumberIndex(final List<MagicNumber> magicNumbers) {
+        this.entries = magicNumbers.toArray(new MagicNumber[0]);
+
+        final Map<Integer, List<List<Integer>>> byOffset = new TreeMap<>();
+        final List<Integer> other = new ArrayList<>();
+        for (int i = 0; i < this.entries.length; i++) {
+            final MagicNumber item = this.entries[i];
+            if (isIndexable(item)) {
+                final List<List<Integer>> table = byOffset.computeIfAbsent(item.offset, k -> new ArrayList<>(256));
+                if (table.isEmpty()) {
+                    for (int b = 0; b < 256; b++) {
+                        table.add(null);
+                    }
+                }
+                final int key = item.value[0] & 0xFF;
+                if (table.get(key) == null) {
+                    table.set(key, new ArrayList<>(1));
+                }
+                table.get(key).add(i);
+            } else {
+                other.add(i);
+            }
+        }
+
+        this.offsets = new int[byOffset.size()];
+        this.jumpTables = new int[byOffset.size()][][];
+        int o = 0;
+        for (final Map.Entry<Integer, List<List<Integer>>> e : byOffset.entrySet()) {
+            this.offsets[o] = e.getKey();
+            final int[][] table = new int[256][];
+            for (int b = 0; b < 256; b++) {
+                final List<Integer> positions = e.getValue().get(b);
+                table[b] = positions == null ? NO_POSITIONS : toArray(positions);
+            }
+            this.jumpTables[o++] = table;
+        }
+        this.unindexed = toArray(other);
+    }
+
+    /**
+     * Only an exact comparison against a non-empty literal tells us which byte must sit at the offset
+     */
+    private static boolean isIndexable(final MagicNumber item) {
+        return !item.substitute && item.value != null && item.value.length > 0 && item.offset >= 0
+                && (item.unaryOperator == MagicNumber.MAGICOPERATOR_AND || item.unaryOperator == MagicNumber.MAGICOPERATOR_BWAND);
+    }
+
+    private static int[] toArray(final List<Integer> list) {
+        final int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Number of entries in the index
+     */
+    public int size() {
+        return this.entries.length;
+    }
+
+    /**
+     * Number of entries that are tested against every sample
+     */
+    public int unindexedSize() {
+        return this.unindexed.length;
+    }
+
+    /**
+     * Describe the sample with the first entry that gives a non-empty description. When none does the result of the last
+     * entry is returned, as walking the whole list would.
+     *
+     * @param data the sample
+     * @return the description, or null or empty when nothing matched
+     */
+    @Nullable
+    public String describe(@Nullable final byte[] data) {
+        if (this.entries.length == 0) {
+            return null;
+        }
+        if (data != null) {
+            for (final int position : candidates(data)) {
+                final String description = this.entries[position].describe(data);
+                if (description != null && !description.isEmpty()) {
+                    return description;
+                }
+            }
+        }
+        return this.entries[this.entries.length - 1].describe(data);
+    }
+
+    /**
+     * Positions of the entries that may match the sample, in load order
+     */
+    int[] candidates(final byte[] data) {
+        int count = this.unindexed.length;
+        final int[][] buckets = new int[this.offsets.length][];
+        int used = 0;
+        for (int o = 0; o < this.offsets.length; o++) {
+            final int offset = this.offsets[o];
+            if (offset >= data.length) {
+                // offsets are ascending
+                break;
+            }
+            final int[] bucket = this.jumpTables[o][data[offset] & 0xFF];
+            if (bucket.length > 0) {
+                buckets[used++] = bucket;
+                count += bucket.length;
+            }
+        }
+
+        final int[] positions = Arrays.copyOf(this.unindexed, count);
+        int next = this.unindexed.length;
+        for (int b = 0; b < used; b++) {
+            System.arraycopy(buckets[b], 0, positions, next, buckets[b].length);
+            next += buckets[b].length;
+        }
+        if (used > 0) {
+            Arrays.sort(positions);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,530 @@
+package emissary.util.roll;
+
+import emissary.util.io.FileNameGenerator;
+
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link RollableFileOutputStream} that does no file I/O on the writing threads. Each write claims the next slot of a
+ * staging ring with a single atomic increment, copies its bytes there and publishes the slot. A dedicated flusher
+ * thread drains published slots to the file with gathering writes, and rolls the file itself when it reaches a size or
+ * age limit. Callers of {@link #roll()}, {@link #flush()} and {@link #close()} wait for the flusher instead of taking a
+ * lock the writers need, so writers only ever wait when the ring is full.
+ * <p>
+ * Every write takes exactly one slot, so the bytes of one write are never interleaved with another thread's. Writes
+ * larger than a slot are copied into their own array. Bytes sit in the ring for at most the flush interval, and are
+ * only forced to disk when a sync option is set. If the flusher hits an I/O error, the bytes still in the ring are lost
+ * and every later call throws that error.
+ */
+public class BufferedRollableFileOutputStream extends RollableFileOutputStream {
+    private static final Logger LOG = LoggerFactory.getLogger(BufferedRollableFileOutputStream.class);
+
+    /** Gathering writes are limited to this many buffers, the usual IOV_MAX */
+    private static final int MAX_BATCH = 1024;
+
+    /** Spins before a writer waiting for a full ring starts parking, none when the flusher needs the only core */
+    private static final int FULL_RING_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 100 : 0;
+
+    private static final long MIN_FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private static final long MAX_FULL_RING_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final AtomicInteger FLUSHER_COUNT = new AtomicInteger();
+
+    /**
+     * Added to {@link #claimed} by {@link #close()}, so every write either claimed its slot before the close and is
+     * written, or sees this bit in its sequence number and fails
+     */
+    private static final long CLOSED = 1L << 62;
+
+    private enum Kind {
+        FLUSH, ROLL, CLOSE
+    }
+
+    /** Work a caller hands to the flusher once everything written before the request is in the file */
+    private static final class Request {
+        final Kind kind;
+        final long target;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Request(Kind kind, long target) {
+            this.kind = kind;
+            this.target = target;
+        }
+    }
+
+    private final int slotSize;
+    private final int mask;
+    private final byte[][] slots;
+    private final ByteBuffer[] slotViews;
+    /** Copies of writes too large for their slot, cleared once written */
+    private final byte[][] oversized;
+    private final int[] lengths;
+    /** The sequence number last published in each slot */
+    private final AtomicLongArray published;
+    /** The next sequence number a writer will claim */
+    private final AtomicLong claimed = new AtomicLong();
+    /** The next sequence number the flusher will write. Every slot before it is free. */
+    private volatile long consumed;
+
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final boolean syncOnRoll;
+    private final long syncIntervalMillis;
+    private final long flushIntervalNanos;
+
+    private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Thread flusher;
+    private volatile boolean sleeping;
+    private volatile boolean done;
+    @Nullable
+    private volatile IOException failure;
+
+    /** Bytes in the current file, kept by the flusher */
+    private volatile long fileBytes;
+    private long firstWriteMillis;
+    private long lastSyncMillis;
+    private boolean unsynced;
+
+    BufferedRollableFileOutputStream(Builder builder) throws IOException {
+        super(builder.namegen, builder.dir);
+        this.slotSize = builder.slotSize;
+        this.mask = builder.slots - 1;
+        this.slots = new byte[builder.slots][builder.slotSize];
+        this.slotViews = new ByteBuffer[builder.slots];
+        for (int i = 0; i < builder.slots; i++) {
+            this.slotViews[i] = ByteBuffer.wrap(this.slots[i]);
+        }
+        this.oversized = new byte[builder.slots][];
+        this.lengths = new int[builder.slots];
+        this.published = new AtomicLongArray(builder.slots);
+        for (int i = 0; i < builder.slots; i++) {
+            this.published.set(i, -1L);
+        }
+        this.maxBytes = builder.maxBytes;
+        this.maxAgeMillis = builder.maxAgeMillis;
+        this.syncOnRoll = builder.syncOnRoll;
+        this.syncIntervalMillis = builder.syncIntervalMillis;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushIntervalMillis);
+        this.lastSyncMillis = System.currentTimeMillis();
+        this.flusher = new Thread(this::runFlusher, "RollableFileOutputStream-Flusher-" + FLUSHER_COUNT.incrementAndGet());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static Builder builder(FileNameGenerator namegen, File dir) {
+        return new Builder(namegen, dir);
+    }
+
+    /**
+     * Stage a byte for the flusher
+     *
+     * @param b byte to write
+     */
+    @Override
+    public void write(int b) throws IOException {
+        final long seq = claim();
+        final int i = (int) seq & mask;
+        slots[i][0] = (byte) b;
+        lengths[i] = 1;
+        publish(seq, i);
+    }
+
+    /**
+     * Stage a byte array for the flusher. The bytes are copied before this returns.
+     *
+     * @param b the data
+     * @param off the start offset of the data
+     * @param len the number of bytes to write
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return;
+        }
+        final long seq = claim();
+        final int i = (int) seq & mask;
+        if (len <= slotSize) {
+            System.arraycopy(b, off, slots[i], 0, len);
+        } else {
+            oversized[i] = Arrays.copyOfRange(b, off, off + len);
+        }
+        lengths[i] = len;
+        publish(seq, i);
+    }
+
+    private long claim() throws IOException {
+        checkOpen();
+        final long seq = claimed.getAndIncrement();
+        if (seq >= CLOSED) {
+            throw new IOException("Stream closed");
+        }
+        if (seq - consumed > mask) {
+            awaitSlot(seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Wait for the flusher to free the slot for a sequence number. Writers back off rather than spin, since spinning
+     * writers would take the CPU the flusher needs to free the slot.
+     */
+    private void awaitSlot(long seq) throws IOException {
+        LockSupport.unpark(flusher);
+        int spins = 0;
+        long parkNanos = MIN_FULL_RING_PARK_NANOS;
+        while (seq - consumed > mask) {
+            if (done) {
+                checkOpen();
+                throw new IOException("Stream closed");
+            }
+            if (spins < FULL_RING_SPINS) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos * 2, MAX_FULL_RING_PARK_NANOS);
+            }
+        }
+    }
+
+    private void publish(long seq, int i) {
+        published.set(i, seq);
+        if (sleeping && seq - consumed >= (mask + 1) / 2) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Flusher failed", failure);
+        }
+        if (closed.get()) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Wait until everything written before this call is in the file.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        await(submit(Kind.FLUSH, claimed.get() & ~CLOSED));
+    }
+
+    /**
+     * Rolls current file once everything written before this call is in it. Writes made meanwhile go on without waiting,
+     * into whichever file is open when the flusher reaches them.
+     */
+    @Override
+    public void roll() {
+        try {
+            await(submit(Kind.ROLL, claimed.get() & ~CLOSED));
+        } catch (IOException e) {
+            LOG.error("Exception during roll of " + currentFile, e);
+        }
+    }
+
+    /**
+     * Writes out everything staged, closes the file and renames it to its final name. A new file is NOT opened, and the
+     * flusher thread stops. A write racing the close either goes into the file or throws, it is never silently dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            await(submit(Kind.CLOSE, claimed.getAndAdd(CLOSED)));
+        } finally {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (fileOutputStream != null) {
+                // the flusher failed before it could close the file
+                closeAndRename();
+                fileOutputStream = null;
+                currentFile = null;
+            }
+        }
+    }
+
+    private Request submit(Kind kind, long target) {
+        final Request request = new Request(kind, target);
+        requests.add(request);
+        if (done) {
+            // the flusher has stopped and may not have seen this request
+            request.done.completeExceptionally(failure != null ? failure : new IOException("Stream closed"));
+        }
+        LockSupport.unpark(flusher);
+        return request;
+    }
+
+    private static void await(Request request) throws IOException {
+        try {
+            request.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + request.kind);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Number of bytes written to current output file by the flusher. This value is reset once the file rolls.
+     *
+     * @return the number of bytes written
+     */
+    @Override
+    public long getBytesWritten() {
+        return fileBytes;
+    }
+
+    private void runFlusher() {
+        final ByteBuffer[] batch = new ByteBuffer[MAX_BATCH];
+        try {
+            boolean running = true;
+            while (running) {
+                final int drained = drain(batch);
+                running = handleRequests();
+                if (running) {
+                    checkLimits();
+                    if (drained == 0) {
+                        sleeping = true;
+                        if (published.get((int) consumed & mask) != consumed && requests.isEmpty()) {
+                            LockSupport.parkNanos(this, flushIntervalNanos);
+                        }
+                        sleeping = false;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Flusher failed for {}, staged bytes are lost", currentFile, e);
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+        } finally {
+            done = true;
+            for (Request request; (request = requests.poll()) != null;) {
+                request.done.completeExceptionally(failure != null ? failure : new IOException("Stream closed"));
+            }
+        }
+    }
+
+    /**
+     * Write out the published slots at the head of the ring
+     *
+     * @return the number of slots written
+     */
+    private int drain(ByteBuffer[] batch) throws IOException {
+        final long first = consumed;
+        long next = first;
+        int count = 0;
+        long total = 0;
+        while (count < batch.length) {
+            final int i = (int) next & mask;
+            if (published.get(i) != next) {
+                break;
+            }
+            final ByteBuffer view = oversized[i] != null ? ByteBuffer.wrap(oversized[i]) : slotViews[i].clear().limit(lengths[i]);
+            batch[count++] = view;
+            total += view.remaining();
+            next++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final FileChannel channel = fileOutputStream.getChannel();
+        int offset = 0;
+        for (long remaining = total; remaining > 0;) {
+            remaining -= channel.write(batch, offset, count - offset);
+            while (offset < count && !batch[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        for (long seq = first; seq < next; seq++) {
+            oversized[(int) seq & mask] = null;
+        }
+        Arrays.fill(batch, 0, count, null);
+        if (fileBytes == 0) {
+            firstWriteMillis = System.currentTimeMillis();
+        }
+        bytesWritten += total;
+        fileBytes = bytesWritten;
+        unsynced = true;
+        // frees the slots for writers
+        consumed = next;
+        return count;
+    }
+
+    /**
+     * Carry out the requests whose bytes are all written
+     *
+     * @return false once the stream is closed
+     */
+    private boolean handleRequests() throws IOException {
+        for (Request request = requests.peek(); request != null && consumed >= request.target; request = requests.peek()) {
+            requests.poll();
+            try {
+                if (request.kind == Kind.ROLL) {
+                    rollFile();
+                } else if (request.kind == Kind.CLOSE) {
+                    if (syncOnRoll || syncIntervalMillis > 0) {
+                        sync();
+                    }
+                    closeAndRename();
+                    fileOutputStream = null;
+                    currentFile = null;
+                    fileBytes = 0;
+                    request.done.complete(null);
+                    return false;
+                }
+                request.done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                request.done.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    private void checkLimits() throws IOException {
+        final long now = System.currentTimeMillis();
+        if (fileBytes > 0 && ((maxBytes > 0 && fileBytes >= maxBytes) || (maxAgeMillis > 0 && now - firstWriteMillis >= maxAgeMillis))) {
+            rollFile();
+        }
+        if (syncIntervalMillis > 0 && unsynced && now - lastSyncMillis >= syncIntervalMillis) {
+            sync();
+        }
+    }
+
+    private void rollFile() throws IOException {
+        rolling = true;
+        try {
+            if (syncOnRoll) {
+                sync();
+            }
+            closeAndRename();
+            fileBytes = 0;
+            open();
+        } finally {
+            rolling = false;
+        }
+    }
+
+    private void sync() throws IOException {
+        fileOutputStream.getChannel().force(false);
+        lastSyncMillis = System.currentTimeMillis();
+        unsynced = false;
+    }
+
+    public static class Builder {
+        private final FileNameGenerator namegen;
+        private final File dir;
+        private int slots = 2048;
+        private int slotSize = 4096;
+        private long maxBytes;
+        private long maxAgeMillis;
+        private boolean syncOnRoll;
+        private long syncIntervalMillis;
+        private long flushIntervalMillis = 10;
+
+        Builder(FileNameGenerator namegen, File dir) {
+            this.namegen = namegen;
+            this.dir = dir;
+        }
+
+        /**
+         * Number of writes the ring can hold before writers wait for the flusher. Must be a power of two.
+         */
+        public Builder withSlots(int slots) {
+            if (slots < 2 || Integer.bitCount(slots) != 1) {
+                throw new IllegalArgumentException("Slots must be a power of two, not " + slots);
+            }
+            this.slots = slots;
+            return this;
+        }
+
+        /**
+         * Largest write copied into the ring itself. Larger writes get their own copy.
+         */
+        public Builder withSlotSize(int slotSize) {
+            if (slotSize < 1) {
+                throw new IllegalArgumentException("Slot size must be positive, not " + slotSize);
+            }
+            this.slotSize = slotSize;
+            return this;
+        }
+
+        /**
+         * Roll once the file holds at least this many bytes, or never if 0
+         */
+        public Builder withMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Roll once this long has passed since the first byte went into the file, or never if 0
+         */
+        public Builder withMaxAge(long maxAge, TimeUnit unit) {
+            this.maxAgeMillis = unit.toMillis(maxAge);
+            return this;
+        }
+
+        /**
+         * Force the file to disk before it is renamed on a roll or close
+         */
+        public Builder withSyncOnRoll(boolean syncOnRoll) {
+            this.syncOnRoll = syncOnRoll;
+            return this;
+        }
+
+        /**
+         * Force written bytes to disk at least this often, or only as the OS chooses if 0
+         */
+        public Builder withSyncInterval(long interval, TimeUnit unit) {
+            this.syncIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Longest that bytes wait in the ring while it is less than half full
+         */
+        public Builder withFlushInterval(long interval, TimeUnit unit) {
+            this.flushIntervalMillis = Math.max(1, unit.toMillis(interval));
+            return this;
+        }
+
+        public BufferedRollableFileOutputStream build() throws IOException {
+            return new BufferedRollableFileOutputStream(this);
+        }
+    }
+}
@@ -73,7 +73,7 @@ public class RollableFileOutputStream extends OutputStream implements Rollable {
         }
     }
 
-    private void open() throws IOException {
+    void open() throws IOException {
         File newFile = getNewFile();
         currentFile = newFile;
         fileOutputStream = new FileOutputStream(newFile, true);
@@ -90,7 +90,7 @@ public class RollableFileOutputStream extends OutputStream implements Rollable {
         return new File(dir, dotFile);
     }
 
-    private void closeAndRename() throws IOException {
+    void closeAndRename() throws IOException {
         fileOutputStream.flush();
         if (!internalClose(fileOutputStream)) {
             LOG.error("Error closing file {}", currentFile.getAbsolutePath());
@@ -152,7 +152,7 @@ public class RollableFileOutputStream extends OutputStream implements Rollable {
         return rolling;
     }
 
-    private static boolean internalClose(@Nullable Closeable c) {
+    static boolean internalClose(@Nullable Closeable c) {
         try {
             if (c != null) {
                 c.close();
@@ -0,0 +1,661 @@
+package emissary.util.search;
+
+import jakarta.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+
+/**
+ * Multi-keyword scanner built on an Aho-Corasick automaton stored as a double-array trie.
+ * <p>
+ * Keywords are compiled once into an immutable automaton. Bytes that occur in a keyword are mapped to a compact
+ * alphabet, and transitions are kept in two int arrays rather than a table of 256 pointers per state, so large keyword
+ * lists stay small. When the automaton is small enough, a complete transition table is also built so each byte costs a
+ * single lookup instead of a walk along failure links. Every scan keeps its own position and state, so one instance can
+ * be shared by any number of threads. Calling {@link #loadKeywords(String[])} compiles a new automaton and swaps it in;
+ * scans already running finish with the old one.
+ * <p>
+ * Hits are reported in the order they end in the data, and for hits ending at the same place, shortest keyword first,
+ * which is the order {@link MultiKeywordScanner} uses. The offset of a {@link Hit} is where the keyword starts.
+ * <p>
+ * The {@link IMultiKeywordScanner} findNext methods that carry on from the last call remember where they stopped per
+ * thread. Use {@link #newScan()} to scan data that arrives in pieces, or
+ * {@link #scan(SeekableByteChannel, long, Handler)} to scan a channel.
+ */
+@SuppressWarnings("AvoidObjectArrays")
+public class AhoCorasickScanner implements IMultiKeywordScanner {
+
+    /** Size of the reads made when scanning a channel */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final Automaton EMPTY = new Automaton(new String[0]);
+
+    private volatile Automaton automaton = EMPTY;
+
+    /** Where the findNext methods carry on from, per thread */
+    private final ThreadLocal<Cursor> cursor = ThreadLocal.withInitial(Cursor::new);
+
+    /**
+     * Receives hits from a streaming scan
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * Called for each hit
+         *
+         * @param offset where the keyword starts, counted from the start of the scan
+         * @param id the position of the keyword in the list it was loaded from
+         * @return true to keep scanning, false to stop
+         */
+        boolean hit(long offset, int id);
+    }
+
+    public AhoCorasickScanner() {}
+
+    /**
+     * Create a scanner with keywords already loaded
+     *
+     * @param keywords the keywords to find
+     */
+    public AhoCorasickScanner(final String[] keywords) {
+        loadKeywords(keywords);
+    }
+
+    /**
+     * Compile a new set of keywords. Keyword ids are their positions in the array.
+     *
+     * @param keywords the keywords to find, none of them empty
+     * @throws IllegalArgumentException if a keyword is null or empty
+     */
+    @Override
+    public void loadKeywords(final String[] keywords) {
+        this.automaton = new Automaton(keywords);
+    }
+
+    /**
+     * Number of keywords loaded
+     */
+    public int keywordCount() {
+        return this.automaton.lengths.length;
+    }
+
+    /**
+     * Number of states in the compiled automaton
+     */
+    public int stateCount() {
+        return this.automaton.stateCount;
+    }
+
+    @Override
+    public HitList findAll(@Nullable final byte[] data) {
+        if (data != null) {
+            return findAll(data, 0, data.length);
+        }
+        return new HitList();
+    }
+
+    @Override
+    public HitList findAll(@Nullable final byte[] data, final int start) {
+        if (data != null) {
+            return findAll(data, start, data.length);
+        }
+        return new HitList();
+    }
+
+    /**
+     * Find all keywords that lie wholly inside the range
+     *
+     * @param data the bytes to scan
+     * @param start first position a keyword may start at
+     * @param stop position all keywords must end before
+     * @return the hits, offsets are positions in data
+     */
+    @Override
+    public HitList findAll(@Nullable final byte[] data, final int start, final int stop) {
+        final HitList hits = new HitList();
+        if (data != null) {
+            final Scan scan = new Scan(this.automaton, start);
+            scan.feed(data, start, Math.min(stop, data.length) - start, (offset, id) -> hits.add(new Hit((int) offset, id)));
+        }
+        return hits;
+    }
+
+    /**
+     * Find all keywords in a channel
+     *
+     * @param channel the channel to read, its position is moved
+     * @return the hits, offsets are positions in the channel
+     * @throws IOException if the channel cannot be read
+     * @throws IllegalArgumentException if the channel is too large for hit offsets
+     */
+    public HitList findAll(final SeekableByteChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Channel too large for HitList offsets, use scan with a Handler");
+        }
+        final HitList hits = new HitList();
+        scan(channel, 0L, (offset, id) -> hits.add(new Hit((int) offset, id)));
+        return hits;
+    }
+
+    @Override
+    public HitList findNext() {
+        final Cursor c = this.cursor.get();
+        if (c.data != null) {
+            return findNext(c.data, c.next, c.data.length);
+        }
+        return new HitList();
+    }
+
+    @Override
+    public HitList findNext(@Nullable final byte[] data) {
+        if (data != null) {
+            return findNext(data, this.cursor.get().next, data.length);
+        }
+        return new HitList();
+    }
+
+    @Override
+    public HitList findNext(@Nullable final byte[] data, final int start) {
+        if (data != null) {
+            return findNext(data, start, data.length);
+        }
+        return new HitList();
+    }
+
+    /**
+     * Find the keywords ending at the first place in the range where any keyword ends. The next call to {@link #findNext()}
+     * or {@link #findNext(byte[])} on this thread carries on after that place.
+     *
+     * @param data the bytes to scan
+     * @param start first position a keyword may start at
+     * @param stop position all keywords must end before
+     * @return the hits, offsets are positions in data
+     */
+    @Override
+    public HitList findNext(@Nullable final byte[] data, final int start, final int stop) {
+        final HitList hits = new HitList();
+        final Cursor c = this.cursor.get();
+        if (data == null) {
+            return hits;
+        }
+        final int end = Math.min(stop, data.length);
+        final Scan scan = new Scan(this.automaton, start);
+        final int[] stoppedAt = {end};
+        scan.feed(data, start, end - start, (offset, id) -> {
+            final int hitEnd = (int) scan.position() - 1;
+            if (hits.isEmpty() || stoppedAt[0] == hitEnd) {
+                stoppedAt[0] = hitEnd;
+                hits.add(new Hit((int) offset, id));
+                return true;
+            }
+            return false;
+        });
+        if (hits.isEmpty()) {
+            // nothing left, drop the reference to the data
+            c.data = null;
+            c.next = end;
+        } else {
+            c.data = data;
+            c.next = stoppedAt[0] + 1;
+        }
+        return hits;
+    }
+
+    /**
+     * Start a scan over data that will be supplied in pieces. Keywords that span pieces are found.
+     *
+     * @return a new scan starting at offset zero
+     */
+    public Scan newScan() {
+        return new Scan(this.automaton, 0L);
+    }
+
+    /**
+     * Scan a channel from a position to the end, reading {@link #DEFAULT_CHUNK_SIZE} bytes at a time
+     *
+     * @param channel the channel to read, its position is moved
+     * @param start the position in the channel to start at
+     * @param handler receives the hits, offsets are positions in the channel
+     * @throws IOException if the channel cannot be read
+     */
+    public void scan(final SeekableByteChannel channel, final long start, final Handler handler) throws IOException {
+        scan(channel, start, DEFAULT_CHUNK_SIZE, handler);
+    }
+
+    /**
+     * Scan a channel from a position to the end
+     *
+     * @param channel the channel to read, its position is moved
+     * @param start the position in the channel to start at
+     * @param chunkSize number of bytes to read at a time
+     * @param handler receives the hits, offsets are positions in the channel
+     * @throws IOException if the channel cannot be read
+     */
+    public void scan(final SeekableByteChannel channel, final long start, final int chunkSize, final Handler handler) throws IOException {
+        final Scan scan = new Scan(this.automaton, start);
+        final ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        channel.position(start);
+        while (!scan.isStopped() && channel.read(buffer) >= 0) {
+            buffer.flip();
+            scan.feed(buffer.array(), 0, buffer.limit(), handler);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * The state of one scan. Not thread-safe, but cheap to create, so make one per scan.
+     */
+    public static final class Scan {
+        private final Automaton automaton;
+        private final int[] chain;
+        private int state = Automaton.ROOT;
+        private long position;
+        private boolean stopped = false;
+
+        Scan(final Automaton automaton, final long position) {
+            this.automaton = automaton;
+            this.chain = new int[automaton.maxLength + 1];
+            this.position = position;
+        }
+
+        /**
+         * Offset of the next byte to be fed
+         */
+        public long position() {
+            return this.position;
+        }
+
+        /**
+         * True once a handler has asked to stop
+         */
+        public boolean isStopped() {
+            return this.stopped;
+        }
+
+        /**
+         * Scan the next piece of data
+         *
+         * @param data buffer holding the piece
+         * @param off where the piece starts in the buffer
+         * @param len length of the piece
+         * @param handler receives the hits
+         * @return false if the handler asked to stop
+         */
+        public boolean feed(final byte[] data, final int off, final int len, final Handler handler) {
+            if (this.stopped) {
+                return false;
+            }
+            final Automaton a = this.automaton;
+            final int[] report = a.report;
+            final long startPosition = this.position - off;
+            int s = this.state;
+            final int end = off + len;
+            for (int i = off; i < end; i++) {
+                s = a.next(s, data[i]);
+                if (report[s] != Automaton.ROOT) {
+                    this.position = startPosition + i + 1;
+                    if (!emit(a, s, handler)) {
+                        this.stopped = true;
+                        this.state = s;
+                        return false;
+                    }
+                }
+            }
+            this.position = startPosition + end;
+            this.state = s;
+            return true;
+        }
+
+        /**
+         * Report every keyword ending at the state, shortest first
+         */
+        private boolean emit(final Automaton a, final int s, final Handler handler) {
+            int n = 0;
+            for (int t = a.report[s]; t != Automaton.ROOT; t = a.report[a.fail[t]]) {
+                this.chain[n++] = t;
+            }
+            while (n > 0) {
+                final int t = this.chain[--n];
+                final long offset = this.position - a.depth[t];
+                for (int o = a.outputStart[t]; o < a.outputStart[t + 1]; o++) {
+                    if (!handler.hit(offset, a.outputs[o])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Where the findNext methods carry on from
+     */
+    private static final class Cursor {
+        @Nullable
+        byte[] data;
+        int next;
+    }
+
+    /**
+     * The compiled keywords. Never changes once built.
+     */
+    static final class Automaton {
+        static final int ROOT = 0;
+        private static final int FREE = -1;
+        /** Largest complete transition table built, 4MB */
+        private static final int MAX_DENSE_ENTRIES = 1 << 20;
+
+        /** Compact alphabet, 0 for bytes in no keyword */
+        private final int[] alphabet = new int[256];
+        /** Complete transition table indexed by state shifted left plus code, when small enough to hold */
+        @Nullable
+        private final int[] dense;
+        private final int denseShift;
+        private int[] base;
+        private int[] check;
+        private final int[] fail;
+        /** Nearest state on the fail chain, itself included, where a keyword ends, or root */
+        private final int[] report;
+        private final int[] depth;
+        private final int[] outputStart;
+        private final int[] outputs;
+        private final int[] lengths;
+        private final int maxLength;
+        private final int stateCount;
+        private int nextCheckPos = 1;
+
+        Automaton(final String[] keywordStrings) {
+            this(keywordStrings, MAX_DENSE_ENTRIES);
+        }
+
+        /**
+         * @param keywordStrings the keywords
+         * @param maxDenseEntries largest complete transition table to build
+         */
+        Automaton(final String[] keywordStrings, final int maxDenseEntries) {
+            final int count = keywordStrings.length;
+            final byte[][] keywords = new byte[count][];
+            int longest = 0;
+            for (int i = 0; i < count; i++) {
+                if (keywordStrings[i] == null || keywordStrings[i].isEmpty()) {
+                    throw new IllegalArgumentException("Keyword " + i + " is null or empty");
+                }
+                keywords[i] = keywordStrings[i].getBytes();
+                longest = Math.max(longest, keywords[i].length);
+                for (final byte b : keywords[i]) {
+                    this.alphabet[b & 0xFF] = 1;
+                }
+            }
+            this.maxLength = longest;
+            this.lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                this.lengths[i] = keywords[i].length;
+            }
+            int code = 0;
+            for (int b = 0; b < 256; b++) {
+                if (this.alphabet[b] != 0) {
+                    this.alphabet[b] = ++code;
+                }
+            }
+
+            // sort by code sequence so every state is a contiguous range, prefixes sort first and duplicates keep id order
+            final Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing((Integer i) -> keywords[i], this::compareCodes));
+
+            final int initial = Math.max(256, count * 4);
+            this.base = new int[initial];
+            this.check = new int[initial];
+            Arrays.fill(this.check, FREE);
+            this.check[ROOT] = ROOT;
+
+            // place states breadth first, remembering the order, parent and incoming code of each
+            int[] bfs = new int[initial];
+            int[] parent = new int[initial];
+            int[] via = new int[initial];
+            int[] terminalFirst = new int[initial];
+            int[] terminalLast = new int[initial];
+            int[] stateDepth = new int[initial];
+            int states = 1;
+            final Deque<int[]> queue = new ArrayDeque<>();
+            queue.add(new int[] {ROOT, 0, 0, count});
+            int[] codes = new int[code + 1];
+            int placed = 0;
+            while (!queue.isEmpty()) {
+                final int[] item = queue.poll();
+                final int s = item[0];
+                final int d = item[1];
+                int lo = item[2];
+                final int hi = item[3];
+                if (placed == bfs.length) {
+                    bfs = Arrays.copyOf(bfs, placed * 2);
+                }
+                bfs[placed++] = s;
+
+                // keywords ending here sort first
+                int termEnd = lo;
+                while (termEnd < hi && keywords[order[termEnd]].length == d) {
+                    termEnd++;
+                }
+                if (s >= terminalFirst.length) {
+                    final int size = Math.max(s + 1, terminalFirst.length * 2);
+                    terminalFirst = Arrays.copyOf(terminalFirst, size);
+                    terminalLast = Arrays.copyOf(terminalLast, size);
+                    stateDepth = Arrays.copyOf(stateDepth, size);
+                    parent = Arrays.copyOf(parent, size);
+                    via = Arrays.copyOf(via, size);
+                }
+                terminalFirst[s] = lo;
+                terminalLast[s] = termEnd;
+                stateDepth[s] = d;
+                lo = termEnd;
+                if (lo == hi) {
+                    continue;
+                }
+
+                // distinct child codes and the range of keywords under each
+                int n = 0;
+                final int[] starts = new int[code + 2];
+                for (int k = lo; k < hi; k++) {
+                    final int c = codeAt(keywords[order[k]], d);
+                    if (n == 0 || codes[n - 1] != c) {
+                        codes[n] = c;
+                        starts[n] = k;
+                        n++;
+                    }
+                }
+                starts[n] = hi;
+                final int b = place(codes, n);
+                this.base[s] = b;
+                for (int j = 0; j < n; j++) {
+                    final int t = b + codes[j];
+                    this.check[t] = s;
+                    states++;
+                    if (t >= parent.length) {
+                        final int size = Math.max(t + 1, parent.length * 2);
+                        terminalFirst = Arrays.copyOf(terminalFirst, size);
+                        terminalLast = Arrays.copyOf(terminalLast, size);
+                        stateDepth = Arrays.copyOf(stateDepth, size);
+                        parent = Arrays.copyOf(parent, size);
+                        via = Arrays.copyOf(via, size);
+                    }
+                    parent[t] = s;
+                    via[t] = codes[j];
+                    queue.add(new int[] {t, d + 1, starts[j], starts[j + 1]});
+                }
+            }
+            this.stateCount = states;
+
+            // trim to the highest used slot
+            int size = this.check.length;
+            while (size > 1 && this.check[size - 1] == FREE) {
+                size--;
+            }
+            // leave room for base + code lookups past the end to be range checked only once
+            this.base = Arrays.copyOf(this.base, size);
+            this.check = Arrays.copyOf(this.check, size);
+
+            // failure links in breadth first order
+            this.fail = new int[size];
+            this.report = new int[size];
+            this.depth = new int[size];
+            this.outputStart = new int[size + 1];
+            int total = 0;
+            for (int i = 0; i < size; i++) {
+                this.outputStart[i] = total;
+                if (this.check[i] != FREE && i < terminalLast.length) {
+                    total += terminalLast[i] - terminalFirst[i];
+                }
+            }
+            this.outputStart[size] = total;
+            this.outputs = new int[total];
+            for (int i = 0; i < size; i++) {
+                if (this.check[i] != FREE && i < terminalLast.length) {
+                    this.depth[i] = stateDepth[i];
+                    for (int k = terminalFirst[i]; k < terminalLast[i]; k++) {
+                        this.outputs[this.outputStart[i] + k - terminalFirst[i]] = order[k];
+                    }
+                }
+            }
+            for (int i = 0; i < placed; i++) {
+                final int s = bfs[i];
+                if (s == ROOT) {
+                    continue;
+                }
+                final int p = parent[s];
+                if (p == ROOT) {
+                    this.fail[s] = ROOT;
+                } else {
+                    int f = this.fail[p];
+                    int t = transition(f, via[s]);
+                    while (t < 0 && f != ROOT) {
+                        f = this.fail[f];
+                        t = transition(f, via[s]);
+                    }
+                    this.fail[s] = t < 0 ? ROOT : t;
+                }
+                this.report[s] = this.outputStart[s + 1] > this.outputStart[s] ? s : this.report[this.fail[s]];
+            }
+            // a table lookup per byte beats walking failure links when the table stays small
+            this.denseShift = 32 - Integer.numberOfLeadingZeros(code);
+            if (((long) size << this.denseShift) <= maxDenseEntries) {
+                this.dense = new int[size << this.denseShift];
+                for (int i = 0; i < size; i++) {
+                    if (this.check[i] != FREE) {
+                        for (int c = 0; c <= code; c++) {
+                            this.dense[(i << this.denseShift) | c] = follow(i, c);
+                        }
+                    }
+                }
+            } else {
+                this.dense = null;
+            }
+        }
+
+        private int compareCodes(final byte[] a, final byte[] b) {
+            final int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; i++) {
+                final int diff = codeAt(a, i) - codeAt(b, i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return a.length - b.length;
+        }
+
+        private int codeAt(final byte[] keyword, final int i) {
+            return this.alphabet[keyword[i] & 0xFF];
+        }
+
+        /**
+         * Find a base where every child slot is free, growing the arrays as needed
+         */
+        private int place(final int[] codes, final int n) {
+            int pos = Math.max(codes[0] + 1, this.nextCheckPos) - 1;
+            int nonFree = 0;
+            boolean first = true;
+            int b;
+            outer: while (true) {
+                pos++;
+                ensureCapacity(pos + 1);
+                if (this.check[pos] != FREE) {
+                    nonFree++;
+                    continue;
+                }
+                if (first) {
+                    this.nextCheckPos = pos;
+                    first = false;
+                }
+                b = pos - codes[0];
+                ensureCapacity(b + codes[n - 1] + 1);
+                for (int j = 1; j < n; j++) {
+                    if (this.check[b + codes[j]] != FREE) {
+                        continue outer;
+                    }
+                }
+                break;
+            }
+            // skip past densely packed regions on later searches
+            if (nonFree >= 0.95 * (pos - this.nextCheckPos + 1)) {
+                this.nextCheckPos = pos;
+            }
+            return b;
+        }
+
+        private void ensureCapacity(final int size) {
+            if (size > this.check.length) {
+                final int old = this.check.length;
+                final int grown = Math.max(size, old * 2);
+                this.base = Arrays.copyOf(this.base, grown);
+                this.check = Arrays.copyOf(this.check, grown);
+                Arrays.fill(this.check, old, grown, FREE);
+            }
+        }
+
+        /**
+         * Goto function, or -1 when there is no edge
+         */
+        private int transition(final int s, final int c) {
+            final int t = this.base[s] + c;
+            return t < this.check.length && this.check[t] == s && t != ROOT ? t : -1;
+        }
+
+        /**
+         * Next state after reading a byte, following failure links as needed
+         */
+        int next(final int state, final byte b) {
+            final int c = this.alphabet[b & 0xFF];
+            if (this.dense != null) {
+                return this.dense[(state << this.denseShift) | c];
+            }
+            return follow(state, c);
+        }
+
+        boolean isDense() {
+            return this.dense != null;
+        }
+
+        private int follow(final int state, final int c) {
+            if (c == 0) {
+                return ROOT;
+            }
+            int s = state;
+            while (s != ROOT) {
+                final int t = this.base[s] + c;
+                if (t < this.check.length && this.check[t] == s) {
+                    return t;
+                }
+                s = this.fail[s];
+            }
+            final int t = transition(ROOT, c);
+            return t < 0 ? ROOT : t;
+        }
+    }
+}
@@ -115,7 +115,7 @@ public class FastBoyerMoore {
                 state = state.nextStates[ch2];
                 curPos--;
             }
-            if ((state != null) && (curPos == -1)) {
+            if ((state != null) && (state.matches != null) && (curPos == -1)) {
                 for (int i = 0; i < state.matches.length; i++) {
                     final int id = state.matches[i];
                     final int[] tmp = new int[3];
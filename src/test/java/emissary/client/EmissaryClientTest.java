@@ -114,4 +114,22 @@ class EmissaryClientTest extends UnitTest {
         assertEquals(Timeout.ofMilliseconds(valueInCfgOnClasspath), new EmissaryClient().getConnectionConfig().getConnectTimeout());
     }
 
+    @Test
+    // the client still honours the deprecated per request connect timeout
+    @SuppressWarnings("deprecation")
+    void testWithTimeout() {
+        EmissaryClient.configure();
+        EmissaryClient client = new EmissaryClient();
+        EmissaryClient bounded = client.withTimeout(Timeout.ofSeconds(30));
+        RequestConfig requestConfig = bounded.getRequestConfig();
+        assertEquals(Timeout.ofSeconds(30), requestConfig.getConnectTimeout());
+        assertEquals(Timeout.ofSeconds(30), requestConfig.getResponseTimeout());
+        assertEquals(Timeout.ofSeconds(30), requestConfig.getConnectionRequestTimeout());
+        assertEquals(client.getRequestConfig().getTargetPreferredAuthSchemes(), requestConfig.getTargetPreferredAuthSchemes());
+
+        // a shorter wait for the pool is kept
+        bounded = client.withTimeout(Timeout.ofMinutes(20));
+        assertEquals(Timeout.ofMinutes(5), bounded.getRequestConfig().getConnectionRequestTimeout());
+        assertEquals(Timeout.ofMinutes(20), bounded.getRequestConfig().getResponseTimeout());
+    }
 }
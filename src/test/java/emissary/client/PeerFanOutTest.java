@@ -0,0 +1,208 @@
+package emissary.client;
+
+import emissary.client.response.MapResponseEntity;
+import emissary.test.core.junit5.UnitTest;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PeerFanOutTest extends UnitTest {
+
+    private ExecutorService executor;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    public void startExecutor() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    private Function<String, MapResponseEntity> answer(long delayMillis) {
+        return url -> {
+            calls.incrementAndGet();
+            try {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            MapResponseEntity entity = new MapResponseEntity();
+            entity.addKeyValue(url, "ok");
+            return entity;
+        };
+    }
+
+    @Test
+    void testPeersCalledConcurrently() {
+        PeerFanOut fanOut = new PeerFanOut(5000, 0, executor);
+        List<String> peers = Arrays.asList("peer1", "peer2", "peer3", "peer4", "peer5");
+        MapResponseEntity response = new MapResponseEntity();
+        long start = System.nanoTime();
+        fanOut.collect(response, peers, answer(400));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(5, response.getResponse().size());
+        assertTrue(response.getErrors().isEmpty());
+        assertTrue(elapsed < 5 * 400, "Peers should not be called one after another, took " + elapsed + " ms");
+    }
+
+    @Test
+    void testSlowPeerGivesPartialResults() {
+        PeerFanOut fanOut = new PeerFanOut(300, 0, executor);
+        MapResponseEntity response = new MapResponseEntity();
+        fanOut.collect(response, Arrays.asList("fast", "slow"), url -> answer("slow".equals(url) ? 5000 : 0).apply(url));
+
+        assertEquals(Collections.singletonMap("fast", "ok"), response.getResponse());
+        assertEquals(1, response.getErrors().size());
+        assertTrue(response.getErrors().iterator().next().startsWith("slow: no response within 300 ms"));
+    }
+
+    @Test
+    void testFailingPeerReportedAsError() {
+        PeerFanOut fanOut = new PeerFanOut(1000, 0, executor);
+        MapResponseEntity response = new MapResponseEntity();
+        fanOut.collect(response, Arrays.asList("good", "bad", "empty"), url -> {
+            if ("bad".equals(url)) {
+                throw new IllegalStateException("connection refused");
+            }
+            return "empty".equals(url) ? null : answer(0).apply(url);
+        });
+
+        assertEquals(Collections.singletonMap("good", "ok"), response.getResponse());
+        assertEquals(2, response.getErrors().size());
+        assertTrue(response.getErrors().contains("bad: java.lang.IllegalStateException: connection refused"));
+        assertTrue(response.getErrors().contains("empty: no response"));
+    }
+
+    @Test
+    void testAnswersCachedForTtl() {
+        AtomicLong now = new AtomicLong();
+        PeerFanOut fanOut = new PeerFanOut(1000, 2000, executor, now::get);
+        List<String> peers = Arrays.asList("peer1", "peer2");
+
+        fanOut.collect(new MapResponseEntity(), peers, answer(0));
+        assertEquals(2, calls.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1999));
+        MapResponseEntity cached = new MapResponseEntity();
+        fanOut.collect(cached, peers, answer(0));
+        assertEquals(2, calls.get(), "Answers should come from the cache");
+        assertEquals(2, cached.getResponse().size());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        fanOut.collect(new MapResponseEntity(), peers, answer(0));
+        assertEquals(4, calls.get(), "Expired answers should be fetched again");
+
+        fanOut.clearCache();
+        fanOut.collect(new MapResponseEntity(), peers, answer(0));
+        assertEquals(6, calls.get());
+    }
+
+    @Test
+    void testFailuresNotCached() {
+        PeerFanOut fanOut = new PeerFanOut(1000, 60000, executor);
+        Function<String, MapResponseEntity> failing = url -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("down");
+        };
+        fanOut.collect(new MapResponseEntity(), Collections.singletonList("peer"), failing);
+        fanOut.collect(new MapResponseEntity(), Collections.singletonList("peer"), failing);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testCallsInFlightShared() throws InterruptedException {
+        PeerFanOut fanOut = new PeerFanOut(5000, 0, executor);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, MapResponseEntity> blocked = url -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return answer(0).apply(url);
+        };
+
+        MapResponseEntity first = new MapResponseEntity();
+        MapResponseEntity second = new MapResponseEntity();
+        Thread poller1 = new Thread(() -> fanOut.collect(first, Collections.singletonList("peer"), blocked));
+        Thread poller2 = new Thread(() -> fanOut.collect(second, Collections.singletonList("peer"), blocked));
+        poller1.start();
+        poller2.start();
+        TimeUnit.MILLISECONDS.sleep(200);
+        release.countDown();
+        poller1.join();
+        poller2.join();
+
+        assertEquals(1, calls.get(), "Both polls should share one call");
+        assertEquals("ok", first.getResponse().get("peer"));
+        assertEquals("ok", second.getResponse().get("peer"));
+    }
+
+    @Test
+    void testHungCallReplacedAfterTimeout() throws InterruptedException {
+        AtomicLong now = new AtomicLong();
+        PeerFanOut fanOut = new PeerFanOut(200, 60000, executor, now::get);
+        CountDownLatch hung = new CountDownLatch(1);
+        Function<String, MapResponseEntity> hangs = url -> {
+            calls.incrementAndGet();
+            try {
+                hung.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return answer(0).apply(url);
+        };
+
+        MapResponseEntity first = new MapResponseEntity();
+        fanOut.collect(first, Collections.singletonList("peer"), hangs);
+        assertTrue(first.getErrors().iterator().next().startsWith("peer: no response within 200 ms"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(199));
+        fanOut.collect(new MapResponseEntity(), Collections.singletonList("peer"), hangs);
+        assertEquals(1, calls.get(), "A call still inside the timeout should be shared");
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        MapResponseEntity retried = new MapResponseEntity();
+        fanOut.collect(retried, Collections.singletonList("peer"), answer(0));
+        assertEquals(2, calls.get(), "A call running past the timeout should be replaced");
+        assertEquals("ok", retried.getResponse().get("peer"));
+        assertTrue(retried.getErrors().isEmpty());
+        hung.countDown();
+    }
+
+    @Test
+    // the client still honours the deprecated per request connect timeout
+    @SuppressWarnings("deprecation")
+    void testClientTimesOutWithPeers() {
+        PeerFanOut fanOut = new PeerFanOut(1500, 0, executor);
+        EmissaryClient base = new EmissaryClient();
+        EmissaryClient client = fanOut.client(base);
+        RequestConfig config = client.getRequestConfig();
+        assertEquals(Timeout.ofMilliseconds(1500), config.getConnectTimeout());
+        assertEquals(Timeout.ofMilliseconds(1500), config.getResponseTimeout());
+        assertEquals(Timeout.ofMilliseconds(1500), config.getConnectionRequestTimeout());
+        assertSame(base.getHttpClient(), client.getHttpClient());
+    }
+}
@@ -191,6 +191,72 @@ class ServiceConfigGuideTest extends UnitTest {
             }
         }
         assertTrue(seenBar1 && seenBar2, "Must preserve multiple values for same key");
+
+        assertEquals(4, c.findStringMatchList("FOO_").size(), "Stripping keys must not change the configuration");
+        assertEquals("BAR ONE", c.findStringEntry("FOO_ONE"));
+    }
+
+    @Test
+    void testStringMatchEntriesKeepConfigOrder() {
+        final ServiceConfigGuide c = new ServiceConfigGuide();
+        c.addEntry("FOO_B", "1");
+        c.addEntry("FOOD", "2");
+        c.addEntry("FOO_A", "3");
+        c.addEntry("FO", "4");
+        c.addEntry("FOO_B", "5");
+
+        final List<String> values = new ArrayList<>();
+        for (final ConfigEntry e : c.findStringMatchEntries("FOO_")) {
+            values.add(e.getValue());
+        }
+        assertEquals(List.of("1", "3", "5"), values);
+        assertEquals(5, c.findStringMatchEntries("F").size());
+        assertTrue(c.findStringMatchEntries("BAR").isEmpty());
+    }
+
+    @Test
+    void testSnapshotFollowsChanges() throws IOException {
+        final ServiceConfigGuide c = new ServiceConfigGuide();
+        c.addEntry("FOO", "BAR");
+        c.addEntry("NUM", "12");
+        final ConfigSnapshot before = c.getSnapshot();
+        assertEquals(12, c.findIntEntry("NUM", 0));
+        assertEquals(12L, c.findLongEntry("NUM", 0L));
+
+        c.addEntry("FOO", "BAZ");
+        assertEquals(List.of("BAR", "BAZ"), c.findEntries("FOO"));
+        assertEquals("BAZ", c.findLastStringEntry("FOO"));
+        assertEquals(List.of("BAR"), before.values("FOO"), "Snapshot must not change");
+
+        c.removeEntry("FOO", "BAR");
+        assertEquals("BAZ", c.findStringEntry("FOO"));
+
+        c.removeAllEntries("FOO");
+        assertNull(c.findStringEntry("FOO"));
+        assertEquals("", c.findLastStringEntry("FOO"));
+
+        final ServiceConfigGuide other = new ServiceConfigGuide();
+        other.addEntry("NUM", "13");
+        c.merge(other);
+        assertEquals(13, c.findIntEntry("NUM", 0), "Merged entries go first");
+        assertEquals(Set.of("NUM"), c.entryKeys());
+    }
+
+    @Test
+    void testTypedLookupsWithBadValues() {
+        final ServiceConfigGuide c = new ServiceConfigGuide();
+        c.addEntry("NUM", "twelve");
+        c.addEntry("FLAG", "maybe");
+        c.addEntry("RATE", "0.5");
+        for (int i = 0; i < 2; i++) {
+            assertEquals(7, c.findIntEntry("NUM", 7));
+            assertEquals(7L, c.findLongEntry("NUM", 7L));
+            assertEquals(1.5, c.findDoubleEntry("NUM", 1.5));
+            assertEquals(0.5, c.findDoubleEntry("RATE", 1.5));
+            assertTrue(c.findBooleanEntry("FLAG", true));
+            assertFalse(c.findBooleanEntry("FLAG", false));
+            assertTrue(c.findBooleanEntry("MISSING", true));
+        }
     }
 
     @Test
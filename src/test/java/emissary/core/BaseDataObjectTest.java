@@ -1,5 +1,6 @@
 package emissary.core;
 
+import emissary.core.channels.ExceptionChannelFactory;
 import emissary.core.channels.FillChannelFactory;
 import emissary.core.channels.InMemoryChannelFactory;
 import emissary.core.channels.SeekableByteChannelFactory;
@@ -49,6 +50,7 @@ import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -378,6 +380,88 @@ class BaseDataObjectTest extends UnitTest {
         assertEquals("more stuff", new String(this.b.getAlternateView("T1")), "Appended alternate view contents");
     }
 
+    @Test
+    void testAlternateViewChannelFactory() {
+        final SeekableByteChannelFactory sbcf = InMemoryChannelFactory.create("alternate view".getBytes());
+        this.b.addAlternateView("T1", "abcd".getBytes());
+        this.b.setAlternateViewChannelFactory("T2", sbcf);
+
+        assertEquals(2, this.b.getNumAlternateViews(), "Channel views are counted");
+        assertEquals(new TreeSet<>(List.of("T1", "T2")), this.b.getAlternateViewNames(), "Channel views are named");
+        assertSame(sbcf, this.b.getAlternateViewChannelFactories().get("T2"), "Channel view is held as given");
+        assertEquals(1, this.b.getAlternateViewChannelFactories().size(), "Array views are not channel views");
+
+        assertEquals("alternate view", new String(this.b.getAlternateView("T2")), "Channel view read as an array");
+        assertTrue(this.b.getAlternateViewChannelFactories().isEmpty(), "Channel view kept as an array once read");
+        assertSame(this.b.getAlternateView("T2"), this.b.getAlternateView("T2"), "Array read once");
+
+        this.b.setAlternateViewChannelFactory("T1", null);
+        assertNull(this.b.getAlternateView("T1"), "View removed");
+    }
+
+    @Test
+    void testAlternateViewChannelFactoryOfArrayView() throws IOException {
+        this.b.addAlternateView("T1", "alternate view".getBytes());
+        final SeekableByteChannelFactory sbcf = this.b.getAlternateViewChannelFactory("T1");
+        assertArrayEquals("alternate view".getBytes(), SeekableByteChannelHelper.getByteArrayFromChannel(sbcf, 100), "Array view as a channel");
+        assertNull(this.b.getAlternateViewChannelFactory("NOSUCHVIEW"), "No such view");
+    }
+
+    @Test
+    void testAppendAlternateViewSegments() throws IOException {
+        final StringBuilder expected = new StringBuilder("start");
+        this.b.addAlternateView("T1", "start".getBytes());
+        for (int i = 0; i < 50; i++) {
+            this.b.appendAlternateView("T1", (" " + i).getBytes());
+            expected.append(' ').append(i);
+        }
+        this.b.appendAlternateView("T1", FillChannelFactory.create(3, (byte) 'x'));
+        expected.append("xxx");
+        this.b.appendAlternateView("T1", "xx end xx".getBytes(), 2, 4);
+        expected.append(" end");
+
+        final SeekableByteChannelFactory sbcf = this.b.getAlternateViewChannelFactories().get("T1");
+        assertNotNull(sbcf, "Appended view is held as a channel");
+        assertEquals(expected.toString(), new String(SeekableByteChannelHelper.getByteArrayFromChannel(sbcf, 1000)), "Appended segments");
+        assertEquals(expected.toString(), new String(this.b.getAlternateViews().get("T1")), "Appended view as an array");
+    }
+
+    @Test
+    void testAddAlternateViewReplacesChannelView() {
+        this.b.setAlternateViewChannelFactory("T1", InMemoryChannelFactory.create("channel".getBytes()));
+        this.b.addAlternateView("T1", "array".getBytes());
+        assertTrue(this.b.getAlternateViewChannelFactories().isEmpty(), "Channel view replaced");
+        assertEquals("array", new String(this.b.getAlternateView("T1")), "Array view");
+        assertEquals(1, this.b.getNumAlternateViews(), "One view");
+    }
+
+    @Test
+    void testUnreadableAlternateViewChannel() {
+        this.b.setAlternateViewChannelFactory("T1", new ExceptionChannelFactory());
+        assertNull(this.b.getAlternateView("T1"), "Unreadable view");
+        assertEquals(1, this.b.getNumAlternateViews(), "Unreadable view is kept");
+    }
+
+    @Test
+    void testDefaultAlternateViewChannelMethods() throws IOException {
+        final IBaseDataObject ibdo = Mockito.mock(IBaseDataObject.class, Mockito.CALLS_REAL_METHODS);
+        Mockito.doReturn("array".getBytes()).when(ibdo).getAlternateView("T1");
+        Mockito.doNothing().when(ibdo).addAlternateView(Mockito.anyString(), Mockito.any());
+        Mockito.doNothing().when(ibdo).appendAlternateView(Mockito.anyString(), Mockito.any(byte[].class));
+
+        assertEquals("array", new String(SeekableByteChannelHelper.getByteArrayFromChannel(ibdo.getAlternateViewChannelFactory("T1"), 100)),
+                "Array view as a channel");
+        assertNull(ibdo.getAlternateViewChannelFactory("NOSUCHVIEW"), "No such view");
+        assertTrue(ibdo.getAlternateViewChannelFactories().isEmpty(), "No views held as channels");
+
+        ibdo.setAlternateViewChannelFactory("T2", InMemoryChannelFactory.create("channel".getBytes()));
+        Mockito.verify(ibdo).addAlternateView("T2", "channel".getBytes());
+        ibdo.setAlternateViewChannelFactory("T2", null);
+        Mockito.verify(ibdo).addAlternateView("T2", null);
+        ibdo.appendAlternateView("T2", InMemoryChannelFactory.create("more".getBytes()));
+        Mockito.verify(ibdo).appendAlternateView("T2", "more".getBytes());
+    }
+
     @Test
     void testWindowsShortName() {
         this.b.setFilename("c:\\Program Files\\Windows\\filename.txt");
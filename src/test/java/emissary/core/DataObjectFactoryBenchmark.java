@@ -0,0 +1,63 @@
+package emissary.core;
+
+import emissary.util.ConstructorLookupCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to create one payload with a direct constructor call, a cached reflective one, {@link Factory} and
+ * {@link DataObjectFactory}. Each invocation creates a single payload so JMH does the looping, and several forks keep
+ * one unlucky JIT run from deciding the result.
+ * <p>
+ * Run with the jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+@State(Scope.Benchmark)
+public class DataObjectFactoryBenchmark {
+
+    private final byte[] data = "payload".getBytes(StandardCharsets.UTF_8);
+    private Constructor<?> constructor;
+
+    @Setup
+    public void setup() throws ClassNotFoundException {
+        this.constructor = ConstructorLookupCache.lookup(Class.forName(DataObjectFactory.DEFAULT_CLASS),
+                new Class<?>[] {byte[].class, String.class, String.class, String.class});
+    }
+
+    @Benchmark
+    public Object direct() {
+        return new BaseDataObject(this.data, "name", "FORM", "TYPE");
+    }
+
+    @Benchmark
+    public Object reflection() throws ReflectiveOperationException {
+        return this.constructor.newInstance(this.data, "name", "FORM", "TYPE");
+    }
+
+    @Benchmark
+    public Object factory() {
+        return Factory.create(DataObjectFactory.DEFAULT_CLASS, this.data, "name", "FORM", "TYPE");
+    }
+
+    @Benchmark
+    public Object dataObjectFactory() {
+        return DataObjectFactory.getInstance(this.data, "name", "FORM", "TYPE");
+    }
+}
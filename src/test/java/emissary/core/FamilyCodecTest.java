@@ -0,0 +1,220 @@
+package emissary.core;
+
+import emissary.core.channels.SeekableByteChannelHelper;
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FamilyCodecTest extends UnitTest {
+
+    private static IBaseDataObject parent() {
+        IBaseDataObject d = DataObjectFactory.getInstance("The data".getBytes(StandardCharsets.UTF_8), "parent", "UNKNOWN");
+        d.enqueueCurrentForm("ALSO");
+        d.setFileType("TEXT");
+        d.setHeader("head".getBytes(StandardCharsets.UTF_8));
+        d.setFooter("foot".getBytes(StandardCharsets.UTF_8));
+        d.setHeaderEncoding("UTF-8");
+        d.setFontEncoding("UTF-8");
+        d.setClassification("open");
+        d.setBroken("a bit");
+        d.setId("id-1");
+        d.setWorkBundleId("wb-1");
+        d.setTransactionId("tx-1");
+        d.setOutputable(false);
+        d.setPriority(3);
+        d.setCreationTimestamp(Instant.ofEpochSecond(1_700_000_000L, 12345));
+        d.setNumChildren(2);
+        d.setNumSiblings(1);
+        d.setBirthOrder(4);
+        d.putParameter("NAME", Arrays.asList("one", "two"));
+        d.putParameter("NUMBER", 42);
+        d.addAlternateView("VIEW", "view data".getBytes(StandardCharsets.UTF_8));
+        d.appendTransformHistory("*.FIRST.ID.http://localhost:8001/FirstPlace");
+        d.appendTransformHistory("*.SECOND.ID.http://localhost:8001/SecondPlace");
+        d.appendTransformHistory("*.COORD.ID.http://localhost:8001/CoordPlace", true);
+        d.addProcessingError("first problem");
+        return d;
+    }
+
+    private static byte[] write(List<IBaseDataObject> family) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            FamilyCodec.write(family, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream in(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        IBaseDataObject d = parent();
+        d.setAlternateViewChannelFactory("CHANNEL", SeekableByteChannelHelper.memory("channel data".getBytes(StandardCharsets.UTF_8)));
+        IBaseDataObject child = DataObjectFactory.getInstance(new byte[0], "parent-att-1", "CHILD");
+        child.clearData();
+
+        byte[] bytes = write(Arrays.asList(d, child));
+        List<IBaseDataObject> read = FamilyCodec.read(in(bytes), bytes.length);
+
+        assertTrue(d.getAlternateViewChannelFactories().containsKey("CHANNEL"), "Views held as channels are not read onto the heap");
+        assertEquals(2, read.size());
+        IBaseDataObject r = read.get(0);
+        assertEquals("parent", r.getFilename());
+        assertArrayEquals(d.data(), r.data());
+        assertArrayEquals(d.header(), r.header());
+        assertArrayEquals(d.footer(), r.footer());
+        assertEquals(d.getAllCurrentForms(), r.getAllCurrentForms());
+        assertEquals("TEXT", r.getFileType());
+        assertEquals("UTF-8", r.getHeaderEncoding());
+        assertEquals("UTF-8", r.getFontEncoding());
+        assertEquals("open", r.getClassification());
+        assertEquals("a bit", r.getBroken());
+        assertEquals("id-1", r.getId());
+        assertEquals("wb-1", r.getWorkBundleId());
+        assertEquals("tx-1", r.getTransactionId());
+        assertFalse(r.isOutputable());
+        assertEquals(3, r.getPriority());
+        assertEquals(d.getCreationTimestamp(), r.getCreationTimestamp());
+        assertEquals(2, r.getNumChildren());
+        assertEquals(1, r.getNumSiblings());
+        assertEquals(4, r.getBirthOrder());
+        assertEquals(Arrays.asList("one", "two"), r.getParameter("NAME"));
+        assertEquals(Collections.singletonList(42), r.getParameter("NUMBER"));
+        assertArrayEquals(d.getAlternateView("VIEW"), r.getAlternateView("VIEW"));
+        assertEquals("channel data", new String(r.getAlternateView("CHANNEL"), StandardCharsets.UTF_8));
+        assertEquals(d.transformHistory(true), r.transformHistory(true));
+        assertEquals(d.transformHistory(false), r.transformHistory(false));
+        assertEquals(d.getProcessingError(), r.getProcessingError());
+
+        IBaseDataObject c = read.get(1);
+        assertEquals("parent-att-1", c.getFilename());
+        assertNull(c.data());
+        assertEquals(Collections.singletonList("CHILD"), c.getAllCurrentForms());
+    }
+
+    @Test
+    void testReadIntoExisting() throws IOException {
+        IBaseDataObject local = parent();
+        IBaseDataObject remote = parent();
+        // what a place on the peer might do
+        remote.setCurrentForm("DONE", true);
+        remote.deleteParameter("NAME");
+        remote.putParameter("NEW", "value");
+        remote.addAlternateView("VIEW", null);
+        remote.addAlternateView("OTHER", new byte[] {1, 2});
+        remote.setData("Changed".getBytes(StandardCharsets.UTF_8));
+        remote.setBroken(null);
+        remote.addProcessingError("second problem");
+        IBaseDataObject sprout = DataObjectFactory.getInstance(new byte[] {9}, "parent-att-1", "CHILD");
+
+        List<IBaseDataObject> existing = new ArrayList<>(Collections.singletonList(local));
+        byte[] bytes = write(Arrays.asList(remote, sprout));
+        List<IBaseDataObject> added = FamilyCodec.read(in(bytes), existing, bytes.length);
+
+        assertSame(local, existing.get(0), "Existing payload should be changed in place");
+        assertEquals(Collections.singletonList("DONE"), local.getAllCurrentForms());
+        assertFalse(local.hasParameter("NAME"));
+        assertEquals("value", local.getStringParameter("NEW"));
+        assertEquals(Collections.singleton("OTHER"), local.getAlternateViewNames());
+        assertEquals("Changed", new String(local.data(), StandardCharsets.UTF_8));
+        assertFalse(local.isBroken());
+        assertEquals("first problem\nsecond problem\n", local.getProcessingError());
+
+        assertEquals(1, added.size());
+        assertEquals("parent-att-1", added.get(0).getFilename());
+        assertArrayEquals(new byte[] {9}, added.get(0).data());
+    }
+
+    @Test
+    void testMetadataKeepsItsType() throws IOException {
+        IBaseDataObject local = parent();
+        local.putParameter("MIXED", Arrays.asList("text", new byte[] {1, 2, 3}, 7, 8L, (short) 9, (byte) 10, 1.5f, 2.5d, true, null));
+        local.putParameter("RAW", new byte[] {4, 5});
+        IBaseDataObject remote = parent();
+        remote.putParameters(local.getParameters());
+        // the place on the peer only touches one value
+        remote.setParameter("NUMBER", 43);
+
+        byte[] bytes = write(Collections.singletonList(remote));
+        FamilyCodec.read(in(bytes), Collections.singletonList(local), bytes.length);
+
+        List<Object> mixed = local.getParameter("MIXED");
+        assertEquals(10, mixed.size());
+        assertEquals("text", mixed.get(0));
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) mixed.get(1));
+        assertEquals(Arrays.asList(7, 8L, (short) 9, (byte) 10, 1.5f, 2.5d, true, null), mixed.subList(2, 10));
+        assertArrayEquals(new byte[] {4, 5}, (byte[]) local.getParameter("RAW").get(0));
+        assertEquals(Collections.singletonList(43), local.getParameter("NUMBER"));
+    }
+
+    @Test
+    void testMetadataOfOtherTypesIsNotWritten() {
+        IBaseDataObject d = parent();
+        d.putParameter("WHEN", Instant.EPOCH);
+        IOException e = assertThrows(IOException.class, () -> write(Collections.singletonList(d)));
+        assertTrue(e.getMessage().contains("WHEN"), e.getMessage());
+    }
+
+    @Test
+    void testBadStreams() throws IOException {
+        byte[] bytes = write(Collections.singletonList(parent()));
+        byte[] badVersion = bytes.clone();
+        badVersion[3] = 9;
+        assertThrows(IOException.class, () -> FamilyCodec.read(in(badVersion), badVersion.length));
+        assertThrows(IOException.class, () -> FamilyCodec.read(in(Arrays.copyOf(bytes, bytes.length - 3)), bytes.length));
+
+        List<IBaseDataObject> existing = Arrays.asList(parent(), parent());
+        assertThrows(IOException.class, () -> FamilyCodec.read(in(bytes), existing, bytes.length), "Answer must cover what was sent");
+        assertTrue(existing.get(0).getAllCurrentForms().contains("ALSO"));
+    }
+
+    @Test
+    void testLengthsAreBoundedByTheFrame() throws IOException {
+        byte[] bytes = write(Collections.singletonList(parent()));
+        assertThrows(IOException.class, () -> FamilyCodec.read(in(bytes), bytes.length - 1L), "Family must fit in the frame");
+
+        // a huge length early in the stream must fail before anything is allocated for it
+        byte[] huge = bytes.clone();
+        ByteBuffer.wrap(huge).putInt(8, Integer.MAX_VALUE);
+        IOException e = assertThrows(IOException.class, () -> FamilyCodec.read(in(huge), huge.length));
+        assertTrue(e.getMessage().contains("left in the frame"), e.getMessage());
+    }
+
+    @Test
+    void testFailedReadLeavesExistingUnchanged() throws IOException {
+        IBaseDataObject remote = parent();
+        remote.setCurrentForm("DONE", true);
+        remote.setData("Changed".getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = write(Arrays.asList(remote, parent()));
+
+        IBaseDataObject local = parent();
+        List<IBaseDataObject> existing = Collections.singletonList(local);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+        assertThrows(IOException.class, () -> FamilyCodec.read(in(truncated), existing, truncated.length));
+        assertEquals(parent().getAllCurrentForms(), local.getAllCurrentForms());
+        assertArrayEquals(parent().data(), local.data());
+    }
+}
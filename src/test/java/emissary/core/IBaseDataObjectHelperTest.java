@@ -1,6 +1,7 @@
 package emissary.core;
 
 import emissary.core.channels.InMemoryChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.kff.KffDataObjectHandler;
 import emissary.parser.SessionParser;
 import emissary.test.core.junit5.UnitTest;
@@ -21,6 +22,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -169,6 +171,20 @@ class IBaseDataObjectHelperTest extends UnitTest {
         verifyClone("getAlternateViews", ibdo1, IS_NOT_SAME, IS_EQUALS, EQUAL_WITHOUT_FULL_CLONE);
     }
 
+    @Test
+    void testCloneAlternateViewChannels() {
+        final SeekableByteChannelFactory sbcf = InMemoryChannelFactory.create("BBB".getBytes(StandardCharsets.US_ASCII));
+        final byte[] aaa = "AAA".getBytes(StandardCharsets.US_ASCII);
+        ibdo1.addAlternateView("AAA", aaa);
+        ibdo1.setAlternateViewChannelFactory("BBB", sbcf);
+
+        final IBaseDataObject clone = IBaseDataObjectHelper.clone(ibdo1);
+
+        assertSame(aaa, clone.getAlternateView("AAA"));
+        assertSame(sbcf, clone.getAlternateViewChannelFactories().get("BBB"));
+        assertSame(sbcf, ibdo1.getAlternateViewChannelFactories().get("BBB"));
+    }
+
     @Test
     void testClonePriority() {
         ibdo1.setPriority(13);
@@ -361,6 +377,57 @@ class IBaseDataObjectHelperTest extends UnitTest {
         assertTrue(true);
     }
 
+    @Test
+    void testAddParentInformationToChildrenInParallel() {
+        final IBaseDataObject parentIbdo = ibdo1;
+        parentIbdo.setClassification("open");
+        parentIbdo.putParameter("ALWAYS", Arrays.asList("one", "two"));
+        parentIbdo.appendTransformHistory("*.FIRST.ID.http://localhost:8001/FirstPlace");
+        final Set<String> alwaysCopyMetadataKeys = new HashSet<>(Arrays.asList("ALWAYS", "key_not_in_parent"));
+        final KffDataObjectHandler kff = new KffDataObjectHandler();
+
+        final List<IBaseDataObject> sequential = new ArrayList<>();
+        final List<IBaseDataObject> parallel = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final byte[] data = ("child " + i).getBytes(StandardCharsets.UTF_8);
+            sequential.add(DataObjectFactory.getInstance(data, "child" + i, "UNKNOWN"));
+            parallel.add(DataObjectFactory.getInstance(data, "child" + i, "UNKNOWN"));
+        }
+        sequential.add(100, null);
+        parallel.add(100, null);
+
+        IBaseDataObjectHelper.addParentInformationToChildren(parentIbdo, sequential, true, alwaysCopyMetadataKeys, "place", kff, false);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            IBaseDataObjectHelper.addParentInformationToChildren(parentIbdo, parallel, true, alwaysCopyMetadataKeys, "place", kff, false,
+                    pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        int birthOrder = 1;
+        for (int i = 0; i < parallel.size(); i++) {
+            final IBaseDataObject expected = sequential.get(i);
+            final IBaseDataObject actual = parallel.get(i);
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            assertEquals(birthOrder++, actual.getBirthOrder(), "Birth order should follow the list");
+            assertEquals(201, actual.getNumSiblings());
+            assertEquals("open", actual.getClassification());
+            assertEquals(Arrays.asList("one", "two"), actual.getParameter("ALWAYS"));
+            assertFalse(actual.hasParameter("key_not_in_parent"));
+            assertEquals(expected.transformHistory(), actual.transformHistory());
+            assertEquals(expected.getParameters(), actual.getParameters());
+            assertTrue(KffDataObjectHandler.hashPresent(actual));
+        }
+
+        parallel.get(0).appendParameter("ALWAYS", "three");
+        assertEquals(Arrays.asList("one", "two"), parallel.get(1).getParameter("ALWAYS"), "Children should not see a sibling's change");
+        assertEquals(Arrays.asList("one", "two"), parentIbdo.getParameter("ALWAYS"), "The parent should not see a child's change");
+    }
+
     @Test
     void testAddParentInformationToChildExcluding() {
         final IBaseDataObject parentIbdo = ibdo1;
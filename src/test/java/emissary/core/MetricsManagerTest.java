@@ -2,8 +2,10 @@ package emissary.core;
 
 import emissary.config.Configurator;
 import emissary.config.ServiceConfigGuide;
+import emissary.pool.MoveSpool;
 import emissary.test.core.junit5.UnitTest;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Timer;
 import org.junit.jupiter.api.Test;
 
@@ -11,6 +13,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MetricsManagerTest extends UnitTest {
     @Test
@@ -24,4 +28,21 @@ class MetricsManagerTest extends UnitTest {
         assertDoesNotThrow(() -> mm.logMetrics(stats));
         // need to assert some stuff here, but what?
     }
+
+    @Test
+    void testPoolGaugesWithoutPool() {
+        // pools other tests in this JVM left behind
+        Namespace.unbind("AgentPool");
+        Namespace.unbind(MoveSpool.NAMESPACE_NAME);
+        MetricsManager mm = new MetricsManager(new ServiceConfigGuide());
+        try {
+            Map<String, Gauge> gauges = mm.getMetricRegistry().getGauges();
+            assertTrue(gauges.containsKey("agentpool.active"));
+            assertTrue(gauges.containsKey("movespool.depth"));
+            assertNull(gauges.get("agentpool.active").getValue());
+            assertNull(gauges.get("movespool.depth").getValue());
+        } finally {
+            mm.shutdown();
+        }
+    }
 }
@@ -4,7 +4,10 @@ import emissary.admin.PlaceStarter;
 import emissary.directory.DirectoryEntry;
 import emissary.directory.DirectoryPlace;
 import emissary.directory.EmissaryNode;
+import emissary.directory.KeyManipulator;
+import emissary.place.AdmissionControl;
 import emissary.place.IServiceProviderPlace;
+import emissary.place.MyStreamConfigedTestPlace;
 import emissary.test.core.junit5.UnitTest;
 
 import org.junit.jupiter.api.AfterEach;
@@ -15,8 +18,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MobileAgentTest extends UnitTest {
@@ -113,6 +119,54 @@ class MobileAgentTest extends UnitTest {
         place.shutDown();
     }
 
+    @Test
+    void testSaturatedPlace() throws IOException, InterruptedException {
+        byte[] configData = ("PLACE_NAME = \"LimitedPlace\"\n" + "SERVICE_NAME = \"LIMITED\"\n" + "SERVICE_TYPE = \"ANALYZE\"\n"
+                + "SERVICE_COST = 50\n" + "SERVICE_QUALITY = 50\n" + "SERVICE_PROXY = \"THECF\"\n" + "MAX_CONCURRENCY = 1\n"
+                + "ADMISSION_WAIT_MILLIS = 0\n" + "SATURATED_ACTION = \"ERROR\"\n").getBytes();
+        MyStreamConfigedTestPlace limited =
+                new MyStreamConfigedTestPlace(new ByteArrayInputStream(configData), null, "http://localhost:8006/LimitedPlace");
+        try {
+            AdmissionControl admission = limited.getAdmissionControl();
+            assertNotNull(admission);
+
+            agent.atPlace(limited, d);
+            assertEquals("THECF", d.currentForm(), "Place with room processes the payload");
+            assertEquals(0, admission.getInFlight(), "Permit is released when the place returns");
+
+            try (AdmissionControl.Permit held = admission.tryEnter()) {
+                assertNotNull(held);
+                agent.atPlace(limited, d);
+            }
+            assertEquals(Form.ERROR, d.currentForm(), "Saturated place sends the payload to error handling");
+            assertTrue(d.getProcessingError().contains("saturated"));
+            assertEquals(1, admission.getRefused());
+        } finally {
+            limited.shutDown();
+        }
+    }
+
+    @Test
+    void testRecordAlternate() throws IOException {
+        byte[] configData = ("PLACE_NAME = \"OtherUpperPlace\"\n" + "SERVICE_NAME = \"TO_UPPER\"\n" + "SERVICE_TYPE = \"TRANSFORM\"\n"
+                + "SERVICE_COST = 50\n" + "SERVICE_QUALITY = 50\n" + "SERVICE_PROXY = \"THECF\"\n").getBytes();
+        MyStreamConfigedTestPlace alternate =
+                new MyStreamConfigedTestPlace(new ByteArrayInputStream(configData), null, "http://localhost:8006/OtherUpperPlace");
+        try {
+            d.appendTransformHistory("UNKNOWN.FOO.ID.http://localhost:8005/FooPlace$1234");
+            agent.recordHistory(place, d);
+            agent.recordAlternate(place, alternate, Collections.singletonList(d));
+
+            List<String> history = d.transformHistory();
+            assertEquals(2, history.size(), "The saturated place is replaced, not added to");
+            assertEquals("THECF", KeyManipulator.getDataType(history.get(1)));
+            assertEquals(alternate.getDirectoryEntry().getServiceLocation(), KeyManipulator.getServiceLocation(history.get(1)),
+                    "History names the place that does the work");
+        } finally {
+            alternate.shutDown();
+        }
+    }
+
     static final class MobAg extends HDMobileAgent {
         static final long serialVersionUID = 102211824991899593L;
 
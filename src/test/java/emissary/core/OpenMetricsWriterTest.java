@@ -0,0 +1,108 @@
+package emissary.core;
+
+import emissary.test.core.junit5.UnitTest;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenMetricsWriterTest extends UnitTest {
+
+    private static String write(MetricRegistry registry, List<String> prefixes) throws IOException {
+        StringWriter out = new StringWriter();
+        new OpenMetricsWriter().write(registry, prefixes, out);
+        return out.toString();
+    }
+
+    @Test
+    void testEmptyRegistry() throws IOException {
+        assertEquals("# EOF\n", write(new MetricRegistry(), Collections.emptyList()));
+    }
+
+    @Test
+    void testCounterAndMeter() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("places.count").inc(3);
+        registry.meter("bundles").mark(7);
+        String text = write(registry, Collections.emptyList());
+        assertTrue(text.contains("# TYPE emissary_places_count counter\nemissary_places_count_total 3\n"), text);
+        assertTrue(text.contains("# TYPE emissary_bundles counter\nemissary_bundles_total 7\n"), text);
+        assertTrue(text.endsWith("# EOF\n"));
+    }
+
+    @Test
+    void testGauges() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.register("queue", (Gauge<Integer>) () -> 12);
+        registry.register("ratio", (Gauge<Double>) () -> 0.25);
+        registry.register("up", (Gauge<Boolean>) () -> true);
+        registry.register("missing", (Gauge<Integer>) () -> null);
+        registry.register("label", (Gauge<String>) () -> "text");
+        String text = write(registry, Collections.emptyList());
+        assertTrue(text.contains("# TYPE emissary_queue gauge\nemissary_queue 12\n"), text);
+        assertTrue(text.contains("emissary_ratio 0.25\n"), text);
+        assertTrue(text.contains("emissary_up 1\n"), text);
+        assertFalse(text.contains("missing"), text);
+        assertFalse(text.contains("label"), text);
+    }
+
+    @Test
+    void testTimerInSeconds() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.timer("ToLowerPlace").update(Duration.ofSeconds(2));
+        String text = write(registry, Collections.emptyList());
+        assertTrue(text.contains("# TYPE emissary_ToLowerPlace_seconds summary\n"), text);
+        assertTrue(text.contains("# UNIT emissary_ToLowerPlace_seconds seconds\n"), text);
+        assertTrue(text.contains("emissary_ToLowerPlace_seconds{quantile=\"0.99\"} 2\n"), text);
+        assertTrue(text.contains("emissary_ToLowerPlace_seconds_count 1\n"), text);
+    }
+
+    @Test
+    void testHistogram() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.histogram("sizes").update(10);
+        String text = write(registry, Collections.emptyList());
+        assertTrue(text.contains("# TYPE emissary_sizes summary\n"), text);
+        assertFalse(text.contains("# UNIT emissary_sizes"), text);
+        assertTrue(text.contains("emissary_sizes{quantile=\"0.5\"} 10\n"), text);
+    }
+
+    @Test
+    void testPrefixFilter() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("agentpool.active").inc();
+        registry.counter("movespool.depth").inc();
+        registry.counter("workspace.ws.pending").inc();
+        String text = write(registry, Arrays.asList("agentpool.", "workspace."));
+        assertTrue(text.contains("emissary_agentpool_active_total"), text);
+        assertTrue(text.contains("emissary_workspace_ws_pending_total"), text);
+        assertFalse(text.contains("movespool"), text);
+    }
+
+    @Test
+    void testNameCollisionWrittenOnce() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("a.b").inc();
+        registry.counter("a-b").inc();
+        String text = write(registry, Collections.emptyList());
+        assertEquals(text.indexOf("# TYPE emissary_a_b counter"), text.lastIndexOf("# TYPE emissary_a_b counter"));
+    }
+
+    @Test
+    void testSanitize() {
+        assertEquals("a_b_c:d", OpenMetricsWriter.sanitize("a.b-c:d"));
+        assertEquals("_1abc", OpenMetricsWriter.sanitize("1abc"));
+        assertEquals("ab1", OpenMetricsWriter.sanitize("ab1"));
+    }
+}
@@ -9,6 +9,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -66,4 +67,19 @@ class ConcatenateChannelFactoryTest extends UnitTest {
 
         ChannelTestHelper.checkByteArrayAgainstSbc(expectedBytes, sbcf);
     }
+
+    @Test
+    void testReadAcrossBoundaryIntoPartlyFilledBuffer() throws IOException {
+        final SeekableByteChannelFactory firstSbcf = InMemoryChannelFactory.create(new byte[] {0, 1, 2});
+        final SeekableByteChannelFactory secondSbcf = InMemoryChannelFactory.create(new byte[] {3, 4, 5});
+        final ByteBuffer buffer = ByteBuffer.allocate(6);
+
+        buffer.put((byte) 9);
+        try (SeekableByteChannel sbc = ConcatenateChannelFactory.create(firstSbcf, secondSbcf).create()) {
+            sbc.position(1);
+            assertEquals(5, sbc.read(buffer));
+        }
+
+        assertArrayEquals(new byte[] {9, 1, 2, 3, 4, 5}, buffer.array());
+    }
 }
@@ -9,10 +9,12 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -97,4 +99,67 @@ class FileChannelFactoryTest extends UnitTest {
         assertEquals(9, sbcf.create().size());
         assertThrows(NullPointerException.class, () -> FileChannelFactory.create(null), "Can't create a FCF with nulls");
     }
+
+    @Test
+    void testOpenFileChannelsAreIndependentAndOutliveThePath(@TempDir final Path tempDir) throws IOException {
+        final Path path = tempDir.resolve("openBytes");
+        Files.write(TEST_BYTES, path.toFile());
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            final SeekableByteChannelFactory open = FileChannelFactory.createOpen(file);
+            java.nio.file.Files.delete(path);
+
+            final SeekableByteChannel sbc = open.create().position(5);
+            final SeekableByteChannel sbc2 = open.create();
+            final ByteBuffer buff = ByteBuffer.allocate(4);
+            final ByteBuffer buff2 = ByteBuffer.allocate(4);
+            sbc.read(buff);
+            sbc2.read(buff2);
+            assertEquals("data", new String(buff.array(), StandardCharsets.US_ASCII));
+            assertEquals("test", new String(buff2.array(), StandardCharsets.US_ASCII));
+            assertEquals(0L, file.position(), "Channels must not move the shared file");
+
+            sbc.close();
+            assertTrue(file.isOpen(), "Closing a channel must not close the shared file");
+            assertEquals(9, open.create().size());
+        }
+    }
+
+    @Test
+    void testMappedFileChannelsOutliveThePath(@TempDir final Path tempDir) throws IOException {
+        final Path path = tempDir.resolve("mappedBytes");
+        Files.write(TEST_BYTES, path.toFile());
+        final SeekableByteChannelFactory mapped = FileChannelFactory.createMapped(path);
+        java.nio.file.Files.delete(path);
+
+        final SeekableByteChannel sbc = mapped.create().position(5);
+        final SeekableByteChannel sbc2 = mapped.create();
+        final ByteBuffer buff = ByteBuffer.allocate(4);
+        final ByteBuffer buff2 = ByteBuffer.allocate(4);
+        sbc.read(buff);
+        sbc2.read(buff2);
+        assertEquals("data", new String(buff.array(), StandardCharsets.US_ASCII));
+        assertEquals("test", new String(buff2.array(), StandardCharsets.US_ASCII));
+        assertEquals(-1, sbc.read(ByteBuffer.allocate(4)));
+
+        sbc.close();
+        assertEquals(9, mapped.create().size());
+        assertThrows(NullPointerException.class, () -> FileChannelFactory.createMapped(null));
+    }
+
+    @Test
+    void testMappedEmptyFile(@TempDir final Path tempDir) throws IOException {
+        final Path path = tempDir.resolve("emptyBytes");
+        Files.write(new byte[0], path.toFile());
+        final SeekableByteChannel sbc = FileChannelFactory.createMapped(path).create();
+        assertEquals(0L, sbc.size());
+        assertEquals(-1, sbc.read(ByteBuffer.allocate(4)));
+    }
+
+    @Test
+    void testMappedReadsAcrossChunks(@TempDir final Path tempDir) throws IOException {
+        final Path path = tempDir.resolve("chunkedBytes");
+        Files.write(TEST_BYTES, path.toFile());
+        final SeekableByteChannelFactory mapped = FileChannelFactory.createMapped(path, 4);
+        assertEquals(TEST_STRING, new String(SeekableByteChannelHelper.getByteArrayFromChannel(mapped, 100), StandardCharsets.US_ASCII));
+    }
 }
@@ -0,0 +1,80 @@
+package emissary.core.channels;
+
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillChannelFactoryTest extends UnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] read(SeekableByteChannelFactory sbcf, long position) throws IOException {
+        try (SeekableByteChannel channel = sbcf.create()) {
+            channel.position(position);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - position));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read it all
+            }
+            return buffer.array();
+        }
+    }
+
+    @Test
+    void testStaysInMemoryUnderThreshold() throws IOException {
+        SpillChannelFactory.Writer writer = SpillChannelFactory.writer(100, tempDir);
+        writer.write(ByteBuffer.wrap("Test ".getBytes()));
+        writer.write(ByteBuffer.wrap("data".getBytes()));
+        assertFalse(writer.isSpilled());
+        assertEquals(9, writer.size());
+        assertEquals("Test data", new String(read(writer.toFactory(), 0)));
+        assertThrows(ClosedChannelException.class, () -> writer.write(ByteBuffer.wrap(new byte[1])));
+    }
+
+    @Test
+    void testSpillsOverThreshold() throws IOException {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        SpillChannelFactory.Writer writer = SpillChannelFactory.writer(1000, tempDir);
+        for (int i = 0; i < data.length; i += 700) {
+            writer.write(ByteBuffer.wrap(data, i, Math.min(700, data.length - i)));
+        }
+        assertTrue(writer.isSpilled());
+        assertEquals(data.length, writer.size());
+        SeekableByteChannelFactory sbcf = writer.toFactory();
+        assertThrows(ClosedChannelException.class, writer::size, "Temporary file should be closed once mapped");
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "Temporary file should not be left in the directory");
+        }
+        assertArrayEquals(data, read(sbcf, 0));
+        byte[] tail = read(sbcf, 9000);
+        assertEquals(1000, tail.length);
+        assertEquals(data[9000], tail[0]);
+    }
+
+    @Test
+    void testZeroThreshold() throws IOException {
+        SpillChannelFactory.Writer writer = SpillChannelFactory.writer(0, tempDir);
+        writer.write(ByteBuffer.wrap("abc".getBytes()));
+        assertTrue(writer.isSpilled());
+        assertEquals("abc", new String(read(writer.toFactory(), 0)));
+    }
+}
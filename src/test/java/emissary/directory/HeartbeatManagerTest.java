@@ -2,8 +2,12 @@ package emissary.directory;
 
 import emissary.client.EmissaryClient;
 import emissary.client.EmissaryResponse;
+import emissary.core.MetricsManager;
+import emissary.core.Namespace;
 import emissary.test.core.junit5.UnitTest;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import jakarta.ws.rs.core.MediaType;
 import org.apache.commons.io.IOUtils;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
@@ -13,13 +17,23 @@ import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.NoHttpResponseException;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
 import org.apache.hc.core5.http.message.BasicHeader;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -85,4 +99,250 @@ class HeartbeatManagerTest extends UnitTest {
         assertTrue(response.getContentString().contains("Bad request -> status: 401 message: " + responseString));
     }
 
+    private static final String LOCAL = "EMISSARY_DIRECTORY_SERVICES.DIRECTORY.STUDY.http://localhost:8001/DirectoryPlace";
+
+    private static String peer(int i) {
+        return "EMISSARY_DIRECTORY_SERVICES.DIRECTORY.STUDY.http://peer" + i + ":8001/DirectoryPlace";
+    }
+
+    @Test
+    void testRoundTakesAboutAsLongAsSlowestPeer() throws InterruptedException {
+        SimulatedPeers mgr = new SimulatedPeers();
+        try {
+            for (int i = 0; i < 6; i++) {
+                mgr.addRemoteDirectory(peer(i));
+                mgr.delayMillis.put(peer(i), 300L);
+            }
+            long start = System.nanoTime();
+            mgr.round();
+            mgr.awaitRound();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(6, mgr.sent.size(), "Every peer should get a heartbeat");
+            assertTrue(elapsed < 6 * 300, "Heartbeats should be sent together, took " + elapsed + "ms");
+        } finally {
+            mgr.shutDown();
+        }
+    }
+
+    @Test
+    void testSilentPeerFailsWhileHeartbeatOutstanding() throws InterruptedException {
+        SimulatedPeers mgr = new SimulatedPeers();
+        try {
+            mgr.addRemoteDirectory(peer(1));
+            mgr.addRemoteDirectory(peer(2));
+            for (int i = 0; i < 5; i++) {
+                mgr.tick();
+            }
+            assertTrue(mgr.isHealthy(peer(1)));
+
+            // peer 1 stops answering but its connection stays open
+            CountDownLatch hung = new CountDownLatch(1);
+            mgr.blocked.put(peer(1), hung);
+            mgr.clock.addAndGet(30_000);
+            mgr.round();
+            awaitInFlight(mgr, peer(1), true);
+            for (int i = 0; i < 3 && mgr.isHealthy(peer(1)); i++) {
+                awaitInFlight(mgr, peer(2), false);
+                mgr.clock.addAndGet(30_000);
+                mgr.round();
+            }
+            assertFalse(mgr.isHealthy(peer(1)), "Silent peer should be unhealthy");
+            assertTrue(mgr.isAlive(peer(1)), "Silent peer should not be permanently failed");
+            assertEquals(Collections.singletonList(KeyManipulator.getDefaultDirectoryKey(peer(1)) + " failed"), mgr.actions);
+            assertTrue(mgr.isHealthy(peer(2)), "Other peers should not be held up");
+            hung.countDown();
+        } finally {
+            mgr.shutDown();
+        }
+    }
+
+    @Test
+    void testPeerWaitingForThreadNotJudged() throws InterruptedException {
+        SimulatedPeers mgr = new SimulatedPeers();
+        try {
+            mgr.setHeartbeatThreads(1);
+            mgr.addRemoteDirectory(peer(1));
+            mgr.addRemoteDirectory(peer(2));
+            for (int i = 0; i < 5; i++) {
+                mgr.tick();
+            }
+
+            // peer 1 hangs and holds the only thread, so the heartbeat to peer 2 is never sent
+            CountDownLatch hung = new CountDownLatch(1);
+            mgr.blocked.put(peer(1), hung);
+            mgr.clock.addAndGet(30_000);
+            mgr.round();
+            awaitInFlight(mgr, peer(1), true);
+            for (int i = 0; i < 4; i++) {
+                mgr.clock.addAndGet(30_000);
+                mgr.round();
+            }
+            assertFalse(mgr.isHealthy(peer(1)), "Silent peer should be unhealthy");
+            assertTrue(mgr.isHealthy(peer(2)), "Peer waiting for a thread should not be judged");
+            assertEquals(Collections.singletonList(KeyManipulator.getDefaultDirectoryKey(peer(1)) + " failed"), mgr.actions);
+            hung.countDown();
+        } finally {
+            mgr.shutDown();
+        }
+    }
+
+    @Test
+    void testFlappingPeer() {
+        SimulatedPeers mgr = new SimulatedPeers();
+        try {
+            mgr.addRemoteDirectory(peer(1));
+            for (int i = 0; i < 5; i++) {
+                mgr.clock.addAndGet(30_000);
+                mgr.heartbeat(peer(1));
+            }
+            // a single missed heartbeat is not enough to fail a peer
+            mgr.down.add(peer(1));
+            mgr.clock.addAndGet(30_000);
+            mgr.heartbeat(peer(1));
+            mgr.down.remove(peer(1));
+            mgr.clock.addAndGet(30_000);
+            mgr.heartbeat(peer(1));
+            assertTrue(mgr.actions.isEmpty(), "Single missed heartbeat should be tolerated " + mgr.actions);
+
+            // an outage of several rounds is, and recovery is reported once
+            mgr.down.add(peer(1));
+            for (int i = 0; i < 4; i++) {
+                mgr.clock.addAndGet(30_000);
+                mgr.heartbeat(peer(1));
+            }
+            mgr.down.remove(peer(1));
+            mgr.clock.addAndGet(30_000);
+            mgr.heartbeat(peer(1));
+            assertEquals(List.of(peer(1) + " failed", peer(1) + " recovered"), mgr.actions);
+            assertTrue(mgr.isHealthy(peer(1)));
+        } finally {
+            mgr.shutDown();
+        }
+    }
+
+    @Test
+    void testFailureCountWithoutPhi() {
+        SimulatedPeers mgr = new SimulatedPeers();
+        try {
+            mgr.setPhiThreshold(0);
+            mgr.addRemoteDirectory(peer(1));
+            for (int i = 0; i < 5; i++) {
+                mgr.clock.addAndGet(30_000);
+                mgr.heartbeat(peer(1));
+            }
+            mgr.down.add(peer(1));
+            for (int i = 0; i < 2; i++) {
+                mgr.clock.addAndGet(300_000);
+                mgr.heartbeat(peer(1));
+            }
+            assertTrue(mgr.isHealthy(peer(1)), "Only the failure count should matter");
+            mgr.heartbeat(peer(1));
+            assertFalse(mgr.isHealthy(peer(1)));
+        } finally {
+            mgr.shutDown();
+        }
+    }
+
+    @Test
+    void testHealthMetrics() {
+        MetricsManager metrics = mock(MetricsManager.class);
+        MetricRegistry registry = new MetricRegistry();
+        when(metrics.getMetricRegistry()).thenReturn(registry);
+        Namespace.bind("MetricsManager", metrics);
+        SimulatedPeers mgr = new SimulatedPeers();
+        try {
+            mgr.addRemoteDirectory(peer(1));
+            mgr.down.add(peer(1));
+            mgr.heartbeat(peer(1));
+            assertEquals(1, registry.getGauges().get("heartbeat.peer1:8001.healthy").getValue());
+            assertEquals(1, registry.getGauges().get("heartbeat.peer1:8001.failures").getValue());
+            Gauge<?> phi = registry.getGauges().get("heartbeat.peer1:8001.phi");
+            assertEquals(0.0, phi.getValue());
+
+            mgr.removeRemoteDirectory(peer(1));
+            assertTrue(registry.getGauges().isEmpty(), "Metrics should be removed with the directory");
+        } finally {
+            mgr.shutDown();
+            Namespace.unbind("MetricsManager");
+        }
+    }
+
+    private static void awaitInFlight(SimulatedPeers mgr, String key, boolean inFlight) throws InterruptedException {
+        for (int i = 0; i < 500 && mgr.inFlight.contains(KeyManipulator.getDefaultDirectoryKey(key)) != inFlight; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Stands in for remote directories, with a clock the test moves forward
+     */
+    static class SimulatedPeers extends HeartbeatManager {
+        final AtomicLong clock = new AtomicLong();
+        final Map<String, Long> delayMillis = new ConcurrentHashMap<>();
+        final Map<String, CountDownLatch> blocked = new ConcurrentHashMap<>();
+        final List<String> down = Collections.synchronizedList(new ArrayList<>());
+        final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        final List<String> actions = Collections.synchronizedList(new ArrayList<>());
+
+        SimulatedPeers() {
+            super(LOCAL, 3600, 30);
+        }
+
+        @Override
+        protected long now() {
+            return clock.get();
+        }
+
+        @Override
+        protected EmissaryResponse sendHeartbeat(String key) {
+            String peer = peerOf(key);
+            sent.add(peer);
+            try {
+                Long delay = delayMillis.get(peer);
+                if (delay != null) {
+                    Thread.sleep(delay);
+                }
+                CountDownLatch latch = blocked.get(peer);
+                if (latch != null) {
+                    latch.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new EmissaryResponse(new BasicClassicHttpResponse(down.contains(peer) ? 500 : 200));
+        }
+
+        /**
+         * Heartbeats are sent to the default directory key, the test names peers by their full key
+         */
+        private static String peerOf(String key) {
+            return LOCAL.replace("localhost", KeyManipulator.getServiceHost(key).replace(":8001", ""));
+        }
+
+        @Override
+        public void takeFailureAction(String key, boolean permanent) {
+            actions.add(key + (permanent ? " failed permanently" : " failed"));
+        }
+
+        @Override
+        void takeSuccessAction(String key) {
+            actions.add(key + " recovered");
+        }
+
+        void round() {
+            new HeartbeatTask().run();
+        }
+
+        void awaitRound() throws InterruptedException {
+            for (int i = 0; i < 1000 && (!pending.isEmpty() || executor.getActiveCount() > 0); i++) {
+                Thread.sleep(5);
+            }
+        }
+
+        void tick() throws InterruptedException {
+            clock.addAndGet(30_000);
+            round();
+            awaitRound();
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package emissary.directory;
+
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhiAccrualFailureDetectorTest extends UnitTest {
+
+    @Test
+    void testNoHistory() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(10, 100, 0);
+        assertEquals(0, detector.phi(1000), "No heartbeats should not be suspected");
+        detector.heartbeat(1000);
+        assertEquals(0, detector.getSampleCount(), "First heartbeat has no interval");
+        assertEquals(0, detector.phi(100_000), "One heartbeat should not be suspected");
+    }
+
+    @Test
+    void testSuspicionGrowsWithSilence() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(10, 100, 0);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            detector.heartbeat(now);
+            now += 1000;
+        }
+        double onTime = detector.phi(now - 1000 + 1000);
+        double late = detector.phi(now - 1000 + 1500);
+        double lost = detector.phi(now - 1000 + 3000);
+        assertTrue(onTime < 1, "On time heartbeat should not be suspected " + onTime);
+        assertTrue(late > onTime, "Late heartbeat should be more suspected " + late);
+        assertTrue(lost > 8, "Lost heartbeat should be suspected " + lost);
+    }
+
+    @Test
+    void testErraticPeerGivenMoreTime() {
+        PhiAccrualFailureDetector steady = new PhiAccrualFailureDetector(20, 10, 0);
+        PhiAccrualFailureDetector erratic = new PhiAccrualFailureDetector(20, 10, 0);
+        long steadyTime = 0;
+        long erraticTime = 0;
+        for (int i = 0; i < 20; i++) {
+            steady.heartbeat(steadyTime);
+            erratic.heartbeat(erraticTime);
+            steadyTime += 1000;
+            erraticTime += (i % 2 == 0) ? 400 : 1600;
+        }
+        // both average 1000ms, look at each 1800ms after its last heartbeat
+        double steadyPhi = steady.phi(steadyTime - 1000 + 1800);
+        double erraticPhi = erratic.phi(erraticTime - 1600 + 1800);
+        assertTrue(steadyPhi > erraticPhi, "Steady peer should be suspected sooner " + steadyPhi + " vs " + erraticPhi);
+    }
+
+    @Test
+    void testRestartForgetsOutage() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(10, 100, 0);
+        for (int i = 0; i <= 5; i++) {
+            detector.heartbeat(i * 1000L);
+        }
+        assertTrue(detector.phi(60_000) > 8, "Peer silent for a minute should be suspected");
+        detector.restart(60_000);
+        assertEquals(5, detector.getSampleCount(), "Outage should not be an interval");
+        assertTrue(detector.phi(61_000) < 1, "Restarted peer should not be suspected");
+    }
+
+    @Test
+    void testWindowIsBounded() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(5, 10, 0);
+        long now = 0;
+        // slow heartbeats that fall out of the window
+        for (int i = 0; i < 5; i++) {
+            detector.heartbeat(now);
+            now += 10_000;
+        }
+        for (int i = 0; i < 6; i++) {
+            detector.heartbeat(now);
+            now += 1000;
+        }
+        assertEquals(5, detector.getSampleCount());
+        assertTrue(detector.phi(now - 1000 + 5000) > 8, "Old slow intervals should be forgotten");
+    }
+}
@@ -1,10 +1,13 @@
 package emissary.kff;
 
+import emissary.core.channels.InMemoryChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.test.core.junit5.UnitTest;
 
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -12,6 +15,8 @@ import java.util.Set;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class KffChainTest extends UnitTest {
@@ -102,4 +107,63 @@ class KffChainTest extends UnitTest {
         }
     }
 
+    @Test
+    void testCheckAllStopsAtFirstHit() throws Exception {
+        KffChain chain = new KffChain();
+        chain.addAlgorithm("SHA-1");
+        List<List<String>> firstBatches = new ArrayList<>();
+        List<List<String>> secondBatches = new ArrayList<>();
+        chain.addFilter(new NameFilter("FIRST", "a", firstBatches));
+        chain.addFilter(new NameFilter("SECOND", "b", secondBatches));
+
+        List<SeekableByteChannelFactory> contents = Arrays.asList(InMemoryChannelFactory.create(DATA), InMemoryChannelFactory.create(DATA),
+                InMemoryChannelFactory.create(DATA));
+        List<KffResult> results = chain.checkAll(Arrays.asList("a", "b", "c"), contents);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isHit());
+        assertEquals("FIRST", results.get(0).getFilterName());
+        assertTrue(results.get(1).isHit());
+        assertEquals("SECOND", results.get(1).getFilterName());
+        assertFalse(results.get(2).isHit());
+        assertNull(results.get(2).getFilterName());
+        assertEquals("c", results.get(2).getItemName());
+        assertEquals(chain.check("c", DATA).getShaString(), results.get(2).getShaString());
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), firstBatches, "Each filter sees one batch");
+        assertEquals(Arrays.asList(Arrays.asList("b", "c")), secondBatches, "Items that hit are not checked again");
+    }
+
+    private static final class NameFilter implements KffFilter {
+        private final String name;
+        private final String known;
+        private final List<List<String>> batches;
+
+        NameFilter(String name, String known, List<List<String>> batches) {
+            this.name = name;
+            this.known = known;
+            this.batches = batches;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public FilterType getFilterType() {
+            return FilterType.IGNORE;
+        }
+
+        @Override
+        public boolean check(String fname, ChecksumResults sums) {
+            return known.equals(fname);
+        }
+
+        @Override
+        public boolean[] checkAll(List<String> fnames, List<ChecksumResults> sums) throws Exception {
+            batches.add(new ArrayList<>(fnames));
+            return KffFilter.super.checkAll(fnames, sums);
+        }
+    }
 }
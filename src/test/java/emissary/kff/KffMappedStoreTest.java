@@ -0,0 +1,221 @@
+package emissary.kff;
+
+import emissary.kff.KffFilter.FilterType;
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KffMappedStoreTest extends UnitTest {
+
+    private static final long START = 1_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong now = new AtomicLong(START);
+
+    private KffMappedStore open(Path file, int slots, long ageoff) throws IOException {
+        return open(file, slots, 1 << 20, ageoff, KffMappedStore.MAP_CHUNK_SIZE);
+    }
+
+    private KffMappedStore open(Path file, int slots, int maxSlots, long ageoff, long chunkSize) throws IOException {
+        return new KffMappedStore(file, "LOCAL", FilterType.DUPLICATE, "SHA-256", slots, maxSlots, ageoff, 3600, now::get, chunkSize);
+    }
+
+    private static ChecksumResults sums(String data) throws NoSuchAlgorithmException {
+        return new ChecksumCalculator(Collections.singletonList("SHA-256")).digest(data.getBytes());
+    }
+
+    @Test
+    void testStoreThenHit() throws Exception {
+        try (KffMappedStore store = open(dir.resolve("kff.bin"), 64, 60)) {
+            assertEquals("LOCAL", store.getName());
+            assertEquals(FilterType.DUPLICATE, store.getFilterType());
+            assertFalse(store.check("one", sums("data")), "First sighting should not hit");
+            assertTrue(store.check("two", sums("data")), "Second sighting should hit");
+            assertFalse(store.check("three", sums("other data")));
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    void testSurvivesRestart() throws Exception {
+        Path file = dir.resolve("kff.bin");
+        try (KffMappedStore store = open(file, 64, 60)) {
+            for (int i = 0; i < 20; i++) {
+                assertFalse(store.check("item", sums("data" + i)));
+            }
+        }
+        try (KffMappedStore store = open(file, 64, 60)) {
+            assertEquals(20, store.size());
+            for (int i = 0; i < 20; i++) {
+                assertTrue(store.check("item", sums("data" + i)), "data" + i);
+            }
+        }
+    }
+
+    @Test
+    void testAgeoff() throws Exception {
+        try (KffMappedStore store = open(dir.resolve("kff.bin"), 64, 60)) {
+            assertFalse(store.check("one", sums("data")));
+            now.addAndGet(59);
+            assertTrue(store.check("two", sums("data")));
+            now.addAndGet(1);
+            assertFalse(store.check("three", sums("data")), "Aged off hash is stored again");
+            assertTrue(store.check("four", sums("data")));
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void testGrowsWhenFull() throws Exception {
+        Path file = dir.resolve("kff.bin");
+        try (KffMappedStore store = open(file, 16, 0)) {
+            for (int i = 0; i < 1000; i++) {
+                assertFalse(store.check("item", sums("data" + i)), "data" + i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(store.check("item", sums("data" + i)), "data" + i);
+            }
+            assertEquals(1000, store.size());
+        }
+        assertTrue(Files.size(file) > 1000 * 40L);
+        assertFalse(Files.exists(dir.resolve("kff.bin.compact")));
+    }
+
+    @Test
+    void testMapsInPieces() throws Exception {
+        Path file = dir.resolve("kff.bin");
+        // 16 slots of 40 bytes in each piece
+        try (KffMappedStore store = open(file, 16, 1 << 20, 0, 16 * 40)) {
+            for (int i = 0; i < 1000; i++) {
+                assertFalse(store.check("item", sums("data" + i)), "data" + i);
+            }
+        }
+        try (KffMappedStore store = open(file, 16, 1 << 20, 0, 16 * 40)) {
+            assertEquals(1000, store.size());
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(store.check("item", sums("data" + i)), "data" + i);
+            }
+        }
+    }
+
+    @Test
+    void testKeepsNewestAtMaxSlots() throws Exception {
+        Path file = dir.resolve("kff.bin");
+        try (KffMappedStore store = open(file, 16, 64, 0, KffMappedStore.MAP_CHUNK_SIZE)) {
+            for (int i = 0; i < 1000; i++) {
+                now.incrementAndGet();
+                assertFalse(store.check("item", sums("data" + i)), "data" + i);
+            }
+            assertTrue(store.size() <= 48, "Store must stay within its slots");
+            for (int i = 990; i < 1000; i++) {
+                assertTrue(store.check("item", sums("data" + i)), "Newest hashes are kept: data" + i);
+            }
+            assertFalse(store.check("item", sums("data0")), "Oldest hashes are dropped");
+        }
+        assertTrue(Files.size(file) <= KffMappedStore.HEADER_SIZE + 64 * 40L);
+    }
+
+    @Test
+    void testCompactionDropsAgedOffHashes() throws Exception {
+        Path file = dir.resolve("kff.bin");
+        try (KffMappedStore store = open(file, 64, 60)) {
+            for (int i = 0; i < 10; i++) {
+                store.check("item", sums("old" + i));
+            }
+            now.addAndGet(30);
+            for (int i = 0; i < 5; i++) {
+                store.check("item", sums("new" + i));
+            }
+            assertEquals(15, store.size());
+
+            now.addAndGet(40);
+            store.compact(true);
+            assertEquals(5, store.size());
+            for (int i = 0; i < 5; i++) {
+                assertTrue(store.check("item", sums("new" + i)), "new" + i);
+            }
+            assertFalse(store.check("item", sums("old0")));
+        }
+        try (KffMappedStore store = open(file, 64, 60)) {
+            assertEquals(6, store.size(), "Compacted file replaces the original");
+        }
+    }
+
+    @Test
+    void testConcurrentChecks() throws IOException, NoSuchAlgorithmException, InterruptedException, ExecutionException {
+        int threads = 4;
+        int distinct = 2000;
+        List<ChecksumResults> all = new ArrayList<>();
+        for (int i = 0; i < distinct; i++) {
+            all.add(sums("data" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (KffMappedStore store = open(dir.resolve("kff.bin"), 16, 0)) {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(() -> {
+                    int misses = 0;
+                    for (ChecksumResults s : all) {
+                        if (!store.check("item", s)) {
+                            misses++;
+                        }
+                    }
+                    return misses;
+                });
+            }
+            int misses = 0;
+            for (Future<Integer> f : executor.invokeAll(tasks)) {
+                misses += f.get();
+            }
+            assertEquals(distinct, misses, "Each hash should be stored exactly once");
+            assertEquals(distinct, store.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRejectsOtherHashLength() throws Exception {
+        Path file = dir.resolve("kff.bin");
+        open(file, 16, 0).close();
+        assertThrows(IOException.class,
+                () -> new KffMappedStore(file, "LOCAL", FilterType.DUPLICATE, "SHA-1", 16, 64, 0, 3600, now::get, KffMappedStore.MAP_CHUNK_SIZE));
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws Exception {
+        Path file = dir.resolve("kff.bin");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> open(file, 16, 0));
+    }
+
+    @Test
+    void testRejectsMissingHash() throws Exception {
+        try (KffMappedStore store = open(dir.resolve("kff.bin"), 16, 0)) {
+            ChecksumResults sha1 = new ChecksumCalculator(Collections.singletonList("SHA-1")).digest("data".getBytes());
+            assertThrows(Exception.class, () -> store.check("item", sha1));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package emissary.kff;
 
+import emissary.core.BaseDataObject;
+import emissary.core.IBaseDataObject;
+import emissary.core.IBaseDataObjectHelper;
 import emissary.kff.KffFilter.FilterType;
 import emissary.test.core.junit5.UnitTest;
 
@@ -16,18 +19,34 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.stubbing.Answer;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -106,10 +125,119 @@ class KffMemcachedTest extends UnitTest {
         assertTrue(mcdFilter.check(TEST_ID_WITH_SPACES, createSums(mcdFilter)), "Filter should hit");
     }
 
+    @Test
+    void testNearCacheAvoidsRoundTrip() throws Exception {
+        try (FakeMemcachedServer server = new FakeMemcachedServer()) {
+            MemcachedClient client = server.connect();
+            try {
+                KffMemcached mcdFilter = createServerFilter(client);
+                ChecksumResults sums = createSums(mcdFilter, TEST_PAYLOAD);
+                assertFalse(mcdFilter.check("ID1", sums), "First sighting should not hit");
+                assertTrue(mcdFilter.check("ID2", sums), "Second sighting should hit");
+                assertEquals(1, server.gets.get(), "Only the first check should reach memcached");
+                assertEquals(1, mcdFilter.getMisses());
+                assertEquals(1, mcdFilter.getNearCacheHits());
+                assertEquals(0, mcdFilter.getMemcachedHits());
+                assertEquals(1, mcdFilter.getMemcachedLatency().getCount());
+            } finally {
+                client.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testCheckAllUsesOneMultiGet() throws Exception {
+        try (FakeMemcachedServer server = new FakeMemcachedServer()) {
+            MemcachedClient client = server.connect();
+            try {
+                KffMemcached first = createServerFilter(client);
+                List<ChecksumResults> sums = Arrays.asList(createSums(first, "one"), createSums(first, "two"), createSums(first, "three"),
+                        createSums(first, "one"));
+                assertArrayEquals(new boolean[] {false, false, false, true}, first.checkAll(Arrays.asList("A", "B", "C", "D"), sums));
+                assertEquals(1, server.gets.get(), "Whole batch should be one get");
+                assertEquals(3, server.lastGetKeys.get(), "Repeated hash should only be asked for once");
+                assertEquals(3, first.getMisses());
+
+                // a second filter has nothing cached locally so everything comes from memcached
+                KffMemcached second = createServerFilter(client);
+                assertArrayEquals(new boolean[] {true, true, true, true}, second.checkAll(Arrays.asList("E", "F", "G", "H"), sums));
+                assertEquals(2, server.gets.get());
+                assertEquals(0, second.getMisses());
+                assertEquals(0, second.getNearCacheHits());
+
+                // and now the batch is answered locally
+                assertArrayEquals(new boolean[] {true, true, true, true}, second.checkAll(Arrays.asList("E", "F", "G", "H"), sums));
+                assertEquals(2, server.gets.get(), "Cached batch should not reach memcached");
+                assertEquals(4, second.getNearCacheHits());
+            } finally {
+                client.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testCheckAllSkipsIgnoredIds() throws Exception {
+        try (FakeMemcachedServer server = new FakeMemcachedServer()) {
+            MemcachedClient client = server.connect();
+            try {
+                KffMemcached mcdFilter = createServerFilter(client);
+                List<ChecksumResults> sums = Arrays.asList(createSums(mcdFilter, "one"), createSums(mcdFilter, "one"));
+                assertArrayEquals(new boolean[] {false, false}, mcdFilter.checkAll(Arrays.asList("badvalue", "A"), sums));
+                assertEquals(1, server.lastGetKeys.get());
+            } finally {
+                client.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testSproutedChildrenAreCheckedInOneRoundTrip() throws Exception {
+        try (FakeMemcachedServer server = new FakeMemcachedServer()) {
+            MemcachedClient client = server.connect();
+            try {
+                KffMemcached mcdFilter = createServerFilter(client);
+                KffChain chain = new KffChain();
+                chain.addAlgorithm(mcdFilter.getPreferredAlgorithm());
+                chain.addFilter(mcdFilter);
+                KffDataObjectHandler handler = new KffDataObjectHandler(KffDataObjectHandler.KEEP_KNOWN_DATA,
+                        KffDataObjectHandler.NO_FORM_CHANGE_WHEN_KNOWN, KffDataObjectHandler.NO_SET_FILE_TYPE);
+                handler.kff = chain;
+
+                IBaseDataObject parent = new BaseDataObject("parent".getBytes(StandardCharsets.UTF_8), "parent");
+                List<IBaseDataObject> children = new ArrayList<>();
+                for (String data : Arrays.asList("one", "two", "three", "one", "four")) {
+                    children.add(new BaseDataObject(data.getBytes(StandardCharsets.UTF_8), "child-" + children.size()));
+                }
+                IBaseDataObjectHelper.addParentInformationToChildren(parent, children, false, Collections.emptySet(),
+                        "UNKNOWN.FOO.ID.http://localhost:8001/FooPlace", handler);
+
+                assertEquals(1, server.gets.get(), "All of the children should be one get");
+                assertEquals(4, server.lastGetKeys.get());
+                for (int i = 0; i < children.size(); i++) {
+                    assertTrue(KffDataObjectHandler.hashPresent(children.get(i)), "Child " + i + " is hashed");
+                    assertEquals(i == 3, children.get(i).hasParameter(KffDataObjectHandler.KFF_PARAM_DUPE_FILTER_NAME),
+                            "Only the repeated child is a duplicate");
+                }
+            } finally {
+                client.shutdown();
+            }
+        }
+    }
+
     private static ChecksumResults createSums(KffMemcached mcd) throws NoSuchAlgorithmException {
+        return createSums(mcd, TEST_PAYLOAD);
+    }
+
+    private static ChecksumResults createSums(KffMemcached mcd, String payload) throws NoSuchAlgorithmException {
         List<String> kffalgs = new ArrayList<>();
         kffalgs.add(mcd.getPreferredAlgorithm());
-        return new ChecksumCalculator(kffalgs).digest(TEST_PAYLOAD.getBytes());
+        return new ChecksumCalculator(kffalgs).digest(payload.getBytes());
+    }
+
+    private static KffMemcached createServerFilter(MemcachedClient client) throws IOException, NoSuchFieldException, IllegalAccessException {
+        KffMemcached filter = new KffMemcached(TEST_ID_WITH_SPACES, "KFF", FilterType.DUPLICATE, client);
+        setPrivateMembersForTesting(filter, Boolean.FALSE);
+        return filter;
     }
 
 
@@ -224,4 +352,102 @@ class KffMemcachedTest extends UnitTest {
 
     }
 
+    /**
+     * Just enough of the memcached text protocol to serve get and set from memory
+     */
+    private static final class FakeMemcachedServer implements Closeable {
+        private final ServerSocket serverSocket;
+        private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+        private final Map<String, String> flags = new ConcurrentHashMap<>();
+        final AtomicInteger gets = new AtomicInteger();
+        final AtomicInteger lastGetKeys = new AtomicInteger();
+
+        FakeMemcachedServer() throws IOException {
+            serverSocket = new ServerSocket(0, 5, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::accept, "FakeMemcachedServer");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        MemcachedClient connect() throws IOException {
+            return new MemcachedClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort()));
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread handler = new Thread(() -> serve(socket), "FakeMemcachedConnection");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket;
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream()) {
+                String line;
+                while ((line = readLine(in)) != null) {
+                    String[] parts = line.split(" ");
+                    if ("get".equals(parts[0]) || "gets".equals(parts[0])) {
+                        gets.incrementAndGet();
+                        lastGetKeys.set(parts.length - 1);
+                        for (int i = 1; i < parts.length; i++) {
+                            byte[] value = values.get(parts[i]);
+                            if (value != null) {
+                                out.write(("VALUE " + parts[i] + " " + flags.get(parts[i]) + " " + value.length + "\r\n")
+                                        .getBytes(StandardCharsets.US_ASCII));
+                                out.write(value);
+                                out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+                            }
+                        }
+                        out.write("END\r\n".getBytes(StandardCharsets.US_ASCII));
+                    } else if ("set".equals(parts[0])) {
+                        byte[] value = new byte[Integer.parseInt(parts[4])];
+                        int read = 0;
+                        while (read < value.length) {
+                            read += in.read(value, read, value.length - read);
+                        }
+                        readLine(in);
+                        values.put(parts[1], value);
+                        flags.put(parts[1], parts[2]);
+                        if (parts.length < 6) {
+                            out.write("STORED\r\n".getBytes(StandardCharsets.US_ASCII));
+                        }
+                    } else if ("version".equals(parts[0])) {
+                        out.write("VERSION 1.6.0\r\n".getBytes(StandardCharsets.US_ASCII));
+                    } else {
+                        out.write("ERROR\r\n".getBytes(StandardCharsets.US_ASCII));
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // connection closed by the client
+            }
+        }
+
+        @Nullable
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                    return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+                }
+                line.write(b);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
 }
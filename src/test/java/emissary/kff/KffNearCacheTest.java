@@ -0,0 +1,89 @@
+package emissary.kff;
+
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KffNearCacheTest extends UnitTest {
+
+    @Test
+    void testGetAndPut() {
+        KffNearCache cache = new KffNearCache(10, 60);
+        assertNull(cache.get("a"));
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        cache.put("a", "2");
+        assertEquals("2", cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testRepeatedKeysSurviveScan() {
+        KffNearCache cache = new KffNearCache(10, 60);
+        for (int i = 0; i < 5; i++) {
+            cache.put("hot" + i, "v");
+            cache.get("hot" + i);
+        }
+        // a long run of keys seen once only pushes out other keys seen once
+        for (int i = 0; i < 100; i++) {
+            cache.put("cold" + i, "v");
+        }
+        assertEquals(10, cache.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("v", cache.get("hot" + i), "hot" + i);
+        }
+        assertNull(cache.get("cold0"));
+        assertEquals("v", cache.get("cold99"));
+    }
+
+    @Test
+    void testEntriesExpire() {
+        AtomicLong now = new AtomicLong();
+        KffNearCache cache = new KffNearCache(10, 60, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertEquals("1", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    void testShorterTtl() {
+        AtomicLong now = new AtomicLong();
+        KffNearCache cache = new KffNearCache(10, 60, now::get);
+        cache.put("a", "1", 10);
+        cache.put("b", "2", 600);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(50));
+        assertNull(cache.get("b"), "Never kept longer than the usual time");
+    }
+
+    @Test
+    void testNoTtl() {
+        AtomicLong now = new AtomicLong();
+        KffNearCache cache = new KffNearCache(10, 0, now::get);
+        cache.put("a", "1");
+        now.addAndGet(TimeUnit.DAYS.toNanos(365));
+        assertEquals("1", cache.get("a"));
+    }
+
+    @Test
+    void testZeroCapacityHoldsNothing() {
+        KffNearCache cache = new KffNearCache(0, 60);
+        cache.put("a", "1");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,92 @@
+package emissary.kff;
+
+import emissary.core.channels.FileChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
+
+import jakarta.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Ssdeep} fuzzy hashing from a byte array and from a file channel. Random input usually hashes at
+ * the estimated block size. Sparse input, small random islands in zeros, gives too few signature characters at the
+ * estimated block size and falls back to smaller ones.
+ * <p>
+ * Run with the jmh profile, see DEVELOPING.md. The largest inputs need a bigger heap, so pass -Xmx3g with any
+ * -jvmArgsAppend given on the command line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SsdeepBenchmark {
+
+    @Param({"1048576", "33554432", "1073741824"})
+    public int size;
+
+    @Param({"random", "sparse"})
+    public String content;
+
+    @Param({"bytes", "channel"})
+    public String source;
+
+    private final Ssdeep ss = new Ssdeep();
+    @Nullable
+    private byte[] data;
+    @Nullable
+    private Path file;
+    @Nullable
+    private SeekableByteChannelFactory sbcf;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final SplittableRandom r = new SplittableRandom(17);
+        this.data = new byte[this.size];
+        if ("random".equals(this.content)) {
+            r.nextBytes(this.data);
+        } else {
+            for (int i = 0; i < this.size; i += 65536) {
+                for (int j = i; j < Math.min(i + 512, this.size); j++) {
+                    this.data[j] = (byte) r.nextInt();
+                }
+            }
+        }
+        if ("channel".equals(this.source)) {
+            this.file = Files.createTempFile("ssdeep", ".bin");
+            Files.write(this.file, this.data);
+            this.data = null;
+            this.sbcf = FileChannelFactory.create(this.file);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (this.file != null) {
+            Files.delete(this.file);
+        }
+    }
+
+    @Benchmark
+    public String fuzzyHash() {
+        return this.data != null ? this.ss.fuzzyHash(this.data) : this.ss.fuzzyHash(this.sbcf);
+    }
+}
@@ -0,0 +1,117 @@
+package emissary.kff;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of {@link SsdeepIndex} against a large corpus of ssdeep signatures, compared with scoring every entry.
+ * The corpus is synthetic: random base64 hash parts, which is what ssdeep produces for unrelated content, at block
+ * sizes spread over the range seen for files of a few kilobytes to tens of megabytes. Half of the queries are
+ * near-duplicates of corpus entries with a few characters changed, the rest are unrelated.
+ * <p>
+ * Run with the jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SsdeepIndexBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(SsdeepIndexBenchmark.class);
+
+    private static final String B64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int QUERIES = 1024;
+    private static final int MIN_SCORE = 1;
+
+    @Param({"1000000"})
+    public int entries;
+
+    private final Ssdeep ss = new Ssdeep();
+    private SpamSumSignature[] corpus;
+    private SpamSumSignature[] queries;
+    private SsdeepIndex index;
+    private int next;
+
+    private static String part(final SplittableRandom r, final int length) {
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(B64.charAt(r.nextInt(64)));
+        }
+        return sb.toString();
+    }
+
+    private static String mutate(final SplittableRandom r, final String part) {
+        final char[] c = part.toCharArray();
+        for (int i = 0; i < 3 && c.length > 0; i++) {
+            c[r.nextInt(c.length)] = B64.charAt(r.nextInt(64));
+        }
+        return new String(c);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final SplittableRandom r = new SplittableRandom(7);
+        this.corpus = new SpamSumSignature[this.entries];
+        this.index = new SsdeepIndex();
+        final long start = System.nanoTime();
+        for (int i = 0; i < this.entries; i++) {
+            final long blockSize = 3L << (4 + r.nextInt(12));
+            this.corpus[i] = new SpamSumSignature(blockSize + ":" + part(r, 32 + r.nextInt(33)) + ":" + part(r, 16 + r.nextInt(17)));
+            this.index.add(this.corpus[i]);
+        }
+        logger.info("Built {} in {} ms", this.index, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        this.queries = new SpamSumSignature[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            if (i % 2 == 0) {
+                final SpamSumSignature known = this.corpus[r.nextInt(this.entries)];
+                this.queries[i] = new SpamSumSignature(known.getBlockSize() + ":" + mutate(r, SpamSumSignature.getString(known.getHashPart1())) + ":"
+                        + mutate(r, SpamSumSignature.getString(known.getHashPart2())));
+            } else {
+                this.queries[i] =
+                        new SpamSumSignature((3L << (4 + r.nextInt(12))) + ":" + part(r, 32 + r.nextInt(33)) + ":" + part(r, 16 + r.nextInt(17)));
+            }
+        }
+    }
+
+    private SpamSumSignature nextQuery() {
+        this.next = (this.next + 1) % QUERIES;
+        return this.queries[this.next];
+    }
+
+    @Benchmark
+    public int index() {
+        return this.index.query(nextQuery(), MIN_SCORE).size();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1, time = 2)
+    @Measurement(iterations = 3, time = 2)
+    public int bruteForce() {
+        final SpamSumSignature query = nextQuery();
+        int found = 0;
+        for (final SpamSumSignature known : this.corpus) {
+            if (this.ss.compare(query, known) >= MIN_SCORE) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,251 @@
+package emissary.kff;
+
+import emissary.kff.KffFilter.FilterType;
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SsdeepIndexTest extends UnitTest {
+
+    private final Ssdeep ss = new Ssdeep();
+
+    /**
+     * Documents in families of near-duplicates, including halves and doubles so block sizes differ by two
+     */
+    private List<String> corpus() {
+        Random r = new Random(1234);
+        List<String> hashes = new ArrayList<>();
+        for (int family = 0; family < 30; family++) {
+            byte[] doc = new byte[2048 + r.nextInt(64 * 1024)];
+            for (int i = 0; i < doc.length; i++) {
+                doc[i] = (byte) (' ' + r.nextInt(64));
+            }
+            hashes.add(ss.fuzzyHash(doc));
+            for (int variant = 0; variant < 4; variant++) {
+                byte[] copy = doc.clone();
+                for (int edit = 0; edit < 1 + variant * 20; edit++) {
+                    copy[r.nextInt(copy.length)] = (byte) r.nextInt(256);
+                }
+                hashes.add(ss.fuzzyHash(copy));
+            }
+            hashes.add(ss.fuzzyHash(Arrays.copyOf(doc, doc.length / 2)));
+            byte[] doubled = Arrays.copyOf(doc, doc.length * 2);
+            System.arraycopy(doc, 0, doubled, doc.length, doc.length);
+            hashes.add(ss.fuzzyHash(doubled));
+        }
+        hashes.add("3::");
+        hashes.add("3:AAAAAAAAAAAAAAAAAAAAAAAA:AAAAAAAAAAAA");
+        return hashes;
+    }
+
+    private List<SsdeepIndex.Match> bruteForce(List<String> hashes, String query, int minScore) {
+        List<SsdeepIndex.Match> matches = new ArrayList<>();
+        SpamSumSignature q = new SpamSumSignature(query);
+        for (int id = 0; id < hashes.size(); id++) {
+            int score = ss.compare(q, new SpamSumSignature(hashes.get(id)));
+            if (score > 0 && score >= minScore) {
+                matches.add(new SsdeepIndex.Match(id, score));
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    @Test
+    void testSameAsBruteForce() {
+        List<String> hashes = corpus();
+        SsdeepIndex index = new SsdeepIndex();
+        for (int id = 0; id < hashes.size(); id++) {
+            assertEquals(id, index.add(new SpamSumSignature(hashes.get(id))));
+        }
+        assertEquals(hashes.size(), index.size());
+
+        int similar = 0;
+        for (String query : hashes) {
+            List<SsdeepIndex.Match> expected = bruteForce(hashes, query, 1);
+            assertEquals(expected, index.query(new SpamSumSignature(query), 1), query);
+            assertEquals(bruteForce(hashes, query, 90), index.query(new SpamSumSignature(query), 90), query);
+            similar += expected.size();
+        }
+        assertTrue(similar > hashes.size() * 2, "Corpus has near-duplicates to find");
+        assertTrue(index.query(new SpamSumSignature("3::"), 1).isEmpty());
+    }
+
+    @Test
+    void testManyRuns() {
+        // Enough entries to flush and merge pending postings several times
+        Random r = new Random(99);
+        SsdeepIndex index = new SsdeepIndex();
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder("192:");
+            for (int j = 0; j < 64; j++) {
+                sb.append((char) ('A' + r.nextInt(26)));
+            }
+            sb.append(':');
+            for (int j = 0; j < 32; j++) {
+                sb.append((char) ('a' + r.nextInt(26)));
+            }
+            hashes.add(sb.toString());
+            index.add(new SpamSumSignature(sb.toString()));
+        }
+        assertTrue(index.toString().contains("entries=2000"));
+        for (int i = 0; i < hashes.size(); i += 97) {
+            String query = hashes.get(i);
+            List<SsdeepIndex.Match> matches = index.query(new SpamSumSignature(query), 1);
+            assertEquals(bruteForce(hashes, query, 1), matches);
+            assertEquals(i, matches.get(0).getId());
+            assertEquals(100, matches.get(0).getScore());
+        }
+    }
+
+    @Test
+    void testFilter(@TempDir Path dir) throws Exception {
+        List<String> hashes = corpus();
+        Path known = dir.resolve("known.ssdeep");
+        List<String> lines = new ArrayList<>();
+        lines.add("ssdeep,1.1--blocksize:hash:hash,filename");
+        lines.add("");
+        lines.add("not a hash");
+        // first document of every other family
+        for (int i = 0; i < hashes.size() - 2; i += 14) {
+            lines.add(hashes.get(i) + ",\"doc" + i + "\"");
+        }
+        Files.write(known, lines, StandardCharsets.UTF_8);
+
+        KffSsdeepFilter filter = new KffSsdeepFilter(known, "FUZZY", FilterType.IGNORE, 80, false, 10);
+        assertEquals("FUZZY", filter.getName());
+        assertEquals(FilterType.IGNORE, filter.getFilterType());
+        assertEquals(hashes.size() / 14, filter.size());
+
+        ChecksumResults sums = new ChecksumResults();
+        sums.setSsdeep(hashes.get(1));
+        assertTrue(filter.check("variant", sums), "Near-duplicate of a known document");
+        sums.setSsdeep(hashes.get(7));
+        assertFalse(filter.check("other", sums), "Family not in the file");
+        assertFalse(filter.check("other", sums), "Misses are not added");
+        assertFalse(filter.check("nohash", new ChecksumResults()));
+    }
+
+    @Test
+    void testFilterAddsUnknown(@TempDir Path dir) throws Exception {
+        List<String> hashes = corpus();
+        KffSsdeepFilter filter = new KffSsdeepFilter(dir.resolve("missing"), "FUZZY", FilterType.DUPLICATE, 80, true, 10);
+        assertEquals(0, filter.size());
+        ChecksumResults sums = new ChecksumResults();
+        sums.setSsdeep(hashes.get(0));
+        assertFalse(filter.check("first", sums));
+        sums.setSsdeep(hashes.get(1));
+        assertTrue(filter.check("second", sums), "Near-duplicate of an item seen before");
+        assertEquals(1, filter.size());
+    }
+
+    @Test
+    void testFilterStopsAddingAtTheLimit(@TempDir Path dir) throws Exception {
+        List<String> hashes = corpus();
+        KffSsdeepFilter filter = new KffSsdeepFilter(dir.resolve("missing"), "FUZZY", FilterType.DUPLICATE, 80, true, 2);
+        ChecksumResults sums = new ChecksumResults();
+        // first document of three families
+        for (int i = 0; i < 3 * 7; i += 7) {
+            sums.setSsdeep(hashes.get(i));
+            assertFalse(filter.check("doc" + i, sums));
+        }
+        assertEquals(2, filter.size());
+        sums.setSsdeep(hashes.get(15));
+        assertFalse(filter.check("variant", sums), "Family seen after the limit was not added");
+        sums.setSsdeep(hashes.get(8));
+        assertTrue(filter.check("variant", sums), "Family seen before the limit was added");
+    }
+
+    @Test
+    void testFullIndexRefusesAdds() {
+        SsdeepIndex index = new SsdeepIndex(2);
+        List<String> hashes = corpus();
+        assertEquals(0, index.add(new SpamSumSignature(hashes.get(0))));
+        assertEquals(1, index.add(new SpamSumSignature(hashes.get(7))));
+        assertEquals(-1, index.add(new SpamSumSignature(hashes.get(14))));
+        assertEquals(2, index.size());
+        assertEquals(0, index.query(new SpamSumSignature(hashes.get(0)), 100).get(0).getId());
+        assertThrows(IllegalArgumentException.class, () -> new SsdeepIndex(0));
+    }
+
+    @Test
+    void testConcurrentAddsAndQueries() throws ExecutionException, InterruptedException {
+        // adders fill the pending buffer many times, so merges run while others add and query
+        SsdeepIndex index = new SsdeepIndex();
+        int threads = 4;
+        int perThread = 3000;
+        List<List<String>> added = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                List<String> mine = new ArrayList<>();
+                added.add(mine);
+                Random r = new Random(t);
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String hash = randomHash(r);
+                        mine.add(hash);
+                        index.add(new SpamSumSignature(hash));
+                        if (i % 50 == 0) {
+                            assertEquals(100, index.query(new SpamSumSignature(hash), 100).get(0).getScore());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(threads * perThread, index.size());
+        for (List<String> mine : added) {
+            for (int i = 0; i < mine.size(); i += 101) {
+                assertFalse(index.query(new SpamSumSignature(mine.get(i)), 100).isEmpty());
+            }
+        }
+    }
+
+    private static String randomHash(Random r) {
+        StringBuilder sb = new StringBuilder("192:");
+        for (int j = 0; j < 64; j++) {
+            sb.append((char) ('A' + r.nextInt(26)));
+        }
+        sb.append(':');
+        for (int j = 0; j < 32; j++) {
+            sb.append((char) ('a' + r.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testFilterFromConfig(@TempDir Path dir) throws IOException {
+        KffSsdeepFilter filter = new KffSsdeepFilter(dir.resolve("missing").toString(), "FUZZY", FilterType.DUPLICATE);
+        assertEquals(80, filter.minScore);
+        assertFalse(filter.addUnknown);
+        assertEquals(1_000_000, filter.maxUnknown);
+    }
+}
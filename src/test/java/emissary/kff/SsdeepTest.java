@@ -1,11 +1,17 @@
 package emissary.kff;
 
+import emissary.core.channels.ExceptionChannelFactory;
+import emissary.core.channels.InMemoryChannelFactory;
 import emissary.test.core.junit5.UnitTest;
 import emissary.util.Hexl;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.util.Random;
 
@@ -85,6 +91,68 @@ final class SsdeepTest extends UnitTest {
                 "Hashes do not match for random array (length=" + BIG_RANDOM_ARRAY_LENGTH + ", seed=" + BIG_RANDOM_ARRAY_SEED + ")");
     }
 
+    private static byte[] lowEntropy(final int length, final long seed) {
+        final byte[] input = new byte[length];
+        final Random rng = new Random(seed);
+        for (int i = 0; i < length; i++) {
+            input[i] = (byte) "abcd".charAt(rng.nextInt(4));
+        }
+        return input;
+    }
+
+    private static byte[] repeated(final int length) {
+        final byte[] input = new byte[length];
+        final byte[] text = getStringAsUtf8("The quick brown fox jumps over the lazy dog. ");
+        for (int i = 0; i < length; i++) {
+            input[i] = text[i % text.length];
+        }
+        return input;
+    }
+
+    private static byte[] sparse(final int length, final long seed) {
+        final byte[] input = new byte[length];
+        final Random rng = new Random(seed);
+        for (int i = 0; i < length; i += 65536) {
+            for (int j = 0; j < 512; j++) {
+                input[i + j] = (byte) rng.nextInt();
+            }
+        }
+        return input;
+    }
+
+    private static byte[] random(final int length, final long seed) {
+        final byte[] input = new byte[length];
+        new Random(seed).nextBytes(input);
+        return input;
+    }
+
+    /**
+     * Hash the same input as an array, a channel and a file
+     */
+    private void assertHashAllWays(final byte[] input, final String expectedHash, final Path dir) throws IOException {
+        assertEquals(expectedHash, ss.fuzzyHash(input), "array");
+        assertEquals(expectedHash, ss.fuzzyHash(InMemoryChannelFactory.create(input)), "channel");
+        final Path file = Files.write(dir.resolve("input"), input);
+        assertEquals(expectedHash, ss.fuzzyHashFile(file.toString()), "file");
+    }
+
+    @Test
+    void testHashFallingBackToSmallerBlockSizes(@TempDir final Path dir) throws IOException {
+        // Expected values are from the implementation that hashed the input again at each smaller block size
+        assertHashAllWays(new byte[1 << 20], "3::", dir);
+        assertHashAllWays(repeated(3 << 20), "12:Fg6666666666666666666666666666666666666666666666666666666666666J:FV", dir);
+        assertHashAllWays(lowEntropy(1 << 20, 5), "384:K2oV9xbmqV8Ikybz8M4nllVbhjFraw88CPtQpnWKprXY/KVCpRGDpdhCcSQrIbbK:H", dir);
+        assertHashAllWays(sparse(4 << 20, 31), "768:YkdPJ7EDzJG4ElIucvT0DoTdlb6IBTS11AS1EsTk4:YkJZ6o4EgvGYfb94mSisTk4", dir);
+        assertHashAllWays(random(5 << 20, 777), "98304:jo5+S/2tz+4DsGiooMOCPAo5t7zVQSmOH4/LQJNNNvZmMH:joASbjGdAof3SSmykLONNNvTH", dir);
+        assertHashAllWays(getStringAsUtf8(LOREM_IPSUM), LOREM_IPSUM_HASH, dir);
+    }
+
+    @Test
+    void testHashUnreadableChannel() {
+        assertEquals("3::", ss.fuzzyHash(new ExceptionChannelFactory()));
+        assertEquals("3::", ss.fuzzyHash((byte[]) null));
+    }
+
     // Changing any of these parameters will require a corresponding
     // update in the expected values.
     private static final int MANY_RANDOM_SEED = 246810;
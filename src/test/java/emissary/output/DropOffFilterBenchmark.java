@@ -0,0 +1,151 @@
+package emissary.output;
+
+import emissary.config.Configurator;
+import emissary.config.ServiceConfigGuide;
+import emissary.core.DataObjectFactory;
+import emissary.core.IBaseDataObject;
+import emissary.output.filter.AbstractFilter;
+import emissary.output.filter.IDropOffFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to run four output filters over a family, one after another and concurrently. Concurrent filters that may change
+ * the payloads work on copies, except the first, while read only filters share the payloads. Each filter writes the
+ * data and metadata of every payload to its own file and syncs it, like DataFilter does.
+ * <p>
+ * Run with the jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DropOffFilterBenchmark {
+
+    private static final int FILTERS = 4;
+
+    @Param({"sequential", "parallel-copy", "parallel-shared"})
+    public String mode;
+
+    @Param({"10", "500"})
+    public int familySize;
+
+    @Param({"4096"})
+    public int dataSize;
+
+    private Path dir;
+    private DropOffPlace place;
+    private List<IBaseDataObject> family;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("dropoff");
+        final Configurator cfg = new ServiceConfigGuide();
+        cfg.addEntry("UNIX_ROOT", this.dir.toString());
+        this.place = new DropOffPlace(cfg);
+        for (int i = 0; i < FILTERS; i++) {
+            this.place.addFilter(new WriteFilter("F" + i, this.dir.resolve("F" + i), !"parallel-shared".equals(this.mode)));
+        }
+        if (!"sequential".equals(this.mode)) {
+            this.place.filterExecutor = this.place.createFilterExecutor(FILTERS, FILTERS * 4);
+        }
+
+        this.family = new ArrayList<>(this.familySize);
+        for (int i = 0; i < this.familySize; i++) {
+            final byte[] data = new byte[this.dataSize];
+            ThreadLocalRandom.current().nextBytes(data);
+            final IBaseDataObject d = DataObjectFactory.getInstance(data, "/feeds/message.eml" + (i == 0 ? "" : "-att-" + i), "TEXT");
+            d.setFileType("TEXT");
+            for (int p = 0; p < 20; p++) {
+                d.putParameter("PARAM_" + p, "value " + p + " of payload " + i);
+            }
+            this.family.add(d);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.place.shutDown();
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            for (Path f : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(f);
+            }
+        }
+    }
+
+    @Benchmark
+    public void filters() {
+        final Map<String, Object> params = new HashMap<>();
+        params.put(IDropOffFilter.TLD_PARAM, this.family.get(0));
+        this.place.runOutputFilters(this.family, params);
+    }
+
+    public static class WriteFilter extends AbstractFilter {
+        private final Path file;
+        private final boolean modifies;
+
+        public WriteFilter(final String name, final Path file, final boolean modifies) {
+            setFilterName(name);
+            this.file = file;
+            this.modifies = modifies;
+        }
+
+        @Override
+        public boolean modifiesPayloads() {
+            return this.modifies;
+        }
+
+        @Override
+        public int filter(final List<IBaseDataObject> list, final Map<String, Object> params) {
+            try (FileChannel out = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (final IBaseDataObject d : list) {
+                    out.write(ByteBuffer.wrap(d.data()));
+                    for (final Map.Entry<String, Collection<Object>> entry : d.getParameters().entrySet()) {
+                        out.write(ByteBuffer.wrap((entry.getKey() + "=" + entry.getValue() + "\n").getBytes(StandardCharsets.UTF_8)));
+                    }
+                }
+                out.force(false);
+                return STATUS_SUCCESS;
+            } catch (IOException e) {
+                return STATUS_FAILURE;
+            }
+        }
+
+        @Override
+        public int filter(final IBaseDataObject d, final Map<String, Object> params) {
+            return filter(List.of(d), params);
+        }
+    }
+}
@@ -4,6 +4,10 @@ import emissary.config.Configurator;
 import emissary.config.ServiceConfigGuide;
 import emissary.core.DataObjectFactory;
 import emissary.core.IBaseDataObject;
+import emissary.core.MetricsManager;
+import emissary.core.Namespace;
+import emissary.core.channels.SeekableByteChannelHelper;
+import emissary.output.filter.AbstractFilter;
 import emissary.output.filter.IDropOffFilter;
 import emissary.test.core.junit5.UnitTest;
 
@@ -11,6 +15,8 @@ import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import jakarta.annotation.Nullable;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,13 +30,23 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class DropOffPlaceTest extends UnitTest {
 
@@ -151,6 +167,204 @@ class DropOffPlaceTest extends UnitTest {
         }
     }
 
+    @Test
+    void testParallelFiltersAreIsolated() throws Exception {
+        this.place.shutDown();
+        final Configurator cfg = new ServiceConfigGuide();
+        cfg.addEntry("UNIX_ROOT", tempDir.toString());
+        cfg.addEntry("OUTPUT_FILTER", "ONE:emissary.output.filter.DataFilter");
+        cfg.addEntry("OUTPUT_FILTER", "TWO:emissary.output.filter.DataFilter");
+        cfg.addEntry("OUTPUT_SPEC_ONE", "%R%/one/%S%.%F%");
+        cfg.addEntry("OUTPUT_SPEC_TWO", "%R%/two/%S%.%F%");
+        cfg.addEntry("PARALLEL_FILTERS", "true");
+        cfg.addEntry("PARALLEL_FILTER_TIMEOUT_MILLIS", "500");
+        this.place = new DropOffPlace(cfg);
+        this.place.addFilter(new TestFilter("HANG", TimeUnit.SECONDS.toMillis(30), false));
+        this.place.addFilter(new TestFilter("BOOM", 0, true));
+
+        final IBaseDataObject payload = DataObjectFactory.getInstance();
+        payload.setData("This is the data".getBytes());
+        payload.setCurrentForm("FOO");
+        payload.setFileType("FTYPE");
+        payload.setFilename("/this/is/a/testfile");
+        final List<IBaseDataObject> payloadList = new ArrayList<>();
+        payloadList.add(payload);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> this.place.agentProcessHeavyDuty(payloadList));
+        assertTrue(Files.exists(tempDir.resolve("one/testfile.FTYPE")), "First filter must have written output");
+        assertTrue(Files.exists(tempDir.resolve("two/testfile.FTYPE")), "Second filter must have written output");
+    }
+
+    @Test
+    void testParallelFiltersGetCopiesAndAreTimed() throws Exception {
+        this.place.shutDown();
+        this.place = new DropOffPlace(parallelConfig("true", 10000));
+        final TestFilter first = new TestFilter("FIRST", 0, false);
+        final TestFilter second = new TestFilter("SECOND", 0, false);
+        this.place.addFilter(first);
+        this.place.addFilter(second);
+
+        final MetricsManager metrics = mock(MetricsManager.class);
+        final MetricRegistry registry = new MetricRegistry();
+        when(metrics.getMetricRegistry()).thenReturn(registry);
+        Namespace.bind("MetricsManager", metrics);
+        try {
+            final List<IBaseDataObject> payloadList = newPayloadList();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> this.place.agentProcessHeavyDuty(payloadList));
+
+            for (final String name : List.of("ONE", "TWO", "FIRST", "SECOND")) {
+                final Histogram latency = registry.getHistograms().get(this.place.getPlaceName() + ".filter." + name + ".latencyMillis");
+                assertNotNull(latency, "Filter latency must be recorded for " + name);
+                assertEquals(1, latency.getCount());
+            }
+            for (final TestFilter filter : List.of(first, second)) {
+                assertNotSame(payloadList.get(0), filter.seen, "Filter must get its own copy of the payload");
+                assertSame(filter.seen, filter.seenTld, "TLD parameter must refer to the filter's copy");
+                assertEquals("/this/is/a/testfile", filter.seen.getFilename());
+            }
+            assertNotSame(first.seen, second.seen, "Filters must not share a copy");
+        } finally {
+            Namespace.unbind("MetricsManager");
+        }
+    }
+
+    @Test
+    void testParallelReadOnlyFiltersSharePayloads() throws Exception {
+        this.place.shutDown();
+        this.place = new DropOffPlace(parallelConfig("true", 10000));
+        this.place.outputFilters.clear();
+        final TestFilter writer = new TestFilter("WRITER", 0, false);
+        final TestFilter reader = new TestFilter("READER", 0, false);
+        reader.readOnly = true;
+        this.place.addFilter(writer);
+        this.place.addFilter(reader);
+
+        final List<IBaseDataObject> payloadList = newPayloadList();
+        final IBaseDataObject child = DataObjectFactory.getInstance("child".getBytes(), "/this/is/a/testfile-att-1", "CHILD");
+        child.setAlternateViewChannelFactory("VIEW", SeekableByteChannelHelper.memory("view".getBytes()));
+        payloadList.add(child);
+        this.place.runOutputFilters(payloadList, new HashMap<>());
+
+        assertSame(payloadList.get(0), reader.seenAll.get(0), "Read only filter must share the payload");
+        assertNotSame(child, reader.seenAll.get(1), "Payload with views held as channels must be copied");
+        assertNotSame(payloadList.get(0), writer.seenAll.get(0), "Filter that changes payloads must get a copy when others share");
+    }
+
+    @Test
+    void testFirstParallelFilterGetsPayloadsWhenNoneShare() throws Exception {
+        this.place.shutDown();
+        this.place = new DropOffPlace(parallelConfig("true", 10000));
+        this.place.outputFilters.clear();
+        final TestFilter first = new TestFilter("FIRST", 0, false);
+        final TestFilter second = new TestFilter("SECOND", 0, false);
+        this.place.addFilter(first);
+        this.place.addFilter(second);
+
+        final List<IBaseDataObject> payloadList = newPayloadList();
+        this.place.runOutputFilters(payloadList, new HashMap<>());
+
+        assertSame(payloadList.get(0), first.seenAll.get(0), "First filter must be given the payload");
+        assertNotSame(payloadList.get(0), second.seenAll.get(0), "Other filters must get copies");
+    }
+
+    @Test
+    void testParallelFailureTerminatesChain() throws Exception {
+        this.place.shutDown();
+        this.place = new DropOffPlace(parallelConfig("true", 20000));
+        final TestFilter boom = new TestFilter("BOOM", 0, true);
+        final TestFilter hang = new TestFilter("HANG", TimeUnit.SECONDS.toMillis(30), false);
+        this.place.addFilter(boom);
+        this.place.addFilter(hang);
+
+        final List<IBaseDataObject> payloadList = newPayloadList();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> this.place.agentProcessHeavyDuty(payloadList));
+        assertTrue(Files.exists(tempDir.resolve("one/testfile.FTYPE")), "Filters before the failure must have written output");
+        // the later filter is either skipped or interrupted, and never still running
+        assertTrue(hang.seen == null || hang.finished, "Stopped filter must have finished before returning");
+        assertTrue(hang.seen == null || hang.interrupted, "Later filter must have been interrupted");
+    }
+
+    @Test
+    void testParallelTimeoutWaitsForCancelledFilter() throws Exception {
+        this.place.shutDown();
+        this.place = new DropOffPlace(parallelConfig("false", 500));
+        final TestFilter hang = new TestFilter("HANG", TimeUnit.SECONDS.toMillis(30), false);
+        this.place.addFilter(hang);
+
+        final List<IBaseDataObject> payloadList = newPayloadList();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> this.place.agentProcessHeavyDuty(payloadList));
+        assertTrue(hang.interrupted, "Timed out filter must have been interrupted");
+        assertTrue(hang.finished, "Timed out filter must have finished before returning");
+    }
+
+    private Configurator parallelConfig(final String failureTerminates, final long timeoutMillis) {
+        final Configurator cfg = new ServiceConfigGuide();
+        cfg.addEntry("UNIX_ROOT", tempDir.toString());
+        cfg.addEntry("OUTPUT_FILTER", "ONE:emissary.output.filter.DataFilter");
+        cfg.addEntry("OUTPUT_FILTER", "TWO:emissary.output.filter.DataFilter");
+        cfg.addEntry("OUTPUT_SPEC_ONE", "%R%/one/%S%.%F%");
+        cfg.addEntry("OUTPUT_SPEC_TWO", "%R%/two/%S%.%F%");
+        cfg.addEntry("PARALLEL_FILTERS", "true");
+        cfg.addEntry("PARALLEL_FILTER_TIMEOUT_MILLIS", Long.toString(timeoutMillis));
+        cfg.addEntry("FAILURE_TERMINATES_CHAIN", failureTerminates);
+        return cfg;
+    }
+
+    private static List<IBaseDataObject> newPayloadList() {
+        final IBaseDataObject payload = DataObjectFactory.getInstance();
+        payload.setData("This is the data".getBytes());
+        payload.setCurrentForm("FOO");
+        payload.setFileType("FTYPE");
+        payload.setFilename("/this/is/a/testfile");
+        final List<IBaseDataObject> payloadList = new ArrayList<>();
+        payloadList.add(payload);
+        return payloadList;
+    }
+
+    private static final class TestFilter extends AbstractFilter {
+        private final long sleepMillis;
+        private final boolean fail;
+        @Nullable
+        volatile IBaseDataObject seen;
+        @Nullable
+        volatile Object seenTld;
+        final List<IBaseDataObject> seenAll = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean interrupted;
+        volatile boolean finished;
+        boolean readOnly;
+
+        TestFilter(final String name, final long sleepMillis, final boolean fail) {
+            setFilterName(name);
+            this.sleepMillis = sleepMillis;
+            this.fail = fail;
+        }
+
+        @Override
+        public boolean modifiesPayloads() {
+            return !readOnly;
+        }
+
+        @Override
+        public int filter(final IBaseDataObject d, final Map<String, Object> params) {
+            seen = d;
+            seenAll.add(d);
+            seenTld = params.get(TLD_PARAM);
+            if (fail) {
+                throw new IllegalStateException("Test filter failure");
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+                return STATUS_FAILURE;
+            } finally {
+                finished = true;
+            }
+            return STATUS_SUCCESS;
+        }
+    }
+
     public static void cleanupDirectoryRecursively(Path path) throws IOException {
         Files.walkFileTree(path, new SimpleFileVisitor<>() {
             @Override
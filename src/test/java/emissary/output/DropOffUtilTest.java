@@ -661,6 +661,35 @@ class DropOffUtilTest extends UnitTest {
         assertEquals("/this/./is/fine", util.cleanSpecPath("/this/../is/fine"));
         assertEquals("/this/./is/./fine", util.cleanSpecPath("/this/../is/../fine"));
         assertEquals("/this/./././/./is/fine", util.cleanSpecPath("/this/....../../..//./is/fine"));
+        assertNull(util.cleanSpecPath(null));
+        assertEquals(".a.", util.cleanSpecPath("...a..."));
+    }
+
+    @Test
+    void testCompiledSpecMatchesLegacyInterpreter() {
+        final IBaseDataObject tld = DataObjectFactory.getInstance("tld".getBytes(), "/feed\\in/batch.7/message.eml", "EMAIL");
+        tld.setFileType("EMAIL..MSG");
+        tld.setParameter("TARGETBIN", "case\\1234");
+        tld.setParameter("CASE_ID", "C-1234..A");
+        tld.setParameter("DTG", "20240131235959");
+        tld.setParameter("UserName", "bob");
+        tld.setParameter("MY_ID", "ID.0042");
+        final IBaseDataObject child = DataObjectFactory.getInstance("child".getBytes(), "/feed\\in/batch.7/message.eml-att-2", "PDF");
+        child.setFileType("PDF");
+        child.setParameter("FEED", "north.");
+        child.setParameter("LANGUAGE", "ENGLISH");
+        child.setParameter("MY_ID", "CHILD.1");
+
+        final String[] specs = {"%R%/xyzzy/%S%.%F%", "%R%/@TLD{'TARGETBIN'}/%S%", "%R%/%G%/@META{'FEED'}/%b%.%F%.out",
+                "%R%/%p%/%i%.@TLD{'CASE_ID'}.%L%.json", "%U%/%I%/%P%/%B%", "%Q%/%%/%S/%S%%/@META{''}/@TLD{'}/@META{'NOPE'}.x/",
+                "@TLD{'MISSING'}x@META{'FEED'}", "plain.\\path./end.", "@META{'FEED'", "%", "%S", ""};
+        for (final String spec : specs) {
+            assertEquals(LegacyPathSpec.getPathFromSpec(util, spec, child, tld), util.getPathFromSpec(spec, child, tld), spec);
+            assertEquals(LegacyPathSpec.getPathFromSpec(util, spec, child, null), util.getPathFromSpec(spec, child, null), spec);
+            assertEquals(LegacyPathSpec.getPathFromSpec(util, spec, tld, tld), util.getPathFromSpec(spec, tld, tld), spec);
+        }
+        assertEquals(LegacyPathSpec.getPathFromSpec(util, null, child, tld), util.getPathFromSpec(null, child, tld));
+        assertEquals(util.getCompiledSpec("%R%/%S%"), util.getCompiledSpec("%R%/%S%"), "Compiled specs must be cached");
     }
 
     @Test
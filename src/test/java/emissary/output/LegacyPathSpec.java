@@ -0,0 +1,168 @@
+package emissary.output;
+
+import emissary.core.Family;
+import emissary.core.IBaseDataObject;
+import emissary.util.TimeUtil;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * The character by character spec interpreter that
+ * {@link DropOffUtil#getPathFromSpec(String, IBaseDataObject, IBaseDataObject)} used before specs were compiled into a
+ * {@link PathSpec}. Kept to check that compiled specs render the same paths and as the baseline for
+ * {@link PathSpecBenchmark}.
+ */
+final class LegacyPathSpec {
+
+    private LegacyPathSpec() {}
+
+    static String getPathFromSpec(final DropOffUtil util, final String specArg, @Nullable final IBaseDataObject d,
+            @Nullable final IBaseDataObject tld) {
+        final StringBuilder sb = new StringBuilder(128);
+
+        // Provide a default spec, just like the old days...
+        String spec = specArg;
+        if (spec == null) {
+            spec = "%R%/@TLD{'TARGETBIN'}/%S%";
+        }
+
+        for (int i = 0; i < spec.length(); i++) {
+            final char c = spec.charAt(i);
+
+            if (c == '%' && i < spec.length() - 2) {
+                final char t = spec.charAt(i + 1);
+                final char x = spec.charAt(i + 2);
+
+                if (x == c) {
+                    switch (t) {
+                        case 'U':
+                            if (tld != null) {
+                                sb.append(util.nvl(tld.getParameter("UserName"), "no-userid"));
+                            } else if (d != null) {
+                                sb.append(util.nvl(d.getParameter("UserName"), "no-userid"));
+                            }
+                            break;
+                        case 'S':
+                            if (d != null) {
+                                sb.append(d.shortName());
+                            }
+                            break;
+                        case 'I':
+                            if (d != null) {
+                                sb.append(d.getFilename());
+                            }
+                            break;
+                        case 'i':
+                            if (d != null) {
+                                sb.append(d.getFilename().replaceAll("[/\\\\]", "_"));
+                            }
+                            break;
+                        case 'P':
+                            if (d != null) {
+                                sb.append(d.getFilename(), 0, d.getFilename().length() - d.shortName().length());
+                            }
+                            break;
+                        case 'p':
+                            if (d != null) {
+                                sb.append(d.getFilename().substring(0, d.getFilename().length() - d.shortName().length()).replaceAll("[/\\\\]", "_"));
+                            }
+                            break;
+                        case 'F':
+                            if (d != null) {
+                                sb.append(util.nvl(cleanSpecPath(d.getFileType()), "NONE"));
+                            }
+                            break;
+                        case 'L':
+                            if (d != null) {
+                                sb.append(util.nvl(d.getParameter("LANGUAGE"), "NONE"));
+                            }
+                            break;
+                        case 'G':
+                            if (tld != null) {
+                                sb.append(util.datePath(cleanSpecPath(tld.getStringParameter("DTG"))));
+                            } else if (d != null) {
+                                sb.append(util.datePath(cleanSpecPath(d.getStringParameter("DTG"))));
+                            }
+                            break;
+                        case 'R':
+                            sb.append(util.getRootPath());
+                            break;
+                        case 'B':
+                            if (tld != null) {
+                                sb.append(cleanSpecPath(util.getBestIdFrom(tld)));
+                            } else if (d != null) {
+                                sb.append(cleanSpecPath(util.getBestIdFrom(d)));
+                            }
+                            break;
+                        case 'b':
+                            sb.append(cleanSpecPath((tld != null) ? util.getBestIdFrom(tld) : util.getBestIdFrom(d)));
+                            final String sn = d.shortName();
+                            final int pos = sn.indexOf(Family.SEP);
+                            if (pos > 0) {
+                                sb.append(sn.substring(pos));
+                            }
+                            break;
+                        case 'Y':
+                            sb.append(TimeUtil.getDate("yyyy", "GMT"));
+                            break;
+                        case 'M':
+                            sb.append(TimeUtil.getDate("MM", "GMT"));
+                            break;
+                        case 'D':
+                            sb.append(TimeUtil.getDate("dd", "GMT"));
+                            break;
+                        case 'J':
+                            sb.append(TimeUtil.getDate("DDD", "GMT"));
+                            break;
+                        default:
+                            sb.append(c).append(t).append(x);
+                    }
+                    i += 2; // SUPPRESS CHECKSTYLE ModifiedControlVariable
+                } else {
+                    // No trailing % after character
+                    sb.append(c);
+                }
+
+            } else if (c == '@' && i < spec.length() - 8 && spec.charAt(i + 1) == 'M' && spec.charAt(i + 2) == 'E' && spec.charAt(i + 3) == 'T'
+                    && spec.charAt(i + 4) == 'A' && spec.charAt(i + 5) == '{' && spec.charAt(i + 6) == '\'') {
+
+                final int endpos = spec.indexOf("'", i + 7);
+                if (endpos > i + 7) {
+                    final String token = spec.substring(i + 7, endpos);
+                    final String value = cleanSpecPath(d.getStringParameter(token));
+                    sb.append(util.nvl(value, "NO-" + token));
+                    i += 8 + token.length(); // META{'token'} SUPPRESS CHECKSTYLE ModifiedControlVariable
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == '@' && i < spec.length() - 7 && spec.charAt(i + 1) == 'T' && spec.charAt(i + 2) == 'L' && spec.charAt(i + 3) == 'D'
+                    && spec.charAt(i + 4) == '{' && spec.charAt(i + 5) == '\'' && tld != null) {
+                final int endpos = spec.indexOf("'", i + 6);
+                if (endpos > i + 6) {
+                    final String token = spec.substring(i + 6, endpos);
+                    final String value = cleanSpecPath(tld.getStringParameter(token));
+                    sb.append(util.nvl(value, "NO-" + token));
+                    i += 7 + token.length(); // TLD{'token'} SUPPRESS CHECKSTYLE ModifiedControlVariable
+                } else {
+                    sb.append(c);
+                }
+            } else {
+                sb.append(c);
+            }
+
+        }
+
+        String answer = sb.toString();
+
+        // Set the proper path separator
+        answer = answer.replace('\\', '/');
+        answer = answer.replaceAll("\\.([/\\\\])", "_$1");
+
+        return answer;
+    }
+
+    @Nullable
+    static String cleanSpecPath(@Nullable String token) {
+        return token == null ? null : token.replaceAll("[.]+", ".");
+    }
+}
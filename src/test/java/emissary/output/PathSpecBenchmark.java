@@ -0,0 +1,75 @@
+package emissary.output;
+
+import emissary.config.Configurator;
+import emissary.config.ServiceConfigGuide;
+import emissary.core.DataObjectFactory;
+import emissary.core.IBaseDataObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-payload cost of turning an output spec into a path, comparing the legacy interpreter with compiled specs.
+ * <p>
+ * Run with the jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathSpecBenchmark {
+
+    @Param({"%R%/xyzzy/%S%.%F%",
+            "%R%/@TLD{'TARGETBIN'}/%S%",
+            "%R%/%G%/@META{'FEED'}/%b%.%F%.out",
+            "%R%/%p%/%i%.@TLD{'CASE_ID'}.%L%.json"})
+    public String spec;
+
+    private DropOffUtil util;
+    private IBaseDataObject tld;
+    private IBaseDataObject child;
+
+    @Setup
+    public void setup() {
+        final Configurator cfg = new ServiceConfigGuide();
+        cfg.addEntry("UNIX_ROOT", "/data/output");
+        cfg.addEntry("ID_PARAMETER", "MY_ID");
+        cfg.addEntry("ID_PARAMETER", "SHORTNAME");
+        this.util = new DropOffUtil(cfg);
+
+        this.tld = DataObjectFactory.getInstance("tld".getBytes(), "/feeds/incoming/2024/batch.7/message.eml", "EMAIL");
+        this.tld.setFileType("EMAIL");
+        this.tld.setParameter("TARGETBIN", "case\\1234");
+        this.tld.setParameter("CASE_ID", "C-1234..A");
+        this.tld.setParameter("DTG", "20240131235959");
+        this.tld.setParameter("MY_ID", "ID.0042");
+
+        this.child = DataObjectFactory.getInstance("child".getBytes(), "/feeds/incoming/2024/batch.7/message.eml-att-2", "PDF");
+        this.child.setFileType("PDF");
+        this.child.setParameter("FEED", "north");
+        this.child.setParameter("LANGUAGE", "ENGLISH");
+    }
+
+    @Benchmark
+    public String legacy() {
+        return LegacyPathSpec.getPathFromSpec(this.util, this.spec, this.child, this.tld);
+    }
+
+    @Benchmark
+    public String compiled() {
+        return this.util.getPathFromSpec(this.spec, this.child, this.tld);
+    }
+}
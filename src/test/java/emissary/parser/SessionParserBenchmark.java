@@ -0,0 +1,124 @@
+package emissary.parser;
+
+import emissary.core.IBaseDataObject;
+import emissary.core.channels.FileChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a 256MB file of fixed size sessions into payloads, copying each session out of the file compared with
+ * making each payload a view of the file. Run with the jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Demissary.config.dir=target/config"})
+@State(Scope.Benchmark)
+public class SessionParserBenchmark {
+
+    private static final long FILE_SIZE = 256L * 1024 * 1024;
+
+    @Param({"4096", "1048576"})
+    public int sessionSize;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.file = Files.createTempFile("SessionParserBenchmark", ".dat");
+        final byte[] chunk = new byte[1024 * 1024];
+        new Random(17).nextBytes(chunk);
+        try (OutputStream os = Files.newOutputStream(this.file)) {
+            for (long written = 0; written < FILE_SIZE; written += chunk.length) {
+                os.write(chunk);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    @Benchmark
+    public long copySessions() throws IOException, ParserException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            return produce(new SessionProducer(new FixedSizeParser(channel, this.sessionSize)));
+        }
+    }
+
+    @Benchmark
+    public long viewSessions() throws IOException, ParserException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ);
+                FileChannel views = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            final SeekableByteChannelFactory source = FileChannelFactory.createOpen(views);
+            return produce(new SessionProducer(new FixedSizeParser(channel, this.sessionSize), null, source));
+        }
+    }
+
+    private static long produce(final SessionProducer producer) throws IOException, ParserException {
+        long total = 0;
+        try {
+            while (true) {
+                final IBaseDataObject payload = producer.getNextSession("session");
+                total += payload.getChannelSize();
+            }
+        } catch (ParserEOFException eof) {
+            return total;
+        }
+    }
+
+    /**
+     * Splits the input into sessions of the same size, standing in for a container format with many sessions
+     */
+    private static final class FixedSizeParser extends SimpleNioParser {
+        private final int sessionSize;
+        private long offset = 0;
+
+        FixedSizeParser(final SeekableByteChannel channel, final int sessionSize) throws ParserException {
+            super(channel);
+            this.sessionSize = sessionSize;
+        }
+
+        @Override
+        public DecomposedSession getNextSession() throws ParserException {
+            try {
+                final long size = this.channel.size();
+                if (this.offset >= size) {
+                    setFullyParsed(true);
+                    throw new ParserEOFException("Past end of data");
+                }
+                final long length = Math.min(this.sessionSize, size - this.offset);
+                final InputSession session = new InputSession(new PositionRecord(this.offset, length), new PositionRecord(this.offset, length));
+                this.offset += length;
+                return decomposeSession(session);
+            } catch (IOException ex) {
+                throw new ParserException("Exception occurred reading channel", ex);
+            }
+        }
+    }
+}
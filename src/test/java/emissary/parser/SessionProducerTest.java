@@ -1,14 +1,28 @@
 package emissary.parser;
 
 import emissary.core.IBaseDataObject;
+import emissary.core.channels.InMemoryChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
 import emissary.test.core.junit5.UnitTest;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SessionProducerTest extends UnitTest {
     @Test
@@ -58,4 +72,86 @@ class SessionProducerTest extends UnitTest {
         assertNull(payload.getParameter("ALT_VIEW_BARVIEW"), "View data must be removed from normal metadata");
     }
 
+    @Test
+    void testSessionsAsViewsOfTheSource() throws Exception {
+        byte[] source = "first|second|third".getBytes(StandardCharsets.US_ASCII);
+        SeekableByteChannelFactory sbcf = InMemoryChannelFactory.create(source);
+        SessionParser parser = new DelimitedParser(sbcf.create(), (byte) '|');
+        SessionProducer sp = new SessionProducer(parser, null, sbcf);
+        assertFalse(parser.isCopyData(), "Producer with a source must ask the parser not to copy");
+
+        List<String> sessions = new ArrayList<>();
+        try {
+            while (true) {
+                IBaseDataObject payload = sp.getNextSession("name");
+                assertNotNull(payload.getChannelFactory());
+                sessions.add(new String(payload.data(), StandardCharsets.US_ASCII));
+            }
+        } catch (ParserEOFException expected) {
+            // end of the source
+        }
+        assertEquals(Arrays.asList("first", "second", "third"), sessions);
+    }
+
+    @Test
+    void testViewOfSeveralRanges() throws Exception {
+        SeekableByteChannelFactory sbcf = InMemoryChannelFactory.create("0123456789".getBytes(StandardCharsets.US_ASCII));
+        SessionProducer sp = new SessionProducer(Mockito.mock(SessionParser.class), null, sbcf);
+        DecomposedSession d = new DecomposedSession();
+        d.setHeader("The Header".getBytes());
+        d.setDataRecords(Arrays.asList(new PositionRecord(1, 2), new PositionRecord(6, 3)));
+        assertTrue(d.isValid());
+        assertEquals(5, d.getDataLength());
+        IBaseDataObject payload = sp.createAndLoadDataObject(d, "name");
+        assertEquals("12678", new String(payload.data(), StandardCharsets.US_ASCII));
+        assertEquals("The Header", new String(payload.header()));
+        assertEquals("name", payload.shortName());
+    }
+
+    @Test
+    void testRangesWithoutSource() {
+        SessionProducer sp = new SessionProducer(Mockito.mock(SessionParser.class), "UNKNOWN");
+        DecomposedSession d = new DecomposedSession();
+        d.setDataRecords(Collections.singletonList(new PositionRecord(0, 1)));
+        assertThrows(IllegalStateException.class, () -> sp.createAndLoadDataObject(d, "name"));
+    }
+
+    /**
+     * Splits the source into sessions at a delimiter byte
+     */
+    private static class DelimitedParser extends SimpleNioParser {
+        private final byte delimiter;
+        private long offset = 0;
+
+        DelimitedParser(SeekableByteChannel channel, byte delimiter) throws ParserException {
+            super(channel);
+            this.delimiter = delimiter;
+        }
+
+        @Override
+        public DecomposedSession getNextSession() throws ParserException {
+            try {
+                long size = channel.size();
+                if (offset >= size) {
+                    throw new ParserEOFException("Past end of data");
+                }
+                channel.position(offset);
+                ByteBuffer b = ByteBuffer.allocate(1);
+                long end = offset;
+                while (end < size) {
+                    b.clear();
+                    channel.read(b);
+                    if (b.get(0) == delimiter) {
+                        break;
+                    }
+                    end++;
+                }
+                InputSession i = new InputSession(new PositionRecord(offset, end - offset), new PositionRecord(offset, end - offset));
+                offset = end + 1;
+                return decomposeSession(i);
+            } catch (IOException ex) {
+                throw new ParserException("Cannot read", ex);
+            }
+        }
+    }
 }
@@ -16,6 +16,7 @@ import java.nio.file.Path;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -53,6 +54,19 @@ class SimpleNioParserTest extends UnitTest {
         assertEquals(DATALEN, sd.getData().length, "Data size");
     }
 
+    @Test
+    void testDataRecordsWithoutCopy() throws ParserException {
+        SimpleNioParser sp = new SimpleNioParser(channel);
+        sp.setCopyData(false);
+        DecomposedSession sd = sp.getNextSession();
+        assertTrue(sd.isValid(), "Session decomposed");
+        assertFalse(sd.hasData(), "Data must not be copied");
+        assertEquals(1, sd.getDataRecords().size());
+        assertEquals(0, sd.getDataRecords().get(0).getPosition());
+        assertEquals(DATALEN, sd.getDataLength(), "Data size");
+        assertEquals(Integer.toString(DATALEN), sd.getStringMetadataItem(SessionParser.ORIG_DOC_SIZE_KEY));
+    }
+
     @Test
     void testNonExistingSession() throws ParserException {
         SimpleNioParser sp = new SimpleNioParser(channel);
@@ -1,6 +1,14 @@
 package emissary.pickup;
 
+import emissary.core.EmissaryException;
+import emissary.core.IBaseDataObject;
 import emissary.core.IMobileAgent;
+import emissary.core.constants.Parameters;
+import emissary.parser.DecomposedSession;
+import emissary.parser.ParserEOFException;
+import emissary.parser.ParserException;
+import emissary.parser.ParserFactory;
+import emissary.parser.SessionParser;
 import emissary.pickup.file.FilePickUpClient;
 import emissary.pickup.file.FilePickUpPlace;
 import emissary.server.EmissaryServer;
@@ -8,7 +16,22 @@ import emissary.test.core.junit5.UnitTest;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PickUpPlaceTest extends UnitTest {
@@ -38,4 +61,122 @@ class PickUpPlaceTest extends UnitTest {
         assertTrue(PickUpPlace.implementsPickUpPlace(PickUpSpace.class));
     }
 
+    @Test
+    void testPipelinedSessionDispatch() throws Exception {
+        Path file = Files.write(temporaryDirectory.toPath().resolve("sessions.dat"), "s1|s2|s3|s4|s5|s6|s7|s8|s9|s10".getBytes(UTF_8));
+        RecordingPickUpPlace place = new RecordingPickUpPlace(4, -1);
+        try {
+            assertEquals(10, place.processSessions(file.toFile(), "sessions"));
+            // every session has been handed off by the time the file is done
+            assertEquals(10, place.assigned.size());
+            for (IBaseDataObject d : place.assigned) {
+                assertEquals("s" + d.getStringParameter(Parameters.SESSION_NUMBER), new String(d.data(), UTF_8));
+                assertEquals("sessions-" + d.getStringParameter(Parameters.SESSION_NUMBER), d.shortName());
+            }
+            assertTrue(place.maxConcurrent.get() > 1, "Sessions should be handed off concurrently");
+        } finally {
+            place.shutDown();
+        }
+    }
+
+    @Test
+    void testSequentialSessionDispatch() throws Exception {
+        Path file = Files.write(temporaryDirectory.toPath().resolve("sessions.dat"), "s1|s2|s3".getBytes(UTF_8));
+        RecordingPickUpPlace place = new RecordingPickUpPlace(1, -1);
+        try {
+            assertEquals(3, place.processSessions(file.toFile(), "sessions"));
+            assertEquals(3, place.assigned.size());
+            assertEquals(1, place.maxConcurrent.get());
+            assertNull(place.assigned.peek().getStringParameter(Parameters.SESSION_NUMBER));
+        } finally {
+            place.shutDown();
+        }
+    }
+
+    @Test
+    void testPipelinedSessionDispatchFailure() throws Exception {
+        Path file = Files.write(temporaryDirectory.toPath().resolve("sessions.dat"), "s1|s2|s3|s4|s5|s6".getBytes(UTF_8));
+        RecordingPickUpPlace place = new RecordingPickUpPlace(3, 2);
+        try {
+            assertThrows(ParserException.class, () -> place.processSessions(file.toFile(), "sessions"));
+        } finally {
+            place.shutDown();
+        }
+    }
+
+    /**
+     * Records the payloads it is asked to hand to agents instead of using an agent pool
+     */
+    private static class RecordingPickUpPlace extends PickUpPlace {
+        final Queue<IBaseDataObject> assigned = new ConcurrentLinkedQueue<>();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final int failAt;
+
+        RecordingPickUpPlace(int threads, int failAt) throws IOException {
+            super(new ByteArrayInputStream(("PLACE_NAME = RecordingPickUpPlace\nSERVICE_NAME = TEST_PICK_UP\nSERVICE_TYPE = \"INITIAL\"\n"
+                    + "SERVICE_DESCRIPTION = \"Test Place\"\nSERVICE_COST = 50\nSERVICE_QUALITY = 50\nSESSION_DISPATCH_THREADS = " + threads
+                    + "\nSESSION_QUEUE_SIZE = 2\nSERVICE_PROXY = \"TESTJUNK\"\n").getBytes(UTF_8)), "http://localhost:8005/RecordingPickUpPlace");
+            this.failAt = failAt;
+            this.parserFactory = new ParserFactory() {
+                @Override
+                public SessionParser makeSessionParser(SeekableByteChannel channel) {
+                    return new DelimitedParser(channel);
+                }
+            };
+        }
+
+        @Override
+        public void assignToPooledAgent(IBaseDataObject payload, long timeoutMs) throws EmissaryException {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(50);
+                if (payload.shortName().equals("sessions-" + failAt)) {
+                    throw new EmissaryException("No agent");
+                }
+                assigned.add(payload);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Splits the input into sessions at each '|'
+     */
+    private static class DelimitedParser extends SessionParser {
+        private final SeekableByteChannel channel;
+
+        DelimitedParser(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public DecomposedSession getNextSession() throws ParserException {
+            try {
+                ByteArrayOutputStream session = new ByteArrayOutputStream();
+                ByteBuffer b = ByteBuffer.allocate(1);
+                boolean any = false;
+                while (channel.read(b) > 0) {
+                    any = true;
+                    if (b.get(0) == '|') {
+                        break;
+                    }
+                    session.write(b.get(0));
+                    b.clear();
+                }
+                if (!any) {
+                    throw new ParserEOFException("Past end of data");
+                }
+                DecomposedSession d = new DecomposedSession();
+                d.setData(session.toByteArray());
+                return d;
+            } catch (IOException e) {
+                throw new ParserException("Cannot read", e);
+            }
+        }
+    }
 }
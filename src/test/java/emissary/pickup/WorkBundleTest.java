@@ -11,6 +11,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
@@ -18,6 +19,7 @@ import java.util.UUID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -167,6 +169,56 @@ class WorkBundleTest extends UnitTest {
         assertEquals("<file2.txt&foo=bar>", w2l.get(1), "File values from xml");
     }
 
+    @Test
+    void testBundleListXml() {
+        WorkBundle w1 = new WorkBundle("/output/root", "/eat/prefix");
+        w1.addFileName("file1.txt", 15L, 4L);
+        WorkBundle w2 = new WorkBundle("/output/root", "/eat/prefix");
+        w2.addFileName("file2.txt", 7L, 10L);
+        w2.addFileName("file3.txt", 8L, 11L);
+
+        List<WorkBundle> list = WorkBundle.buildWorkBundles(WorkBundle.toXml(Arrays.asList(w1, w2)));
+        assertNotNull(list, "Generated from xml");
+        assertEquals(2, list.size(), "Bundles across xml");
+        assertEquals(w1.getBundleId(), list.get(0).getBundleId(), "Order across xml");
+        assertEquals(w2.getFileNameList(), list.get(1).getFileNameList(), "Files across xml");
+        assertEquals(w2.getTotalFileSize(), list.get(1).getTotalFileSize(), "Total filesize across xml");
+
+        List<WorkBundle> empty = WorkBundle.buildWorkBundles(WorkBundle.toXml(Collections.emptyList()));
+        assertNotNull(empty, "Generated from empty xml");
+        assertTrue(empty.isEmpty(), "No bundles across xml");
+
+        assertNull(WorkBundle.buildWorkBundles(w1.toXml()), "A single bundle is not a list");
+    }
+
+    @Test
+    void testBundleListStream() throws IOException {
+        WorkBundle w1 = new WorkBundle("/output/root", "/eat/prefix");
+        w1.addFileName("file1.txt", 15L, 4L);
+        WorkBundle w2 = new WorkBundle("/output/root", null);
+        w2.addFileName("file2.txt", 7L, 10L);
+        w2.addFileName("file3.txt", 8L, 11L);
+        List<WorkBundle> bundles = Arrays.asList(w1, w2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            WorkBundle.writeBundlesToStream(bundles, out);
+        }
+        List<WorkBundle> list;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            list = WorkBundle.readBundlesFromStream(in);
+        }
+        assertEquals(2, list.size(), "Bundles across stream");
+        assertEquals(w1.getBundleId(), list.get(0).getBundleId(), "Order across stream");
+        assertNull(list.get(1).getEatPrefix(), "Missing value across stream");
+        assertEquals(w2.getFileNameList(), list.get(1).getFileNameList(), "Files across stream");
+        assertEquals(w2.getTotalFileSize(), list.get(1).getTotalFileSize(), "Total filesize across stream");
+
+        List<WorkBundle> tooMany = Collections.nCopies(WorkBundle.MAX_UNITS + 1, w1);
+        assertThrows(IOException.class, () -> WorkBundle.writeBundlesToStream(tooMany, new DataOutputStream(new ByteArrayOutputStream())),
+                "Too many bundles for one stream");
+    }
+
     @Test
     void testBundleXmlWithDefaultTimes() {
         WorkBundle w = new WorkBundle("/output/root", "/eat/prefix");
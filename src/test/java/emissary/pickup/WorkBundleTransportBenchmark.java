@@ -0,0 +1,117 @@
+package emissary.pickup;
+
+import ch.qos.logback.classic.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bundle dispatch throughput of a local WorkSpace with several clients taking, decoding and completing bundles, with
+ * the bundles carried as xml compared with the binary form. HTTP itself is left out so the cost measured is the
+ * encoding. Run with the jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Demissary.config.dir=target/config"})
+@Threads(4)
+public class WorkBundleTransportBenchmark {
+
+    private static final int QUEUED_BUNDLES = 64;
+
+    @State(Scope.Benchmark)
+    public static class Space {
+        @Param({"xml", "binary", "binary-gzip"})
+        public String format;
+
+        @Param({"5", "500"})
+        public int filesPerBundle;
+
+        WorkSpace workSpace;
+        final AtomicInteger clients = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            // the per bundle info logging would cost more than the encoding being measured
+            ((Logger) LoggerFactory.getLogger(WorkSpace.class)).setLevel(ch.qos.logback.classic.Level.WARN);
+            this.workSpace = new WorkSpace();
+            for (int i = 0; i < QUEUED_BUNDLES; i++) {
+                final WorkBundle wb = new WorkBundle("/output/root", "/eat/prefix");
+                for (int j = 0; j < this.filesPerBundle; j++) {
+                    wb.addFileName("/eat/prefix/2024/06/01/feed-" + i + "/file-" + j + ".dat", 1717200000000L + j, 4096L);
+                }
+                this.workSpace.addOutboundBundle(wb);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.workSpace.shutDown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        String key;
+
+        @Setup(Level.Trial)
+        public void setup(final Space space) {
+            this.key = "INITIAL.FILE_PICK_UP_CLIENT.INPUT.http://client" + space.clients.incrementAndGet() + ":8001/FilePickUpClient";
+        }
+    }
+
+    @Benchmark
+    public int dispatch(final Space space, final Client client) throws IOException {
+        final List<WorkBundle> taken = space.workSpace.take(client.key, 1);
+        final List<WorkBundle> received = carry(taken, space.format);
+        int files = 0;
+        for (final WorkBundle wb : received) {
+            files += wb.size();
+            space.workSpace.workCompleted(wb.getSentTo(), wb.getBundleId(), true);
+            // keep the queue full for the next take
+            space.workSpace.addOutboundBundle(new WorkBundle(wb));
+        }
+        return files;
+    }
+
+    private static List<WorkBundle> carry(final List<WorkBundle> bundles, final String format) throws IOException {
+        if ("xml".equals(format)) {
+            return WorkBundle.buildWorkBundles(WorkBundle.toXml(bundles));
+        }
+        final boolean gzip = "binary-gzip".equals(format);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream os = gzip ? new GZIPOutputStream(bytes) : bytes; DataOutputStream out = new DataOutputStream(os)) {
+            WorkBundle.writeBundlesToStream(bundles, out);
+        }
+        final InputStream is = new ByteArrayInputStream(bytes.toByteArray());
+        try (DataInputStream in = new DataInputStream(gzip ? new GZIPInputStream(is) : is)) {
+            return WorkBundle.readBundlesFromStream(in);
+        }
+    }
+}
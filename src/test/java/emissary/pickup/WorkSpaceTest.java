@@ -1,6 +1,7 @@
 package emissary.pickup;
 
 import emissary.command.FeedCommand;
+import emissary.directory.KeyManipulator;
 import emissary.test.core.junit5.UnitTest;
 
 import jakarta.annotation.Nullable;
@@ -9,7 +10,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -391,6 +395,95 @@ class WorkSpaceTest extends UnitTest {
         assertEquals(0, mws.getPendingQueueSize(), "Failed item no longer pending");
     }
 
+    @Test
+    void testTakeBundlesFollowsClientThroughput() {
+        String C1 = "INITIAL.INPUT.A.http://otherhost:7001/FilePickUpClient";
+        mws.addPickUp(C1);
+        for (int i = 0; i < 20; i++) {
+            WorkBundle wb = new WorkBundle("/fake/root", "/fake/eat");
+            wb.addFileName("faker-" + i + ".txt");
+            mws.addOutboundBundle(wb);
+        }
+
+        // nothing known about the client yet
+        List<WorkBundle> taken = mws.take(C1, 10);
+        assertEquals(1, taken.size(), "Unknown client gets one bundle");
+        assertEquals(1, mws.getPendingQueueSize(), "Taken bundle is pending");
+
+        // four files a second for five seconds of work
+        String remoteName = taken.get(0).getSentTo();
+        WorkSpace.ClientThroughput rate = new WorkSpace.ClientThroughput();
+        rate.completed(4, 0L);
+        rate.completed(4, TimeUnit.SECONDS.toNanos(2));
+        assertEquals(4.0, rate.getFilesPerSecond(), 0.001, "Rate over the first window");
+        mws.throughput.put(remoteName, rate);
+        mws.takeTargetMillis = 5000L;
+
+        taken = mws.take(C1, 10);
+        assertEquals(10, taken.size(), "Client cap limits the take");
+        taken = mws.take(C1, 100);
+        assertEquals(9, taken.size(), "Fast client gets up to the remaining bundles");
+        assertEquals(0, mws.getOutboundQueueSize(), "All bundles handed out");
+        assertTrue(mws.take(C1, 10).isEmpty(), "No work left is an empty list");
+    }
+
+    @Test
+    void testTakeBundlesSlowClient() {
+        String C1 = "INITIAL.INPUT.A.http://otherhost:7001/FilePickUpClient";
+        mws.addPickUp(C1);
+        for (int i = 0; i < 5; i++) {
+            WorkBundle wb = new WorkBundle("/fake/root", "/fake/eat");
+            wb.addFileName("faker-" + i + ".txt");
+            wb.addFileName("faker-" + i + ".dat");
+            mws.addOutboundBundle(wb);
+        }
+        WorkSpace.ClientThroughput rate = new WorkSpace.ClientThroughput();
+        rate.completed(1, 0L);
+        rate.completed(1, TimeUnit.SECONDS.toNanos(4));
+        mws.throughput.put(KeyManipulator.getServiceHost(C1), rate);
+        mws.takeTargetMillis = 5000L;
+
+        // half a file a second is under three files in five seconds
+        assertEquals(1, mws.take(C1, 5).size(), "Slow client gets a single bundle");
+    }
+
+    @Test
+    void testBatchWorkCompleted() {
+        String C1 = "INITIAL.INPUT.A.http://otherhost:7001/FilePickUpClient";
+        mws.addPickUp(C1);
+        for (int i = 0; i < 3; i++) {
+            WorkBundle wb = new WorkBundle("/fake/root", "/fake/eat");
+            wb.addFileName("faker-" + i + ".txt");
+            mws.addOutboundBundle(wb);
+        }
+        List<WorkBundle> taken = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            taken.add(mws.take(C1));
+        }
+        assertEquals(3, mws.getPendingQueueSize(), "All bundles pending");
+
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        results.put(taken.get(0).getBundleId(), true);
+        results.put(taken.get(1).getBundleId(), false);
+        results.put("unknown", true);
+        assertEquals(2, mws.workCompleted("FilePickUpClient", results), "Known bundles completed");
+        assertEquals(1, mws.getPendingQueueSize(), "Untouched bundle still pending");
+        assertEquals(1, mws.getOutboundQueueSize(), "Failed bundle back to outbound");
+    }
+
+    @Test
+    void testClientThroughputSmoothing() {
+        WorkSpace.ClientThroughput rate = new WorkSpace.ClientThroughput();
+        rate.completed(10, 0L);
+        assertEquals(0.0, rate.getFilesPerSecond(), 0.001, "No rate within the first window");
+        rate.completed(10, TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0.0, rate.getFilesPerSecond(), 0.001, "Still within the first window");
+        rate.completed(0, TimeUnit.SECONDS.toNanos(2));
+        assertEquals(10.0, rate.getFilesPerSecond(), 0.001, "First window sets the rate");
+        rate.completed(20, TimeUnit.SECONDS.toNanos(3));
+        assertEquals(13.0, rate.getFilesPerSecond(), 0.001, "Later windows are blended in");
+    }
+
     @Test
     void testArgumentParsing() throws Exception {
         List<String> args = new ArrayList<>();
@@ -4,6 +4,7 @@ import emissary.admin.PlaceStarter;
 import emissary.core.DataObjectFactory;
 import emissary.core.IBaseDataObject;
 import emissary.pickup.WorkBundle;
+import emissary.server.mvc.adapters.WorkSpaceAdapter;
 import emissary.test.core.junit5.UnitTest;
 import emissary.util.Hexl;
 import emissary.util.TimeUtil;
@@ -18,13 +19,26 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static emissary.core.constants.Parameters.INPUT_FILENAME;
 import static emissary.core.constants.Parameters.ORIGINAL_FILENAME;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class FilePickUpClientTest extends UnitTest {
     private static final String CLIENT_KEY = "http://localhost:8005/FilePickUpClient";
@@ -121,9 +135,49 @@ class FilePickUpClientTest extends UnitTest {
         assertEquals("PETERPAN-" + resultString, payload.getFilename(), "Payload filename is not set to correct value");
     }
 
+    @Test
+    void testMultiBundleTakeAndBatchedCompletion() {
+        final String space = "WORKSPACE.WORK_SPACE.INPUT.http://localhost:7001/WorkSpace";
+        WorkSpaceAdapter tpa = mock(WorkSpaceAdapter.class);
+        // only take when the test asks
+        client.pause();
+        client.useSpaceAdapter(tpa, 2, 2);
+        client.openSpace(space);
+
+        WorkBundle wb1 = new WorkBundle("/output/root", "/eat/prefix");
+        wb1.addFileName("/eat/prefix/one");
+        WorkBundle wb2 = new WorkBundle("/output/root", "/eat/prefix");
+        wb2.addFileName("/eat/prefix/two");
+        when(tpa.outboundWorkSpaceTake(eq(space), any(), eq(2))).thenReturn(Arrays.asList(wb1, wb2));
+
+        assertTrue(client.take(), "Bundles taken");
+        assertEquals(Arrays.asList(wb1, wb2), client.enqueued, "Both bundles queued from one take");
+
+        client.bundleCompleted(wb1.getBundleId(), true);
+        verify(tpa, never()).outboundBundleCompletions(any(), any(), any());
+        client.bundleCompleted(wb2.getBundleId(), false);
+        Map<String, Boolean> expected = new LinkedHashMap<>();
+        expected.put(wb1.getBundleId(), true);
+        expected.put(wb2.getBundleId(), false);
+        verify(tpa).outboundBundleCompletions(eq(space), any(), eq(expected));
+        verify(tpa, never()).outboundBundleCompletion(any(), any(), any(), anyBoolean());
+
+        // a partial batch is sent before the next take
+        WorkBundle wb3 = new WorkBundle("/output/root", "/eat/prefix");
+        wb3.addFileName("/eat/prefix/three");
+        when(tpa.outboundWorkSpaceTake(eq(space), any(), eq(2))).thenReturn(Collections.singletonList(wb3), Collections.emptyList());
+        assertTrue(client.take(), "Bundle taken");
+        client.bundleCompleted(wb3.getBundleId(), true);
+        assertFalse(client.take(), "No more work");
+        verify(tpa).outboundBundleCompletions(eq(space), any(), eq(Collections.singletonMap(wb3.getBundleId(), true)));
+        assertEquals(0, client.getSpaceCount(), "Space closed when out of work");
+    }
+
     public static class MyFilePickUpClient extends FilePickUpClient {
 
         public boolean nullifyCaseIdInHook = false;
+        @Nullable
+        public List<WorkBundle> enqueued = null;
 
         public MyFilePickUpClient(InputStream configInfo, String dir, String placeLoc) throws IOException {
             super(configInfo, dir, placeLoc);
@@ -134,6 +188,22 @@ class FilePickUpClientTest extends UnitTest {
             super.dataObjectCreated(d, f);
         }
 
+        public void useSpaceAdapter(WorkSpaceAdapter adapter, int maxBundles, int batchSize) {
+            tpa = adapter;
+            takeMaxBundles = maxBundles;
+            completionBatchSize = batchSize;
+            enqueued = new ArrayList<>();
+        }
+
+        @Override
+        public boolean enque(WorkBundle paths) {
+            if (enqueued != null) {
+                // keep the bundles away from the queue server
+                return enqueued.add(paths);
+            }
+            return super.enque(paths);
+        }
+
         public void setCurrentBundle(WorkBundle wb) {
             currentBundle = wb;
         }
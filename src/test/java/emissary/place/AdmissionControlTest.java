@@ -0,0 +1,184 @@
+package emissary.place;
+
+import emissary.core.MetricsManager;
+import emissary.core.Namespace;
+import emissary.test.core.junit5.UnitTest;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionControlTest extends UnitTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private AdmissionControl adaptive(int min, int max) {
+        return new AdmissionControl("test", min, max, true, 0L, -1, AdmissionControl.SaturatedAction.WAIT, AdmissionControl.DEFAULT_TOLERANCE,
+                clock::get);
+    }
+
+    private void call(AdmissionControl admission, long nanos) throws InterruptedException {
+        AdmissionControl.Permit permit = admission.tryEnter(0L);
+        assertNotNull(permit);
+        clock.addAndGet(nanos);
+        permit.close();
+    }
+
+    @Test
+    void testLimit() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl("test", 1, 2, false, 0L, -1, AdmissionControl.SaturatedAction.ERROR);
+        AdmissionControl.Permit first = admission.tryEnter();
+        AdmissionControl.Permit second = admission.tryEnter();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(admission.tryEnter(), "Place is full");
+        assertEquals(2, admission.getInFlight());
+        assertEquals(1.0, admission.getSaturation(), 0.001);
+        assertEquals(1, admission.getRefused());
+
+        first.close();
+        first.close();
+        assertEquals(1, admission.getInFlight(), "Closing twice releases once");
+        assertNotNull(admission.tryEnter());
+        assertEquals(AdmissionControl.SaturatedAction.ERROR, admission.getSaturatedAction());
+    }
+
+    @Test
+    void testWaitForRoom() throws InterruptedException, ExecutionException, TimeoutException {
+        AdmissionControl admission = new AdmissionControl("test", 1, 1, false, 10_000L, -1, AdmissionControl.SaturatedAction.WAIT);
+        AdmissionControl.Permit held = admission.tryEnter();
+        assertNotNull(held);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Future<AdmissionControl.Permit> waiter = executor.submit(() -> {
+                started.countDown();
+                return admission.tryEnter();
+            });
+            started.await();
+            while (admission.getWaiting() == 0) {
+                Thread.sleep(5);
+            }
+            held.close();
+            AdmissionControl.Permit permit = waiter.get(10, TimeUnit.SECONDS);
+            assertNotNull(permit, "Waiting agent gets the room that was freed");
+            assertEquals(0, admission.getWaiting());
+            assertEquals(1, admission.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testMaxWaitingRejectsAtOnce() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl("test", 1, 1, false, 60_000L, 0, AdmissionControl.SaturatedAction.WAIT);
+        assertNotNull(admission.tryEnter());
+        long start = System.nanoTime();
+        assertNull(admission.tryEnter(), "No agents may wait");
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30, "Rejected without waiting");
+        assertEquals(1, admission.getRefused());
+        assertTrue(admission.toString().contains("rejected=1"));
+    }
+
+    @Test
+    void testPauseSitsOutTheWaitTime() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl("test", 1, 1, false, 0L, 0, AdmissionControl.SaturatedAction.WAIT);
+        long start = System.nanoTime();
+        admission.pause(0L);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(AdmissionControl.MIN_PAUSE_MILLIS), "Pauses with no wait time");
+
+        start = System.nanoTime();
+        admission.pause(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 1, "No pause after waiting the whole time");
+    }
+
+    @Test
+    void testAdaptiveDecreasesWhenSlow() throws InterruptedException {
+        AdmissionControl admission = adaptive(2, 10);
+        for (int i = 0; i < 20; i++) {
+            call(admission, 1_000);
+        }
+        assertEquals(10, admission.getLimit(), "Steady latency keeps the limit");
+
+        for (int i = 0; i < 200; i++) {
+            call(admission, 10_000);
+        }
+        assertTrue(admission.getLimit() < 10, "Slow calls cut the limit");
+        assertTrue(admission.getLimit() >= 2, "Never below the minimum");
+    }
+
+    @Test
+    void testAdaptiveIncreasesWhenFullAndFast() throws InterruptedException {
+        AdmissionControl admission = adaptive(1, 4);
+        for (int i = 0; i < 20; i++) {
+            call(admission, 1_000);
+        }
+        for (int i = 0; i < 50; i++) {
+            call(admission, 100_000);
+        }
+        int cut = admission.getLimit();
+        assertTrue(cut < 4);
+
+        // Fast calls again while using the whole limit
+        for (int round = 0; round < 50; round++) {
+            int limit = admission.getLimit();
+            List<AdmissionControl.Permit> inside = new ArrayList<>();
+            for (int i = 0; i < limit; i++) {
+                inside.add(admission.tryEnter(0L));
+            }
+            assertFalse(inside.contains(null));
+            clock.addAndGet(1_000);
+            for (AdmissionControl.Permit permit : inside) {
+                permit.close();
+            }
+        }
+        assertEquals(4, admission.getLimit(), "Limit grows back to the maximum");
+    }
+
+    @Test
+    void testMetricsKeptApartByLocation() {
+        MetricsManager metrics = mock(MetricsManager.class);
+        MetricRegistry registry = new MetricRegistry();
+        when(metrics.getMetricRegistry()).thenReturn(registry);
+        Namespace.bind("MetricsManager", metrics);
+        try {
+            AdmissionControl first = new AdmissionControl("ToUpperPlace", 1, 2, false, 0L, -1, AdmissionControl.SaturatedAction.WAIT);
+            AdmissionControl second = new AdmissionControl("ToUpperPlace", 1, 3, false, 0L, -1, AdmissionControl.SaturatedAction.WAIT);
+            first.registerMetrics("host:8001/ToUpperPlace");
+            second.registerMetrics("host:8001/AltToUpperPlace");
+            assertEquals(2, registry.getGauges().get("admission.host:8001/ToUpperPlace.limit").getValue());
+            assertEquals(3, registry.getGauges().get("admission.host:8001/AltToUpperPlace.limit").getValue());
+
+            first.unregisterMetrics();
+            assertNull(registry.getGauges().get("admission.host:8001/ToUpperPlace.limit"), "Own gauges are removed");
+            assertEquals(3, registry.getGauges().get("admission.host:8001/AltToUpperPlace.limit").getValue(), "Other gauges are kept");
+
+            AdmissionControl replacement = new AdmissionControl("ToUpperPlace", 1, 4, false, 0L, -1, AdmissionControl.SaturatedAction.WAIT);
+            replacement.registerMetrics("host:8001/AltToUpperPlace");
+            second.unregisterMetrics();
+            assertEquals(4, registry.getGauges().get("admission.host:8001/AltToUpperPlace.limit").getValue(),
+                    "Gauges of a replacement at the same location are kept");
+        } finally {
+            Namespace.unbind("MetricsManager");
+        }
+    }
+}
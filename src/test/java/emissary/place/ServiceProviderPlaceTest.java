@@ -30,6 +30,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -47,6 +48,10 @@ class ServiceProviderPlaceTest extends UnitTest {
             + "SERVICE_TYPE = \"ANALYZE\"\n" + "SERVICE_DESCRIPTION = \"test place\"\n" + "SERVICE_COST = 60\n" + "SERVICE_QUALITY = 90\n"
             + "PLACE_RESOURCE_LIMIT_MILLIS = 10\n" + "SERVICE_PROXY = \"TEST_SERVICE_PROXY\"\n").getBytes();
 
+    private static final byte[] configDataWithAdmission = ("PLACE_NAME = \"PlaceTest\"\n" + "SERVICE_NAME = \"TEST_SERVICE_NAME\"\n"
+            + "SERVICE_TYPE = \"ANALYZE\"\n" + "SERVICE_DESCRIPTION = \"test place\"\n" + "SERVICE_COST = 60\n" + "SERVICE_QUALITY = 90\n"
+            + "MAX_CONCURRENCY = 2\n" + "SATURATED_ACTION = \"error\"\n" + "SERVICE_PROXY = \"TEST_SERVICE_PROXY\"\n").getBytes();
+
     private static final byte[] configDataMissingCost = ("PLACE_NAME = \"PlaceTest\"\n" + "SERVICE_NAME = \"TEST_SERVICE_NAME\"\n"
             + "SERVICE_TYPE = \"ANALYZE\"\n" + "SERVICE_DESCRIPTION = \"test place\"\n" + "SERVICE_QUALITY = 90\n"
             + "SERVICE_PROXY = \"TEST_SERVICE_PROXY\"\n").getBytes();
@@ -289,6 +294,23 @@ class ServiceProviderPlaceTest extends UnitTest {
         });
     }
 
+    @Test
+    void testAdmissionControl() throws IOException, InterruptedException {
+        place = new PlaceTest(new ByteArrayInputStream(configData), null, "http://example.com:8001/PlaceTest");
+        assertNull(place.getAdmissionControl(), "No admission control unless configured");
+        place.shutDown();
+
+        place = new PlaceTest(new ByteArrayInputStream(configDataWithAdmission), null, "http://example.com:8001/PlaceTest");
+        AdmissionControl admission = place.getAdmissionControl();
+        assertNotNull(admission);
+        assertEquals(2, admission.getLimit());
+        assertEquals(AdmissionControl.SaturatedAction.ERROR, admission.getSaturatedAction());
+        try (AdmissionControl.Permit permit = admission.tryEnter()) {
+            assertNotNull(permit);
+            assertTrue(((ServiceProviderPlaceMBean) place).getPlaceStats().contains("inFlight=1"), "Stats show admission");
+        }
+    }
+
     @Test
     void testMBeanInteration() throws Exception {
         InputStream config = new ByteArrayInputStream(configDataWithResourceLimit);
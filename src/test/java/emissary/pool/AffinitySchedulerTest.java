@@ -0,0 +1,173 @@
+package emissary.pool;
+
+import emissary.core.DataObjectFactory;
+import emissary.core.IBaseDataObject;
+import emissary.core.IMobileAgent;
+import emissary.place.ThreadAffine;
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AffinitySchedulerTest extends UnitTest {
+
+    private static AffinityScheduler<String> scheduler(int shards) {
+        return new AffinityScheduler<>(shards, null, Function.identity());
+    }
+
+    @Test
+    void testKeyFor() {
+        IBaseDataObject d = DataObjectFactory.getInstance();
+        d.setCurrentForm("PETERPAN");
+        AffinityScheduler<String> byForm = scheduler(4);
+        assertEquals("PETERPAN", byForm.keyFor(d));
+        assertEquals("PETERPAN", byForm.keyFor(Collections.singletonList(d)));
+        assertNull(byForm.keyFor(null));
+        assertNull(byForm.keyFor(Collections.emptyList()));
+
+        AffinityScheduler<String> byFeed = new AffinityScheduler<>(4, "FEED_NAME", Function.identity());
+        assertEquals("PETERPAN", byFeed.keyFor(d), "Payloads without the parameter use the form");
+        d.putParameter("FEED_NAME", "neverland");
+        assertEquals("neverland", byFeed.keyFor(d));
+    }
+
+    @Test
+    void testShardFor() {
+        AffinityScheduler<String> s = scheduler(4);
+        assertEquals(-1, s.shardFor(null));
+        assertEquals(s.shardFor("FOO"), s.shardFor("FOO"));
+        HashSet<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            int shard = s.shardFor("FORM" + i);
+            assertTrue(shard >= 0 && shard < 4);
+            seen.add(shard);
+        }
+        assertEquals(4, seen.size());
+        assertEquals(1, scheduler(0).getShardCount());
+    }
+
+    @Test
+    void testParkAndTake() {
+        AffinityScheduler<String> s = scheduler(2);
+        assertNull(s.take(0));
+        assertFalse(s.park("a"), "An agent with no shard goes back to the shared pool");
+
+        s.homeless("a", 0);
+        s.homeless("b", 0);
+        s.homeless("c", 1);
+        assertTrue(s.park("a"));
+        assertTrue(s.park("b"));
+        assertTrue(s.park("c"));
+        assertEquals(3, s.getParked());
+
+        assertEquals("b", s.take(0), "Most recently parked agent of the shard");
+        assertEquals("a", s.take(0));
+        assertEquals(2, s.getLocal());
+
+        assertEquals("c", s.take(0), "Stolen from the other shard");
+        assertEquals(1, s.getStolen());
+        assertEquals(0, s.getParked());
+        assertTrue(s.toString().contains("stolen=1"));
+        assertTrue(s.park("c"));
+        assertNotNull(s.take(1));
+        assertEquals(3, s.getMissed());
+    }
+
+    @Test
+    void testStealTakesFromFullestShard() {
+        AffinityScheduler<String> s = scheduler(3);
+        for (String a : Arrays.asList("x", "y", "z")) {
+            s.homeless(a, 2);
+            s.park(a);
+        }
+        s.homeless("w", 1);
+        s.park("w");
+        assertEquals("x", s.take(0), "Oldest agent of the fullest shard");
+    }
+
+    @Test
+    void testDrain() {
+        AffinityScheduler<String> s = scheduler(2);
+        s.homeless("a", 0);
+        s.homeless("b", 1);
+        s.park("a");
+        s.park("b");
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(s.drain()));
+        assertEquals(0, s.getParked());
+        assertFalse(s.park("a"), "Drained agents are forgotten");
+    }
+
+    @Test
+    void testThreadAffineReleasedWhenStolen() {
+        ThreadAffine place = mock(ThreadAffine.class);
+        AffinityScheduler.register(place);
+        try {
+            AffinityScheduler<String> s = scheduler(2);
+            String self = Thread.currentThread().getName();
+            s.homeless(self, 1);
+            s.park(self);
+            assertSame(self, s.take(1));
+            AffinityScheduler.releaseIfMoved();
+            verify(place, never()).releaseThreadResources();
+
+            s.park(self);
+            assertSame(self, s.take(0));
+            AffinityScheduler.releaseIfMoved();
+            AffinityScheduler.releaseIfMoved();
+            verify(place, times(1)).releaseThreadResources();
+        } finally {
+            AffinityScheduler.unregister(place);
+        }
+    }
+
+    @Test
+    void testAgentPoolAffinity() throws Exception {
+        AgentPool pool = new AgentPool(new MobileAgentFactory("emissary.core.HDMobileAgent"), 4, "AffinityTestPool");
+        try {
+            pool.setAffinity(2, null);
+            IBaseDataObject d = DataObjectFactory.getInstance();
+            d.setCurrentForm("PETERPAN");
+
+            IMobileAgent first = pool.borrowAgent(d);
+            assertEquals(1, pool.getNumActive());
+            pool.returnAgent(first);
+            assertEquals(4, pool.getNumIdle(), "Parked agents are idle");
+            assertEquals(0, pool.getNumActive());
+            assertEquals(1, pool.getAffinity().getParked());
+
+            IMobileAgent again = pool.borrowAgent(d);
+            assertSame(first, again, "Same kind of payload gets the same agent");
+            IMobileAgent other = pool.borrowAgent(d);
+            assertNotEquals(first, other);
+            pool.returnAgent(again);
+            pool.returnAgent(other);
+            assertTrue(pool.toString().contains("affinity["));
+
+            pool.setAffinity(0, null);
+            assertNull(pool.getAffinity());
+            assertEquals(4, pool.getNumIdle(), "Parked agents go back to the shared pool");
+            assertEquals(0, pool.getNumActive());
+        } finally {
+            for (int i = 0; i < 4; i++) {
+                pool.borrowAgent().killAgent();
+            }
+            pool.kill();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package emissary.pool;
+
+import jakarta.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Synthetic multi-type workload for agent affinity. Agent threads keep a small per-thread cache of "models", one per
+ * payload type, that is expensive to load and cheap to use, standing in for the per-thread state places keep. A
+ * dispatcher hands payloads of random types to idle agents either the way the plain pool does (most recently returned
+ * agent first) or through an {@link AffinityScheduler} keyed by type.
+ * <p>
+ * Run with the jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgentAffinityBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentAffinityBenchmark.class);
+
+    private static final int AGENTS = 8;
+    private static final int MODEL_BYTES = 256 * 1024;
+    private static final int MODELS_PER_THREAD = 2;
+    private static final int LOOKUPS = 4096;
+    private static final int PAYLOADS = 2000;
+
+    @Param({"false", "true"})
+    public boolean affinity;
+
+    @Param({"8"})
+    public int types;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final ConcurrentLinkedDeque<Worker> idle = new ConcurrentLinkedDeque<>();
+    private AffinityScheduler<Worker> scheduler;
+    private String[] keys;
+    private int[] schedule;
+    private final LongAdder sink = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    /**
+     * A unit of work and the latch counting it done
+     */
+    private static final class Job {
+        final int type;
+        @Nullable
+        final CountDownLatch done;
+
+        Job(final int type, @Nullable final CountDownLatch done) {
+            this.type = type;
+            this.done = done;
+        }
+    }
+
+    /**
+     * An agent thread holding the models it loaded most recently
+     */
+    private final class Worker extends Thread {
+        private final SynchronousQueue<Job> inbox = new SynchronousQueue<>();
+        private final int[] modelTypes = new int[MODELS_PER_THREAD];
+        private final byte[][] models = new byte[MODELS_PER_THREAD][MODEL_BYTES];
+        private int next;
+
+        Worker(final int i) {
+            super("AffinityWorker-" + i);
+            setDaemon(true);
+            Arrays.fill(this.modelTypes, -1);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Job job = this.inbox.take();
+                    if (job.done == null) {
+                        return;
+                    }
+                    sink.add(process(job.type));
+                    processed.increment();
+                    release(this);
+                    job.done.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private long process(final int type) {
+            byte[] model = null;
+            for (int i = 0; i < MODELS_PER_THREAD; i++) {
+                if (this.modelTypes[i] == type) {
+                    model = this.models[i];
+                }
+            }
+            if (model == null) {
+                model = this.models[this.next];
+                this.modelTypes[this.next] = type;
+                this.next = (this.next + 1) % MODELS_PER_THREAD;
+                // Loading the model
+                loads.increment();
+                final SplittableRandom r = new SplittableRandom(type);
+                for (int i = 0; i < MODEL_BYTES; i += 8) {
+                    final long v = r.nextLong();
+                    for (int j = 0; j < 8; j++) {
+                        model[i + j] = (byte) (v >>> (j * 8));
+                    }
+                }
+            }
+            // Using the model
+            long sum = 0;
+            int at = type;
+            for (int i = 0; i < LOOKUPS; i++) {
+                at = (at * 31 + model[at & (MODEL_BYTES - 1)]) & (MODEL_BYTES - 1);
+                sum += model[at];
+            }
+            return sum;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.scheduler = new AffinityScheduler<>(Math.max(this.types / MODELS_PER_THREAD, 1), null, Thread::getName);
+        this.keys = new String[this.types];
+        for (int i = 0; i < this.types; i++) {
+            this.keys[i] = "TYPE" + i;
+        }
+        final SplittableRandom r = new SplittableRandom(42);
+        this.schedule = new int[PAYLOADS];
+        for (int i = 0; i < PAYLOADS; i++) {
+            this.schedule[i] = r.nextInt(this.types);
+        }
+        for (int i = 0; i < AGENTS; i++) {
+            final Worker w = new Worker(i);
+            this.workers.add(w);
+            this.idle.addFirst(w);
+            w.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        logger.info("affinity={} model loads per payload {}, {}", this.affinity, (double) this.loads.sum() / this.processed.sum(), this.scheduler);
+        for (final Worker w : this.workers) {
+            w.inbox.put(new Job(-1, null));
+        }
+    }
+
+    private void release(final Worker w) {
+        if (!this.affinity || !this.scheduler.park(w)) {
+            this.idle.addFirst(w);
+        }
+    }
+
+    private Worker acquire(final int type) {
+        while (true) {
+            if (this.affinity) {
+                final int shard = this.scheduler.shardFor(this.keys[type]);
+                final Worker w = this.scheduler.take(shard);
+                if (w != null) {
+                    return w;
+                }
+                final Worker fresh = this.idle.pollFirst();
+                if (fresh != null) {
+                    this.scheduler.homeless(fresh, shard);
+                    return fresh;
+                }
+            } else {
+                final Worker w = this.idle.pollFirst();
+                if (w != null) {
+                    return w;
+                }
+            }
+            LockSupport.parkNanos(1_000L);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAYLOADS)
+    public long dispatch() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(PAYLOADS);
+        for (final int type : this.schedule) {
+            acquire(type).inbox.put(new Job(type, done));
+        }
+        done.await();
+        return this.sink.sum();
+    }
+}
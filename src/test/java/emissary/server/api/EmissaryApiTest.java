@@ -23,13 +23,16 @@ import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.google.common.collect.Sets;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -302,6 +305,29 @@ class EmissaryApiTest extends EndpointTestBase {
         }
     }
 
+    @Test
+    void openMetrics() throws IOException {
+        MetricsAction metrics = new MetricsAction();
+        MetricsManager manager = mock(MetricsManager.class);
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("testing").inc(100);
+        registry.counter("other").inc(5);
+        when(manager.getMetricRegistry()).thenReturn(registry);
+
+        Namespace.bind("MetricsManager", manager);
+        try (Response response = metrics.openMetrics(Collections.singletonList("test"))) {
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ((StreamingOutput) response.getEntity()).write(out);
+            String text = out.toString(StandardCharsets.UTF_8);
+            assertTrue(text.contains("emissary_testing_total 100\n"));
+            assertFalse(text.contains("other"));
+            assertTrue(text.endsWith("# EOF\n"));
+        } finally {
+            Namespace.unbind("MetricsManager");
+        }
+    }
+
     @Test
     void healthcheck() {
         HealthCheckAction health = new HealthCheckAction();
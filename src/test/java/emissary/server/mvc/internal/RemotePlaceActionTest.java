@@ -0,0 +1,222 @@
+package emissary.server.mvc.internal;
+
+import emissary.config.ConfigUtil;
+import emissary.core.DataObjectFactory;
+import emissary.core.FamilyCodec;
+import emissary.core.Form;
+import emissary.core.IBaseDataObject;
+import emissary.core.Namespace;
+import emissary.core.ResourceException;
+import emissary.directory.DirectoryEntry;
+import emissary.place.IServiceProviderPlace;
+import emissary.server.mvc.EndpointTestBase;
+import emissary.server.mvc.adapters.RemotePlaceAdapter;
+
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The test container is the peer server, reached over loopback by the adapter an agent would use
+ */
+class RemotePlaceActionTest extends EndpointTestBase {
+
+    private IServiceProviderPlace place;
+    private String placeLocation;
+    private DirectoryEntry entry;
+    private Path acceptCfg;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        acceptCfg = Paths.get(ConfigUtil.getConfigDirs().get(0), "emissary.server.mvc.adapters.RemotePlaceAdapter.cfg");
+        Files.write(acceptCfg, "ACCEPT_ENABLED = \"true\"\n".getBytes(StandardCharsets.UTF_8));
+        RemotePlaceAdapter.configure();
+        placeLocation = "http://localhost:" + getPort() + "/ToUpperPlace";
+        entry = new DirectoryEntry("LOWER.TO_UPPER.TRANSFORM." + placeLocation);
+        place = mock(IServiceProviderPlace.class);
+        doAnswer(invocation -> {
+            IBaseDataObject d = invocation.getArgument(0);
+            d.setData(new String(d.data(), StandardCharsets.UTF_8).toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            d.setCurrentForm("UPPER");
+            d.putParameter("REMOTE", "yes");
+            return null;
+        }).when(place).agentProcessCall(any());
+        Namespace.bind(placeLocation, place);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        Namespace.unbind(placeLocation);
+        Files.deleteIfExists(acceptCfg);
+        RemotePlaceAdapter.configure();
+    }
+
+    private static IBaseDataObject payload() {
+        return DataObjectFactory.getInstance("some text".getBytes(StandardCharsets.UTF_8), "file", "LOWER");
+    }
+
+    @Test
+    void offloadToPeer() {
+        RemotePlaceAdapter adapter = new LoopbackAdapter(true, 2, 100, 4);
+        IBaseDataObject d = payload();
+
+        List<IBaseDataObject> sprouts = adapter.outboundProcess(entry, Collections.singletonList(d), false);
+
+        assertNotNull(sprouts, "Peer should have done the work");
+        assertTrue(sprouts.isEmpty());
+        assertEquals("SOME TEXT", new String(d.data(), StandardCharsets.UTF_8));
+        assertEquals("UPPER", d.currentForm());
+        assertEquals("yes", d.getStringParameter("REMOTE"));
+    }
+
+    @Test
+    void offloadHeavyDutyReturnsSprouts() throws Exception {
+        when(place.agentProcessHeavyDuty(anyList())).thenAnswer(invocation -> {
+            List<IBaseDataObject> family = invocation.getArgument(0);
+            family.get(0).setNumChildren(1);
+            return new ArrayList<>(Collections.singletonList(DataObjectFactory.getInstance(new byte[] {1, 2, 3}, "file-att-1", "CHILD")));
+        });
+        RemotePlaceAdapter adapter = new LoopbackAdapter(true, 2, 100, 4);
+        IBaseDataObject d = payload();
+
+        List<IBaseDataObject> sprouts = adapter.outboundProcess(entry, Collections.singletonList(d), true);
+
+        assertNotNull(sprouts);
+        assertEquals(1, sprouts.size());
+        assertEquals("file-att-1", sprouts.get(0).getFilename());
+        assertEquals("CHILD", sprouts.get(0).currentForm());
+        assertEquals(1, d.getNumChildren());
+    }
+
+    @Test
+    void placeErrorsComeBack() throws Exception {
+        doAnswer(invocation -> {
+            throw new IllegalStateException("broken place");
+        }).when(place).agentProcessCall(any());
+        RemotePlaceAdapter adapter = new LoopbackAdapter(true, 2, 100, 4);
+        IBaseDataObject d = payload();
+
+        assertNotNull(adapter.outboundProcess(entry, Collections.singletonList(d), false));
+        assertEquals(Form.ERROR, d.currentForm());
+        assertTrue(d.getProcessingError().contains("broken place"));
+    }
+
+    @Test
+    void unknownPlaceLeavesFamilyUnchanged() {
+        RemotePlaceAdapter adapter = new LoopbackAdapter(true, 2, 100, 4);
+        DirectoryEntry missing = new DirectoryEntry("LOWER.NOPE.TRANSFORM.http://localhost:" + getPort() + "/NoSuchPlace");
+        IBaseDataObject d = payload();
+
+        assertNull(adapter.outboundProcess(missing, Collections.singletonList(d), false));
+        assertEquals("LOWER", d.currentForm());
+        assertEquals("some text", new String(d.data(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void disabledAdapterSendsNothing() {
+        RemotePlaceAdapter adapter = new LoopbackAdapter(false, 2, 100, 4);
+        IBaseDataObject d = payload();
+
+        assertNull(adapter.outboundProcess(entry, Collections.singletonList(d), false));
+        assertEquals("LOWER", d.currentForm());
+    }
+
+    @Test
+    void busyPeerIsSkipped() throws ResourceException, InterruptedException, ExecutionException, TimeoutException {
+        CountDownLatch working = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            working.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(place).agentProcessCall(any());
+        RemotePlaceAdapter adapter = new LoopbackAdapter(true, 1, 0, 4);
+
+        CompletableFuture<List<IBaseDataObject>> first =
+                CompletableFuture.supplyAsync(() -> adapter.outboundProcess(entry, Collections.singletonList(payload()), false));
+        assertTrue(working.await(10, TimeUnit.SECONDS));
+        IBaseDataObject d = payload();
+        assertNull(adapter.outboundProcess(entry, Collections.singletonList(d), false), "Peer at its limit should be skipped");
+        assertEquals("LOWER", d.currentForm());
+
+        release.countDown();
+        assertNotNull(first.get(10, TimeUnit.SECONDS));
+        assertNotNull(adapter.outboundProcess(entry, Collections.singletonList(d), false), "Peer should have room again");
+    }
+
+    @Test
+    void refusedWhenNotAccepting() throws IOException {
+        Files.delete(acceptCfg);
+        RemotePlaceAdapter.configure();
+        RemotePlaceAdapter adapter = new LoopbackAdapter(true, 2, 100, 4);
+        IBaseDataObject d = payload();
+
+        assertNull(adapter.outboundProcess(entry, Collections.singletonList(d), false), "Peer should refuse the work");
+        assertEquals("LOWER", d.currentForm());
+        try (Response response = target("RemotePlace.action").queryParam(RemotePlaceAdapter.PLACE_KEY, entry.getKey()).request()
+                .post(Entity.entity(new byte[] {0, 0, 0, 99}, FamilyCodec.MEDIA_TYPE))) {
+            assertEquals(403, response.getStatus(), "The family should not be read");
+        }
+    }
+
+    @Test
+    void badFamily() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(99);
+        }
+        try (Response response = target("RemotePlace.action").queryParam(RemotePlaceAdapter.PLACE_KEY, entry.getKey()).request()
+                .post(Entity.entity(bytes.toByteArray(), FamilyCodec.MEDIA_TYPE))) {
+            assertEquals(400, response.getStatus());
+        }
+        try (Response response = target("RemotePlace.action").request()
+                .post(Entity.entity(Arrays.copyOf(bytes.toByteArray(), 4), FamilyCodec.MEDIA_TYPE))) {
+            assertEquals(400, response.getStatus());
+        }
+    }
+
+    /**
+     * The test container is deployed at the root rather than under the emissary context
+     */
+    static class LoopbackAdapter extends RemotePlaceAdapter {
+        LoopbackAdapter(boolean enabled, int maxInFlightPerPeer, long acquireTimeoutMillis, int maxInbound) {
+            super(enabled, false, maxInFlightPerPeer, acquireTimeoutMillis, maxInbound);
+        }
+
+        @Override
+        public HttpPost createHttpPost(String uri, String context, String endpoint) {
+            return createHttpPost(uri + endpoint.substring(1));
+        }
+    }
+}
@@ -14,7 +14,10 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static emissary.server.mvc.adapters.WorkSpaceAdapter.WORK_BUNDLE_ID;
 import static emissary.server.mvc.adapters.WorkSpaceAdapter.WORK_BUNDLE_STATUS;
@@ -32,6 +35,7 @@ class WorkBundleCompletedActionTest extends EndpointTestBase {
     private static final String WORKSPACE_BIND_KEY = "http://workBundleCompletedActionTest:7001/WorkSpace";
     private static final String WORKSPACE_NAME = "WORKSPACE.WORK_SPACE.INPUT." + WORKSPACE_BIND_KEY;
     private static final String WORK_BUNDLE_COMPLETED_ACTION = "WorkBundleCompleted.action";
+    private static final String WORK_BUNDLES_COMPLETED_ACTION = "WorkBundlesCompleted.action";
     @SuppressWarnings("unused")
     private static final String FAILURE_RESULT = "<entryList />";
 
@@ -149,4 +153,38 @@ class WorkBundleCompletedActionTest extends EndpointTestBase {
             assertEquals("Work Bundle Completed", result);
         }
     }
+
+    @Test
+    void successfulBatchSubmission() throws Exception {
+        // setup
+        Namespace.unbind(WORKSPACE_BIND_KEY);
+        WorkSpace spyWs = spy(new WorkSpace());
+        Map<String, Boolean> expected = new LinkedHashMap<>();
+        expected.put("1", true);
+        expected.put("2", false);
+        doReturn(1).when(spyWs).workCompleted("http://localhost:9001/FilePickUpClient", expected);
+        Namespace.bind(WORKSPACE_BIND_KEY, spyWs);
+        formParams.put(WORK_BUNDLE_ID, Arrays.asList("1", "2"));
+        formParams.put(WORK_BUNDLE_STATUS, Arrays.asList("true", "false"));
+
+        // test
+        try (Response response = target(WORK_BUNDLES_COMPLETED_ACTION).request().post(Entity.form(formParams))) {
+            // verify
+            assertEquals(200, response.getStatus());
+            assertEquals("1 of 2 Work Bundles Completed", response.readEntity(String.class));
+        }
+    }
+
+    @Test
+    void unpairedBatchSubmission() {
+        // setup
+        formParams.put(WORK_BUNDLE_ID, Arrays.asList("1", "2"));
+
+        // test
+        try (Response response = target(WORK_BUNDLES_COMPLETED_ACTION).request().post(Entity.form(formParams))) {
+            // verify
+            assertEquals(500, response.getStatus());
+            assertTrue(response.readEntity(String.class).startsWith("Bad params:"));
+        }
+    }
 }
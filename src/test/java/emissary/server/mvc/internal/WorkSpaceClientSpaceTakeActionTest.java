@@ -4,8 +4,11 @@ import emissary.core.Namespace;
 import emissary.pickup.WorkBundle;
 import emissary.pickup.WorkSpace;
 import emissary.server.mvc.EndpointTestBase;
+import emissary.server.mvc.adapters.WorkSpaceAdapter;
 
 import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.MultivaluedHashMap;
 import jakarta.ws.rs.core.Response;
 import org.junit.jupiter.api.AfterEach;
@@ -15,7 +18,15 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static emissary.server.mvc.internal.WorkSpaceClientSpaceTakeAction.CLIENT_NAME;
 import static emissary.server.mvc.internal.WorkSpaceClientSpaceTakeAction.SPACE_NAME;
@@ -32,6 +43,7 @@ class WorkSpaceClientSpaceTakeActionTest extends EndpointTestBase {
     private static final String WORKSPACE_BIND_KEY = "http://workSpaceCLientSpaceTakeActionTest:7001/WorkSpace";
     private static final String WORKSPACE_NAME = "WORKSPACE.WORK_SPACE.INPUT." + WORKSPACE_BIND_KEY;
     private static final String CLIENT_SPACE_TAKE_ACTION = "WorkSpaceClientSpaceTake.action";
+    private static final String CLIENT_SPACE_TAKE_BUNDLES_ACTION = "WorkSpaceClientSpaceTakeBundles.action";
     @SuppressWarnings("unused")
     private static final String FAILURE_RESULT = "<entryList />";
 
@@ -138,5 +150,117 @@ class WorkSpaceClientSpaceTakeActionTest extends EndpointTestBase {
         }
     }
 
+    @Test
+    void successfulTakeBundles() throws Exception {
+        // setup
+        WorkSpace spy = spy(new WorkSpace());
+        WorkBundle wb1 = new WorkBundle();
+        wb1.setBundleId("1");
+        wb1.addFileName("file1");
+        WorkBundle wb2 = new WorkBundle();
+        wb2.setBundleId("2");
+        wb2.addFileName("file2");
+        doReturn(Arrays.asList(wb1, wb2)).when(spy).take(PLACE_NAME, 3);
+        Namespace.bind(WORKSPACE_BIND_KEY, spy);
+        formParams.put(WorkSpaceAdapter.MAX_BUNDLES, Collections.singletonList("3"));
+
+        // test
+        try (Response response = target(CLIENT_SPACE_TAKE_BUNDLES_ACTION).request().post(Entity.form(formParams))) {
+            final int status = response.getStatus();
+            assertEquals(200, status);
+            final List<WorkBundle> result = WorkBundle.buildWorkBundles(response.readEntity(String.class));
+            assertNotNull(result);
+            assertEquals(2, result.size());
+            assertEquals("1", result.get(0).getBundleId());
+            assertEquals(wb2.getFileNameList(), result.get(1).getFileNameList());
+        }
+    }
 
+    @Test
+    void nothingToTakeBundlesFromWorkSpace() {
+        // test
+        try (Response response = target(CLIENT_SPACE_TAKE_BUNDLES_ACTION).request().post(Entity.form(formParams))) {
+            // verify
+            assertEquals(200, response.getStatus());
+            final List<WorkBundle> result = WorkBundle.buildWorkBundles(response.readEntity(String.class));
+            assertNotNull(result);
+            assertTrue(result.isEmpty());
+        }
+    }
+
+    @Test
+    void binaryTakeWhenAccepted() throws Exception {
+        // setup
+        WorkSpace spy = spy(new WorkSpace());
+        WorkBundle wb = new WorkBundle();
+        wb.setBundleId("1");
+        wb.addFileName("file");
+        doReturn(wb).when(spy).take(PLACE_NAME);
+        Namespace.bind(WORKSPACE_BIND_KEY, spy);
+
+        // test
+        try (Response response = target(CLIENT_SPACE_TAKE_ACTION).request(WorkBundle.MEDIA_TYPE, "application/xml;q=0.5")
+                .post(Entity.form(formParams))) {
+            assertEquals(200, response.getStatus());
+            assertEquals(WorkBundle.MEDIA_TYPE, response.getMediaType().toString());
+            final List<WorkBundle> result = readBundles(response.readEntity(byte[].class), false);
+            assertEquals(1, result.size());
+            assertEquals(wb.getBundleId(), result.get(0).getBundleId());
+            assertEquals(wb.getFileNameList(), result.get(0).getFileNameList());
+        }
+    }
+
+    @Test
+    void compressedBinaryTakeBundles() throws Exception {
+        // setup
+        WorkSpace spy = spy(new WorkSpace());
+        List<WorkBundle> bundles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            WorkBundle wb = new WorkBundle("/output/root", "/eat/prefix");
+            for (int j = 0; j < 20; j++) {
+                wb.addFileName("/eat/prefix/some/deep/directory/file-" + i + "-" + j + ".dat");
+            }
+            bundles.add(wb);
+        }
+        doReturn(bundles).when(spy).take(PLACE_NAME, 10);
+        Namespace.bind(WORKSPACE_BIND_KEY, spy);
+        formParams.put(WorkSpaceAdapter.MAX_BUNDLES, Collections.singletonList("10"));
+
+        // test
+        try (Response response = target(CLIENT_SPACE_TAKE_BUNDLES_ACTION).request(WorkBundle.MEDIA_TYPE)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip").post(Entity.form(formParams))) {
+            assertEquals(200, response.getStatus());
+            assertEquals("gzip", response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+            final List<WorkBundle> result = readBundles(response.readEntity(byte[].class), true);
+            assertEquals(10, result.size());
+            assertEquals(bundles.get(9).getFileNameList(), result.get(9).getFileNameList());
+        }
+    }
+
+    @Test
+    void xmlTakeBundlesForOlderClients() throws Exception {
+        // setup
+        WorkSpace spy = spy(new WorkSpace());
+        WorkBundle wb = new WorkBundle();
+        wb.addFileName("file");
+        doReturn(Collections.singletonList(wb)).when(spy).take(PLACE_NAME, 1);
+        Namespace.bind(WORKSPACE_BIND_KEY, spy);
+
+        // test
+        try (Response response = target(CLIENT_SPACE_TAKE_BUNDLES_ACTION).request().header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .post(Entity.form(formParams))) {
+            assertEquals(200, response.getStatus());
+            assertEquals(MediaType.APPLICATION_XML, response.getMediaType().toString());
+            final List<WorkBundle> result = WorkBundle.buildWorkBundles(response.readEntity(String.class));
+            assertNotNull(result);
+            assertEquals(wb.getBundleId(), result.get(0).getBundleId());
+        }
+    }
+
+    private static List<WorkBundle> readBundles(byte[] body, boolean compressed) throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        try (DataInputStream data = new DataInputStream(compressed ? new GZIPInputStream(in) : in)) {
+            return WorkBundle.readBundlesFromStream(data);
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package emissary.transform.decode;
+
+import emissary.core.channels.InMemoryChannelFactory;
+import emissary.core.channels.SeekableByteChannelFactory;
+import emissary.test.core.junit5.UnitTest;
+import emissary.util.CharacterCounterSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EscapeDecoderTest extends UnitTest {
+
+    private final HtmlEscapeDecoder html = new HtmlEscapeDecoder();
+    private final JsonEscapeDecoder json = new JsonEscapeDecoder();
+    private final JavascriptEscapeDecoder javascript = new JavascriptEscapeDecoder();
+
+    @TempDir
+    Path tempDir;
+
+    // the deprecated decoders write numeric references in the platform charset
+    private static final boolean UTF8_PLATFORM = StandardCharsets.UTF_8.equals(Charset.defaultCharset());
+
+    @SuppressWarnings("deprecation") // compared against the deprecated decoders
+    private static String twoPass(String s) {
+        return new String(HtmlEscape.unescapeEntities(HtmlEscape.unescapeHtml(s.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8);
+    }
+
+    private static String decode(EscapeDecoder decoder, String s) {
+        return new String(decoder.decode(s.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testHtmlMatchesTwoPasses() {
+        // what the two passes give with a UTF-8 platform charset
+        String[][] cases = {{"a&#160;&nbsp;b", "a\u00A0 b"}, {"alors le r&eacute;", "alors le r\u00E9"}, {"alors le r&eacute", "alors le r\u00E9"},
+                {"a&nbsp b", "a  b"}, {"a&;nbsp;b", "a b"}, {"&;foobarb ", "&;foobarb "}, {"&;foobarb", "&;foobarb"},
+                {"&#x1D504;&Afr;", "\uD835\uDD04\uD835\uDD04"}, {"&#44;", ","}, {"&#xD800;", "?"}, {"&#12ab;", "&#12ab;"}, {"&#;", "&#;"},
+                {"&#x;", "&#x;"}, {"&&amp;", "&"}, {"&#1234567;", "&#1234567;"}, {"x & y", "x & y"}, {"&", "&"},
+                {"You can have it one way &And; Not the other way, &Or; both ways", "You can have it one way && Not the other way, || both ways"}};
+        for (String[] c : cases) {
+            assertEquals(c[1], decode(html, c[0]), c[0]);
+        }
+
+        Random random = new Random(9);
+        String[] pieces = {"&", "#", "x", ";", " ", "1", "6", "0", "a", "amp", "nbsp", "eacute", "And", "Q", "é"};
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(20); j > 0; j--) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String input = sb.toString();
+            String decoded = decode(html, input);
+            if (!UTF8_PLATFORM && !StandardCharsets.US_ASCII.newEncoder().canEncode(decoded)) {
+                // the two passes only agree on non-ascii output with a UTF-8 platform charset
+                continue;
+            }
+            if (!twoPass(input).equals(twoPass(twoPass(input)))) {
+                // the single pass does not decode the output of a numeric reference again
+                continue;
+            }
+            assertEquals(twoPass(input), decoded, input);
+        }
+    }
+
+    @Test
+    void testNumericOutputIsNotDecodedAgain() {
+        assertEquals("&amp;", decode(html, "&#38;amp;"));
+    }
+
+    @Test
+    void testHtmlCounters() {
+        CharacterCounterSet counters = new CharacterCounterSet();
+        html.decode("a&nbsp;b&#160;r&eacute;".getBytes(StandardCharsets.UTF_8), counters);
+        assertEquals(2, counters.getBlankSpaceCount());
+        assertEquals(1, counters.getLetterCount());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation") // compared against the deprecated decoders
+    void testJson() {
+        String[] inputs = {"\\u003cThis is a Test\\u003e", "\\ufoodebar this is normal\\u", "\\42This is a Test\\42", "\\04277This is a Test\\04277",
+                "\\8 \\9", "\\n\\t\\r\\\"\\'\\/\\\\", "some\\\\node\\\\content", "\\U0041", "\\", "\\u12"};
+        for (String input : inputs) {
+            assertEquals(new String(JsonEscape.unescape(input.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8), decode(json, input),
+                    input);
+        }
+        assertEquals("😀", decode(json, "\\uD83D\\uDE00"), "Surrogate pairs are joined");
+        assertEquals("?x", decode(json, "\\uD83Dx"), "Unpaired surrogates are replaced");
+    }
+
+    @Test
+    void testJavascript() {
+        assertEquals("١٢ AB \\U0041", decode(javascript, "\\u0661\\u0662 \\u0041\\u0042 \\U0041"));
+        assertEquals("a\nb\rc\\t", decode(javascript, "a\\nb\\rc\\t"));
+        assertEquals("😀", decode(javascript, "\\uD83D\\uDE00"));
+    }
+
+    @Test
+    void testEscapesAcrossBufferBoundaries() {
+        String tail = "&eacute;&#233; &nbsp b&;amp;x &CounterClockwiseContourIntegral;";
+        String expected = decode(html, tail);
+        String jsonTail = "\\u00e9\\uD83D\\uDE00\\101\\n";
+        String jsonExpected = decode(json, jsonTail);
+        for (int shift = 0; shift < 80; shift++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < EscapeDecoder.BUFFER_SIZE - shift; i++) {
+                sb.append('x');
+            }
+            String padding = sb.toString();
+            assertEquals(padding + expected + expected, decode(html, padding + tail + tail), "Shift " + shift);
+            assertEquals(padding + jsonExpected + jsonExpected, decode(json, padding + jsonTail + jsonTail), "Shift " + shift);
+        }
+    }
+
+    @Test
+    void testBuffersAreSizedToTheInput() throws IOException {
+        assertEquals(2 * 40, EscapeDecoder.bufferSize(0, 40));
+        assertEquals(101, EscapeDecoder.bufferSize(100, 40));
+        assertEquals(EscapeDecoder.BUFFER_SIZE, EscapeDecoder.bufferSize(10L * EscapeDecoder.BUFFER_SIZE, 40));
+
+        // a channel read from part way, and one that holds more than its size said, decode the same as an array
+        String input = "skip&amp;" + "x".repeat(300) + "&eacute;&#x20;\\u0041&CounterClockwiseContourIntegral;";
+        try (SeekableByteChannel channel = InMemoryChannelFactory.create(input.getBytes(StandardCharsets.UTF_8)).create()) {
+            channel.position(4);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            html.decode(channel, Channels.newChannel(out), null);
+            assertEquals(decode(html, input.substring(4)), out.toString(StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        html.decode(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(out), null);
+        assertEquals(decode(html, input), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDecodeToChannelFactory() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            sb.append("caf&eacute;&#x20;");
+            expected.append("café ");
+        }
+        SeekableByteChannelFactory input = InMemoryChannelFactory.create(sb.toString().getBytes(StandardCharsets.UTF_8));
+        byte[] want = expected.toString().getBytes(StandardCharsets.UTF_8);
+
+        // once held in memory and once spilled to a file
+        for (int threshold : new int[] {Integer.MAX_VALUE, 1024}) {
+            SeekableByteChannelFactory output = html.decode(input, threshold, tempDir, null);
+            try (SeekableByteChannel channel = output.create()) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read it all
+                }
+                assertEquals(want.length, channel.size());
+                assertEquals(expected.toString(), new String(buffer.array(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
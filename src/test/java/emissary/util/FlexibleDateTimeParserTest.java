@@ -1,5 +1,8 @@
 package emissary.util;
 
+import emissary.config.ConfigEntry;
+import emissary.config.ConfigUtil;
+import emissary.config.Configurator;
 import emissary.test.core.junit5.UnitTest;
 
 import jakarta.annotation.Nullable;
@@ -7,9 +10,14 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -687,4 +695,58 @@ class FlexibleDateTimeParserTest extends UnitTest {
         test("Mon, 2 Feb 2017 06:20:30 PM +0000", 0L, "UNKNOWN");
         test("2016:01:04 18:20:30 GMT+0000<" + RandomStringUtils.randomAlphanumeric(75) + ">", 0L, "UNKNOWN");
     }
+
+    @Test
+    void testShapeOf() {
+        assertEquals("9999-99-99T99:99", FlexibleDateTimeParser.shapeOf("2016-01-04t18:20"));
+        assertEquals("MON, 9 JAN 9999", FlexibleDateTimeParser.shapeOf("Mon, 4 jan 2016"));
+    }
+
+    @Test
+    void testShapeCacheMatchesFullScan() throws IOException {
+        Configurator config = ConfigUtil.getConfigInfo(FlexibleDateTimeParser.class);
+        List<DateTimeFormatter> main = formatters(config.findStringMatchEntries("FORMAT_DATETIME_MAIN"));
+        List<DateTimeFormatter> all = new ArrayList<>(main);
+        all.addAll(formatters(config.findStringMatchEntries("FORMAT_DATETIME_EXTRA")));
+
+        // same shapes with digits that are valid in one field order but not another
+        String[] templates = {"##/##/####", "##/##/#### ##:##", "##.##.#### ##:##:##", "########", "####-##-## ##:##:##",
+                "####:##:## ##:##", "Mon, # Jan #### ##:##:## +####", "Jan ## #### ##:##:## -####", "###-####"};
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String template = templates[i % templates.length];
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < template.length(); j++) {
+                char c = template.charAt(j);
+                sb.append(c == '#' ? (char) ('0' + random.nextInt(i % 2 == 0 ? 10 : 3)) : c);
+            }
+            String date = sb.toString();
+            assertEquals(FlexibleDateTimeParser.parse(date, main), FlexibleDateTimeParser.parse(date), "Main formats on " + date);
+            ZonedDateTime extensive = FlexibleDateTimeParser.parse(date, main);
+            if (extensive == null) {
+                extensive = FlexibleDateTimeParser.parse(date, all);
+            }
+            if (extensive == null) {
+                extensive = FlexibleDateTimeParser.lastDitchParsingEffort(date);
+            }
+            assertEquals(extensive, FlexibleDateTimeParser.parse(date, true), "All formats on " + date);
+        }
+    }
+
+    @Test
+    void testShapeCacheKeepsFormatsRejectedByValue() {
+        // the first string of each shape has an offset out of range, which must not hide the offset formats for the next
+        assertNull(FlexibleDateTimeParser.parse("Wed, 6 Jan 2016 02:20:30 +9900"));
+        assertEquals(EXPECTED_FULL + 86400L, FlexibleDateTimeParser.parse("Wed, 6 Jan 2016 02:20:30 +0800").toEpochSecond());
+        assertNull(FlexibleDateTimeParser.parse("2016-01-06T18:20:30+99:00"));
+        assertEquals(EXPECTED_FULL + 86400L * 2 - 3600L, FlexibleDateTimeParser.parse("2016-01-06T18:20:30+01:00").toEpochSecond());
+    }
+
+    private static List<DateTimeFormatter> formatters(List<ConfigEntry> entries) {
+        List<DateTimeFormatter> formatters = new ArrayList<>();
+        for (ConfigEntry entry : entries) {
+            formatters.add(new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern(entry.getValue()).toFormatter());
+        }
+        return formatters;
+    }
 }
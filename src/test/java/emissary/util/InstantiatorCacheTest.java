@@ -0,0 +1,111 @@
+package emissary.util;
+
+import emissary.test.core.junit5.UnitTest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link InstantiatorCache}.
+ */
+class InstantiatorCacheTest extends UnitTest {
+
+    public static final class Example {
+        final String how;
+
+        public Example() {
+            this.how = "none";
+        }
+
+        public Example(Integer arg1) {
+            this.how = "int " + arg1;
+        }
+
+        public Example(String arg1, String arg2, List<String> arg3) {
+            this.how = arg1 + arg2 + arg3;
+        }
+
+        public Example(int arg1, double arg2, boolean arg3, String arg4) {
+            this.how = "prim " + arg1 + " " + arg2 + " " + arg3 + " " + arg4;
+        }
+
+        public Example(String a, String b, String c, String d, String e, String f, String g) {
+            this.how = a + b + c + d + e + f + g;
+        }
+
+        public Example(String fail) throws IOException {
+            throw new IOException(fail);
+        }
+    }
+
+    public static final class Hidden {
+        final String how;
+
+        Hidden() {
+            this.how = "package";
+        }
+    }
+
+    private static String create(Class<?>[] types, Object... args) throws Throwable {
+        Instantiator instantiator = InstantiatorCache.lookup(Example.class, types);
+        assertNotNull(instantiator);
+        return ((Example) instantiator.newInstance(args)).how;
+    }
+
+    @Test
+    void testConstructors() throws Throwable {
+        assertEquals("none", create(new Class<?>[] {}));
+        assertEquals("int 4", create(new Class<?>[] {Integer.class}, 4));
+        assertEquals("ab[c]", create(new Class<?>[] {String.class, String.class, List.class}, "a", "b", Arrays.asList("c")));
+        assertEquals("prim 1 2.0 true s",
+                create(new Class<?>[] {Integer.class, Double.class, Boolean.class, String.class}, 1, 2.0d, true, "s"));
+        assertEquals("abcdefg", create(new Class<?>[] {String.class, String.class, String.class, String.class, String.class, String.class,
+                String.class}, "a", "b", "c", "d", "e", "f", "g"));
+        assertEquals("nullb[]", create(new Class<?>[] {null, String.class, List.class}, null, "b", Arrays.asList()));
+    }
+
+    @Test
+    void testCached() {
+        Instantiator first = InstantiatorCache.lookup(Example.class, Integer.class);
+        assertSame(first, InstantiatorCache.lookup(Example.class, Integer.class));
+        InstantiatorCache.clear();
+        assertNotNull(InstantiatorCache.lookup(Example.class, Integer.class));
+    }
+
+    @Test
+    void testNoConstructor() {
+        assertNull(InstantiatorCache.lookup(Example.class, Long.class));
+        assertNull(InstantiatorCache.lookup(Example.class, String.class, String.class));
+    }
+
+    @Test
+    void testConstructorExceptionIsNotWrapped() {
+        Instantiator instantiator = InstantiatorCache.lookup(Example.class, String.class);
+        assertNotNull(instantiator);
+        IOException e = assertThrows(IOException.class, () -> instantiator.newInstance("bad"));
+        assertEquals("bad", e.getMessage());
+    }
+
+    @Test
+    void testNonPublicConstructorsNotUsed() {
+        assertNull(InstantiatorCache.lookup(Hidden.class));
+        assertEquals("package", new Hidden().how);
+    }
+
+    @Test
+    void testJdkClass() throws Throwable {
+        Instantiator instantiator = InstantiatorCache.lookup(Throwable.class, String.class, null);
+        assertNotNull(instantiator);
+        assertInstanceOf(Throwable.class, instantiator.newInstance("message", null));
+    }
+}
@@ -0,0 +1,101 @@
+package emissary.util.magic;
+
+import emissary.test.core.junit5.UnitTest;
+
+import jakarta.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MagicNumberIndexTest extends UnitTest {
+
+    /**
+     * The walk over every entry that the index replaces
+     */
+    @Nullable
+    private static String linearDescribe(List<MagicNumber> magicNumbers, @Nullable byte[] data) {
+        String description = null;
+        for (MagicNumber item : magicNumbers) {
+            description = item.describe(data);
+            if (description != null && !description.isEmpty()) {
+                break;
+            }
+        }
+        return description;
+    }
+
+    @Test
+    void testOrderIsPreserved() {
+        List<MagicNumber> magic = MagicNumberFactory.buildMagicNumberList(
+                "0 string ABC first\n0 byte >0x40 second\n0 string ABCD third\n4 belong 0x31323334 fourth\n".getBytes(StandardCharsets.UTF_8),
+                null, null);
+        MagicNumberIndex index = MagicNumberFactory.buildMagicNumberIndex(magic);
+        assertEquals(4, index.size());
+        assertEquals(1, index.unindexedSize());
+
+        assertEquals("first", index.describe("ABCD1234".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("second", index.describe("XBCD1234".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("fourth", index.describe("\0\0\0\0001234".getBytes(StandardCharsets.UTF_8)));
+        assertNull(index.describe("\0".getBytes(StandardCharsets.UTF_8)));
+        assertNull(index.describe(null));
+        assertNull(MagicNumberFactory.buildMagicNumberIndex(Collections.emptyList()).describe(new byte[1]));
+    }
+
+    @Test
+    void testMatchesLinearScan() throws IOException {
+        List<MagicNumber> magic = MagicNumberFactory.buildMagicNumberList(Files.readAllBytes(Paths.get("src/main/config/magic")), null, null, true);
+        MagicNumberIndex index = MagicNumberFactory.buildMagicNumberIndex(magic);
+        assertTrue(index.unindexedSize() < magic.size() / 2, "Most entries should be bucketed");
+
+        List<byte[]> corpus = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(Paths.get("src/test/resources"))) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                byte[] data = Files.readAllBytes(file);
+                corpus.add(data.length > 4096 ? Arrays.copyOf(data, 4096) : data);
+            }
+        }
+
+        // plant the literal of every third entry in noise so the buckets are exercised
+        Random random = new Random(7);
+        for (int i = 0; i < magic.size(); i += 3) {
+            MagicNumber item = magic.get(i);
+            if (item.value == null || item.offset < 0 || item.offset > 8192) {
+                continue;
+            }
+            byte[] data = new byte[item.offset + item.value.length + random.nextInt(64)];
+            random.nextBytes(data);
+            System.arraycopy(item.value, 0, data, item.offset, item.value.length);
+            corpus.add(data);
+        }
+        for (int i = 0; i < 200; i++) {
+            byte[] data = new byte[random.nextInt(512)];
+            random.nextBytes(data);
+            corpus.add(data);
+        }
+
+        int described = 0;
+        for (byte[] data : corpus) {
+            String expected = linearDescribe(magic, data);
+            assertEquals(expected, index.describe(data));
+            if (expected != null && !expected.isEmpty()) {
+                described++;
+            }
+        }
+        assertTrue(described > corpus.size() / 4, "Corpus should mostly be identified, only " + described + " of " + corpus.size());
+    }
+}
@@ -0,0 +1,210 @@
+package emissary.util.roll;
+
+import emissary.test.core.junit5.UnitTest;
+import emissary.util.io.FileNameGenerator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferedRollableFileOutputStreamTest extends UnitTest implements FileNameGenerator {
+    private static final String data = "some junk bytes";
+    Path tmpDir;
+    String currentFile;
+
+    @BeforeEach
+    public void setUp(@TempDir final Path tmpDir) throws Exception {
+        super.setUp();
+        this.tmpDir = tmpDir;
+    }
+
+    private List<Path> finishedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            return files.filter(p -> !p.getFileName().toString().startsWith(".")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void testWriteAndClose() throws Exception {
+        BufferedRollableFileOutputStream instance = BufferedRollableFileOutputStream.builder(this, tmpDir.toFile()).build();
+        instance.write(data.getBytes(StandardCharsets.UTF_8));
+        instance.write('!');
+        instance.flush();
+        assertEquals(data.length() + 1L, instance.getBytesWritten());
+        instance.close();
+        instance.close();
+
+        assertNull(instance.fileOutputStream);
+        assertNull(instance.currentFile);
+        assertEquals(data + "!", Files.readString(tmpDir.resolve(currentFile)));
+        assertThrows(IOException.class, () -> instance.write(1));
+    }
+
+    @Test
+    void testRoll() throws Exception {
+        try (BufferedRollableFileOutputStream instance = BufferedRollableFileOutputStream.builder(this, tmpDir.toFile()).build()) {
+            instance.write(data.getBytes(StandardCharsets.UTF_8));
+            final String first = currentFile;
+            instance.roll();
+            assertEquals(data, Files.readString(tmpDir.resolve(first)));
+            assertTrue(Files.exists(tmpDir.resolve("." + currentFile)));
+            assertEquals(0L, instance.getBytesWritten());
+            // nothing written, so the rolled file is removed
+            instance.roll();
+        }
+        assertEquals(1, finishedFiles().size());
+    }
+
+    @Test
+    void testRollsOnSize() throws Exception {
+        try (BufferedRollableFileOutputStream instance = BufferedRollableFileOutputStream.builder(this, tmpDir.toFile())
+                .withMaxBytes(100)
+                .withSyncOnRoll(true)
+                .build()) {
+            final byte[] chunk = new byte[60];
+            for (int i = 0; i < 4; i++) {
+                instance.write(chunk);
+                instance.flush();
+            }
+        }
+        final List<Path> files = finishedFiles();
+        assertEquals(2, files.size());
+        for (Path f : files) {
+            assertEquals(120L, Files.size(f));
+        }
+    }
+
+    @Test
+    void testRollsOnAge() throws IOException, InterruptedException {
+        try (BufferedRollableFileOutputStream instance = BufferedRollableFileOutputStream.builder(this, tmpDir.toFile())
+                .withMaxAge(50, TimeUnit.MILLISECONDS)
+                .withSyncInterval(10, TimeUnit.MILLISECONDS)
+                .build()) {
+            instance.write(data.getBytes(StandardCharsets.UTF_8));
+            final long deadline = System.currentTimeMillis() + 10_000L;
+            while (finishedFiles().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, finishedFiles().size());
+        }
+        assertEquals(1, finishedFiles().size());
+    }
+
+    @Test
+    void testConcurrentWritesAreNotInterleaved() throws IOException, InterruptedException, ExecutionException {
+        final int threads = 8;
+        final int writes = 2000;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (BufferedRollableFileOutputStream instance = BufferedRollableFileOutputStream.builder(this, tmpDir.toFile())
+                .withSlots(16)
+                .withSlotSize(8)
+                .withMaxBytes(64 * 1024)
+                .build()) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // records of the same letter, some larger than a slot
+                final byte[] record = new byte[5 + t * 3];
+                Arrays.fill(record, (byte) ('a' + t));
+                record[record.length - 1] = '\n';
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < writes; i++) {
+                        instance.write(record);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        final int[] counts = new int[threads];
+        final List<Path> files = finishedFiles();
+        assertTrue(files.size() > 1);
+        for (Path f : files) {
+            for (String line : Files.readAllLines(f, StandardCharsets.US_ASCII)) {
+                final int t = line.charAt(0) - 'a';
+                assertEquals(4 + t * 3, line.length());
+                assertTrue(line.chars().allMatch(c -> c == 'a' + t), line);
+                counts[t]++;
+            }
+        }
+        final int[] expected = new int[threads];
+        Arrays.fill(expected, writes);
+        assertArrayEquals(expected, counts);
+    }
+
+    @Test
+    void testWritesRacingCloseAreWrittenOrFail() throws IOException, InterruptedException, ExecutionException {
+        final int threads = 8;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final BufferedRollableFileOutputStream instance = BufferedRollableFileOutputStream.builder(this, tmpDir.toFile()).build();
+        final List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    final byte[] record = (data + "\n").getBytes(StandardCharsets.UTF_8);
+                    int written = 0;
+                    try {
+                        while (true) {
+                            instance.write(record);
+                            written++;
+                        }
+                    } catch (IOException e) {
+                        return written;
+                    }
+                }));
+            }
+            Thread.sleep(50);
+            instance.close();
+            int written = 0;
+            for (Future<Integer> f : futures) {
+                written += f.get();
+            }
+
+            // every write that returned normally is in the file, and no other
+            final List<String> lines = Files.readAllLines(tmpDir.resolve(currentFile), StandardCharsets.UTF_8);
+            assertEquals(written, lines.size());
+            assertTrue(lines.stream().allMatch(data::equals));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testBuilderRejectsOddSlots() {
+        final BufferedRollableFileOutputStream.Builder builder = BufferedRollableFileOutputStream.builder(this, tmpDir.toFile());
+        assertThrows(IllegalArgumentException.class, () -> builder.withSlots(1000));
+        assertThrows(IllegalArgumentException.class, () -> builder.withSlotSize(0));
+    }
+
+    @Override
+    public String nextFileName() {
+        currentFile = UUID.randomUUID().toString();
+        return currentFile;
+    }
+}
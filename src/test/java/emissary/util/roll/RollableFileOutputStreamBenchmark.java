@@ -0,0 +1,102 @@
+package emissary.util.roll;
+
+import emissary.util.io.FileNameGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write throughput of 64 threads sharing one stream, which a separate thread rolls every 100ms the way a Roller would.
+ * The locked stream writes to the file on each caller's thread and holds writers out during a roll, the buffered one
+ * stages writes for its flusher. The sampled write times show the stalls during rolls. Run with the jmh profile, see
+ * DEVELOPING.md
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class RollableFileOutputStreamBenchmark implements FileNameGenerator {
+
+    @Param({"locked", "buffered"})
+    public String mode;
+
+    @Param({"64", "4096"})
+    public int writeSize;
+
+    private Path dir;
+    private RollableFileOutputStream out;
+    private ScheduledExecutorService roller;
+    private ScheduledFuture<?> rolling;
+    private byte[] record;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("rollable");
+        this.out = "buffered".equals(this.mode) ? BufferedRollableFileOutputStream.builder(this, this.dir.toFile()).build()
+                : new RollableFileOutputStream(this, this.dir.toFile());
+        this.record = new byte[this.writeSize];
+        Arrays.fill(this.record, (byte) 'x');
+        this.roller = Executors.newSingleThreadScheduledExecutor();
+        this.rolling = this.roller.scheduleAtFixedRate(this.out::roll, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRolledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(this.dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                if (!f.getFileName().toString().startsWith(".")) {
+                    Files.deleteIfExists(f);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.rolling.cancel(false);
+        this.roller.shutdownNow();
+        this.out.close();
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            for (Path f : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(f);
+            }
+        }
+    }
+
+    @Override
+    public String nextFileName() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        this.out.write(this.record);
+    }
+}
@@ -0,0 +1,220 @@
+package emissary.util.search;
+
+import emissary.core.channels.InMemoryChannelFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickScannerTest {
+
+    private final String[] defaultKeywords = {"fox", "dog"};
+    private static final String DEFAULT_DATA = "the quick brown fox jumped over the lazy dog";
+
+    @Test
+    void testFindAll() {
+        AhoCorasickScanner scanner = new AhoCorasickScanner(defaultKeywords);
+        HitList hits = scanner.findAll(DEFAULT_DATA.getBytes());
+        assertEquals(2, hits.size());
+        assertEquals(0, hits.get(0).getId());
+        assertEquals(16, hits.get(0).getOffset());
+        assertEquals(1, hits.get(1).getId());
+        assertEquals(41, hits.get(1).getOffset());
+
+        assertTrue(scanner.findAll((byte[]) null).isEmpty());
+        assertEquals(1, scanner.findAll(DEFAULT_DATA.getBytes(), 28).size());
+        assertEquals(1, scanner.findAll(DEFAULT_DATA.getBytes(), 0, 24).size());
+        assertTrue(scanner.findAll(DEFAULT_DATA.getBytes(), 17, 43).isEmpty(), "Keywords must lie inside the range");
+    }
+
+    @Test
+    void testFindNext() {
+        AhoCorasickScanner scanner = new AhoCorasickScanner(defaultKeywords);
+        HitList hits = scanner.findNext(DEFAULT_DATA.getBytes());
+        assertEquals(1, hits.size());
+        assertEquals(0, hits.get(0).getId());
+        assertEquals(16, hits.get(0).getOffset());
+
+        hits = scanner.findNext();
+        assertEquals(1, hits.size());
+        assertEquals(1, hits.get(0).getId());
+        assertEquals(41, hits.get(0).getOffset());
+
+        assertTrue(scanner.findNext().isEmpty());
+        assertTrue(scanner.findNext((byte[]) null).isEmpty());
+        assertEquals(41, scanner.findNext(DEFAULT_DATA.getBytes(), 28).get(0).getOffset());
+    }
+
+    @Test
+    void testOverlappingKeywords() {
+        AhoCorasickScanner scanner = new AhoCorasickScanner(new String[] {"he", "she", "his", "hers", "she"});
+        HitList hits = scanner.findAll("ushers".getBytes());
+        assertEquals(4, hits.size());
+        // ending at the same place, shortest first and duplicates in id order
+        assertEquals(0, hits.get(0).getId());
+        assertEquals(2, hits.get(0).getOffset());
+        assertEquals(1, hits.get(1).getId());
+        assertEquals(1, hits.get(1).getOffset());
+        assertEquals(4, hits.get(2).getId());
+        assertEquals(3, hits.get(3).getId());
+        assertEquals(2, hits.get(3).getOffset());
+
+        // ending at one place is a single findNext
+        assertEquals(3, scanner.findNext("ushers".getBytes(), 0).size());
+    }
+
+    @Test
+    void testBadKeywords() {
+        AhoCorasickScanner scanner = new AhoCorasickScanner();
+        assertTrue(scanner.findAll(DEFAULT_DATA.getBytes()).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> scanner.loadKeywords(new String[] {"a", ""}));
+        assertThrows(IllegalArgumentException.class, () -> scanner.loadKeywords(new String[] {null}));
+    }
+
+    @Test
+    void testMatchesMultiKeywordScanner() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            String[] keywords = randomKeywords(random, 1 + random.nextInt(200), "abcde");
+            byte[] data = randomText(random, 5000, "abcdef ");
+
+            MultiKeywordScanner reference = new MultiKeywordScanner();
+            reference.loadKeywords(keywords);
+            AhoCorasickScanner scanner = new AhoCorasickScanner(keywords);
+
+            assertEquals(describe(reference.findAll(data)), describe(scanner.findAll(data)), "Round " + round);
+        }
+    }
+
+    @Test
+    void testDoubleArrayMatchesDenseTable() {
+        Random random = new Random(17);
+        String[] keywords = randomKeywords(random, 300, "abcdefgh");
+        AhoCorasickScanner.Automaton dense = new AhoCorasickScanner.Automaton(keywords);
+        AhoCorasickScanner.Automaton sparse = new AhoCorasickScanner.Automaton(keywords, 0);
+        assertTrue(dense.isDense());
+        assertFalse(sparse.isDense());
+
+        int denseState = AhoCorasickScanner.Automaton.ROOT;
+        int sparseState = AhoCorasickScanner.Automaton.ROOT;
+        for (byte b : randomText(random, 20000, "abcdefghij ")) {
+            denseState = dense.next(denseState, b);
+            sparseState = sparse.next(sparseState, b);
+            assertEquals(denseState, sparseState);
+        }
+    }
+
+    @Test
+    void testChannelChunkBoundaries() throws IOException {
+        Random random = new Random(5);
+        String[] keywords = randomKeywords(random, 500, "abc");
+        byte[] data = randomText(random, 20000, "abcx");
+        AhoCorasickScanner scanner = new AhoCorasickScanner(keywords);
+        List<String> expected = describe(scanner.findAll(data));
+
+        for (int chunk : new int[] {1, 3, 7, 4096}) {
+            List<String> actual = new ArrayList<>();
+            try (SeekableByteChannel channel = InMemoryChannelFactory.create(data).create()) {
+                scanner.scan(channel, 0L, chunk, (offset, id) -> actual.add(offset + ":" + id));
+            }
+            assertEquals(expected, actual, "Chunk size " + chunk);
+        }
+
+        try (SeekableByteChannel channel = InMemoryChannelFactory.create(data).create()) {
+            assertEquals(expected, describe(scanner.findAll(channel)));
+        }
+
+        AhoCorasickScanner.Scan scan = scanner.newScan();
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < data.length; i += 1000) {
+            scan.feed(data, i, Math.min(1000, data.length - i), (offset, id) -> actual.add(offset + ":" + id));
+        }
+        assertEquals(expected, actual);
+
+        List<String> first = new ArrayList<>();
+        try (SeekableByteChannel channel = InMemoryChannelFactory.create(data).create()) {
+            scanner.scan(channel, 0L, (offset, id) -> {
+                first.add(offset + ":" + id);
+                return false;
+            });
+        }
+        assertEquals(expected.subList(0, 1), first, "Handler can stop the scan");
+    }
+
+    @Test
+    void testSharedBetweenThreads() throws InterruptedException, ExecutionException {
+        Random random = new Random(3);
+        String[] keywords = randomKeywords(random, 1000, "abcdef");
+        AhoCorasickScanner scanner = new AhoCorasickScanner(keywords);
+        List<byte[]> inputs = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            byte[] data = randomText(random, 10000, "abcdef ");
+            inputs.add(data);
+            expected.add(describe(scanner.findAll(data)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 64; t++) {
+                final int i = t % inputs.size();
+                results.add(executor.submit(() -> expected.get(i).equals(describe(scanner.findAll(inputs.get(i))))));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> describe(HitList hits) {
+        List<String> list = new ArrayList<>();
+        for (Hit hit : hits) {
+            list.add(hit.getOffset() + ":" + hit.getId());
+        }
+        return list;
+    }
+
+    private static String[] randomKeywords(Random random, int count, String alphabet) {
+        Set<String> seen = new HashSet<>();
+        String[] keywords = new String[count];
+        for (int i = 0; i < count; i++) {
+            String keyword;
+            do {
+                StringBuilder sb = new StringBuilder();
+                int length = 1 + random.nextInt(6);
+                for (int j = 0; j < length; j++) {
+                    sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                keyword = sb.toString();
+            } while (!seen.add(keyword));
+            keywords[i] = keyword;
+        }
+        return keywords;
+    }
+
+    private static byte[] randomText(Random random, int length, String alphabet) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString().getBytes();
+    }
+}
@@ -0,0 +1,97 @@
+package emissary.util.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding every keyword in a 64k buffer, comparing the compiled automaton with the tree based scanners.
+ * <p>
+ * The tree based scanners hold 256 slots per trie node, so the largest keyword list needs the bigger heap. Run with the
+ * jmh profile, see DEVELOPING.md
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class KeywordScannerBenchmark {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+    @Param({"10", "1000", "100000"})
+    public int keywordCount;
+
+    private byte[] data;
+    private AhoCorasickScanner ahoCorasick;
+    private MultiKeywordScanner multiKeyword;
+    private FastBoyerMoore boyerMoore;
+
+    @Setup
+    public void setup() throws Exception {
+        final Random random = new Random(31);
+        final Set<String> seen = new HashSet<>();
+        final String[] keywords = new String[this.keywordCount];
+        for (int i = 0; i < keywords.length; i++) {
+            String keyword;
+            do {
+                keyword = randomWord(random, 4 + random.nextInt(5));
+            } while (!seen.add(keyword));
+            keywords[i] = keyword;
+        }
+
+        // words of text with a keyword planted about every hundred bytes
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < 64 * 1024) {
+            sb.append(random.nextInt(16) == 0 ? keywords[random.nextInt(keywords.length)] : randomWord(random, 2 + random.nextInt(8)));
+            sb.append(' ');
+        }
+        this.data = sb.toString().getBytes();
+
+        this.ahoCorasick = new AhoCorasickScanner(keywords);
+        this.multiKeyword = new MultiKeywordScanner();
+        this.multiKeyword.loadKeywords(keywords);
+        this.boyerMoore = new FastBoyerMoore(keywords);
+    }
+
+    private static String randomWord(final Random random, final int length) {
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public HitList ahoCorasick() {
+        return this.ahoCorasick.findAll(this.data);
+    }
+
+    @Benchmark
+    public HitList multiKeyword() {
+        return this.multiKeyword.findAll(this.data);
+    }
+
+    @Benchmark
+    public List<int[]> boyerMoore() {
+        final List<int[]> result = new ArrayList<>();
+        this.boyerMoore.scan(this.data, 0, this.data.length, result);
+        return result;
+    }
+}